@@ -0,0 +1,101 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.net.URL;
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.qsim.AbstractQSimModule;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.mobsim.qsim.qnetsimengine.ArrayVehicleQNetworkFactory;
+import org.matsim.core.mobsim.qsim.qnetsimengine.DefaultQNetworkFactory;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QNetworkFactory;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+
+/**
+ * Runs the mobsim of some of the example scenarios repeatedly, alternating between the {@link DefaultQNetworkFactory} and the
+ * {@link ArrayVehicleQNetworkFactory}, and prints the wall clock time per run.  The first runs of each factory are warm-up.
+ * <p></p>
+ * Usage: <code>QNetworkFactoryBenchmark [scenario ...]</code>, where scenario is a name of a test scenario in <code>examples</code>;
+ * default is <code>equil berlin</code>.
+ */
+public class QNetworkFactoryBenchmark {
+
+	private static final int WARMUP_RUNS = 2;
+	private static final int MEASURED_RUNS = 5;
+
+	public static void main(String[] args) {
+		String[] scenarioNames = args.length > 0 ? args : new String[]{"equil", "berlin"};
+
+		for (String scenarioName : scenarioNames) {
+			URL configUrl = IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL(scenarioName), "config.xml");
+			Config config = ConfigUtils.loadConfig(configUrl);
+			Scenario scenario = ScenarioUtils.loadScenario(config);
+			PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+
+			long[] defaultTimes = new long[MEASURED_RUNS];
+			long[] arrayTimes = new long[MEASURED_RUNS];
+			for (int run = -WARMUP_RUNS; run < MEASURED_RUNS; run++) {
+				long defaultTime = runMobsim(scenario, DefaultQNetworkFactory.class);
+				long arrayTime = runMobsim(scenario, ArrayVehicleQNetworkFactory.class);
+				if (run >= 0) {
+					defaultTimes[run] = defaultTime;
+					arrayTimes[run] = arrayTime;
+				}
+			}
+
+			System.out.println("scenario: " + scenarioName);
+			System.out.println("\tDefaultQNetworkFactory     median [ms]: " + median(defaultTimes));
+			System.out.println("\tArrayVehicleQNetworkFactory median [ms]: " + median(arrayTimes));
+		}
+	}
+
+	private static long runMobsim(Scenario scenario, Class<? extends QNetworkFactory> factoryClass) {
+		EventsManager events = EventsUtils.createEventsManager(scenario.getConfig());
+
+		long start = System.nanoTime();
+		new QSimBuilder(scenario.getConfig()) //
+				.useDefaults() //
+				.addOverridingQSimModule(new AbstractQSimModule() {
+					@Override
+					protected void configureQSim() {
+						bind(QNetworkFactory.class).to(factoryClass);
+					}
+				}) //
+				.build(scenario, events) //
+				.run();
+		return (System.nanoTime() - start) / 1_000_000;
+	}
+
+	private static long median(long[] times) {
+		long[] sorted = times.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+}
@@ -0,0 +1,179 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.router.DefaultRoutingRequest;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import ch.sbb.matsim.routing.pt.raptor.RaptorParameters;
+import ch.sbb.matsim.routing.pt.raptor.RaptorUtils;
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptor;
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData;
+
+/**
+ * Measures SwissRailRaptor query throughput on the <code>pt-tutorial</code> example schedule and on a synthetic grid schedule of
+ * configurable size.  For both, it runs random stop-to-stop route queries and one-to-all tree queries, and prints queries per second
+ * and the number of garbage collections during the measurement.
+ * <p></p>
+ * Usage: <code>SwissRailRaptorBenchmark [gridSize [queries]]</code>, default is a 60x60 grid (3600 stops, 14400 route stops) and 20000
+ * queries.
+ */
+public class SwissRailRaptorBenchmark {
+
+	private static final double GRID_SPACING = 500.;
+	private static final double TIME_BETWEEN_STOPS = 90.;
+	private static final double HEADWAY = 600.;
+
+	public static void main(String[] args) {
+		int gridSize = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+		Config ptTutorialConfig = ConfigUtils.loadConfig(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("pt-tutorial"), "0.config.xml"));
+		Scenario ptTutorial = ScenarioUtils.loadScenario(ptTutorialConfig);
+		run("pt-tutorial", ptTutorial, queries);
+
+		Config gridConfig = ConfigUtils.createConfig();
+		gridConfig.transit().setUseTransit(true);
+		Scenario grid = ScenarioUtils.createScenario(gridConfig);
+		createGridSchedule(grid.getTransitSchedule(), gridSize);
+		run("grid " + gridSize + "x" + gridSize, grid, queries);
+	}
+
+	private static void run(String name, Scenario scenario, int queries) {
+		Config config = scenario.getConfig();
+		SwissRailRaptorData data = SwissRailRaptorData.create(scenario.getTransitSchedule(), null,
+				RaptorUtils.createStaticConfig(config), scenario.getNetwork(), null);
+		SwissRailRaptor raptor = new SwissRailRaptor.Builder(data, config).build();
+		RaptorParameters parameters = RaptorUtils.createParameters(config);
+
+		List<TransitStopFacility> stops = new ArrayList<>(scenario.getTransitSchedule().getFacilities().values());
+		Random random = new Random(4711);
+
+		// warm-up
+		runRouteQueries(raptor, stops, random, queries / 10);
+		runTreeQueries(raptor, parameters, stops, random, Math.max(1, queries / 1000));
+
+		long gcBefore = BenchmarkUtils.getGcCount();
+		long start = System.nanoTime();
+		runRouteQueries(raptor, stops, random, queries);
+		double routeSeconds = (System.nanoTime() - start) / 1e9;
+		long routeGcs = BenchmarkUtils.getGcCount() - gcBefore;
+
+		int treeQueries = Math.max(1, queries / 100);
+		gcBefore = BenchmarkUtils.getGcCount();
+		start = System.nanoTime();
+		runTreeQueries(raptor, parameters, stops, random, treeQueries);
+		double treeSeconds = (System.nanoTime() - start) / 1e9;
+		long treeGcs = BenchmarkUtils.getGcCount() - gcBefore;
+
+		System.out.println(name + ": " + stops.size() + " stops");
+		System.out.printf("\troute queries: %8.1f / s, %d GCs%n", queries / routeSeconds, routeGcs);
+		System.out.printf("\ttree queries:  %8.1f / s, %d GCs%n", treeQueries / treeSeconds, treeGcs);
+	}
+
+	private static void runRouteQueries(SwissRailRaptor raptor, List<TransitStopFacility> stops, Random random, int count) {
+		for (int i = 0; i < count; i++) {
+			TransitStopFacility from = stops.get(random.nextInt(stops.size()));
+			TransitStopFacility to = stops.get(random.nextInt(stops.size()));
+			double departureTime = 6 * 3600 + random.nextInt(14 * 3600);
+			raptor.calcRoute(DefaultRoutingRequest.withoutAttributes(from, to, departureTime, null));
+		}
+	}
+
+	private static void runTreeQueries(SwissRailRaptor raptor, RaptorParameters parameters, List<TransitStopFacility> stops, Random random, int count) {
+		for (int i = 0; i < count; i++) {
+			TransitStopFacility from = stops.get(random.nextInt(stops.size()));
+			double departureTime = 6 * 3600 + random.nextInt(14 * 3600);
+			raptor.calcTree(from, departureTime, parameters, null);
+		}
+	}
+
+	/**
+	 * Creates a grid of <code>size</code> x <code>size</code> stops with one line along every row and every column, in both directions,
+	 * operating every {@link #HEADWAY} seconds from 05:00 to 23:00.
+	 */
+	static void createGridSchedule(TransitSchedule schedule, int size) {
+		TransitScheduleFactory factory = schedule.getFactory();
+		TransitStopFacility[][] stops = new TransitStopFacility[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				TransitStopFacility stop = factory.createTransitStopFacility(Id.create(x + "_" + y, TransitStopFacility.class),
+						new Coord(x * GRID_SPACING, y * GRID_SPACING), false);
+				stop.setLinkId(Id.createLinkId("stop_" + x + "_" + y));
+				schedule.addStopFacility(stop);
+				stops[x][y] = stop;
+			}
+		}
+		for (int i = 0; i < size; i++) {
+			List<TransitStopFacility> row = new ArrayList<>();
+			List<TransitStopFacility> column = new ArrayList<>();
+			for (int j = 0; j < size; j++) {
+				row.add(stops[j][i]);
+				column.add(stops[i][j]);
+			}
+			addLine(schedule, "row_" + i, row);
+			addLine(schedule, "column_" + i, column);
+		}
+	}
+
+	private static void addLine(TransitSchedule schedule, String name, List<TransitStopFacility> stops) {
+		TransitScheduleFactory factory = schedule.getFactory();
+		TransitLine line = factory.createTransitLine(Id.create(name, TransitLine.class));
+		// the network route is only used by the raptor to compute distances along the route, which are not needed here
+		Id<Link> dummyLinkId = Id.createLinkId(name);
+		NetworkRoute networkRoute = RouteUtils.createLinkNetworkRouteImpl(dummyLinkId, dummyLinkId);
+		for (String direction : new String[]{"forward", "backward"}) {
+			List<TransitRouteStop> routeStops = new ArrayList<>();
+			for (int i = 0; i < stops.size(); i++) {
+				TransitStopFacility stop = direction.equals("forward") ? stops.get(i) : stops.get(stops.size() - 1 - i);
+				routeStops.add(factory.createTransitRouteStop(stop, i * TIME_BETWEEN_STOPS, i * TIME_BETWEEN_STOPS));
+			}
+			TransitRoute route = factory.createTransitRoute(Id.create(name + "_" + direction, TransitRoute.class), networkRoute, routeStops, "bus");
+			int departureIndex = 0;
+			for (double time = 5 * 3600; time <= 23 * 3600; time += HEADWAY) {
+				route.addDeparture(factory.createDeparture(Id.create(departureIndex++, Departure.class), time));
+			}
+			line.addRoute(route);
+		}
+		schedule.addTransitLine(line);
+	}
+
+}
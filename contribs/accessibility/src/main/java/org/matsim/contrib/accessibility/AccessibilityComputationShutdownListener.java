@@ -22,8 +22,8 @@ package org.matsim.contrib.accessibility;
 import java.io.File;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.google.common.collect.Iterables;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.BasicLocation;
@@ -38,7 +38,6 @@ import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.controler.events.ShutdownEvent;
 import org.matsim.core.controler.listener.ShutdownListener;
 import org.matsim.core.gbl.Gbl;
-import org.matsim.core.utils.collections.Tuple;
 import org.matsim.facilities.ActivityFacilities;
 import org.matsim.facilities.ActivityFacility;
 
@@ -54,8 +53,13 @@ final class AccessibilityComputationShutdownListener implements ShutdownListener
 	private String outputDirectory;
 
 	private final Map<String, AccessibilityContributionCalculator> calculators = new LinkedHashMap<>();
-	private AccessibilityAggregator accessibilityAggregator;
 	private final ArrayList<FacilityDataExchangeInterface> zoneDataExchangeListeners = new ArrayList<>();
+	private final List<AdditionalOpportunities> additionalOpportunities = new ArrayList<>();
+
+	// results of the last computation: [opportunities (main ones first)][mode][measuring point], NaN if not computed
+	private Double departureTime;
+	private List<ActivityFacility> measuringPointList;
+	private double[][][] accessibilities;
 
 	private AccessibilityConfigGroup acg;
 	private final PlanCalcScoreConfigGroup cnScoringGroup;
@@ -94,56 +98,86 @@ final class AccessibilityComputationShutdownListener implements ShutdownListener
 			return;
 		}
 		LOG.info("Initializing accessibility computation...");
-		accessibilityAggregator = new AccessibilityAggregator();
-		addFacilityDataExchangeListener(accessibilityAggregator);
 
 		if (outputDirectory != null) {
 			File file = new File(outputDirectory);
 			file.mkdirs();
 		}
+		for (AdditionalOpportunities additional : additionalOpportunities) {
+			new File(additional.outputDirectory).mkdirs();
+		}
 
 		LOG.info("Start computing accessibilities.");
 		computeAccessibilities(acg.getTimeOfDay(), opportunities);
 		LOG.info("Finished computing accessibilities.");
 
-		writeCSVFile(outputDirectory);
+		writeCSVFile(outputDirectory, 0);
+		for (int i = 0; i < additionalOpportunities.size(); i++) {
+			writeCSVFile(additionalOpportunities.get(i).outputDirectory, i + 1);
+		}
 	}
 
 
+	/**
+	 * Computes the accessibilities of all measuring points for all modes. The least-cost path tree (or whatever else a calculator
+	 * pre-computes for an origin node) is computed once per origin node and used for the given opportunities as well as for all
+	 * {@link #addOpportunities(String, ActivityFacilities, String) additional opportunities}. With parallelization, the threads
+	 * take the next origin node whenever they are done with one, so that expensive origins do not hold up a whole partition.
+	 * <p></p>
+	 * The accessibilities to the given opportunities are passed to the facility data exchange listeners.
+	 */
 	public final void computeAccessibilities(Double departureTime, ActivityFacilities opportunities) {
-		for (String mode : calculators.keySet()) {
+		this.departureTime = departureTime;
+
+		this.measuringPointList = new ArrayList<>(measuringPoints.getFacilities().values());
+		Map<Id<ActivityFacility>, Integer> measuringPointIndices = new HashMap<>();
+		for (int i = 0; i < measuringPointList.size(); i++) {
+			measuringPointIndices.put(measuringPointList.get(i).getId(), i);
+		}
+		List<String> modes = new ArrayList<>(calculators.keySet());
+		this.accessibilities = new double[1 + additionalOpportunities.size()][modes.size()][measuringPointList.size()];
+		for (double[][] byMode : accessibilities) {
+			for (double[] byMeasuringPoint : byMode) {
+				Arrays.fill(byMeasuringPoint, Double.NaN);
+			}
+		}
+
+		for (int modeIndex = 0; modeIndex < modes.size(); modeIndex++) {
+			String mode = modes.get(modeIndex);
 			AccessibilityContributionCalculator calculator = calculators.get(mode);
+
+			// the calculator (sub-network, raptor data etc.) is initialized once; the additional opportunities are only aggregated
 			calculator.initialize(measuringPoints, opportunities);
+			List<Map<Id<? extends BasicLocation>, AggregationObject>> aggregatedOpportunities = new ArrayList<>();
+			aggregatedOpportunities.add(calculator.getAgregatedOpportunities());
+			for (AdditionalOpportunities additional : additionalOpportunities) {
+				aggregatedOpportunities.add(calculator.aggregateOpportunities(additional.opportunities));
+			}
 
 			// TODO
-            Map<Id<? extends BasicLocation>, ArrayList<ActivityFacility>> aggregatedOrigins = calculator.getAggregatedMeasurePoints();
-            Map<Id<? extends BasicLocation>, AggregationObject> aggregatedOpportunities = calculator.getAgregatedOpportunities();
-
-            Collection<Id<? extends BasicLocation>> aggregatedOriginIds = new LinkedList<>();
-			for (Id<? extends BasicLocation> nodeId : aggregatedOrigins.keySet()) {
-				aggregatedOriginIds.add(nodeId);
-			}
+			Map<Id<? extends BasicLocation>, ArrayList<ActivityFacility>> aggregatedOrigins = calculator.getAggregatedMeasurePoints();
+			List<Id<? extends BasicLocation>> aggregatedOriginIds = new ArrayList<>(aggregatedOrigins.keySet());
 
 			LOG.info("Iterating over all aggregated measuring points...");
+			ProgressBar progressBar = new ProgressBar(aggregatedOrigins.size());
+			AtomicInteger nextOrigin = new AtomicInteger();
+			final int finalModeIndex = modeIndex;
 
 			if (acg.isUseParallelization()) {
 				int numberOfProcessors = Runtime.getRuntime().availableProcessors();
 				LOG.info("There are " + numberOfProcessors + " available processors.");
 
-				final int partitionSize = (int) ((double) aggregatedOrigins.size() / numberOfProcessors) + 1;
-				LOG.info("Size of partitions = " + partitionSize);
-				Iterable<List<Id<? extends BasicLocation>>> partitions = Iterables.partition(aggregatedOriginIds, partitionSize);
-
-				ProgressBar progressBar = new ProgressBar(aggregatedOrigins.size());
-
-				ExecutorService service = Executors.newFixedThreadPool(numberOfProcessors);
+				int numberOfThreads = Math.max(1, Math.min(numberOfProcessors, aggregatedOriginIds.size()));
+				ExecutorService service = Executors.newFixedThreadPool(numberOfThreads);
 				List<Callable<Void>> tasks = new ArrayList<>();
-				for (final List<Id<? extends BasicLocation>> partition : partitions) {
+				for (int i = 0; i < numberOfThreads; i++) {
 					tasks.add(() -> {
-						try {
-							compute(mode, departureTime, aggregatedOpportunities, aggregatedOrigins, partition, progressBar);
-						} catch (Exception e) {
-							throw new RuntimeException(e);
+						AccessibilityContributionCalculator threadCalculator = calculator.duplicate();
+						int originIndex;
+						while ((originIndex = nextOrigin.getAndIncrement()) < aggregatedOriginIds.size()) {
+							progressBar.update();
+							compute(threadCalculator, finalModeIndex, departureTime, aggregatedOpportunities, aggregatedOrigins,
+									aggregatedOriginIds.get(originIndex), measuringPointIndices);
 						}
 						return null;
 					});
@@ -157,12 +191,27 @@ final class AccessibilityComputationShutdownListener implements ShutdownListener
 					throw new RuntimeException(e);
 				} catch (ExecutionException e) {
 					throw new RuntimeException(e);
+				} finally {
+					service.shutdown();
 				}
-				service.shutdown();
 			} else {
 				LOG.info("Performing the computation without parallelization.");
-				ProgressBar progressBar = new ProgressBar(aggregatedOrigins.size());
-				compute(mode, departureTime, aggregatedOpportunities, aggregatedOrigins, aggregatedOriginIds, progressBar);
+				for (Id<? extends BasicLocation> fromNodeId : aggregatedOriginIds) {
+					progressBar.update();
+					compute(calculator, modeIndex, departureTime, aggregatedOpportunities, aggregatedOrigins, fromNodeId, measuringPointIndices);
+				}
+			}
+		}
+
+		// pass the results to the listeners in the order of the measuring points
+		for (int i = 0; i < measuringPointList.size(); i++) {
+			for (int modeIndex = 0; modeIndex < modes.size(); modeIndex++) {
+				double accessibility = accessibilities[0][modeIndex][i];
+				if (!Double.isNaN(accessibility)) {
+					for (FacilityDataExchangeInterface zoneDataExchangeInterface : this.zoneDataExchangeListeners) {
+						zoneDataExchangeInterface.setFacilityAccessibilities(measuringPointList.get(i), departureTime, modes.get(modeIndex), accessibility);
+					}
+				}
 			}
 		}
 		for (FacilityDataExchangeInterface zoneDataExchangeInterface : this.zoneDataExchangeListeners) {
@@ -171,53 +220,58 @@ final class AccessibilityComputationShutdownListener implements ShutdownListener
 	}
 
 
-	private void compute(String mode, Double departureTime, Map<Id<? extends BasicLocation>, AggregationObject> aggregatedOpportunities,
+	private void compute(AccessibilityContributionCalculator calculator, int modeIndex, Double departureTime,
+						 List<Map<Id<? extends BasicLocation>, AggregationObject>> aggregatedOpportunities,
 						 Map<Id<? extends BasicLocation>, ArrayList<ActivityFacility>> aggregatedOrigins,
-						 Collection<Id<? extends BasicLocation>> subsetOfNodes, ProgressBar progressBar) {
-
-		AccessibilityContributionCalculator calculator;
-		if (acg.isUseParallelization()) {
-			calculator = calculators.get(mode).duplicate();
-		} else {
-			calculator = calculators.get(mode);
-		}
-
-		// Go through all nodes that have a measuring point assigned
-		for (Id<? extends BasicLocation> fromNodeId : subsetOfNodes) {
-			progressBar.update();
-
-			Gbl.assertNotNull(calculator);
-			calculator.notifyNewOriginNode(fromNodeId, departureTime);
+						 Id<? extends BasicLocation> fromNodeId, Map<Id<ActivityFacility>, Integer> measuringPointIndices) {
+		Gbl.assertNotNull(calculator);
+		calculator.notifyNewOriginNode(fromNodeId, departureTime);
 
-			// Go through all measuring points assigned to current node
-			for (ActivityFacility origin : aggregatedOrigins.get(fromNodeId)) {
-				assert(origin.getCoord() != null);
+		// Go through all measuring points assigned to current node
+		for (ActivityFacility origin : aggregatedOrigins.get(fromNodeId)) {
+			assert(origin.getCoord() != null);
+			Integer measuringPointIndex = measuringPointIndices.get(origin.getId());
+			Gbl.assertNotNull(measuringPointIndex);
 
-                double expSum = calculator.computeContributionOfOpportunity(origin, aggregatedOpportunities, departureTime);
+			for (int i = 0; i < aggregatedOpportunities.size(); i++) {
+				double expSum = calculator.computeContributionOfOpportunity(origin, aggregatedOpportunities.get(i), departureTime);
 
 				double accessibility;
-                if (acg.getAccessibilityMeasureType() == AccessibilityConfigGroup.AccessibilityMeasureType.logSum) {
+				if (acg.getAccessibilityMeasureType() == AccessibilityConfigGroup.AccessibilityMeasureType.logSum) {
 					accessibility = (1/this.cnScoringGroup.getBrainExpBeta()) * Math.log(expSum);
-                } else if (acg.getAccessibilityMeasureType() == AccessibilityConfigGroup.AccessibilityMeasureType.rawSum) {
+				} else if (acg.getAccessibilityMeasureType() == AccessibilityConfigGroup.AccessibilityMeasureType.rawSum) {
 					accessibility = expSum;
-                } else if (acg.getAccessibilityMeasureType() == AccessibilityConfigGroup.AccessibilityMeasureType.gravity) {
-                    throw new IllegalArgumentException("This accessibility measure is not yet implemented.");
-                } else {
-                    throw new IllegalArgumentException("No valid accessibility measure type chosen.");
-                }
-
-				for (FacilityDataExchangeInterface zoneDataExchangeInterface : this.zoneDataExchangeListeners) {
-					zoneDataExchangeInterface.setFacilityAccessibilities(origin, departureTime, mode, accessibility);
+				} else if (acg.getAccessibilityMeasureType() == AccessibilityConfigGroup.AccessibilityMeasureType.gravity) {
+					throw new IllegalArgumentException("This accessibility measure is not yet implemented.");
+				} else {
+					throw new IllegalArgumentException("No valid accessibility measure type chosen.");
 				}
+				// each measuring point belongs to exactly one origin node, so no two threads write the same entry
+				accessibilities[i][modeIndex][measuringPointIndex] = accessibility;
 			}
 		}
 	}
 
 
-	private void writeCSVFile(String adaptedOutputDirectory) {
+	private void writeCSVFile(String adaptedOutputDirectory, int opportunitiesIndex) {
 		LOG.info("Start writing accessibility output to " + adaptedOutputDirectory + ".");
 
-		Map<Tuple<ActivityFacility, Double>, Map<String,Double>> accessibilitiesMap = accessibilityAggregator.getAccessibilitiesMap();
+		List<String> modes = new ArrayList<>(getModes());
+		double[][] byMode = accessibilities[opportunitiesIndex];
+
+		// measuring points with results, sorted by y and x coordinate
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < measuringPointList.size(); i++) {
+			for (double[] byMeasuringPoint : byMode) {
+				if (!Double.isNaN(byMeasuringPoint[i])) {
+					order.add(i);
+					break;
+				}
+			}
+		}
+		order.sort(Comparator.<Integer>comparingDouble(i -> measuringPointList.get(i).getCoord().getY())
+				.thenComparingDouble(i -> measuringPointList.get(i).getCoord().getX()));
+
 		final CSVWriter writer = new CSVWriter(adaptedOutputDirectory + "/" + CSVWriter.FILE_NAME ) ;
 
 		// Write header
@@ -225,7 +279,7 @@ final class AccessibilityComputationShutdownListener implements ShutdownListener
 		writer.writeField(Labels.X_COORDINATE);
 		writer.writeField(Labels.Y_COORDINATE);
 		writer.writeField(Labels.TIME);
-		for (String mode : getModes() ) {
+		for (String mode : modes) {
 			writer.writeField(mode + "_accessibility");
 		}
 		for (ActivityFacilities additionalDataFacilities : this.additionalFacilityData) { // Iterate over all additional data collections
@@ -235,20 +289,15 @@ final class AccessibilityComputationShutdownListener implements ShutdownListener
 		writer.writeNewLine();
 
 		// Write data
-		for (Tuple<ActivityFacility, Double> tuple : accessibilitiesMap.keySet()) {
-			ActivityFacility facility = tuple.getFirst();
+		for (int i : order) {
+			ActivityFacility facility = measuringPointList.get(i);
 			writer.writeField(facility.getId().toString());
 			writer.writeField(facility.getCoord().getX());
 			writer.writeField(facility.getCoord().getY());
-			writer.writeField(tuple.getSecond());
-			
-			for (String mode : getModes() ) {
-				final double value = accessibilitiesMap.get(tuple).get(mode);
-				if (!Double.isNaN(value)) { 
-					writer.writeField(value) ;
-				} else {
-					writer.writeField(Double.NaN) ;
-				}
+			writer.writeField(departureTime);
+
+			for (int modeIndex = 0; modeIndex < modes.size(); modeIndex++) {
+				writer.writeField(byMode[modeIndex][i]);
 			}
 			for (ActivityFacilities additionalDataFacilities : this.additionalFacilityData) { // Again: Iterate over all additional data collections
 				String additionalDataName = additionalDataFacilities.getName();
@@ -262,6 +311,17 @@ final class AccessibilityComputationShutdownListener implements ShutdownListener
 	}
 
 
+	/**
+	 * Adds opportunities of a further type, whose accessibilities are computed together with the ones of the main opportunities,
+	 * re-using the least-cost path trees. The results are written to the given directory, but are not passed to the facility data
+	 * exchange listeners.
+	 */
+	public void addOpportunities(String activityType, ActivityFacilities opportunities, String outputDirectory) {
+		LOG.info("Adding opportunities for " + activityType + ".");
+		this.additionalOpportunities.add(new AdditionalOpportunities(opportunities, outputDirectory));
+	}
+
+
 	public final void putAccessibilityContributionCalculator(String mode, AccessibilityContributionCalculator calculator) {
 		LOG.info("Adding accessibility contribution calculator for " + mode + ".");
 		Gbl.assertNotNull(calculator);
@@ -282,4 +342,15 @@ final class AccessibilityComputationShutdownListener implements ShutdownListener
 	public Set<String> getModes() {
 		return this.calculators.keySet() ;
 	}
+
+
+	private static final class AdditionalOpportunities {
+		final ActivityFacilities opportunities;
+		final String outputDirectory;
+
+		AdditionalOpportunities(ActivityFacilities opportunities, String outputDirectory) {
+			this.opportunities = opportunities;
+			this.outputDirectory = outputDirectory;
+		}
+	}
 }
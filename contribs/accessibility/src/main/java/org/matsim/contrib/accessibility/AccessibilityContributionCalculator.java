@@ -57,6 +57,13 @@ interface AccessibilityContributionCalculator {
 
     Map<Id<? extends BasicLocation>, AggregationObject> getAgregatedOpportunities();
 
+	/**
+	 * Aggregates further opportunities the same way as the ones passed to {@link #initialize(ActivityFacilities, ActivityFacilities)},
+	 * without repeating the rest of the initialization, so that the accessibilities to several opportunity types can be computed with
+	 * the same least-cost path trees.  Must be called after {@link #initialize(ActivityFacilities, ActivityFacilities)}.
+	 */
+	Map<Id<? extends BasicLocation>, AggregationObject> aggregateOpportunities(ActivityFacilities opportunities);
+
 	/*
 	Needed for perallelization
 	 */
@@ -60,6 +60,7 @@ public final class AccessibilityModule extends AbstractModule {
 	private ActivityFacilities measuringPoints;
 	private Map<String, ActivityFacilities> additionalFacs = new TreeMap<>() ;
 	private String activityType;
+	private final List<String> additionalActivityTypes = new ArrayList<>();
 	private boolean pushing2Geoserver = false;
 	private boolean createQGisOutput = false;
 
@@ -206,6 +207,12 @@ public final class AccessibilityModule extends AbstractModule {
 				for (FacilityDataExchangeInterface listener : facilityDataListeners) {
 					accessibilityShutdownListener.addFacilityDataExchangeListener(listener);
 				}
+
+				for (String additionalActivityType : additionalActivityTypes) {
+					accessibilityShutdownListener.addOpportunities(additionalActivityType,
+							AccessibilityUtils.collectActivityFacilitiesWithOptionOfType(scenario, additionalActivityType),
+							scenario.getConfig().controler().getOutputDirectory() + "/" + additionalActivityType);
+				}
 				
 				return accessibilityShutdownListener;
 			}
@@ -244,4 +251,13 @@ public final class AccessibilityModule extends AbstractModule {
 	public void setConsideredActivityType(String activityType) {
 		this.activityType = activityType ;
 	}
+
+	/**
+	 * Computes the accessibilities to the opportunities of a further activity type as well, re-using the least-cost path trees of the
+	 * {@link #setConsideredActivityType(String) considered activity type}, which is much cheaper than adding a second module.  The
+	 * results are written to their own output directory only, i.e. they are not passed to the facility data exchange listeners.
+	 */
+	public void addConsideredActivityType(String activityType) {
+		this.additionalActivityTypes.add(activityType) ;
+	}
 }
@@ -120,7 +120,7 @@ final class ConstantSpeedAccessibilityExpContributionCalculator implements Acces
 		LOG.warn("sub-network for mode " + modeSet.toString() + " now has " + subNetwork.getNodes().size() + " nodes.");
 
 		this.aggregatedMeasurePoints = AccessibilityUtils.aggregateMeasurePointsWithSameNearestNode(measuringPoints, subNetwork);
-		this.aggregatedOpportunities = AccessibilityUtils.aggregateOpportunitiesWithSameNearestNode(opportunities, subNetwork, scenario.getConfig());
+		this.aggregatedOpportunities = aggregateOpportunities(opportunities);
 	}
 
 
@@ -193,4 +193,9 @@ final class ConstantSpeedAccessibilityExpContributionCalculator implements Acces
 	public Map<Id<? extends BasicLocation>, AggregationObject> getAgregatedOpportunities() {
 		return aggregatedOpportunities;
 	}
+
+	@Override
+	public Map<Id<? extends BasicLocation>, AggregationObject> aggregateOpportunities(ActivityFacilities opportunities) {
+		return AccessibilityUtils.aggregateOpportunitiesWithSameNearestNode(opportunities, subNetwork, scenario.getConfig());
+	}
 }
@@ -37,7 +37,7 @@ final class LeastCostPathCalculatorAccessibilityContributionCalculator implement
     @Override
     public void initialize(ActivityFacilities measuringPoints, ActivityFacilities opportunities) {
         this.aggregatedMeasurePoints = AccessibilityUtils.aggregateMeasurePointsWithSameNearestNode(measuringPoints, scenario.getNetwork());
-        this.aggregatedOpportunities = AccessibilityUtils.aggregateOpportunitiesWithSameNearestNode(opportunities, scenario.getNetwork(), scenario.getConfig());
+        this.aggregatedOpportunities = aggregateOpportunities(opportunities);
     }
 
 
@@ -79,4 +79,9 @@ final class LeastCostPathCalculatorAccessibilityContributionCalculator implement
     public Map<Id<? extends BasicLocation>, AggregationObject> getAgregatedOpportunities() {
         return aggregatedOpportunities;
     }
+
+    @Override
+    public Map<Id<? extends BasicLocation>, AggregationObject> aggregateOpportunities(ActivityFacilities opportunities) {
+        return AccessibilityUtils.aggregateOpportunitiesWithSameNearestNode(opportunities, scenario.getNetwork(), scenario.getConfig());
+    }
 }
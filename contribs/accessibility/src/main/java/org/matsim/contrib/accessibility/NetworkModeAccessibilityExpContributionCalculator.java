@@ -103,7 +103,7 @@ final class NetworkModeAccessibilityExpContributionCalculator implements Accessi
 		LOG.warn("sub-network for mode " + modeSet.toString() + " now has " + subNetwork.getNodes().size() + " nodes.");
 
         this.aggregatedMeasurePoints = AccessibilityUtils.aggregateMeasurePointsWithSameNearestNode(measuringPoints, subNetwork);
-		this.aggregatedOpportunities = AccessibilityUtils.aggregateOpportunitiesWithSameNearestNode(opportunities, subNetwork, scenario.getConfig());
+		this.aggregatedOpportunities = aggregateOpportunities(opportunities);
 	}
 
 
@@ -187,4 +187,9 @@ final class NetworkModeAccessibilityExpContributionCalculator implements Accessi
 	public Map<Id<? extends BasicLocation>, AggregationObject> getAgregatedOpportunities() {
 		return aggregatedOpportunities;
 	}
+
+	@Override
+	public Map<Id<? extends BasicLocation>, AggregationObject> aggregateOpportunities(ActivityFacilities opportunities) {
+		return AccessibilityUtils.aggregateOpportunitiesWithSameNearestNode(opportunities, subNetwork, scenario.getConfig());
+	}
 }
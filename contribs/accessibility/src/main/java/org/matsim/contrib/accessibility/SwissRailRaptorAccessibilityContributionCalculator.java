@@ -57,16 +57,20 @@ class SwissRailRaptorAccessibilityContributionCalculator implements Accessibilit
 
     Map<Id<ActivityFacility>, Collection<TransitStopFacility>> stopsPerAggregatedOpportunity = new LinkedHashMap<>();
 
+	// the tree of the current origin, shared by all opportunity types
+	private ActivityFacility treeOrigin;
+	private Map<Id<TransitStopFacility>, SwissRailRaptorCore.TravelInfo> tree;
+
 
     public SwissRailRaptorAccessibilityContributionCalculator(String mode, PlanCalcScoreConfigGroup planCalcScoreConfigGroup, Scenario scenario) {
-		this.mode = mode;
+		this(mode, planCalcScoreConfigGroup, scenario, createRaptorData(scenario));
+	}
 
-		TransitSchedule schedule = scenario.getTransitSchedule();
-		Network ptNetwork = scenario.getNetwork();
 
-		RaptorStaticConfig raptorConfig = RaptorUtils.createStaticConfig(scenario.getConfig());
-		raptorConfig.setOptimization(RaptorStaticConfig.RaptorOptimization.OneToAllRouting);
-			this.raptorData = SwissRailRaptorData.create(schedule, null, raptorConfig, ptNetwork, null);
+	private SwissRailRaptorAccessibilityContributionCalculator(String mode, PlanCalcScoreConfigGroup planCalcScoreConfigGroup, Scenario scenario,
+															   SwissRailRaptorData raptorData) {
+		this.mode = mode;
+		this.raptorData = raptorData;
 
 		this.raptor = new SwissRailRaptor.Builder(raptorData, scenario.getConfig()).build();
 		this.planCalcScoreConfigGroup = planCalcScoreConfigGroup;
@@ -78,6 +82,16 @@ class SwissRailRaptorAccessibilityContributionCalculator implements Accessibilit
 	}
 
 
+	private static SwissRailRaptorData createRaptorData(Scenario scenario) {
+		TransitSchedule schedule = scenario.getTransitSchedule();
+		Network ptNetwork = scenario.getNetwork();
+
+		RaptorStaticConfig raptorConfig = RaptorUtils.createStaticConfig(scenario.getConfig());
+		raptorConfig.setOptimization(RaptorStaticConfig.RaptorOptimization.OneToAllRouting);
+		return SwissRailRaptorData.create(schedule, null, raptorConfig, ptNetwork, null);
+	}
+
+
     @Override
     public void initialize(ActivityFacilities measuringPoints, ActivityFacilities opportunities) {
 		LOG.warn("Initializing calculator for mode " + mode + "...");
@@ -97,7 +111,13 @@ class SwissRailRaptorAccessibilityContributionCalculator implements Accessibilit
 
 
         // Prepare opportunities
-        aggregatedOpportunities = new ConcurrentHashMap<>();
+        aggregatedOpportunities = aggregateOpportunities(opportunities);
+    }
+
+
+    @Override
+    public Map<Id<? extends BasicLocation>, AggregationObject> aggregateOpportunities(ActivityFacilities opportunities) {
+        Map<Id<? extends BasicLocation>, AggregationObject> aggregatedOpportunities = new ConcurrentHashMap<>();
         AccessibilityConfigGroup acg = ConfigUtils.addOrGetModule(scenario.getConfig(), AccessibilityConfigGroup.GROUP_NAME, AccessibilityConfigGroup.class);
         for (ActivityFacility opportunity : opportunities.getFacilities().values()) {
 
@@ -128,11 +148,14 @@ class SwissRailRaptorAccessibilityContributionCalculator implements Accessibilit
 
             stopsPerAggregatedOpportunity.put(opportunity.getId(), stops);
         }
+        return aggregatedOpportunities;
     }
 
 
 	@Override
 	public void notifyNewOriginNode(Id<? extends BasicLocation> fromNodeId, Double departureTime) {
+		this.treeOrigin = null;
+		this.tree = null;
 	}
 
 
@@ -141,7 +164,11 @@ class SwissRailRaptorAccessibilityContributionCalculator implements Accessibilit
             Map<Id<? extends BasicLocation>, AggregationObject> aggregatedOpportunities, Double departureTime) {
         double expSum = 0.;
 
-        final Map<Id<TransitStopFacility>, SwissRailRaptorCore.TravelInfo> idTravelInfoMap = raptor.calcTree(origin, departureTime, null, new AttributesImpl());
+        if (origin != treeOrigin) {
+            tree = raptor.calcTree(origin, departureTime, null, new AttributesImpl());
+            treeOrigin = origin;
+        }
+        final Map<Id<TransitStopFacility>, SwissRailRaptorCore.TravelInfo> idTravelInfoMap = tree;
 
         for (final AggregationObject destination : aggregatedOpportunities.values()) {
             //compute direct walk costs
@@ -177,7 +204,7 @@ class SwissRailRaptorAccessibilityContributionCalculator implements Accessibilit
 	@Override
 	public SwissRailRaptorAccessibilityContributionCalculator duplicate() {
 		SwissRailRaptorAccessibilityContributionCalculator swissRailRaptorAccessibilityContributionCalculator =
-				new SwissRailRaptorAccessibilityContributionCalculator(this.mode, this.planCalcScoreConfigGroup, this.scenario);
+				new SwissRailRaptorAccessibilityContributionCalculator(this.mode, this.planCalcScoreConfigGroup, this.scenario, this.raptorData);
         swissRailRaptorAccessibilityContributionCalculator.aggregatedMeasurePoints = this.aggregatedMeasurePoints;
         swissRailRaptorAccessibilityContributionCalculator.aggregatedOpportunities = this.aggregatedOpportunities;
         swissRailRaptorAccessibilityContributionCalculator.stopsPerAggregatedOpportunity = this.stopsPerAggregatedOpportunity;
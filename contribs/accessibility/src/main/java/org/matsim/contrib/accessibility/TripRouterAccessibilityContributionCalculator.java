@@ -104,7 +104,7 @@ class TripRouterAccessibilityContributionCalculator implements AccessibilityCont
 		subNetwork = AccessibilityUtils.createModeSpecificSubNetwork(scenario.getNetwork(), mode, networkConfigGroup);
 
 		this.aggregatedMeasurePoints = AccessibilityUtils.aggregateMeasurePointsWithSameNearestNode(measuringPoints, subNetwork);
-        this.aggregatedOpportunities = AccessibilityUtils.aggregateOpportunitiesWithSameNearestNode(opportunities, subNetwork, scenario.getConfig());
+        this.aggregatedOpportunities = aggregateOpportunities(opportunities);
     }
 
 
@@ -196,6 +196,11 @@ class TripRouterAccessibilityContributionCalculator implements AccessibilityCont
         return aggregatedOpportunities;
     }
 
+    @Override
+    public Map<Id<? extends BasicLocation>, AggregationObject> aggregateOpportunities(ActivityFacilities opportunities) {
+        return AccessibilityUtils.aggregateOpportunitiesWithSameNearestNode(opportunities, subNetwork, scenario.getConfig());
+    }
+
 
 	private Link getNearestLinkInCorrectDirection(ActivityFacility origin, Network network, Node nodeInWhichLinkHasToEnd) {
 		Link nearestLink = NetworkUtils.getNearestLinkExactly(network, origin.getCoord());
@@ -19,6 +19,9 @@
 
 package org.matsim.contrib.accessibility.run;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 import org.apache.logging.log4j.LogManager;
@@ -114,6 +117,60 @@ public class TinyAccessibilityTest {
 	}
 
 
+	/**
+	 * Computing the accessibilities to a second activity type together with the first one, i.e. with the same least-cost path trees,
+	 * must give the same results as computing them for each activity type on its own.
+	 */
+	@Test
+	public void testAdditionalActivityTypeEqualsSeparateComputation() throws IOException {
+		String sharedOutputDirectory = utils.getOutputDirectory() + "shared";
+		runWithActivityTypes(sharedOutputDirectory, true, "shops", "schools");
+
+		for (String activityType : new String[]{"shops", "schools"}) {
+			String separateOutputDirectory = utils.getOutputDirectory() + activityType;
+			runWithActivityTypes(separateOutputDirectory, false, activityType);
+
+			List<String> shared = Files.readAllLines(Path.of(sharedOutputDirectory, activityType, CSVWriter.FILE_NAME));
+			List<String> separate = Files.readAllLines(Path.of(separateOutputDirectory, activityType, CSVWriter.FILE_NAME));
+			Assert.assertTrue(shared.size() > 1);
+			Assert.assertEquals(separate, shared);
+		}
+	}
+
+
+	private void runWithActivityTypes(String outputDirectory, boolean useParallelization, String activityType, String... additionalActivityTypes) {
+		final Config config = createTestConfig();
+		config.controler().setOutputDirectory(outputDirectory);
+
+		AccessibilityConfigGroup acg = ConfigUtils.addOrGetModule(config, AccessibilityConfigGroup.class) ;
+		acg.setAreaOfAccessibilityComputation(AreaOfAccesssibilityComputation.fromBoundingBox);
+		acg.setBoundingBoxBottom(0.);
+		acg.setBoundingBoxTop(200.);
+		acg.setBoundingBoxLeft(0.);
+		acg.setBoundingBoxRight(200.);
+		acg.setUseParallelization(useParallelization);
+
+		final Scenario sc = createTestScenario(config);
+		final ActivityFacilities facilities = sc.getActivityFacilities();
+		facilities.getFacilities().get(Id.create("1", ActivityFacility.class)).addActivityOption(facilities.getFactory().createActivityOption("shops"));
+		facilities.getFacilities().get(Id.create("2", ActivityFacility.class)).addActivityOption(facilities.getFactory().createActivityOption("schools"));
+		ActivityFacility facility3 = facilities.getFactory().createActivityFacility(Id.create("3", ActivityFacility.class), new Coord(10, 190));
+		facility3.addActivityOption(facilities.getFactory().createActivityOption("schools"));
+		facilities.addActivityFacility(facility3);
+
+		Controler controler = new Controler(sc);
+
+		final AccessibilityModule module = new AccessibilityModule();
+		module.setConsideredActivityType(activityType);
+		for (String additionalActivityType : additionalActivityTypes) {
+			module.addConsideredActivityType(additionalActivityType);
+		}
+		controler.addOverridingModule(module);
+
+		controler.run();
+	}
+
+
 	private Config createTestConfig() {
 		final Config config = ConfigUtils.createConfig();
 
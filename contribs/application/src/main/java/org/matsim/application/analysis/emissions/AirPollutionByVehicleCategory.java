@@ -20,8 +20,6 @@
 package org.matsim.application.analysis.emissions;
 
 import com.google.common.collect.Iterables;
-import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
-import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.logging.log4j.LogManager;
@@ -31,24 +29,14 @@ import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.application.MATSimAppCommand;
 import org.matsim.application.options.CrsOptions;
-import org.matsim.contrib.emissions.EmissionModule;
 import org.matsim.contrib.emissions.HbefaVehicleCategory;
+import org.matsim.contrib.emissions.OfflineEmissionCalculator;
 import org.matsim.contrib.emissions.Pollutant;
-import org.matsim.contrib.emissions.events.ColdEmissionEvent;
-import org.matsim.contrib.emissions.events.ColdEmissionEventHandler;
-import org.matsim.contrib.emissions.events.WarmEmissionEvent;
-import org.matsim.contrib.emissions.events.WarmEmissionEventHandler;
 import org.matsim.contrib.emissions.utils.EmissionsConfigGroup;
 import org.matsim.contrib.emissions.utils.EmissionsConfigGroup.DetailedVsAverageLookupBehavior;
 import org.matsim.contrib.emissions.utils.EmissionsConfigGroup.NonScenarioVehicles;
-import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
-import org.matsim.core.controler.AbstractModule;
-import org.matsim.core.controler.Injector;
-import org.matsim.core.events.EventsUtils;
-import org.matsim.core.events.MatsimEventsReader;
-import org.matsim.core.events.algorithms.EventWriterXML;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.core.utils.io.CipherUtils;
 import org.matsim.vehicles.EngineInformation;
@@ -95,6 +83,10 @@ public class AirPollutionByVehicleCategory implements MATSimAppCommand {
 	@CommandLine.Option(names = "--output", description = "Output events file", required = false)
 	private Path output;
 
+	@CommandLine.Option(names = "--threads", description = "Number of threads for the emission calculation. " +
+			"The emission events file is only written with one thread, otherwise only the footprint is written.", defaultValue = "1")
+	private int threads;
+
 	@CommandLine.Option(names = "--vehicle-type", description = "Map vehicle type to Hbefa category", defaultValue = "defaultVehicleType=PASSENGER_CAR")
 	private Map<String, HbefaVehicleCategory> vehicleCategories;
 
@@ -171,45 +163,26 @@ public class AirPollutionByVehicleCategory implements MATSimAppCommand {
 			VehicleUtils.setHbefaEmissionsConcept(carEngineInformation, "average");
 		}
 
-		EventsManager eventsManager = EventsUtils.createEventsManager();
-
-		AbstractModule module = new AbstractModule() {
-			@Override
-			public void install() {
-				bind(Scenario.class).toInstance(scenario);
-				bind(EventsManager.class).toInstance(eventsManager);
-				bind(EmissionModule.class);
-			}
-		};
-
 		if (output == null) {
 			output = Path.of(eventsFile.replace(".xml", ".emissions.xml"));
 			log.info("Writing to output {}", output);
 		}
 
-		com.google.inject.Injector injector = Injector.createInjector(config, module);
-
-		EmissionModule emissionModule = injector.getInstance(EmissionModule.class);
-
-		EventWriterXML emissionEventWriter = new EventWriterXML(output.toString());
-
-		Handler aggrHandler = new Handler();
-
-		emissionModule.getEmissionEventsManager().addHandler(emissionEventWriter);
-		emissionModule.getEmissionEventsManager().addHandler(aggrHandler);
-
-		eventsManager.initProcessing();
-		MatsimEventsReader matsimEventsReader = new MatsimEventsReader(eventsManager);
-		matsimEventsReader.readFile(eventsFile);
-		eventsManager.finishProcessing();
-
-		emissionEventWriter.closeFile();
+		// only the totals are needed, so one time bin for the whole day is enough
+		OfflineEmissionCalculator calculator = new OfflineEmissionCalculator(scenario, threads, 24 * 3600);
+		if (threads == 1) {
+			calculator.setEmissionEventsFile(output.toString());
+		} else {
+			log.info("Emission events are not written with {} threads, only the footprint", threads);
+		}
+		calculator.processEventsFile(eventsFile);
 
+		double[] totals = calculator.getTotalEmissions();
 		try (CSVPrinter printer = new CSVPrinter(Files.newBufferedWriter(Path.of(output.toString()
 				.replace(".xml", ".footprint.csv").replace(".gz", ""))), CSVFormat.DEFAULT)) {
 			printer.printRecord("pollutant", "g");
-			for (Object2DoubleMap.Entry<Pollutant> e : aggrHandler.pollution.object2DoubleEntrySet()) {
-				printer.printRecord(e.getKey(), e.getDoubleValue());
+			for (Pollutant pollutant : calculator.getPollutants()) {
+				printer.printRecord(pollutant, totals[pollutant.ordinal()]);
 			}
 		}
 
@@ -274,27 +247,5 @@ public class AirPollutionByVehicleCategory implements MATSimAppCommand {
 
 	}
 
-
-	private static class Handler implements ColdEmissionEventHandler, WarmEmissionEventHandler {
-
-		private final Object2DoubleMap<Pollutant> pollution = new Object2DoubleOpenHashMap<>();
-
-		@Override
-		public void handleEvent(ColdEmissionEvent event) {
-
-			for (Map.Entry<Pollutant, Double> pollutant : event.getColdEmissions().entrySet()) {
-				pollution.mergeDouble(pollutant.getKey(), pollutant.getValue(), Double::sum);
-			}
-		}
-
-		@Override
-		public void handleEvent(WarmEmissionEvent event) {
-
-			for (Map.Entry<Pollutant, Double> pollutant : event.getWarmEmissions().entrySet()) {
-				pollution.mergeDouble(pollutant.getKey(), pollutant.getValue(), Double::sum);
-			}
-		}
-	}
-
 }
 
@@ -0,0 +1,112 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.benchmark;
+
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.matsim.contrib.common.csv.CSVLineBuilder;
+import org.matsim.contrib.common.csv.CompactCSVWriter;
+import org.matsim.contrib.dvrp.passenger.PassengerRequestRejectedEvent;
+import org.matsim.contrib.dvrp.passenger.PassengerRequestRejectedEventHandler;
+import org.matsim.contrib.dvrp.passenger.PassengerRequestScheduledEvent;
+import org.matsim.contrib.dvrp.passenger.PassengerRequestScheduledEventHandler;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+import org.matsim.core.controler.listener.BeforeMobsimListener;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * Measures the request throughput of DRT: the number of handled (scheduled or rejected) requests per second of mobsim wall-clock
+ * time. Under the {@link org.matsim.contrib.dvrp.benchmark.DvrpBenchmarks} setup (no other traffic, deterministic travel times), the
+ * mobsim time is dominated by request insertion.
+ */
+public class DrtBenchmarkStats
+		implements BeforeMobsimListener, AfterMobsimListener, ShutdownListener, PassengerRequestScheduledEventHandler,
+		PassengerRequestRejectedEventHandler {
+	public static final String[] HEADER = { //
+			"Requests_avg", //
+			"Rejections_avg", //
+			"MobsimWallTime_avg", //
+			"RequestsPerSecond_avg" };
+
+	private final String mode;
+	private final OutputDirectoryHierarchy controlerIO;
+
+	private final SummaryStatistics requests = new SummaryStatistics();
+	private final SummaryStatistics rejections = new SummaryStatistics();
+	private final SummaryStatistics mobsimWallTime = new SummaryStatistics();
+	private final SummaryStatistics requestsPerSecond = new SummaryStatistics();
+
+	private long mobsimStartNanos;
+	private int scheduledCount;
+	private int rejectedCount;
+
+	public DrtBenchmarkStats(String mode, OutputDirectoryHierarchy controlerIO) {
+		this.mode = mode;
+		this.controlerIO = controlerIO;
+	}
+
+	@Override
+	public void notifyBeforeMobsim(BeforeMobsimEvent event) {
+		scheduledCount = 0;
+		rejectedCount = 0;
+		mobsimStartNanos = System.nanoTime();
+	}
+
+	@Override
+	public void notifyAfterMobsim(AfterMobsimEvent event) {
+		double seconds = (System.nanoTime() - mobsimStartNanos) / 1e9;
+		int handled = scheduledCount + rejectedCount;
+		requests.addValue(handled);
+		rejections.addValue(rejectedCount);
+		mobsimWallTime.addValue(seconds);
+		requestsPerSecond.addValue(handled / seconds);
+	}
+
+	@Override
+	public void handleEvent(PassengerRequestScheduledEvent event) {
+		if (event.getMode().equals(mode)) {
+			scheduledCount++;
+		}
+	}
+
+	@Override
+	public void handleEvent(PassengerRequestRejectedEvent event) {
+		if (event.getMode().equals(mode)) {
+			rejectedCount++;
+		}
+	}
+
+	@Override
+	public void notifyShutdown(ShutdownEvent event) {
+		try (CompactCSVWriter writer = new CompactCSVWriter(
+				IOUtils.getBufferedWriter(controlerIO.getOutputFilename(mode + "_benchmark_stats.txt")))) {
+			writer.writeNext(HEADER);
+			writer.writeNext(new CSVLineBuilder()//
+					.addf("%.0f", requests.getMean())
+					.addf("%.0f", rejections.getMean())
+					.addf("%.2f", mobsimWallTime.getMean())
+					.addf("%.1f", requestsPerSecond.getMean()));
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.benchmark;
+
+import static org.matsim.contrib.drt.run.DrtControlerCreator.createScenarioWithDrtRouteFactory;
+
+import java.net.URL;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.contrib.drt.run.DrtConfigGroup;
+import org.matsim.contrib.drt.run.DrtConfigs;
+import org.matsim.contrib.drt.run.MultiModeDrtConfigGroup;
+import org.matsim.contrib.drt.run.MultiModeDrtModule;
+import org.matsim.contrib.dvrp.benchmark.DvrpBenchmarks;
+import org.matsim.contrib.dvrp.run.AbstractDvrpModeModule;
+import org.matsim.contrib.dvrp.run.DvrpConfigGroup;
+import org.matsim.contrib.dvrp.run.DvrpQSimComponents;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+
+/**
+ * Measures the request insertion throughput of DRT with the {@link DvrpBenchmarks} setup (deterministic travel times, no other
+ * traffic), see {@link DrtBenchmarkStats}. Run it with and without {@link DrtConfigGroup#batchInsertion} to compare sequential and
+ * batch insertion.
+ */
+public class RunDrtBenchmark {
+	public static void run(URL configUrl, int runs, boolean batchInsertion) {
+		Config config = ConfigUtils.loadConfig(configUrl, new MultiModeDrtConfigGroup(), new DvrpConfigGroup());
+		for (DrtConfigGroup drtCfg : MultiModeDrtConfigGroup.get(config).getModalElements()) {
+			drtCfg.batchInsertion = batchInsertion;
+		}
+		createControler(config, runs).run();
+	}
+
+	public static Controler createControler(Config config, int runs) {
+		config.controler().setLastIteration(runs - 1);
+		config.controler().setDumpDataAtEnd(false);
+		config.controler().setWriteEventsInterval(0);
+		config.controler().setWritePlansInterval(0);
+		config.controler().setCreateGraphs(false);
+		DvrpBenchmarks.adjustConfig(config);
+
+		MultiModeDrtConfigGroup multiModeDrtConfig = MultiModeDrtConfigGroup.get(config);
+		DrtConfigs.adjustMultiModeDrtConfig(multiModeDrtConfig, config.planCalcScore(), config.plansCalcRoute());
+
+		Scenario scenario = createScenarioWithDrtRouteFactory(config);
+		ScenarioUtils.loadScenario(scenario);
+
+		Controler controler = new Controler(scenario);
+		DvrpBenchmarks.initController(controler);
+
+		controler.addOverridingModule(new MultiModeDrtModule());
+		controler.configureQSimComponents(DvrpQSimComponents.activateAllModes(multiModeDrtConfig));
+
+		for (DrtConfigGroup drtCfg : multiModeDrtConfig.getModalElements()) {
+			controler.addOverridingModule(new AbstractDvrpModeModule(drtCfg.getMode()) {
+				@Override
+				public void install() {
+					bindModal(DrtBenchmarkStats.class).toProvider(modalProvider(
+							getter -> new DrtBenchmarkStats(getMode(), getter.get(OutputDirectoryHierarchy.class))))
+							.asEagerSingleton();
+					addControlerListenerBinding().to(modalKey(DrtBenchmarkStats.class));
+					addEventHandlerBinding().to(modalKey(DrtBenchmarkStats.class));
+				}
+			});
+		}
+		return controler;
+	}
+
+	public static void main(String[] args) {
+		// e.g. <drt config url> <runs> <batchInsertion>
+		run(IOUtils.resolveFileOrResource(args[0]), Integer.parseInt(args[1]), Boolean.parseBoolean(args[2]));
+	}
+}
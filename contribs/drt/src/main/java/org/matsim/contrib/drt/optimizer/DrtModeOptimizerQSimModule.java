@@ -29,6 +29,7 @@ import org.matsim.contrib.drt.optimizer.insertion.DefaultUnplannedRequestInserte
 import org.matsim.contrib.drt.optimizer.insertion.DrtInsertionSearch;
 import org.matsim.contrib.drt.optimizer.insertion.InsertionCostCalculator;
 import org.matsim.contrib.drt.optimizer.insertion.UnplannedRequestInserter;
+import org.matsim.contrib.drt.optimizer.insertion.VehicleEntrySpatialIndex;
 import org.matsim.contrib.drt.optimizer.insertion.extensive.ExtensiveInsertionSearchParams;
 import org.matsim.contrib.drt.optimizer.insertion.extensive.ExtensiveInsertionSearchQSimModule;
 import org.matsim.contrib.drt.optimizer.insertion.selective.SelectiveInsertionSearchParams;
@@ -50,10 +51,14 @@ import org.matsim.contrib.dvrp.optimizer.VrpOptimizer;
 import org.matsim.contrib.dvrp.passenger.PassengerHandler;
 import org.matsim.contrib.dvrp.run.AbstractDvrpModeQSimModule;
 import org.matsim.contrib.dvrp.run.DvrpConfigGroup;
+import org.matsim.contrib.dvrp.run.DvrpMode;
 import org.matsim.contrib.dvrp.run.DvrpModes;
 import org.matsim.contrib.dvrp.schedule.ScheduleTimingUpdater;
 import org.matsim.contrib.dvrp.vrpagent.VrpAgentLogic;
+import org.matsim.contrib.zone.skims.FreeSpeedTravelTimeMatrix;
+import org.matsim.contrib.zone.skims.TravelTimeMatrix;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
 import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.modal.ModalProviders;
 import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
@@ -97,7 +102,8 @@ public class DrtModeOptimizerQSimModule extends AbstractDvrpModeQSimModule {
 						getter.getModal(RequestInsertionScheduler.class),
 						getter.getModal(VehicleEntry.EntryFactory.class), getter.getModal(DrtInsertionSearch.class),
 						getter.getModal(DrtRequestInsertionRetryQueue.class), getter.getModal(DrtOfferAcceptor.class),
-						getter.getModal(QSimScopeForkJoinPoolHolder.class).getPool()))).asEagerSingleton();
+						getter.getModal(QSimScopeForkJoinPoolHolder.class).getPool(),
+						createVehicleEntrySpatialIndex(getter)))).asEagerSingleton();
 
 		bindModal(InsertionCostCalculator.class).toProvider(modalProvider(
 				getter -> new DefaultInsertionCostCalculator(getter.getModal(CostCalculationStrategy.class))));
@@ -150,6 +156,37 @@ public class DrtModeOptimizerQSimModule extends AbstractDvrpModeQSimModule {
 		bindModal(VrpOptimizer.class).to(modalKey(DrtOptimizer.class));
 	}
 
+	/**
+	 * The index prunes vehicles without changing the chosen insertions only if insertions violating the latest start time are rejected
+	 * and the detour times are estimated from free-speed travel times on a time-invariant network (see {@link VehicleEntrySpatialIndex}).
+	 * Otherwise, no index is used.
+	 */
+	private VehicleEntrySpatialIndex createVehicleEntrySpatialIndex(ModalProviders.InstanceGetter<DvrpMode> getter) {
+		if (!(getter.getModal(CostCalculationStrategy.class) instanceof CostCalculationStrategy.RejectSoftConstraintViolations)
+				|| !(getter.getModal(TravelTimeMatrix.class) instanceof FreeSpeedTravelTimeMatrix)
+				|| getter.get(Config.class).network().isTimeVariantNetwork()) {
+			return null;
+		}
+
+		double maxBeelineSpeed = VehicleEntrySpatialIndex.calcMaxBeelineSpeed(getter.getModal(Network.class));
+		if (!(maxBeelineSpeed > 0) || Double.isInfinite(maxBeelineSpeed)) {
+			return null;
+		}
+
+		var insertionSearchParams = drtCfg.getDrtInsertionSearchParams();
+		double beelineSpeedFactor;
+		if (insertionSearchParams instanceof ExtensiveInsertionSearchParams extensiveParams) {
+			beelineSpeedFactor = extensiveParams.admissibleBeelineSpeedFactor;
+		} else if (insertionSearchParams instanceof SelectiveInsertionSearchParams selectiveParams) {
+			beelineSpeedFactor = selectiveParams.restrictiveBeelineSpeedFactor;
+		} else {
+			return null;
+		}
+
+		int cellSize = getter.get(DvrpConfigGroup.class).getTravelTimeMatrixParams().cellSize;
+		return new VehicleEntrySpatialIndex(cellSize, maxBeelineSpeed, beelineSpeedFactor);
+	}
+
 	public static AbstractDvrpModeQSimModule getInsertionSearchQSimModule(DrtConfigGroup drtCfg) {
 		switch (drtCfg.getDrtInsertionSearchParams().getName()) {
 			case ExtensiveInsertionSearchParams.SET_NAME:
@@ -19,16 +19,21 @@
 
 package org.matsim.contrib.drt.optimizer.insertion;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ForkJoinPool;
 import java.util.function.DoubleSupplier;
 import java.util.stream.Collectors;
 
+import javax.annotation.Nullable;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -64,14 +69,30 @@ public class DefaultUnplannedRequestInserter implements UnplannedRequestInserter
 	private final DrtRequestInsertionRetryQueue insertionRetryQueue;
 	private final DrtOfferAcceptor drtOfferAcceptor;
 	private final ForkJoinPool forkJoinPool;
+	private final boolean batchInsertion;
+	@Nullable
+	private final VehicleEntrySpatialIndex vehicleEntryIndex;
 
 	public DefaultUnplannedRequestInserter(DrtConfigGroup drtCfg, Fleet fleet, MobsimTimer mobsimTimer,
 			EventsManager eventsManager, RequestInsertionScheduler insertionScheduler,
 			VehicleEntry.EntryFactory vehicleEntryFactory, DrtInsertionSearch insertionSearch,
 			DrtRequestInsertionRetryQueue insertionRetryQueue, DrtOfferAcceptor drtOfferAcceptor,
 			ForkJoinPool forkJoinPool) {
+		this(drtCfg, fleet, mobsimTimer, eventsManager, insertionScheduler, vehicleEntryFactory, insertionSearch,
+				insertionRetryQueue, drtOfferAcceptor, forkJoinPool, null);
+	}
+
+	/**
+	 * @param vehicleEntryIndex if not <code>null</code>, only the vehicles returned by the index are passed to the insertion search
+	 */
+	public DefaultUnplannedRequestInserter(DrtConfigGroup drtCfg, Fleet fleet, MobsimTimer mobsimTimer,
+			EventsManager eventsManager, RequestInsertionScheduler insertionScheduler,
+			VehicleEntry.EntryFactory vehicleEntryFactory, DrtInsertionSearch insertionSearch,
+			DrtRequestInsertionRetryQueue insertionRetryQueue, DrtOfferAcceptor drtOfferAcceptor,
+			ForkJoinPool forkJoinPool, @Nullable VehicleEntrySpatialIndex vehicleEntryIndex) {
 		this(drtCfg.getMode(), fleet, mobsimTimer::getTimeOfDay, eventsManager, insertionScheduler, vehicleEntryFactory,
-				insertionRetryQueue, insertionSearch, drtOfferAcceptor, forkJoinPool);
+				insertionRetryQueue, insertionSearch, drtOfferAcceptor, forkJoinPool, drtCfg.batchInsertion,
+				vehicleEntryIndex);
 	}
 
 	@VisibleForTesting
@@ -79,6 +100,16 @@ public class DefaultUnplannedRequestInserter implements UnplannedRequestInserter
 			RequestInsertionScheduler insertionScheduler, VehicleEntry.EntryFactory vehicleEntryFactory,
 			DrtRequestInsertionRetryQueue insertionRetryQueue, DrtInsertionSearch insertionSearch,
 			DrtOfferAcceptor drtOfferAcceptor, ForkJoinPool forkJoinPool) {
+		this(mode, fleet, timeOfDay, eventsManager, insertionScheduler, vehicleEntryFactory, insertionRetryQueue,
+				insertionSearch, drtOfferAcceptor, forkJoinPool, false, null);
+	}
+
+	@VisibleForTesting
+	DefaultUnplannedRequestInserter(String mode, Fleet fleet, DoubleSupplier timeOfDay, EventsManager eventsManager,
+			RequestInsertionScheduler insertionScheduler, VehicleEntry.EntryFactory vehicleEntryFactory,
+			DrtRequestInsertionRetryQueue insertionRetryQueue, DrtInsertionSearch insertionSearch,
+			DrtOfferAcceptor drtOfferAcceptor, ForkJoinPool forkJoinPool, boolean batchInsertion,
+			@Nullable VehicleEntrySpatialIndex vehicleEntryIndex) {
 		this.mode = mode;
 		this.fleet = fleet;
 		this.timeOfDay = timeOfDay;
@@ -89,6 +120,8 @@ public class DefaultUnplannedRequestInserter implements UnplannedRequestInserter
 		this.insertionSearch = insertionSearch;
 		this.drtOfferAcceptor = drtOfferAcceptor;
 		this.forkJoinPool = forkJoinPool;
+		this.batchInsertion = batchInsertion;
+		this.vehicleEntryIndex = vehicleEntryIndex;
 	}
 
 	@Override
@@ -107,6 +140,18 @@ public class DefaultUnplannedRequestInserter implements UnplannedRequestInserter
 				.filter(Objects::nonNull)
 				.collect(Collectors.toMap(e -> e.vehicle.getId(), e -> e))).join();
 
+		if (vehicleEntryIndex != null) {
+			vehicleEntryIndex.reset(vehicleEntries.values());
+		}
+
+		if (batchInsertion) {
+			List<DrtRequest> requests = new ArrayList<>(requestsToRetry);
+			requests.addAll(unplannedRequests);
+			unplannedRequests.clear();
+			scheduleRequestBatch(requests, vehicleEntries, now);
+			return;
+		}
+
 		//first retry scheduling old requests
 		requestsToRetry.forEach(req -> scheduleUnplannedRequest(req, vehicleEntries, now));
 
@@ -117,44 +162,87 @@ public class DefaultUnplannedRequestInserter implements UnplannedRequestInserter
 		}
 	}
 
+	/**
+	 * Searches the best insertions of all requests in parallel against the same vehicle entries. The requests are then scheduled in
+	 * their order; a request whose vehicle has already been taken by an earlier request of the same round is searched again in the next
+	 * round, against the updated vehicle entries. Each round schedules or rejects at least the first remaining request.
+	 */
+	private void scheduleRequestBatch(List<DrtRequest> requests, Map<Id<DvrpVehicle>, VehicleEntry> vehicleEntries,
+			double now) {
+		while (!requests.isEmpty()) {
+			Collection<VehicleEntry> snapshot = Collections.unmodifiableCollection(new ArrayList<>(vehicleEntries.values()));
+			List<DrtRequest> round = requests;
+			List<Optional<InsertionWithDetourData>> bestInsertions = forkJoinPool.submit(() -> round.parallelStream()
+					.map(req -> insertionSearch.findBestInsertion(req,
+							vehicleEntryIndex == null ? snapshot : vehicleEntryIndex.findCandidates(req)))
+					.collect(Collectors.toList())).join();
+
+			Set<Id<DvrpVehicle>> usedVehicles = new HashSet<>();
+			List<DrtRequest> conflictingRequests = new ArrayList<>();
+			for (int i = 0; i < round.size(); i++) {
+				DrtRequest req = round.get(i);
+				Optional<InsertionWithDetourData> best = bestInsertions.get(i);
+				if (best.isEmpty()) {
+					rejectOrRetry(req, now);
+				} else if (usedVehicles.add(best.get().insertion.vehicleEntry.vehicle.getId())) {
+					scheduleInsertion(req, best.get(), vehicleEntries, now);
+				} else {
+					conflictingRequests.add(req);
+				}
+			}
+			requests = conflictingRequests;
+		}
+	}
+
 	private void scheduleUnplannedRequest(DrtRequest req, Map<Id<DvrpVehicle>, VehicleEntry> vehicleEntries,
 			double now) {
-		Optional<InsertionWithDetourData> best = insertionSearch.findBestInsertion(req,
-				Collections.unmodifiableCollection(vehicleEntries.values()));
+		Optional<InsertionWithDetourData> best = insertionSearch.findBestInsertion(req, vehicleEntryIndex == null ?
+				Collections.unmodifiableCollection(vehicleEntries.values()) :
+				vehicleEntryIndex.findCandidates(req));
 		if (best.isEmpty()) {
-			if (!insertionRetryQueue.tryAddFailedRequest(req, now)) {
-				eventsManager.processEvent(
-						new PassengerRequestRejectedEvent(now, mode, req.getId(), req.getPassengerId(),
-								NO_INSERTION_FOUND_CAUSE));
-				log.debug("No insertion found for drt request "
-						+ req
-						+ " from passenger id="
-						+ req.getPassengerId()
-						+ " fromLinkId="
-						+ req.getFromLink().getId());
-			}
+			rejectOrRetry(req, now);
 		} else {
-			InsertionWithDetourData insertion = best.get();
+			scheduleInsertion(req, best.get(), vehicleEntries, now);
+		}
+	}
 
-			// accept offered drt ride
-			var acceptedRequest = drtOfferAcceptor.acceptDrtOffer(req,
-					insertion.detourTimeInfo.pickupDetourInfo.departureTime,
-					insertion.detourTimeInfo.dropoffDetourInfo.arrivalTime);
+	private void rejectOrRetry(DrtRequest req, double now) {
+		if (!insertionRetryQueue.tryAddFailedRequest(req, now)) {
+			eventsManager.processEvent(
+					new PassengerRequestRejectedEvent(now, mode, req.getId(), req.getPassengerId(),
+							NO_INSERTION_FOUND_CAUSE));
+			log.debug("No insertion found for drt request "
+					+ req
+					+ " from passenger id="
+					+ req.getPassengerId()
+					+ " fromLinkId="
+					+ req.getFromLink().getId());
+		}
+	}
 
-			var vehicle = insertion.insertion.vehicleEntry.vehicle;
-			var pickupDropoffTaskPair = insertionScheduler.scheduleRequest(acceptedRequest.get(), insertion);
+	private void scheduleInsertion(DrtRequest req, InsertionWithDetourData insertion,
+			Map<Id<DvrpVehicle>, VehicleEntry> vehicleEntries, double now) {
+		// accept offered drt ride
+		var acceptedRequest = drtOfferAcceptor.acceptDrtOffer(req,
+				insertion.detourTimeInfo.pickupDetourInfo.departureTime,
+				insertion.detourTimeInfo.dropoffDetourInfo.arrivalTime);
 
-			VehicleEntry newVehicleEntry = vehicleEntryFactory.create(vehicle, now);
-			if (newVehicleEntry != null) {
-				vehicleEntries.put(vehicle.getId(), newVehicleEntry);
-			} else {
-				vehicleEntries.remove(vehicle.getId());
-			}
+		var vehicle = insertion.insertion.vehicleEntry.vehicle;
+		var pickupDropoffTaskPair = insertionScheduler.scheduleRequest(acceptedRequest.get(), insertion);
 
-			eventsManager.processEvent(
-					new PassengerRequestScheduledEvent(now, mode, req.getId(), req.getPassengerId(), vehicle.getId(),
-							pickupDropoffTaskPair.pickupTask.getEndTime(),
-							pickupDropoffTaskPair.dropoffTask.getBeginTime()));
+		VehicleEntry newVehicleEntry = vehicleEntryFactory.create(vehicle, now);
+		if (newVehicleEntry != null) {
+			vehicleEntries.put(vehicle.getId(), newVehicleEntry);
+		} else {
+			vehicleEntries.remove(vehicle.getId());
 		}
+		if (vehicleEntryIndex != null) {
+			vehicleEntryIndex.update(vehicle.getId(), newVehicleEntry);
+		}
+
+		eventsManager.processEvent(
+				new PassengerRequestScheduledEvent(now, mode, req.getId(), req.getPassengerId(), vehicle.getId(),
+						pickupDropoffTaskPair.pickupTask.getEndTime(),
+						pickupDropoffTaskPair.dropoffTask.getBeginTime()));
 	}
 }
@@ -0,0 +1,230 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.drt.optimizer.VehicleEntry;
+import org.matsim.contrib.drt.optimizer.Waypoint;
+import org.matsim.contrib.drt.passenger.DrtRequest;
+import org.matsim.contrib.dvrp.fleet.DvrpVehicle;
+import org.matsim.core.utils.geometry.CoordUtils;
+
+/**
+ * Grid index over the waypoints (start and stops) of the vehicle entries. For a given request, it returns only the vehicles that may
+ * reach the pickup link before the latest start time of the request, i.e. that have at least one waypoint for which the departure time
+ * plus a lower bound of the estimated travel time to the pickup link does not exceed the latest start time.
+ * <p></p>
+ * The lower bound assumes that the detour times are estimated with {@link DetourTimeEstimator#createMatrixBasedEstimator} on top of a
+ * {@link org.matsim.contrib.zone.skims.FreeSpeedTravelTimeMatrix} with the same cell size: the matrix value between two nodes is at
+ * least the travel time between the central nodes of their zones (at most one cell diagonal away from the nodes) at the maximum
+ * beeline speed of the network, minus 1 second for truncating the value. If, in addition, insertions that violate the latest start
+ * time are rejected ({@link CostCalculationStrategy.RejectSoftConstraintViolations}), the pruned vehicles would not have
+ * any feasible insertion, so using the index does not change the chosen insertions.
+ * <p></p>
+ * Updates must not run concurrently with other updates or queries; concurrent queries are fine.
+ */
+public class VehicleEntrySpatialIndex {
+	/**
+	 * @return the maximum ratio of beeline length to free-speed travel time over all links, or infinity if there are links
+	 * with a non-positive length
+	 */
+	public static double calcMaxBeelineSpeed(Network network) {
+		double maxBeelineSpeed = 0;
+		for (Link link : network.getLinks().values()) {
+			double beelineLength = CoordUtils.calcEuclideanDistance(link.getFromNode().getCoord(), link.getToNode().getCoord());
+			if (beelineLength > 0) {
+				if (link.getLength() <= 0) {
+					return Double.POSITIVE_INFINITY;
+				}
+				maxBeelineSpeed = Math.max(maxBeelineSpeed, beelineLength * link.getFreespeed() / link.getLength());
+			}
+		}
+		return maxBeelineSpeed;
+	}
+
+	private record IndexedWaypoint(VehicleEntry entry, Link link, double x, double y, double departureTime, long cellKey) {
+	}
+
+	private final double cellSize;
+	private final double maxBeelineSpeed;
+	private final double beelineSpeedFactor;
+	private final double zonalDistanceMargin;
+
+	private final Map<Long, List<IndexedWaypoint>> cells = new HashMap<>();
+	private final Map<Id<DvrpVehicle>, List<IndexedWaypoint>> vehicleWaypoints = new HashMap<>();
+	private double minDepartureTime = Double.POSITIVE_INFINITY;
+
+	/**
+	 * @param cellSize           cell size of the travel time matrix (also used as the cell size of this index)
+	 * @param maxBeelineSpeed    see {@link #calcMaxBeelineSpeed(Network)}
+	 * @param beelineSpeedFactor speed factor of the detour time estimator used by the insertion search
+	 */
+	public VehicleEntrySpatialIndex(double cellSize, double maxBeelineSpeed, double beelineSpeedFactor) {
+		if (!(cellSize > 0) || !(maxBeelineSpeed > 0) || Double.isInfinite(maxBeelineSpeed) || !(beelineSpeedFactor > 0)) {
+			throw new IllegalArgumentException(
+					"Invalid parameters: cellSize=" + cellSize + ", maxBeelineSpeed=" + maxBeelineSpeed + ", beelineSpeedFactor="
+							+ beelineSpeedFactor);
+		}
+		this.cellSize = cellSize;
+		this.maxBeelineSpeed = maxBeelineSpeed;
+		this.beelineSpeedFactor = beelineSpeedFactor;
+		this.zonalDistanceMargin = 2 * Math.sqrt(2) * cellSize;
+	}
+
+	public void reset(Collection<VehicleEntry> vehicleEntries) {
+		cells.clear();
+		vehicleWaypoints.clear();
+		minDepartureTime = Double.POSITIVE_INFINITY;
+		vehicleEntries.forEach(this::add);
+	}
+
+	/**
+	 * @param vehicleEntry new entry of the vehicle, or <code>null</code> if the vehicle is no longer available
+	 */
+	public void update(Id<DvrpVehicle> vehicleId, @Nullable VehicleEntry vehicleEntry) {
+		remove(vehicleId);
+		if (vehicleEntry != null) {
+			add(vehicleEntry);
+		}
+	}
+
+	public List<VehicleEntry> findCandidates(DrtRequest request) {
+		Link pickupLink = request.getFromLink();
+		Coord pickupCoord = pickupLink.getFromNode().getCoord();
+		double latestStartTime = request.getLatestStartTime();
+
+		Set<Id<DvrpVehicle>> candidateIds = new HashSet<>();
+		List<VehicleEntry> candidates = new ArrayList<>();
+
+		// max distance for which: minDepartureTime + calcMinTravelTime(distance) <= latestStartTime
+		double radius = zonalDistanceMargin + ((latestStartTime - minDepartureTime) * beelineSpeedFactor + 1) * maxBeelineSpeed;
+		if (radius >= 0) {
+			double cellSpan = Math.ceil(radius / cellSize);
+			if ((2 * cellSpan + 1) * (2 * cellSpan + 1) >= cells.size()) {
+				cells.values().forEach(cell -> addCandidates(cell, request, candidateIds, candidates));
+			} else {
+				int minX = cellIndex(pickupCoord.getX() - radius);
+				int maxX = cellIndex(pickupCoord.getX() + radius);
+				int minY = cellIndex(pickupCoord.getY() - radius);
+				int maxY = cellIndex(pickupCoord.getY() + radius);
+				for (int x = minX; x <= maxX; x++) {
+					for (int y = minY; y <= maxY; y++) {
+						List<IndexedWaypoint> cell = cells.get(cellKey(x, y));
+						if (cell != null) {
+							addCandidates(cell, request, candidateIds, candidates);
+						}
+					}
+				}
+			}
+		}
+
+		// waypoints on the pickup link may lie outside the radius (the estimated travel time from them is 0)
+		List<IndexedWaypoint> pickupLinkCell = cells.get(cellKey(pickupLink.getToNode().getCoord()));
+		if (pickupLinkCell != null) {
+			addCandidates(pickupLinkCell, request, candidateIds, candidates);
+		}
+		return candidates;
+	}
+
+	private void addCandidates(List<IndexedWaypoint> cell, DrtRequest request, Set<Id<DvrpVehicle>> candidateIds,
+			List<VehicleEntry> candidates) {
+		for (IndexedWaypoint waypoint : cell) {
+			if (!candidateIds.contains(waypoint.entry.vehicle.getId()) && canReachPickup(waypoint, request)) {
+				candidateIds.add(waypoint.entry.vehicle.getId());
+				candidates.add(waypoint.entry);
+			}
+		}
+	}
+
+	private boolean canReachPickup(IndexedWaypoint waypoint, DrtRequest request) {
+		Link pickupLink = request.getFromLink();
+		if (waypoint.link == pickupLink) {
+			return waypoint.departureTime <= request.getLatestStartTime();
+		}
+		Coord pickupCoord = pickupLink.getFromNode().getCoord();
+		double distance = Math.hypot(waypoint.x - pickupCoord.getX(), waypoint.y - pickupCoord.getY());
+		return waypoint.departureTime + calcMinTravelTime(distance) <= request.getLatestStartTime();
+	}
+
+	private double calcMinTravelTime(double distance) {
+		double minMatrixTravelTime = Math.max(0, (distance - zonalDistanceMargin) / maxBeelineSpeed - 1);
+		return minMatrixTravelTime / beelineSpeedFactor;
+	}
+
+	private void add(VehicleEntry entry) {
+		List<IndexedWaypoint> waypoints = new ArrayList<>(entry.stops.size() + 1);
+		addWaypoint(entry, entry.start, waypoints);
+		for (Waypoint.Stop stop : entry.stops) {
+			addWaypoint(entry, stop, waypoints);
+		}
+		vehicleWaypoints.put(entry.vehicle.getId(), waypoints);
+	}
+
+	private void addWaypoint(VehicleEntry entry, Waypoint waypoint, List<IndexedWaypoint> waypoints) {
+		// detours to the pickup start at the to-node of the waypoint link
+		Coord coord = waypoint.getLink().getToNode().getCoord();
+		long cellKey = cellKey(coord);
+		var indexedWaypoint = new IndexedWaypoint(entry, waypoint.getLink(), coord.getX(), coord.getY(),
+				waypoint.getDepartureTime(), cellKey);
+		cells.computeIfAbsent(cellKey, k -> new ArrayList<>()).add(indexedWaypoint);
+		waypoints.add(indexedWaypoint);
+		minDepartureTime = Math.min(minDepartureTime, indexedWaypoint.departureTime);
+	}
+
+	private void remove(Id<DvrpVehicle> vehicleId) {
+		List<IndexedWaypoint> waypoints = vehicleWaypoints.remove(vehicleId);
+		if (waypoints == null) {
+			return;
+		}
+		for (IndexedWaypoint waypoint : waypoints) {
+			List<IndexedWaypoint> cell = cells.get(waypoint.cellKey);
+			cell.remove(waypoint);
+			if (cell.isEmpty()) {
+				cells.remove(waypoint.cellKey);
+			}
+		}
+	}
+
+	private long cellKey(Coord coord) {
+		return cellKey(cellIndex(coord.getX()), cellIndex(coord.getY()));
+	}
+
+	private int cellIndex(double coordinate) {
+		return (int)Math.floor(coordinate / cellSize);
+	}
+
+	private static long cellKey(int x, int y) {
+		return ((long)x << 32) | (y & 0xffffffffL);
+	}
+}
@@ -23,6 +23,7 @@ package org.matsim.contrib.drt.optimizer.insertion.extensive;
 import org.matsim.contrib.drt.optimizer.insertion.DrtInsertionSearchParams;
 
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.PositiveOrZero;
 
 /**
@@ -39,6 +40,20 @@ public class ExtensiveInsertionSearchParams extends DrtInsertionSearchParams {
 	@DecimalMin("1.0")
 	public double admissibleBeelineSpeedFactor = 1.0;
 
+	@Parameter
+	@Comment("Max number of one-to-many path searches (from/to pickup and dropoff links) memoized within one time step."
+			+ " Speeds up the insertion search if requests submitted at the same time share origin/destination links"
+			+ " (e.g. stations, hubs). Hit rates are written to <mode>_detour_path_cache_stats.csv in each iteration."
+			+ " 0 (default) disables memoization.")
+	@PositiveOrZero
+	public int detourPathCacheSize = 0;
+
+	@Parameter
+	@Comment("Searches from/to the same link starting in the same time bin share the paths calculated for the first of them."
+			+ " Default is 1 s, i.e. only (almost) identical start times are shared.")
+	@Positive
+	public double detourPathCacheTimeBinSize = 1;
+
 	public ExtensiveInsertionSearchParams() {
 		super(SET_NAME);
 	}
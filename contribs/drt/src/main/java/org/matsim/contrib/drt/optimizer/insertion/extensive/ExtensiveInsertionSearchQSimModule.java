@@ -27,9 +27,8 @@ import org.matsim.contrib.drt.optimizer.insertion.IncrementalStopDurationEstimat
 import org.matsim.contrib.drt.optimizer.insertion.InsertionCostCalculator;
 import org.matsim.contrib.drt.run.DrtConfigGroup;
 import org.matsim.contrib.dvrp.run.AbstractDvrpModeQSimModule;
-import org.matsim.contrib.dvrp.run.DvrpModes;
 import org.matsim.contrib.zone.skims.TravelTimeMatrix;
-import org.matsim.core.modal.ModalProviders;
+import org.matsim.core.controler.MatsimServices;
 import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
 import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.core.router.util.TravelTime;
@@ -56,16 +55,13 @@ public class ExtensiveInsertionSearchQSimModule extends AbstractDvrpModeQSimModu
 					insertionCostCalculator, getter.getModal(IncrementalStopDurationEstimator.class));
 		})).asEagerSingleton();
 
-		addModalComponent(MultiInsertionDetourPathCalculator.class,
-				new ModalProviders.AbstractProvider<>(getMode(), DvrpModes::mode) {
-					@Override
-					public MultiInsertionDetourPathCalculator get() {
-						var travelTime = getModalInstance(TravelTime.class);
-						Network network = getModalInstance(Network.class);
-						TravelDisutility travelDisutility = getModalInstance(
-								TravelDisutilityFactory.class).createTravelDisutility(travelTime);
-						return new MultiInsertionDetourPathCalculator(network, travelTime, travelDisutility, drtCfg);
-					}
-				});
+		addModalComponent(MultiInsertionDetourPathCalculator.class, modalProvider(getter -> {
+			var travelTime = getter.getModal(TravelTime.class);
+			Network network = getter.getModal(Network.class);
+			TravelDisutility travelDisutility = getter.getModal(TravelDisutilityFactory.class)
+					.createTravelDisutility(travelTime);
+			return new MultiInsertionDetourPathCalculator(network, travelTime, travelDisutility, drtCfg,
+					getter.get(MatsimServices.class));
+		}));
 	}
 }
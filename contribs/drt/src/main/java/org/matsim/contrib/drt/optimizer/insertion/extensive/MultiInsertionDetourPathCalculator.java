@@ -22,6 +22,9 @@ package org.matsim.contrib.drt.optimizer.insertion.extensive;
 
 import static org.matsim.contrib.drt.optimizer.insertion.InsertionGenerator.Insertion;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -29,8 +32,13 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
@@ -40,51 +48,119 @@ import org.matsim.contrib.drt.passenger.DrtRequest;
 import org.matsim.contrib.drt.run.DrtConfigGroup;
 import org.matsim.contrib.dvrp.path.OneToManyPathSearch;
 import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
+import org.matsim.core.controler.MatsimServices;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
 import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
 import org.matsim.core.router.speedy.SpeedyGraph;
 import org.matsim.core.router.util.TravelDisutility;
 import org.matsim.core.router.util.TravelTime;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.opencsv.CSVWriter;
 
 /**
+ * Without {@link DrtConfigGroup#batchInsertion}, the four path types of a request are calculated in parallel by an executor with (at
+ * most) one thread per path type.
+ * <p>
+ * With {@link DrtConfigGroup#batchInsertion}, the requests of a batch are already searched in parallel in the DRT fork join pool,
+ * which has {@link DrtConfigGroup#numberOfThreads} threads.  The four path types of a request are then calculated one after another on
+ * the pool thread that searches the request, so pool threads never block waiting for another executor.  Each thread uses its own
+ * path search.  Since the paths of all requests of a batch are kept until the batch has been scheduled, they are created eagerly.
+ * <p>
+ * With {@link ExtensiveInsertionSearchParams#detourPathCacheSize} &gt; 0, the searches are memoized within each time step (see
+ * {@link OneToManyPathSearchCache}), which also requires eager path creation.
+ *
  * @author michalm
  */
-class MultiInsertionDetourPathCalculator implements MobsimBeforeCleanupListener {
+class MultiInsertionDetourPathCalculator implements MobsimBeforeSimStepListener, MobsimBeforeCleanupListener {
+	private static final Logger log = LogManager.getLogger(MultiInsertionDetourPathCalculator.class);
+
+	/**
+	 * One thread per path type.
+	 */
 	public static final int MAX_THREADS = 4;
 
-	private final OneToManyPathSearch toPickupPathSearch;
-	private final OneToManyPathSearch fromPickupPathSearch;
-	private final OneToManyPathSearch toDropoffPathSearch;
-	private final OneToManyPathSearch fromDropoffPathSearch;
+	private final Supplier<OneToManyPathSearch> toPickupPathSearch;
+	private final Supplier<OneToManyPathSearch> fromPickupPathSearch;
+	private final Supplier<OneToManyPathSearch> toDropoffPathSearch;
+	private final Supplier<OneToManyPathSearch> fromDropoffPathSearch;
 
+	@Nullable
 	private final ExecutorService executorService;
 
+	@Nullable
+	private final OneToManyPathSearchCache pathSearchCache;
+	@Nullable
+	private final MatsimServices matsimServices;
+	private final String mode;
+
 	MultiInsertionDetourPathCalculator(Network network, TravelTime travelTime, TravelDisutility travelDisutility,
-			DrtConfigGroup drtCfg) {
+			DrtConfigGroup drtCfg, MatsimServices matsimServices) {
 		SpeedyGraph graph = new SpeedyGraph(network);
 		IdMap<Node, Node> nodeMap = new IdMap<>(Node.class);
 		nodeMap.putAll(network.getNodes());
 
-		toPickupPathSearch = OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, true);
-		fromPickupPathSearch = OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, true);
-		toDropoffPathSearch = OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, true);
-		fromDropoffPathSearch = OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, true);
-		executorService = Executors.newFixedThreadPool(Math.min(drtCfg.numberOfThreads, MAX_THREADS));
+		var insertionSearchParams = (ExtensiveInsertionSearchParams)drtCfg.getDrtInsertionSearchParams();
+		pathSearchCache = insertionSearchParams.detourPathCacheSize > 0 ?
+				new OneToManyPathSearchCache(insertionSearchParams.detourPathCacheSize,
+						insertionSearchParams.detourPathCacheTimeBinSize) :
+				null;
+		this.matsimServices = matsimServices;
+		this.mode = drtCfg.getMode();
+
+		if (drtCfg.batchInsertion || pathSearchCache != null) {
+			ThreadLocal<OneToManyPathSearch> pathSearch = ThreadLocal.withInitial(
+					() -> OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, false));
+			toPickupPathSearch = pathSearch::get;
+			fromPickupPathSearch = pathSearch::get;
+			toDropoffPathSearch = pathSearch::get;
+			fromDropoffPathSearch = pathSearch::get;
+		} else {
+			toPickupPathSearch = fixed(OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, true));
+			fromPickupPathSearch = fixed(OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, true));
+			toDropoffPathSearch = fixed(OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, true));
+			fromDropoffPathSearch = fixed(OneToManyPathSearch.createSearch(graph, nodeMap, travelTime, travelDisutility, true));
+		}
+		executorService = drtCfg.batchInsertion ?
+				null :
+				Executors.newFixedThreadPool(Math.min(drtCfg.numberOfThreads, MAX_THREADS));
 	}
 
 	@VisibleForTesting
 	MultiInsertionDetourPathCalculator(OneToManyPathSearch toPickupPathSearch, OneToManyPathSearch fromPickupPathSearch,
 			OneToManyPathSearch toDropoffPathSearch, OneToManyPathSearch fromDropoffPathSearch, int numberOfThreads) {
-		this.toPickupPathSearch = toPickupPathSearch;
-		this.fromPickupPathSearch = fromPickupPathSearch;
-		this.toDropoffPathSearch = toDropoffPathSearch;
-		this.fromDropoffPathSearch = fromDropoffPathSearch;
+		this(toPickupPathSearch, fromPickupPathSearch, toDropoffPathSearch, fromDropoffPathSearch, numberOfThreads, null);
+	}
+
+	@VisibleForTesting
+	MultiInsertionDetourPathCalculator(OneToManyPathSearch toPickupPathSearch, OneToManyPathSearch fromPickupPathSearch,
+			OneToManyPathSearch toDropoffPathSearch, OneToManyPathSearch fromDropoffPathSearch, int numberOfThreads,
+			@Nullable OneToManyPathSearchCache pathSearchCache) {
+		this.toPickupPathSearch = fixed(toPickupPathSearch);
+		this.fromPickupPathSearch = fixed(fromPickupPathSearch);
+		this.toDropoffPathSearch = fixed(toDropoffPathSearch);
+		this.fromDropoffPathSearch = fixed(fromDropoffPathSearch);
 		executorService = Executors.newFixedThreadPool(Math.min(numberOfThreads, MAX_THREADS));
+		this.pathSearchCache = pathSearchCache;
+		this.matsimServices = null;
+		this.mode = null;
+	}
+
+	private static Supplier<OneToManyPathSearch> fixed(OneToManyPathSearch pathSearch) {
+		return () -> pathSearch;
 	}
 
 	DetourPathDataCache calculatePaths(DrtRequest drtRequest, List<Insertion> filteredInsertions) {
+		if (executorService == null) {
+			// batch insertion: the requests are already processed in parallel
+			return new DetourPathDataCache(calcPathsToPickup(drtRequest, filteredInsertions),
+					calcPathsFromPickup(drtRequest, filteredInsertions),
+					calcPathsToDropoff(drtRequest, filteredInsertions),
+					calcPathsFromDropoff(drtRequest, filteredInsertions), PathData.EMPTY);
+		}
+
 		// with vehicle insertion filtering -- pathsToPickup is the most computationally demanding task, while
 		// pathsFromDropoff is the least demanding one
 		var pathsToPickupFuture = executorService.submit(() -> calcPathsToPickup(drtRequest, filteredInsertions));
@@ -105,7 +181,7 @@ class MultiInsertionDetourPathCalculator implements MobsimBeforeCleanupListener
 		double earliestPickupTime = drtRequest.getEarliestStartTime(); // optimistic
 		Collection<Link> toLinks = getDetourLinks(filteredInsertions.stream(),
 				insertion -> insertion.pickup.previousWaypoint.getLink());
-		return toPickupPathSearch.calcPathDataMap(drtRequest.getFromLink(), toLinks, earliestPickupTime, false);
+		return calcPathDataMap(toPickupPathSearch.get(), drtRequest.getFromLink(), toLinks, earliestPickupTime, false);
 	}
 
 	private Map<Link, PathData> calcPathsFromPickup(DrtRequest drtRequest, List<Insertion> filteredInsertions) {
@@ -113,7 +189,7 @@ class MultiInsertionDetourPathCalculator implements MobsimBeforeCleanupListener
 		double earliestPickupTime = drtRequest.getEarliestStartTime(); // optimistic
 		Collection<Link> toLinks = getDetourLinks(filteredInsertions.stream(),
 				insertion -> insertion.pickup.nextWaypoint.getLink());
-		return fromPickupPathSearch.calcPathDataMap(drtRequest.getFromLink(), toLinks, earliestPickupTime, true);
+		return calcPathDataMap(fromPickupPathSearch.get(), drtRequest.getFromLink(), toLinks, earliestPickupTime, true);
 	}
 
 	private Map<Link, PathData> calcPathsToDropoff(DrtRequest drtRequest, List<Insertion> filteredInsertions) {
@@ -122,7 +198,7 @@ class MultiInsertionDetourPathCalculator implements MobsimBeforeCleanupListener
 		Collection<Link> toLinks = getDetourLinks(filteredInsertions.stream()
 						.filter(insertion -> !(insertion.dropoff.previousWaypoint instanceof Waypoint.Pickup)),
 				insertion -> insertion.dropoff.previousWaypoint.getLink());
-		return toDropoffPathSearch.calcPathDataMap(drtRequest.getToLink(), toLinks, latestDropoffTime, false);
+		return calcPathDataMap(toDropoffPathSearch.get(), drtRequest.getToLink(), toLinks, latestDropoffTime, false);
 	}
 
 	private Map<Link, PathData> calcPathsFromDropoff(DrtRequest drtRequest, List<Insertion> filteredInsertions) {
@@ -131,7 +207,14 @@ class MultiInsertionDetourPathCalculator implements MobsimBeforeCleanupListener
 		Collection<Link> toLinks = getDetourLinks(filteredInsertions.stream()
 						.filter(insertion -> !(insertion.dropoff.nextWaypoint instanceof Waypoint.End)),
 				insertion -> insertion.dropoff.nextWaypoint.getLink());
-		return fromDropoffPathSearch.calcPathDataMap(drtRequest.getToLink(), toLinks, latestDropoffTime, true);
+		return calcPathDataMap(fromDropoffPathSearch.get(), drtRequest.getToLink(), toLinks, latestDropoffTime, true);
+	}
+
+	private Map<Link, PathData> calcPathDataMap(OneToManyPathSearch pathSearch, Link fromLink, Collection<Link> toLinks,
+			double startTime, boolean forward) {
+		return pathSearchCache == null ?
+				pathSearch.calcPathDataMap(fromLink, toLinks, startTime, forward) :
+				pathSearchCache.calcPathDataMap(pathSearch, fromLink, toLinks, startTime, forward);
 	}
 
 	private Collection<Link> getDetourLinks(Stream<Insertion> filteredInsertions,
@@ -141,8 +224,44 @@ class MultiInsertionDetourPathCalculator implements MobsimBeforeCleanupListener
 		return detourLinks.values();
 	}
 
+	@Override
+	public void notifyMobsimBeforeSimStep(@SuppressWarnings("rawtypes") MobsimBeforeSimStepEvent e) {
+		if (pathSearchCache != null) {
+			pathSearchCache.clear();
+		}
+	}
+
 	@Override
 	public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e) {
-		executorService.shutdown();
+		if (executorService != null) {
+			executorService.shutdown();
+		}
+		if (pathSearchCache != null) {
+			pathSearchCache.clear();
+			if (matsimServices != null) {
+				writeCacheStats();
+			}
+			pathSearchCache.getStats(true).reset();
+			pathSearchCache.getStats(false).reset();
+		}
+	}
+
+	private void writeCacheStats() {
+		String filename = matsimServices.getControlerIO()
+				.getIterationFilename(matsimServices.getIterationNumber(), mode + "_detour_path_cache_stats.csv");
+		try (CSVWriter writer = new CSVWriter(Files.newBufferedWriter(Paths.get(filename)), ';', '"', '"', "\n")) {
+			writer.writeNext(new String[] { "direction", "searches", "full_hits", "partial_hits", "requested_links",
+					"cached_links", "link_hit_rate" }, false);
+			for (boolean forward : new boolean[] { true, false }) {
+				var stats = pathSearchCache.getStats(forward);
+				writer.writeNext(new String[] { forward ? "forward" : "backward", stats.getSearches() + "",
+						stats.getFullHits() + "", stats.getPartialHits() + "", stats.getRequestedLinks() + "",
+						stats.getCachedLinks() + "", stats.getLinkHitRate() + "" }, false);
+				log.info(mode + ": " + (forward ? "forward" : "backward") + " detour path cache link hit rate: "
+						+ stats.getLinkHitRate());
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
 	}
 }
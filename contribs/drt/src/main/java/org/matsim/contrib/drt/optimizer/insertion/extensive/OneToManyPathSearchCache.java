@@ -0,0 +1,171 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.drt.optimizer.insertion.extensive;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearch;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Memoizes the results of {@link OneToManyPathSearch} within one simulation time step. Requests submitted in the same time step often
+ * start or end at the same links (stations, hubs), so the paths from/to these links are calculated only once. Entries are keyed by
+ * (link, direction, time bin) and contain the paths to all target links requested so far. If a later search asks for additional
+ * targets, only these are searched for.
+ * <p>
+ * An entry keeps the start time of the search that created it. All its paths, also the ones added for later searches, are
+ * calculated for that start time, so all paths of an entry are consistent. A search with a different start time in the same
+ * time bin thus gets paths for the first requester's start time. The time bin size limits this difference.
+ * <p>
+ * Pickup searches start at the earliest pickup time, dropoff searches at the latest arrival time. Hence, a pickup search and
+ * a dropoff search at the same link share an entry only if these times fall into the same time bin, which is rare.
+ * <p>
+ * At most {@code maxEntries} entries are kept (least recently used ones are evicted), and {@link #clear()} should be called at each
+ * time step. The cached paths are shared between requests, so the searches must create paths eagerly (the lazy ones refer to the
+ * search tree, which is overwritten by the next search).
+ */
+final class OneToManyPathSearchCache {
+	private record Key(int linkIndex, boolean forward, long timeBin) {
+	}
+
+	private static final class Entry {
+		private final double startTime;
+		private final Map<Link, PathData> pathData = new ConcurrentHashMap<>();
+
+		private Entry(double startTime) {
+			this.startTime = startTime;
+		}
+	}
+
+	static final class Stats {
+		private final LongAdder searches = new LongAdder();
+		private final LongAdder fullHits = new LongAdder();
+		private final LongAdder partialHits = new LongAdder();
+		private final LongAdder requestedLinks = new LongAdder();
+		private final LongAdder cachedLinks = new LongAdder();
+
+		long getSearches() {
+			return searches.sum();
+		}
+
+		long getFullHits() {
+			return fullHits.sum();
+		}
+
+		long getPartialHits() {
+			return partialHits.sum();
+		}
+
+		long getRequestedLinks() {
+			return requestedLinks.sum();
+		}
+
+		long getCachedLinks() {
+			return cachedLinks.sum();
+		}
+
+		/**
+		 * @return share of the requested target links that were served from the cache
+		 */
+		double getLinkHitRate() {
+			long requested = getRequestedLinks();
+			return requested == 0 ? 0 : (double)getCachedLinks() / requested;
+		}
+
+		void reset() {
+			searches.reset();
+			fullHits.reset();
+			partialHits.reset();
+			requestedLinks.reset();
+			cachedLinks.reset();
+		}
+	}
+
+	private final double timeBinSize;
+	private final Map<Key, Entry> entries;
+	private final Stats forwardStats = new Stats();
+	private final Stats backwardStats = new Stats();
+
+	OneToManyPathSearchCache(int maxEntries, double timeBinSize) {
+		this.timeBinSize = timeBinSize;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	Map<Link, PathData> calcPathDataMap(OneToManyPathSearch pathSearch, Link fromLink, Collection<Link> toLinks,
+			double startTime, boolean forward) {
+		var key = new Key(fromLink.getId().index(), forward, (long)Math.floor(startTime / timeBinSize));
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.computeIfAbsent(key, k -> new Entry(startTime));
+		}
+
+		List<Link> missingLinks = new ArrayList<>();
+		for (Link toLink : toLinks) {
+			if (!entry.pathData.containsKey(toLink)) {
+				missingLinks.add(toLink);
+			}
+		}
+
+		var stats = forward ? forwardStats : backwardStats;
+		stats.searches.increment();
+		stats.requestedLinks.add(toLinks.size());
+		stats.cachedLinks.add(toLinks.size() - missingLinks.size());
+		if (missingLinks.isEmpty()) {
+			stats.fullHits.increment();
+		} else if (missingLinks.size() < toLinks.size()) {
+			stats.partialHits.increment();
+		}
+
+		if (!missingLinks.isEmpty()) {
+			entry.pathData.putAll(pathSearch.calcPathDataMap(fromLink, missingLinks, entry.startTime, forward));
+		}
+
+		Map<Link, PathData> pathDataMap = Maps.newHashMapWithExpectedSize(toLinks.size());
+		for (Link toLink : toLinks) {
+			pathDataMap.put(toLink, entry.pathData.get(toLink));
+		}
+		return pathDataMap;
+	}
+
+	void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	Stats getStats(boolean forward) {
+		return forward ? forwardStats : backwardStats;
+	}
+}
@@ -20,9 +20,13 @@
 
 package org.matsim.contrib.drt.optimizer.rebalancing.mincostflow;
 
+import java.util.concurrent.ForkJoinPool;
+
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.contrib.drt.analysis.zonal.DrtZonalSystem;
+import org.matsim.contrib.drt.analysis.zonal.DrtZone;
 import org.matsim.contrib.drt.analysis.zonal.DrtZoneTargetLinkSelector;
+import org.matsim.contrib.drt.optimizer.QSimScopeForkJoinPoolHolder;
 import org.matsim.contrib.drt.optimizer.rebalancing.RebalancingParams;
 import org.matsim.contrib.drt.optimizer.rebalancing.RebalancingStrategy;
 import org.matsim.contrib.drt.optimizer.rebalancing.demandestimator.PreviousIterationDRTDemandEstimator;
@@ -92,9 +96,19 @@ public class DrtModeMinCostFlowRebalancingModule extends AbstractDvrpModeModule
 								+ strategyParams.zonalDemandEstimatorType);
 				}
 
-				bindModal(ZonalRelocationCalculator.class).toProvider(modalProvider(
-						getter -> new AggregatedMinCostRelocationCalculator(
-								getter.getModal(DrtZoneTargetLinkSelector.class)))).asEagerSingleton();
+				bindModal(ZonalRelocationCalculator.class).toProvider(modalProvider(getter -> {
+					ForkJoinPool forkJoinPool = getter.getModal(QSimScopeForkJoinPoolHolder.class).getPool();
+					if (strategyParams.warmStartTransportProblem) {
+						var transportProblem = new WarmStartTransportProblem<DrtZone, DrtZone>(
+								TransportProblem::calcStraightLineDistance, forkJoinPool);
+						return new AggregatedMinCostRelocationCalculator(getter.getModal(DrtZoneTargetLinkSelector.class),
+								surplus -> TransportProblem.solveForVehicleSurplus(surplus, transportProblem::solve));
+					}
+					var transportProblem = new TransportProblem<DrtZone, DrtZone>(TransportProblem::calcStraightLineDistance,
+							forkJoinPool);
+					return new AggregatedMinCostRelocationCalculator(getter.getModal(DrtZoneTargetLinkSelector.class),
+							surplus -> TransportProblem.solveForVehicleSurplus(surplus, transportProblem::solve));
+				})).asEagerSingleton();
 			}
 		});
 
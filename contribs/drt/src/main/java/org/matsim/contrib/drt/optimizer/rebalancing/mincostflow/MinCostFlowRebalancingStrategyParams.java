@@ -71,6 +71,14 @@ public final class MinCostFlowRebalancingStrategyParams extends ReflectiveConfig
 	@PositiveOrZero
 	public int demandEstimationPeriod = 1800;
 
+	@Parameter
+	@Comment("If true, the transport problem is solved incrementally, starting from the flows and zone potentials of the previous"
+			+ " rebalancing interval, and the zone-to-zone cost matrix is calculated in parallel."
+			+ " Recommended for large zonal systems (thousands of zones)."
+			+ " The resulting relocations have the same total cost, but may differ if there are several optimal solutions."
+			+ " Default is false")
+	public boolean warmStartTransportProblem = false;
+
 	public MinCostFlowRebalancingStrategyParams() {
 		super(SET_NAME);
 	}
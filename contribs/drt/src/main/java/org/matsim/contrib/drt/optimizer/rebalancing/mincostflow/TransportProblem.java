@@ -21,9 +21,14 @@ package org.matsim.contrib.drt.optimizer.rebalancing.mincostflow;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
 import java.util.function.ToIntBiFunction;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
+
 import org.apache.commons.lang3.tuple.Pair;
 import org.matsim.contrib.drt.analysis.zonal.DrtZone;
 import org.matsim.contrib.common.util.DistanceUtils;
@@ -37,6 +42,13 @@ import graphs.flows.MinCostFlow.Edge;
 public class TransportProblem<P, C> {
 	public static List<Flow<DrtZone, DrtZone>> solveForVehicleSurplus(
 			List<AggregatedMinCostRelocationCalculator.DrtZoneVehicleSurplus> vehicleSurplus) {
+		return solveForVehicleSurplus(vehicleSurplus,
+				new TransportProblem<DrtZone, DrtZone>(TransportProblem::calcStraightLineDistance)::solve);
+	}
+
+	public static List<Flow<DrtZone, DrtZone>> solveForVehicleSurplus(
+			List<AggregatedMinCostRelocationCalculator.DrtZoneVehicleSurplus> vehicleSurplus,
+			BiFunction<List<Pair<DrtZone, Integer>>, List<Pair<DrtZone, Integer>>, List<Flow<DrtZone, DrtZone>>> solver) {
 		List<Pair<DrtZone, Integer>> supply = new ArrayList<>();
 		List<Pair<DrtZone, Integer>> demand = new ArrayList<>();
 		for (AggregatedMinCostRelocationCalculator.DrtZoneVehicleSurplus s : vehicleSurplus) {
@@ -46,10 +58,10 @@ public class TransportProblem<P, C> {
 				demand.add(Pair.of(s.zone, -s.surplus));
 			}
 		}
-		return new TransportProblem<DrtZone, DrtZone>(TransportProblem::calcStraightLineDistance).solve(supply, demand);
+		return solver.apply(supply, demand);
 	}
 
-	private static int calcStraightLineDistance(DrtZone zone1, DrtZone zone2) {
+	public static int calcStraightLineDistance(DrtZone zone1, DrtZone zone2) {
 		return (int)DistanceUtils.calculateDistance(zone1.getCentroid(), zone2.getCentroid());
 	}
 
@@ -58,17 +70,49 @@ public class TransportProblem<P, C> {
 		public final C destination;
 		public final int amount;
 
-		private Flow(P origin, C destination, int amount) {
+		Flow(P origin, C destination, int amount) {
 			this.origin = origin;
 			this.destination = destination;
 			this.amount = amount;
 		}
 	}
 
+	/**
+	 * Calculates the costs between all producers and consumers. For large problems (thousands of zones), this takes a considerable
+	 * share of the total solving time, so it is done in parallel if a pool is provided.
+	 */
+	static <P, C> int[][] calcCostMatrix(List<Pair<P, Integer>> supply, List<Pair<C, Integer>> demand,
+			ToIntBiFunction<P, C> costFunction, @Nullable ForkJoinPool forkJoinPool) {
+		int[][] costs = new int[supply.size()][demand.size()];
+		IntStream rows = IntStream.range(0, supply.size());
+		if (forkJoinPool == null) {
+			rows.forEach(i -> calcCostMatrixRow(supply, demand, costFunction, costs[i], i));
+		} else {
+			forkJoinPool.submit(() -> rows.parallel().forEach(i -> calcCostMatrixRow(supply, demand, costFunction, costs[i], i)))
+					.join();
+		}
+		return costs;
+	}
+
+	private static <P, C> void calcCostMatrixRow(List<Pair<P, Integer>> supply, List<Pair<C, Integer>> demand,
+			ToIntBiFunction<P, C> costFunction, int[] row, int i) {
+		P producer = supply.get(i).getKey();
+		for (int j = 0; j < row.length; j++) {
+			row[j] = costFunction.applyAsInt(producer, demand.get(j).getKey());
+		}
+	}
+
 	private final ToIntBiFunction<P, C> costFunction;
+	@Nullable
+	private final ForkJoinPool forkJoinPool;
 
 	public TransportProblem(ToIntBiFunction<P, C> costFunction) {
+		this(costFunction, null);
+	}
+
+	public TransportProblem(ToIntBiFunction<P, C> costFunction, @Nullable ForkJoinPool forkJoinPool) {
 		this.costFunction = costFunction;
+		this.forkJoinPool = forkJoinPool;
 	}
 
 	public List<Flow<P, C>> solve(List<Pair<P, Integer>> supply, List<Pair<C, Integer>> demand) {
@@ -94,13 +138,13 @@ public class TransportProblem<P, C> {
 		}
 
 		// producers --> consumers
+		int[][] costs = calcCostMatrix(supply, demand, costFunction, forkJoinPool);
 		for (int i = 0; i < P; i++) {
 			Pair<P, Integer> producer = supply.get(i);
 			for (int j = 0; j < C; j++) {
 				Pair<C, Integer> consumer = demand.get(j);
 				int capacity = Math.min(producer.getValue(), consumer.getValue());
-				int cost = costFunction.applyAsInt(producer.getKey(), consumer.getKey());
-				MinCostFlow.addEdge(graph, 1 + i, 1 + P + j, capacity, cost);
+				MinCostFlow.addEdge(graph, 1 + i, 1 + P + j, capacity, costs[i][j]);
 			}
 		}
 
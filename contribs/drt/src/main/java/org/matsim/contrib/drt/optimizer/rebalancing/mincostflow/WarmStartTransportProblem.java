@@ -0,0 +1,371 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.drt.optimizer.rebalancing.mincostflow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToIntBiFunction;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.matsim.contrib.drt.optimizer.rebalancing.mincostflow.TransportProblem.Flow;
+
+/**
+ * Solves the same problem as {@link TransportProblem}, but re-uses the solution of the previous call as the starting point. Between two
+ * rebalancing intervals, the vehicle surpluses and deficits usually change only a little, so most of the previous flows remain optimal.
+ * <p>
+ * The problem is solved by successive shortest paths on the dense bipartite residual graph (dummy producer/consumer to balance supply
+ * and demand). At the start, the previous flows between zones that are still producers/consumers are restored (truncated to the new
+ * supply and demand) together with the previous node potentials (dual values). Zones without a previous potential get the tightest
+ * feasible one. If the restored state does not fulfil the reduced cost optimality conditions (e.g. because the costs changed over time),
+ * the problem is solved from scratch. In both cases, only the remaining supply has to be shipped by the shortest path iterations.
+ * <p>
+ * Costs must be non-negative.
+ */
+public class WarmStartTransportProblem<P, C> {
+	private static final long INFINITY = Long.MAX_VALUE;
+
+	private final ToIntBiFunction<P, C> costFunction;
+	@Nullable
+	private final ForkJoinPool forkJoinPool;
+
+	// state of the previous solution
+	private final Map<P, Long> producerPotentials = new HashMap<>();
+	private final Map<C, Long> consumerPotentials = new HashMap<>();
+	private List<Flow<P, C>> previousFlows = List.of();
+
+	private int lastWarmStartedAmount;
+	private int lastAugmentationCount;
+
+	public WarmStartTransportProblem(ToIntBiFunction<P, C> costFunction, @Nullable ForkJoinPool forkJoinPool) {
+		this.costFunction = costFunction;
+		this.forkJoinPool = forkJoinPool;
+	}
+
+	public List<Flow<P, C>> solve(List<Pair<P, Integer>> supply, List<Pair<C, Integer>> demand) {
+		lastWarmStartedAmount = 0;
+		lastAugmentationCount = 0;
+		if (supply.isEmpty() || demand.isEmpty()) {
+			return List.of();
+		}
+
+		int totalSupply = supply.stream().mapToInt(Pair::getValue).sum();
+		int totalDemand = demand.stream().mapToInt(Pair::getValue).sum();
+
+		// add a dummy producer or consumer (with zero costs) to balance the problem
+		final int realP = supply.size();
+		final int realC = demand.size();
+		final int P = realP + (totalDemand > totalSupply ? 1 : 0);
+		final int C = realC + (totalSupply > totalDemand ? 1 : 0);
+
+		int[][] costs = new int[P][];
+		int[][] realCosts = TransportProblem.calcCostMatrix(supply, demand, costFunction, forkJoinPool);
+		for (int i = 0; i < P; i++) {
+			costs[i] = i < realP ? Arrays.copyOf(realCosts[i], C) : new int[C];// dummy costs are 0
+		}
+
+		int[] excess = new int[P];
+		for (int i = 0; i < realP; i++) {
+			excess[i] = supply.get(i).getValue();
+		}
+		int[] deficit = new int[C];
+		for (int j = 0; j < realC; j++) {
+			deficit[j] = demand.get(j).getValue();
+		}
+		if (P > realP) {
+			excess[realP] = totalDemand - totalSupply;
+		}
+		if (C > realC) {
+			deficit[realC] = totalSupply - totalDemand;
+		}
+
+		int[][] flows = new int[P][C];
+		long[] producerPot = new long[P];
+		long[] consumerPot = new long[C];
+		if (!warmStart(supply, demand, costs, excess, deficit, flows, producerPot, consumerPot)) {
+			// cold start: zero flows and zero potentials are optimal for non-negative costs
+			for (int i = 0; i < realP; i++) {
+				excess[i] = supply.get(i).getValue();
+				Arrays.fill(flows[i], 0);
+			}
+			for (int j = 0; j < realC; j++) {
+				deficit[j] = demand.get(j).getValue();
+			}
+			Arrays.fill(producerPot, 0);
+			Arrays.fill(consumerPot, 0);
+			lastWarmStartedAmount = 0;
+		}
+
+		solveBySuccessiveShortestPaths(costs, excess, deficit, flows, producerPot, consumerPot);
+
+		List<Flow<P, C>> result = new ArrayList<>();
+		for (int i = 0; i < realP; i++) {
+			for (int j = 0; j < realC; j++) {
+				if (flows[i][j] > 0) {
+					result.add(new Flow<>(supply.get(i).getKey(), demand.get(j).getKey(), flows[i][j]));
+				}
+			}
+		}
+
+		producerPotentials.clear();
+		for (int i = 0; i < realP; i++) {
+			producerPotentials.put(supply.get(i).getKey(), producerPot[i]);
+		}
+		consumerPotentials.clear();
+		for (int j = 0; j < realC; j++) {
+			consumerPotentials.put(demand.get(j).getKey(), consumerPot[j]);
+		}
+		previousFlows = result;
+		return result;
+	}
+
+	/**
+	 * Restores the previous flows and potentials.
+	 *
+	 * @return true if the restored state satisfies the reduced cost optimality conditions, i.e. for each pair (i, j):
+	 * costs[i][j] + producerPot[i] - consumerPot[j] >= 0, with equality if flows[i][j] > 0
+	 */
+	private boolean warmStart(List<Pair<P, Integer>> supply, List<Pair<C, Integer>> demand, int[][] costs, int[] excess,
+			int[] deficit, int[][] flows, long[] producerPot, long[] consumerPot) {
+		if (previousFlows.isEmpty()) {
+			return false;
+		}
+		final int P = excess.length;
+		final int C = deficit.length;
+
+		Map<P, Integer> producerIndices = new HashMap<>();
+		boolean[] knownProducers = new boolean[P];
+		for (int i = 0; i < supply.size(); i++) {
+			P producer = supply.get(i).getKey();
+			producerIndices.put(producer, i);
+			Long pot = producerPotentials.get(producer);
+			if (pot != null) {
+				knownProducers[i] = true;
+				producerPot[i] = pot;
+			}
+		}
+		Map<C, Integer> consumerIndices = new HashMap<>();
+		boolean[] knownConsumers = new boolean[C];
+		for (int j = 0; j < demand.size(); j++) {
+			C consumer = demand.get(j).getKey();
+			consumerIndices.put(consumer, j);
+			Long pot = consumerPotentials.get(consumer);
+			if (pot != null) {
+				knownConsumers[j] = true;
+				consumerPot[j] = pot;
+			}
+		}
+
+		// restore flows (only between zones that have potentials, so the flows are consistent with them)
+		for (Flow<P, C> flow : previousFlows) {
+			Integer i = producerIndices.get(flow.origin);
+			Integer j = consumerIndices.get(flow.destination);
+			if (i != null && j != null && knownProducers[i] && knownConsumers[j]) {
+				int amount = Math.min(flow.amount, Math.min(excess[i], deficit[j]));
+				if (amount > 0) {
+					flows[i][j] += amount;
+					excess[i] -= amount;
+					deficit[j] -= amount;
+					lastWarmStartedAmount += amount;
+				}
+			}
+		}
+
+		// new consumers: highest potential that keeps all arcs from known producers non-negative
+		for (int j = 0; j < C; j++) {
+			if (!knownConsumers[j]) {
+				long pot = INFINITY;
+				for (int i = 0; i < P; i++) {
+					if (knownProducers[i]) {
+						pot = Math.min(pot, costs[i][j] + producerPot[i]);
+					}
+				}
+				consumerPot[j] = pot == INFINITY ? 0 : pot;
+			}
+		}
+
+		// new producers: lowest potential that keeps all arcs to consumers non-negative
+		for (int i = 0; i < P; i++) {
+			if (!knownProducers[i]) {
+				long pot = -INFINITY;
+				for (int j = 0; j < C; j++) {
+					pot = Math.max(pot, consumerPot[j] - costs[i][j]);
+				}
+				producerPot[i] = pot;
+			}
+		}
+
+		// check optimality (may be violated if costs are time-dependent)
+		for (int i = 0; i < P; i++) {
+			if (knownProducers[i]) {
+				for (int j = 0; j < C; j++) {
+					if (knownConsumers[j]) {
+						long reducedCost = costs[i][j] + producerPot[i] - consumerPot[j];
+						if (reducedCost < 0 || (reducedCost > 0 && flows[i][j] > 0)) {
+							return false;
+						}
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Ships the remaining excess to the remaining deficits along shortest paths in the residual graph (w.r.t. reduced costs), starting
+	 * from all producers with excess at once. The residual graph contains the forward arcs producer->consumer (unbounded) and the
+	 * backward arcs consumer->producer for all positive flows.
+	 */
+	private void solveBySuccessiveShortestPaths(int[][] costs, int[] excess, int[] deficit, int[][] flows, long[] producerPot,
+			long[] consumerPot) {
+		final int P = excess.length;
+		final int C = deficit.length;
+		long[] producerDist = new long[P];
+		long[] consumerDist = new long[C];
+		boolean[] producerFinished = new boolean[P];
+		boolean[] consumerFinished = new boolean[C];
+		int[] producerPred = new int[P];// consumer preceding the producer on the path, or -1 for a start node
+		int[] consumerPred = new int[C];// producer preceding the consumer on the path
+
+		int remaining = Arrays.stream(excess).sum();
+		while (remaining > 0) {
+			for (int i = 0; i < P; i++) {
+				producerDist[i] = excess[i] > 0 ? 0 : INFINITY;
+				producerPred[i] = -1;
+			}
+			Arrays.fill(consumerDist, INFINITY);
+			Arrays.fill(producerFinished, false);
+			Arrays.fill(consumerFinished, false);
+
+			// dense Dijkstra, O((P+C)^2)
+			int target = -1;
+			while (true) {
+				int u = -1;
+				boolean uIsProducer = true;
+				long minDist = INFINITY;
+				for (int i = 0; i < P; i++) {
+					if (!producerFinished[i] && producerDist[i] < minDist) {
+						minDist = producerDist[i];
+						u = i;
+					}
+				}
+				for (int j = 0; j < C; j++) {
+					if (!consumerFinished[j] && consumerDist[j] < minDist) {
+						minDist = consumerDist[j];
+						u = j;
+						uIsProducer = false;
+					}
+				}
+				if (u == -1) {
+					break;
+				}
+
+				if (uIsProducer) {
+					producerFinished[u] = true;
+					int[] costRow = costs[u];
+					for (int j = 0; j < C; j++) {
+						long dist = minDist + costRow[j] + producerPot[u] - consumerPot[j];
+						if (dist < consumerDist[j]) {
+							consumerDist[j] = dist;
+							consumerPred[j] = u;
+						}
+					}
+				} else {
+					consumerFinished[u] = true;
+					if (deficit[u] > 0) {
+						target = u;
+						break;
+					}
+					for (int i = 0; i < P; i++) {
+						if (flows[i][u] > 0) {
+							long dist = minDist - costs[i][u] + consumerPot[u] - producerPot[i];
+							if (dist < producerDist[i]) {
+								producerDist[i] = dist;
+								producerPred[i] = u;
+							}
+						}
+					}
+				}
+			}
+
+			if (target == -1) {
+				throw new IllegalStateException("No augmenting path found, the problem should always be balanced");
+			}
+
+			// update potentials of the finished nodes, so that all residual arcs have non-negative reduced costs
+			long targetDist = consumerDist[target];
+			for (int i = 0; i < P; i++) {
+				if (producerFinished[i]) {
+					producerPot[i] += producerDist[i] - targetDist;
+				}
+			}
+			for (int j = 0; j < C; j++) {
+				if (consumerFinished[j]) {
+					consumerPot[j] += consumerDist[j] - targetDist;
+				}
+			}
+
+			// find the bottleneck and augment
+			int amount = deficit[target];
+			int j = target;
+			int i = consumerPred[j];
+			while (producerPred[i] != -1) {
+				j = producerPred[i];
+				amount = Math.min(amount, flows[i][j]);
+				i = consumerPred[j];
+			}
+			amount = Math.min(amount, excess[i]);
+
+			j = target;
+			i = consumerPred[j];
+			flows[i][j] += amount;
+			while (producerPred[i] != -1) {
+				j = producerPred[i];
+				flows[i][j] -= amount;
+				i = consumerPred[j];
+				flows[i][j] += amount;
+			}
+			excess[i] -= amount;
+			deficit[target] -= amount;
+			remaining -= amount;
+			lastAugmentationCount++;
+		}
+	}
+
+	/**
+	 * @return amount of flow restored from the previous solution in the last call to {@link #solve(List, List)}
+	 */
+	int getLastWarmStartedAmount() {
+		return lastWarmStartedAmount;
+	}
+
+	/**
+	 * @return number of shortest path iterations in the last call to {@link #solve(List, List)}
+	 */
+	int getLastAugmentationCount() {
+		return lastAugmentationCount;
+	}
+}
@@ -177,6 +177,14 @@ public class DrtConfigGroup extends ReflectiveConfigGroupWithConfigurableParamet
 	@Positive
 	public int numberOfThreads = Runtime.getRuntime().availableProcessors();
 
+	@Parameter
+	@Comment("If true, all requests submitted in one time step are inserted as a batch: insertions are searched for"
+			+ " all of them in parallel against the same vehicle schedules; if several requests choose the same vehicle,"
+			+ " the earliest submitted one wins and the others are searched again. Faster at high request rates, but"
+			+ " a request is only pooled with another request of the same batch if both have chosen the same vehicle."
+			+ " Requires ExtensiveInsertionSearch. False by default.")
+	public boolean batchInsertion = false;
+
 	@Parameter
 	@Comment("Store planned unshared drt route as a link sequence")
 	public boolean storeUnsharedPath = false; // If true, the planned unshared path is stored and exported in plans
@@ -269,6 +277,9 @@ public class DrtConfigGroup extends ReflectiveConfigGroupWithConfigurableParamet
 					+ " in order to speed up the DRT route update during the replanning phase.");
 		}
 
+		Verify.verify(!batchInsertion || drtInsertionSearchParams instanceof ExtensiveInsertionSearchParams,
+				"batchInsertion requires " + ExtensiveInsertionSearchParams.SET_NAME);
+
 		Verify.verify(getParameterSets(MinCostFlowRebalancingStrategyParams.SET_NAME).size() <= 1,
 				"More than one rebalancing parameter sets is specified");
 
@@ -29,6 +29,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.mutable.MutableInt;
 import org.junit.Rule;
@@ -252,6 +253,67 @@ public class DefaultUnplannedRequestInserterTest {
 		assertThat(createEntryCounter.getValue()).isEqualTo(2);
 	}
 
+	@Test
+	public void batchInsertion_conflictingRequestSearchedAgain() {
+		var vehicle1 = vehicle("1");
+		var vehicle2 = vehicle("2");
+		var fleet = fleet(vehicle1, vehicle2);
+		var request2 = request("r2", "from2", "to2");
+		var unplannedRequests = requests(request1, request2);
+		double now = 15;
+
+		// vehicle1 is full after the first insertion
+		var createdEntries = new AtomicInteger();
+		VehicleEntry.EntryFactory entryFactory = (vehicle, currentTime) -> {
+			int count = createdEntries.incrementAndGet();
+			return vehicle == vehicle1 && count > 2 ? null : new VehicleEntry(vehicle, null, null, null);
+		};
+
+		DrtRequestInsertionRetryQueue retryQueue = new DrtRequestInsertionRetryQueue(
+				new DrtRequestInsertionRetryParams());//retry OFF, empty queue
+
+		// both requests prefer vehicle1
+		var searches = new AtomicInteger();
+		DrtInsertionSearch insertionSearch = (drtRequest, vEntries) -> {
+			searches.incrementAndGet();
+			var entry = vEntries.stream()
+					.filter(e -> e.vehicle == vehicle1)
+					.findAny()
+					.orElseGet(() -> vEntries.iterator().next());
+			return Optional.of(new InsertionWithDetourData(new InsertionGenerator.Insertion(entry, null, null), null,
+					new InsertionDetourTimeCalculator.DetourTimeInfo(
+							mock(InsertionDetourTimeCalculator.PickupDetourInfo.class),
+							mock(InsertionDetourTimeCalculator.DropoffDetourInfo.class))));
+		};
+
+		RequestInsertionScheduler insertionScheduler = (request, insertion) -> {
+			var pickupTask = new DefaultDrtStopTask(now, now + 10, request.getFromLink());
+			pickupTask.addPickupRequest(request);
+			var dropoffTask = new DefaultDrtStopTask(now + 20, now + 30, request.getToLink());
+			dropoffTask.addDropoffRequest(request);
+			return new PickupDropoffTaskPair(pickupTask, dropoffTask);
+		};
+
+		//call insertion
+		new DefaultUnplannedRequestInserter(mode, fleet, () -> now, eventsManager, insertionScheduler, entryFactory,
+				retryQueue, insertionSearch, DrtOfferAcceptor.DEFAULT_ACCEPTOR, rule.forkJoinPool,
+				true, null).scheduleUnplannedRequests(unplannedRequests);
+
+		//requests are removed from unplanned requests
+		assertThat(unplannedRequests).isEmpty();
+
+		//request1 wins vehicle1, request2 is searched again and gets vehicle2
+		ArgumentCaptor<PassengerRequestScheduledEvent> captor = ArgumentCaptor.forClass(
+				PassengerRequestScheduledEvent.class);
+		verify(eventsManager, times(2)).processEvent(captor.capture());
+		assertThat(captor.getAllValues().get(0).getRequestId()).isEqualTo(request1.getId());
+		assertThat(captor.getAllValues().get(0).getVehicleId()).isEqualTo(vehicle1.getId());
+		assertThat(captor.getAllValues().get(1).getRequestId()).isEqualTo(request2.getId());
+		assertThat(captor.getAllValues().get(1).getVehicleId()).isEqualTo(vehicle2.getId());
+
+		assertThat(searches.get()).isEqualTo(3);
+	}
+
 	private Collection<DrtRequest> requests(DrtRequest... requests) {
 		return new ArrayList<>(Arrays.asList(requests));//returned collection needs to be modifiable
 	}
@@ -0,0 +1,156 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.drt.optimizer.VehicleEntry;
+import org.matsim.contrib.drt.optimizer.Waypoint;
+import org.matsim.contrib.drt.passenger.DrtRequest;
+import org.matsim.contrib.drt.schedule.DefaultDrtStopTask;
+import org.matsim.contrib.dvrp.fleet.DvrpVehicle;
+import org.matsim.contrib.dvrp.fleet.DvrpVehicleImpl;
+import org.matsim.contrib.dvrp.fleet.ImmutableDvrpVehicleSpecification;
+import org.matsim.core.network.NetworkUtils;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * A straight road of 300 links, 1000 m long each, with a free speed of 10 m/s.
+ */
+public class VehicleEntrySpatialIndexTest {
+	private static final double CELL_SIZE = 200;
+	private static final double BEELINE_SPEED_FACTOR = 1;
+
+	private final Network network = createNetwork();
+	private final Link pickupLink = link(150);// from (150000, 0) to (151000, 0)
+	private final DrtRequest request = DrtRequest.newBuilder()
+			.fromLink(pickupLink)
+			.toLink(link(160))
+			.latestStartTime(100)
+			.build();
+
+	private final VehicleEntrySpatialIndex index = new VehicleEntrySpatialIndex(CELL_SIZE,
+			VehicleEntrySpatialIndex.calcMaxBeelineSpeed(network), BEELINE_SPEED_FACTOR);
+
+	@Test
+	public void calcMaxBeelineSpeed() {
+		assertThat(VehicleEntrySpatialIndex.calcMaxBeelineSpeed(network)).isEqualTo(10);
+
+		// a link that is shorter than its beeline increases the beeline speed
+		Node from = network.getNodes().get(Id.createNodeId(0));
+		Node to = network.getNodes().get(Id.createNodeId(1));
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("short"), from, to, 500, 10, 1000, 1);
+		assertThat(VehicleEntrySpatialIndex.calcMaxBeelineSpeed(network)).isEqualTo(20);
+	}
+
+	@Test
+	public void findCandidates_onlyVehiclesThatCanReachPickupInTime() {
+		List<VehicleEntry> entries = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			entries.add(entry("v" + i, start(link(i), 0)));
+		}
+		index.reset(entries);
+
+		// the min estimated travel time to the pickup is > 100 s for all vehicles that are more than 2 links away
+		assertThat(index.findCandidates(request)).containsExactlyInAnyOrder(entries.get(148), entries.get(149),
+				entries.get(150));
+	}
+
+	@Test
+	public void findCandidates_stopsAreConsidered() {
+		VehicleEntry stopDepartingEarly = entry("early", start(link(0), 0), stop(link(149), 50));
+		VehicleEntry stopDepartingLate = entry("late", start(link(0), 0), stop(link(149), 150));
+		index.reset(List.of(stopDepartingEarly, stopDepartingLate));
+
+		assertThat(index.findCandidates(request)).containsExactly(stopDepartingEarly);
+	}
+
+	@Test
+	public void findCandidates_waypointsAtPickupLink() {
+		VehicleEntry departingInTime = entry("inTime", start(pickupLink, 100));
+		VehicleEntry departingTooLate = entry("tooLate", start(pickupLink, 101));
+		index.reset(List.of(departingInTime, departingTooLate));
+
+		assertThat(index.findCandidates(request)).containsExactly(departingInTime);
+	}
+
+	@Test
+	public void update() {
+		VehicleEntry farAway = entry("v", start(link(0), 0));
+		index.reset(List.of(farAway));
+		assertThat(index.findCandidates(request)).isEmpty();
+
+		VehicleEntry nearby = entry("v", start(link(149), 0));
+		index.update(nearby.vehicle.getId(), nearby);
+		assertThat(index.findCandidates(request)).containsExactly(nearby);
+
+		index.update(nearby.vehicle.getId(), null);
+		assertThat(index.findCandidates(request)).isEmpty();
+	}
+
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		for (int i = 0; i <= 300; i++) {
+			NetworkUtils.createAndAddNode(network, Id.createNodeId(i), new Coord(i * 1000, 0));
+		}
+		for (int i = 0; i < 300; i++) {
+			NetworkUtils.createAndAddLink(network, Id.createLinkId(i), network.getNodes().get(Id.createNodeId(i)),
+					network.getNodes().get(Id.createNodeId(i + 1)), 1000, 10, 1000, 1);
+		}
+		return network;
+	}
+
+	private Link link(int i) {
+		return network.getLinks().get(Id.createLinkId(i));
+	}
+
+	private Waypoint.Start start(Link link, double time) {
+		return new Waypoint.Start(null, link, time, 0);
+	}
+
+	private Waypoint.Stop stop(Link link, double endTime) {
+		return new Waypoint.Stop(new DefaultDrtStopTask(endTime - 10, endTime, link), 0);
+	}
+
+	private VehicleEntry entry(String vehicleId, Waypoint.Start start, Waypoint.Stop... stops) {
+		var vehicle = new DvrpVehicleImpl(ImmutableDvrpVehicleSpecification.newBuilder()
+				.id(Id.create(vehicleId, DvrpVehicle.class))
+				.capacity(4)
+				.startLinkId(link(0).getId())
+				.serviceBeginTime(0)
+				.serviceEndTime(24 * 3600)
+				.build(), link(0));
+		var slackTimes = new double[stops.length + 1];
+		Arrays.fill(slackTimes, Double.POSITIVE_INFINITY);
+		return new VehicleEntry(vehicle, start, ImmutableList.copyOf(stops), slackTimes);
+	}
+}
@@ -0,0 +1,123 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.drt.optimizer.insertion.extensive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearch;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
+import org.matsim.testcases.fakes.FakeLink;
+import org.matsim.testcases.fakes.FakeNode;
+
+public class OneToManyPathSearchCacheTest {
+	private final Link hubLink = link("hub");
+	private final Link linkA = link("A");
+	private final Link linkB = link("B");
+
+	private final OneToManyPathSearch pathSearch = mock(OneToManyPathSearch.class);
+	private final OneToManyPathSearchCache cache = new OneToManyPathSearchCache(10, 60);
+
+	{
+		when(pathSearch.calcPathDataMap(any(), anyCollection(), anyDouble(), anyBoolean())).thenAnswer(invocation -> {
+			Collection<Link> toLinks = invocation.getArgument(1);
+			double startTime = invocation.getArgument(2);
+			return toLinks.stream().collect(Collectors.toMap(l -> l, l -> pathData(startTime)));
+		});
+	}
+
+	@Test
+	public void calcPathDataMap_reusesPathsOfEarlierSearches() {
+		var paths1 = cache.calcPathDataMap(pathSearch, hubLink, List.of(linkA), 100, true);
+		var paths2 = cache.calcPathDataMap(pathSearch, hubLink, List.of(linkA), 110, true);// same time bin
+		assertThat(paths2).isEqualTo(paths1);
+
+		// only the missing target link is searched for, starting at the time of the first search
+		var paths3 = cache.calcPathDataMap(pathSearch, hubLink, List.of(linkA, linkB), 110, true);
+		assertThat(paths3).containsEntry(linkA, paths1.get(linkA));
+		assertThat(paths3.get(linkB).getTravelTime()).isEqualTo(100);
+
+		verify(pathSearch).calcPathDataMap(eq(hubLink), eqLinks(linkA), eq(100.), eq(true));
+		verify(pathSearch).calcPathDataMap(eq(hubLink), eqLinks(linkB), eq(100.), eq(true));
+		verifyNoMoreInteractions(pathSearch);
+
+		var stats = cache.getStats(true);
+		assertThat(stats.getSearches()).isEqualTo(3);
+		assertThat(stats.getFullHits()).isEqualTo(1);
+		assertThat(stats.getPartialHits()).isEqualTo(1);
+		assertThat(stats.getLinkHitRate()).isEqualTo(2. / 4);
+	}
+
+	@Test
+	public void calcPathDataMap_differentDirectionTimeBinOrClearedCache_noReuse() {
+		cache.calcPathDataMap(pathSearch, hubLink, List.of(linkA), 100, true);
+		cache.calcPathDataMap(pathSearch, hubLink, List.of(linkA), 100, false);
+		cache.calcPathDataMap(pathSearch, hubLink, List.of(linkA), 200, true);
+		cache.clear();
+		cache.calcPathDataMap(pathSearch, hubLink, List.of(linkA), 100, true);
+
+		verify(pathSearch, times(2)).calcPathDataMap(eq(hubLink), eqLinks(linkA), eq(100.), eq(true));
+		verify(pathSearch).calcPathDataMap(eq(hubLink), eqLinks(linkA), eq(100.), eq(false));
+		verify(pathSearch).calcPathDataMap(eq(hubLink), eqLinks(linkA), eq(200.), eq(true));
+		assertThat(cache.getStats(true).getLinkHitRate()).isZero();
+	}
+
+	@Test
+	public void calcPathDataMap_leastRecentlyUsedEntriesEvicted() {
+		var smallCache = new OneToManyPathSearchCache(1, 60);
+		smallCache.calcPathDataMap(pathSearch, hubLink, List.of(linkA), 100, true);
+		smallCache.calcPathDataMap(pathSearch, linkB, List.of(linkA), 100, true);
+		smallCache.calcPathDataMap(pathSearch, hubLink, List.of(linkA), 100, true);
+
+		verify(pathSearch, times(2)).calcPathDataMap(eq(hubLink), eqLinks(linkA), eq(100.), eq(true));
+	}
+
+	private static PathData pathData(double travelTime) {
+		return new PathData(new Path(List.of(), List.of(), travelTime, travelTime), 0);
+	}
+
+	private static Collection<Link> eqLinks(Link link) {
+		return argThat(argument -> argument != null && argument.size() == 1 && argument.contains(link));
+	}
+
+	private static Link link(String id) {
+		return new FakeLink(Id.createLinkId(id), new FakeNode(Id.createNodeId(id + "_from")),
+				new FakeNode(Id.createNodeId(id + "_to")));
+	}
+}
@@ -0,0 +1,111 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.drt.optimizer.rebalancing.mincostflow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToIntBiFunction;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Compares the solve times of {@link TransportProblem} (solved from scratch in each interval) and {@link WarmStartTransportProblem}
+ * for different numbers of zones. Zones are placed randomly in a 30x30 km square, and between two rebalancing intervals, the vehicle
+ * surplus changes in 10% of the zones.
+ * <p></p>
+ * Usage: <code>TransportProblemBenchmark [intervals [zoneCount...]]</code>, default is 20 intervals for 250, 500, 1000 and 2000 zones.
+ */
+public class TransportProblemBenchmark {
+	public static void main(String[] args) {
+		int intervals = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int[] zoneCounts = args.length > 1 ?
+				Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray() :
+				new int[] { 250, 500, 1000, 2000 };
+
+		ForkJoinPool forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		for (int zoneCount : zoneCounts) {
+			run(zoneCount, intervals, forkJoinPool);
+		}
+		forkJoinPool.shutdown();
+	}
+
+	private static void run(int zoneCount, int intervals, ForkJoinPool forkJoinPool) {
+		Random random = new Random(4711);
+		double[][] coords = new double[zoneCount][];
+		for (int z = 0; z < zoneCount; z++) {
+			coords[z] = new double[] { random.nextDouble() * 30_000, random.nextDouble() * 30_000 };
+		}
+		ToIntBiFunction<Integer, Integer> costFunction = (z1, z2) -> (int)Math.hypot(coords[z1][0] - coords[z2][0],
+				coords[z1][1] - coords[z2][1]);
+
+		var coldProblem = new TransportProblem<>(costFunction);
+		var parallelColdProblem = new TransportProblem<>(costFunction, forkJoinPool);
+		var warmStartProblem = new WarmStartTransportProblem<>(costFunction, forkJoinPool);
+
+		int[] surplus = new int[zoneCount];
+		for (int z = 0; z < zoneCount; z++) {
+			surplus[z] = random.nextInt(7) - 3;
+		}
+
+		long coldNanos = 0;
+		long parallelColdNanos = 0;
+		long warmStartNanos = 0;
+		long warmStartedAmount = 0;
+		long totalAmount = 0;
+		for (int interval = 0; interval < intervals; interval++) {
+			for (int k = 0; k < zoneCount / 10; k++) {
+				surplus[random.nextInt(zoneCount)] = random.nextInt(7) - 3;
+			}
+			List<Pair<Integer, Integer>> supply = new ArrayList<>();
+			List<Pair<Integer, Integer>> demand = new ArrayList<>();
+			for (int z = 0; z < zoneCount; z++) {
+				if (surplus[z] > 0) {
+					supply.add(Pair.of(z, surplus[z]));
+				} else if (surplus[z] < 0) {
+					demand.add(Pair.of(z, -surplus[z]));
+				}
+			}
+
+			long start = System.nanoTime();
+			coldProblem.solve(supply, demand);
+			coldNanos += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			parallelColdProblem.solve(supply, demand);
+			parallelColdNanos += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			var flows = warmStartProblem.solve(supply, demand);
+			warmStartNanos += System.nanoTime() - start;
+			warmStartedAmount += warmStartProblem.getLastWarmStartedAmount();
+			totalAmount += flows.stream().mapToInt(f -> f.amount).sum();
+		}
+
+		System.out.println(zoneCount + " zones, " + intervals + " intervals:");
+		System.out.printf("\tfrom scratch:             %8.1f ms / interval%n", coldNanos / 1e6 / intervals);
+		System.out.printf("\tfrom scratch, parallel:   %8.1f ms / interval%n", parallelColdNanos / 1e6 / intervals);
+		System.out.printf("\twarm start, parallel:     %8.1f ms / interval (%.0f%% of the flow restored)%n",
+				warmStartNanos / 1e6 / intervals, 100. * warmStartedAmount / totalAmount);
+	}
+}
@@ -0,0 +1,130 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.drt.optimizer.rebalancing.mincostflow;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToIntBiFunction;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+import org.matsim.contrib.drt.optimizer.rebalancing.mincostflow.TransportProblem.Flow;
+
+public class WarmStartTransportProblemTest {
+	private static final int ZONE_COUNT = 40;
+
+	private final Random random = new Random(123);
+	private final int[][] coords = new int[ZONE_COUNT][];
+	private final ToIntBiFunction<Integer, Integer> costFunction = (z1, z2) -> Math.abs(coords[z1][0] - coords[z2][0])
+			+ Math.abs(coords[z1][1] - coords[z2][1]);
+
+	{
+		for (int z = 0; z < ZONE_COUNT; z++) {
+			coords[z] = new int[] { random.nextInt(10_000), random.nextInt(10_000) };
+		}
+	}
+
+	@Test
+	public void solve_sameCostAsTransportProblem() {
+		var warmStartProblem = new WarmStartTransportProblem<>(costFunction, null);
+		var transportProblem = new TransportProblem<>(costFunction);
+
+		int[] surplus = new int[ZONE_COUNT];
+		for (int interval = 0; interval < 30; interval++) {
+			// change the surplus in a few zones per interval
+			for (int k = 0; k < 8; k++) {
+				surplus[random.nextInt(ZONE_COUNT)] = random.nextInt(9) - 4;
+			}
+			List<Pair<Integer, Integer>> supply = new ArrayList<>();
+			List<Pair<Integer, Integer>> demand = new ArrayList<>();
+			splitSurplus(surplus, supply, demand);
+
+			var flows = warmStartProblem.solve(supply, demand);
+			var expectedFlows = transportProblem.solve(supply, demand);
+
+			assertThat(totalCost(flows)).isEqualTo(totalCost(expectedFlows));
+			assertFeasible(flows, supply, demand);
+		}
+	}
+
+	@Test
+	public void solve_unchangedProblem_noShortestPathIterations() {
+		var warmStartProblem = new WarmStartTransportProblem<>(costFunction, null);
+		List<Pair<Integer, Integer>> supply = List.of(Pair.of(0, 3), Pair.of(1, 2), Pair.of(2, 3));
+		List<Pair<Integer, Integer>> demand = List.of(Pair.of(3, 5), Pair.of(4, 1), Pair.of(5, 2));
+
+		var flows = warmStartProblem.solve(supply, demand);
+		assertThat(warmStartProblem.getLastWarmStartedAmount()).isZero();
+		assertThat(warmStartProblem.getLastAugmentationCount()).isPositive();
+
+		var flows2 = warmStartProblem.solve(supply, demand);
+		assertThat(warmStartProblem.getLastWarmStartedAmount()).isEqualTo(8);
+		assertThat(warmStartProblem.getLastAugmentationCount()).isZero();
+		assertThat(totalCost(flows2)).isEqualTo(totalCost(flows));
+		assertFeasible(flows2, supply, demand);
+	}
+
+	@Test
+	public void solve_emptySupplyOrDemand() {
+		var warmStartProblem = new WarmStartTransportProblem<>(costFunction, null);
+		assertThat(warmStartProblem.solve(List.of(), List.of(Pair.of(1, 1)))).isEmpty();
+		assertThat(warmStartProblem.solve(List.of(Pair.of(1, 1)), List.of())).isEmpty();
+	}
+
+	private static void splitSurplus(int[] surplus, List<Pair<Integer, Integer>> supply, List<Pair<Integer, Integer>> demand) {
+		for (int z = 0; z < surplus.length; z++) {
+			if (surplus[z] > 0) {
+				supply.add(Pair.of(z, surplus[z]));
+			} else if (surplus[z] < 0) {
+				demand.add(Pair.of(z, -surplus[z]));
+			}
+		}
+	}
+
+	private long totalCost(List<Flow<Integer, Integer>> flows) {
+		return flows.stream().mapToLong(f -> (long)f.amount * costFunction.applyAsInt(f.origin, f.destination)).sum();
+	}
+
+	private static void assertFeasible(List<Flow<Integer, Integer>> flows, List<Pair<Integer, Integer>> supply,
+			List<Pair<Integer, Integer>> demand) {
+		Map<Integer, Integer> shipped = new HashMap<>();
+		Map<Integer, Integer> received = new HashMap<>();
+		for (Flow<Integer, Integer> flow : flows) {
+			assertThat(flow.amount).isPositive();
+			shipped.merge(flow.origin, flow.amount, Integer::sum);
+			received.merge(flow.destination, flow.amount, Integer::sum);
+		}
+		for (Pair<Integer, Integer> s : supply) {
+			assertThat(shipped.getOrDefault(s.getKey(), 0)).isLessThanOrEqualTo(s.getValue());
+		}
+		for (Pair<Integer, Integer> d : demand) {
+			assertThat(received.getOrDefault(d.getKey(), 0)).isLessThanOrEqualTo(d.getValue());
+		}
+		int totalSupply = supply.stream().mapToInt(Pair::getValue).sum();
+		int totalDemand = demand.stream().mapToInt(Pair::getValue).sum();
+		assertThat(flows.stream().mapToInt(f -> f.amount).sum()).isEqualTo(Math.min(totalSupply, totalDemand));
+	}
+}
@@ -27,6 +27,7 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.dvrp.run.AbstractDvrpModeModule;
 import org.matsim.contrib.dvrp.run.DvrpConfigGroup;
 import org.matsim.contrib.zone.skims.FreeSpeedTravelTimeMatrix;
+import org.matsim.contrib.zone.skims.TimeDependentTravelTimeMatrix;
 import org.matsim.contrib.zone.skims.TravelTimeMatrix;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.GlobalConfigGroup;
@@ -34,6 +35,7 @@ import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.algorithms.NetworkCleaner;
 import org.matsim.core.network.algorithms.TransportModeNetworkFilter;
+import org.matsim.core.router.util.TravelTime;
 
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
@@ -77,10 +79,22 @@ public class DvrpModeRoutingNetworkModule extends AbstractDvrpModeModule {
 
 			//use mode-specific travel time matrix built for this subnetwork
 			//lazily initialised: optimisers may not need it
-			bindModal(TravelTimeMatrix.class).toProvider(modalProvider(
-					getter -> FreeSpeedTravelTimeMatrix.createFreeSpeedMatrix(getter.getModal(Network.class),
-							dvrpConfigGroup.getTravelTimeMatrixParams(), globalConfigGroup.getNumberOfThreads(),
-							qSimConfigGroup.getTimeStepSize()))).in(Singleton.class);
+			if (dvrpConfigGroup.getTravelTimeMatrixParams().timeDependent) {
+				//the matrices are computed on first use
+				bindModal(TimeDependentTravelTimeMatrix.class).toProvider(modalProvider(
+						getter -> new TimeDependentTravelTimeMatrix(getter.getModal(Network.class),
+								dvrpConfigGroup.getTravelTimeMatrixParams(), globalConfigGroup.getNumberOfThreads(),
+								qSimConfigGroup.getTimeStepSize(), getter.getModal(TravelTime.class)))).in(Singleton.class);
+				bindModal(TravelTimeMatrix.class).to(modalKey(TimeDependentTravelTimeMatrix.class));
+				addControlerListenerBinding().to(modalKey(TimeDependentTravelTimeMatrix.class));
+			} else {
+				bindModal(TravelTimeMatrix.class).toProvider(modalProvider(
+						getter -> FreeSpeedTravelTimeMatrix.createFreeSpeedMatrix(getter.getModal(Network.class),
+								dvrpConfigGroup.getTravelTimeMatrixParams(), globalConfigGroup.getNumberOfThreads(),
+								qSimConfigGroup.getTimeStepSize(), getConfig().network().isTimeVariantNetwork() ?
+										null :
+										dvrpConfigGroup.getTravelTimeMatrixParams().cacheDirectory))).in(Singleton.class);
+			}
 		} else {
 			//use DVRP-routing (dvrp-global) network
 			bindModal(Network.class).to(
@@ -29,11 +29,13 @@ import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelTimeModule;
 import org.matsim.contrib.dvrp.vrpagent.VrpAgentQueryHelper;
 import org.matsim.contrib.dynagent.run.DynActivityEngine;
 import org.matsim.contrib.zone.skims.FreeSpeedTravelTimeMatrix;
+import org.matsim.contrib.zone.skims.TimeDependentTravelTimeMatrix;
 import org.matsim.contrib.zone.skims.TravelTimeMatrix;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.qsim.AbstractQSimModule;
+import org.matsim.core.router.util.TravelTime;
 import org.matsim.vis.otfvis.OnTheFlyServer.NonPlanAgentQueryHelper;
 
 import com.google.inject.Inject;
@@ -72,22 +74,49 @@ public final class DvrpModule extends AbstractModule {
 		//lazily initialised because:
 		// 1. we may have only mode-filtered subnetworks
 		// 2. optimisers may not use it
-		bind(TravelTimeMatrix.class).toProvider(new Provider<>() {
-			@Inject
-			@Named(DvrpGlobalRoutingNetworkProvider.DVRP_ROUTING)
-			private Network network;
-
-			@Inject
-			private QSimConfigGroup qSimConfigGroup;
-
-			@Override
-			public TravelTimeMatrix get() {
-				var numberOfThreads = getConfig().global().getNumberOfThreads();
-				var params = dvrpConfigGroup.getTravelTimeMatrixParams();
-				return FreeSpeedTravelTimeMatrix.createFreeSpeedMatrix(network, params, numberOfThreads,
-						qSimConfigGroup.getTimeStepSize());
-			}
-		}).in(Singleton.class);
+		if (dvrpConfigGroup.getTravelTimeMatrixParams().timeDependent) {
+			//the matrices are computed on first use
+			bind(TimeDependentTravelTimeMatrix.class).toProvider(new Provider<>() {
+				@Inject
+				@Named(DvrpGlobalRoutingNetworkProvider.DVRP_ROUTING)
+				private Network network;
+
+				@Inject
+				private QSimConfigGroup qSimConfigGroup;
+
+				@Inject
+				@Named(DvrpTravelTimeModule.DVRP_ESTIMATED)
+				private TravelTime travelTime;
+
+				@Override
+				public TimeDependentTravelTimeMatrix get() {
+					var numberOfThreads = getConfig().global().getNumberOfThreads();
+					var params = dvrpConfigGroup.getTravelTimeMatrixParams();
+					return new TimeDependentTravelTimeMatrix(network, params, numberOfThreads,
+							qSimConfigGroup.getTimeStepSize(), travelTime);
+				}
+			}).in(Singleton.class);
+			bind(TravelTimeMatrix.class).to(TimeDependentTravelTimeMatrix.class);
+			addControlerListenerBinding().to(TimeDependentTravelTimeMatrix.class);
+		} else {
+			bind(TravelTimeMatrix.class).toProvider(new Provider<>() {
+				@Inject
+				@Named(DvrpGlobalRoutingNetworkProvider.DVRP_ROUTING)
+				private Network network;
+
+				@Inject
+				private QSimConfigGroup qSimConfigGroup;
+
+				@Override
+				public TravelTimeMatrix get() {
+					var numberOfThreads = getConfig().global().getNumberOfThreads();
+					var params = dvrpConfigGroup.getTravelTimeMatrixParams();
+					return FreeSpeedTravelTimeMatrix.createFreeSpeedMatrix(network, params, numberOfThreads,
+							qSimConfigGroup.getTimeStepSize(),
+							getConfig().network().isTimeVariantNetwork() ? null : params.cacheDirectory);
+				}
+			}).in(Singleton.class);
+		}
 
 		bind(Network.class).annotatedWith(Names.named(DvrpGlobalRoutingNetworkProvider.DVRP_ROUTING))
 				.toProvider(DvrpGlobalRoutingNetworkProvider.class)
@@ -20,6 +20,8 @@
 
 package org.matsim.contrib.zone.skims;
 
+import javax.annotation.Nullable;
+
 import org.matsim.core.config.ConfigGroup;
 import org.matsim.core.config.ReflectiveConfigGroup;
 
@@ -47,6 +49,38 @@ public class DvrpTravelTimeMatrixParams extends ReflectiveConfigGroup {
 	@PositiveOrZero
 	public int maxNeighborDistance = 1000; //[m]
 
+	@Parameter
+	@Comment("If true, zonal travel times are computed for each time bin from the DVRP travel time estimates"
+			+ " and updated after each iteration (see TimeDependentTravelTimeMatrix)."
+			+ " If false, only free-speed travel times are used. Default value is false.")
+	public boolean timeDependent = false;
+
+	@Parameter
+	@Comment("Time bin size (seconds) of the time-dependent travel time matrix. Default value is 3600 s.")
+	@Positive
+	public int timeBinSize = 3600; //[s]
+
+	@Parameter
+	@Comment("Time bins of the time-dependent travel time matrix cover [0, maxTime)."
+			+ " All later departures use one additional (open-ended) bin. Default value is 30 h.")
+	@Positive
+	public int maxTime = 30 * 3600; //[s]
+
+	@Parameter
+	@Comment("A time bin of the time-dependent travel time matrix is recomputed after an iteration only if"
+			+ " the travel time of at least one link (in the middle of the bin) changed by more than this fraction."
+			+ " Default value is 0.01.")
+	@PositiveOrZero
+	public double updateThreshold = 0.01;
+
+	@Parameter
+	@Comment("Directory where the free-speed travel time matrices and the time-dependent travel time matrices"
+			+ " (after each update) are stored, in files named after a hash of the network, the zonal system"
+			+ " and the matrix parameters. Later runs with the same network and parameters start from the stored matrices."
+			+ " Free-speed matrices are not cached for time-variant networks. Ignored if null.")
+	@Nullable
+	public String cacheDirectory = null;
+
 	public DvrpTravelTimeMatrixParams() {
 		super(SET_NAME);
 	}
@@ -20,34 +20,110 @@
 
 package org.matsim.contrib.zone.skims;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.Node;
 import org.matsim.contrib.dvrp.router.TimeAsTravelDisutility;
 import org.matsim.contrib.dvrp.trafficmonitoring.QSimFreeSpeedTravelTime;
 import org.matsim.contrib.zone.SquareGridSystem;
 import org.matsim.contrib.zone.ZonalSystems;
+import org.matsim.contrib.zone.Zone;
+import org.matsim.contrib.zone.skims.SparseMatrix.NodeAndTime;
+import org.matsim.contrib.zone.skims.SparseMatrix.SparseRow;
 import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.io.IOUtils;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 /**
+ * If a cache directory is passed to {@link #createFreeSpeedMatrix(Network, DvrpTravelTimeMatrixParams, int, double, String)}, the
+ * matrices are stored there under a file name with a hash of the network, the zonal system (zones and their central nodes), the
+ * matrix parameters and the QSim time step size. Subsequent runs load them instead of computing them again. The hash covers the
+ * free speeds of the links only as returned by {@link Link#getFreespeed()}, so the cache must not be used for time-variant networks.
+ * Files are written to a temporary file first and then moved into place; unreadable files are ignored and the matrices re-calculated.
+ *
  * @author Michal Maciejewski (michalm)
  */
 public class FreeSpeedTravelTimeMatrix implements TravelTimeMatrix {
+	private static final Logger log = LogManager.getLogger(FreeSpeedTravelTimeMatrix.class);
+
+	private static final int MAGIC = 0x44465354; // "DFST"
+	private static final int VERSION = 1;
+
 	public static FreeSpeedTravelTimeMatrix createFreeSpeedMatrix(Network dvrpNetwork, DvrpTravelTimeMatrixParams params, int numberOfThreads,
 			double qSimTimeStepSize) {
-		return new FreeSpeedTravelTimeMatrix(dvrpNetwork, params, numberOfThreads, new QSimFreeSpeedTravelTime(qSimTimeStepSize));
+		return createFreeSpeedMatrix(dvrpNetwork, params, numberOfThreads, qSimTimeStepSize, null);
+	}
+
+	/**
+	 * @param cacheDirectory if not <code>null</code>, the matrices are loaded from or stored to this directory
+	 */
+	public static FreeSpeedTravelTimeMatrix createFreeSpeedMatrix(Network dvrpNetwork, DvrpTravelTimeMatrixParams params, int numberOfThreads,
+			double qSimTimeStepSize, @Nullable String cacheDirectory) {
+		return new FreeSpeedTravelTimeMatrix(dvrpNetwork, params, numberOfThreads, new QSimFreeSpeedTravelTime(qSimTimeStepSize),
+				cacheDirectory, qSimTimeStepSize);
 	}
 
 	private final SquareGridSystem gridSystem;
+	private final Map<Zone, Node> centralNodes;
 	private final Matrix freeSpeedTravelTimeMatrix;
 	private final SparseMatrix freeSpeedTravelTimeSparseMatrix;
 
 	public FreeSpeedTravelTimeMatrix(Network dvrpNetwork, DvrpTravelTimeMatrixParams params, int numberOfThreads, TravelTime travelTime) {
+		this(dvrpNetwork, params, numberOfThreads, travelTime, null, Double.NaN);
+	}
+
+	private FreeSpeedTravelTimeMatrix(Network dvrpNetwork, DvrpTravelTimeMatrixParams params, int numberOfThreads, TravelTime travelTime,
+			@Nullable String cacheDirectory, double qSimTimeStepSize) {
 		gridSystem = new SquareGridSystem(dvrpNetwork.getNodes().values(), params.cellSize);
-		var centralNodes = ZonalSystems.computeMostCentralNodes(dvrpNetwork.getNodes().values(), gridSystem);
+		centralNodes = ZonalSystems.computeMostCentralNodes(dvrpNetwork.getNodes().values(), gridSystem);
+
+		List<Node> nodes = new ArrayList<>(dvrpNetwork.getNodes().values());
+		nodes.sort(Comparator.comparing(Node::getId));
+		List<Zone> zones = new ArrayList<>(centralNodes.keySet());
+		zones.sort(Comparator.comparing(Zone::getId));
+		Path cacheFile = cacheDirectory == null ?
+				null :
+				getCacheFile(cacheDirectory, dvrpNetwork, nodes, zones, params, qSimTimeStepSize);
+
+		if (cacheFile != null && Files.exists(cacheFile)) {
+			Matrix cachedMatrix = new Matrix(centralNodes.keySet());
+			SparseMatrix cachedSparseMatrix = new SparseMatrix();
+			if (readFromCache(cacheFile, nodes, zones, cachedMatrix, cachedSparseMatrix)) {
+				freeSpeedTravelTimeMatrix = cachedMatrix;
+				freeSpeedTravelTimeSparseMatrix = cachedSparseMatrix;
+				return;
+			}
+		}
+
 		var travelDisutility = new TimeAsTravelDisutility(travelTime);
 		var routingParams = new TravelTimeMatrices.RoutingParams(dvrpNetwork, travelTime, travelDisutility, numberOfThreads);
 		freeSpeedTravelTimeMatrix = TravelTimeMatrices.calculateTravelTimeMatrix(routingParams, centralNodes, 0);
 		freeSpeedTravelTimeSparseMatrix = TravelTimeMatrices.calculateTravelTimeSparseMatrix(routingParams, params.maxNeighborDistance, 0);
+		if (cacheFile != null) {
+			writeToCache(cacheFile, nodes, zones);
+		}
 	}
 
 	@Override
@@ -65,4 +141,102 @@ public class FreeSpeedTravelTimeMatrix implements TravelTimeMatrix {
 	public int getZonalTravelTime(Node fromNode, Node toNode, double departureTime) {
 		return freeSpeedTravelTimeMatrix.get(gridSystem.getZone(fromNode), gridSystem.getZone(toNode));
 	}
+
+	SquareGridSystem getGridSystem() {
+		return gridSystem;
+	}
+
+	Map<Zone, Node> getCentralNodes() {
+		return centralNodes;
+	}
+
+	private Path getCacheFile(String cacheDirectory, Network network, List<Node> nodes, List<Zone> zones,
+			DvrpTravelTimeMatrixParams params, double qSimTimeStepSize) {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		hasher.putInt(VERSION).putInt(params.cellSize).putInt(params.maxNeighborDistance).putDouble(qSimTimeStepSize);
+		for (Node node : nodes) {
+			hasher.putString(node.getId().toString(), UTF_8);
+			hasher.putDouble(node.getCoord().getX()).putDouble(node.getCoord().getY());
+		}
+		network.getLinks().values().stream().sorted(Comparator.comparing(Link::getId)).forEach(link -> {
+			hasher.putString(link.getId().toString(), UTF_8);
+			hasher.putString(link.getFromNode().getId().toString(), UTF_8);
+			hasher.putString(link.getToNode().getId().toString(), UTF_8);
+			hasher.putDouble(link.getLength()).putDouble(link.getFreespeed());
+		});
+		for (Zone zone : zones) {
+			hasher.putString(zone.getId().toString(), UTF_8);
+			hasher.putString(centralNodes.get(zone).getId().toString(), UTF_8);
+		}
+		return Paths.get(cacheDirectory, "dvrp_free_speed_travel_time_matrix_" + hasher.hash() + ".bin.gz");
+	}
+
+	// zones and nodes are written as positions in the sorted lists, which are the same for the same hash
+	private void writeToCache(Path file, List<Node> nodes, List<Zone> zones) {
+		int[] nodePositions = new int[nodes.stream().mapToInt(n -> n.getId().index()).max().orElse(-1) + 1];
+		for (int i = 0; i < nodes.size(); i++) {
+			nodePositions[nodes.get(i).getId().index()] = i;
+		}
+		try {
+			Files.createDirectories(file.getParent());
+			// write to a temporary file first, so aborted or concurrent runs never leave a partially written file
+			Path tmpFile = Files.createTempFile(file.getParent(), "dvrp_free_speed_travel_time_matrix_", ".tmp.gz");
+			try {
+				try (DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(IOUtils.getOutputStream(tmpFile.toUri().toURL(), false)))) {
+					out.writeInt(MAGIC);
+					out.writeInt(zones.size());
+					out.writeInt(nodes.size());
+					for (Zone fromZone : zones) {
+						for (Zone toZone : zones) {
+							out.writeShort(freeSpeedTravelTimeMatrix.get(fromZone, toZone));
+						}
+					}
+					for (Node fromNode : nodes) {
+						SparseRow row = freeSpeedTravelTimeSparseMatrix.getRow(fromNode);
+						List<NodeAndTime> entries = row == null ? List.of() : row.getEntries();
+						out.writeInt(entries.size());
+						for (NodeAndTime entry : entries) {
+							out.writeInt(nodePositions[entry.nodeIdx()]);
+							out.writeShort((int)entry.time());
+						}
+					}
+				}
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tmpFile);
+			}
+		} catch (IOException e) {
+			log.warn("Could not write DVRP free-speed travel time matrix to " + file, e);
+			return;
+		}
+		log.info("DVRP free-speed travel time matrix written to " + file);
+	}
+
+	private boolean readFromCache(Path file, List<Node> nodes, List<Zone> zones, Matrix matrix, SparseMatrix sparseMatrix) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(IOUtils.getInputStream(file.toUri().toURL())))) {
+			if (in.readInt() != MAGIC || in.readInt() != zones.size() || in.readInt() != nodes.size()) {
+				throw new IOException("Incompatible DVRP free-speed travel time matrix file: " + file);
+			}
+			for (Zone fromZone : zones) {
+				for (Zone toZone : zones) {
+					matrix.set(fromZone, toZone, in.readUnsignedShort());
+				}
+			}
+			for (Node fromNode : nodes) {
+				int size = in.readInt();
+				List<NodeAndTime> entries = new ArrayList<>(size);
+				for (int i = 0; i < size; i++) {
+					int toNodeIndex = nodes.get(in.readInt()).getId().index();
+					entries.add(new NodeAndTime(toNodeIndex, in.readUnsignedShort()));
+				}
+				sparseMatrix.setRow(fromNode, new SparseRow(entries));
+			}
+		} catch (IOException | RuntimeException e) {
+			log.warn("Could not read DVRP free-speed travel time matrix from " + file + ", it will be re-calculated.", e);
+			return false;
+		}
+		log.info("DVRP free-speed travel time matrix read from " + file);
+		return true;
+	}
 }
@@ -112,6 +112,18 @@ final class SparseMatrix {
 		int get(int toNodeIndex) {
 			return presentNodes.get(toNodeIndex) ? buckets[toNodeIndex & mask].get(toNodeIndex) : -1; // value not present in the row
 		}
+
+		List<NodeAndTime> getEntries() {
+			List<NodeAndTime> entries = new ArrayList<>();
+			if (buckets != null) {
+				for (Bucket bucket : buckets) {
+					for (int i = 0; i < bucket.nodeIndices.length; i++) {
+						entries.add(new NodeAndTime(bucket.nodeIndices[i], Short.toUnsignedInt(bucket.values[i])));
+					}
+				}
+			}
+			return entries;
+		}
 	}
 
 	private final SparseRow[] rows = new SparseRow[Id.getNumberOfIds(Node.class)];
@@ -126,6 +138,10 @@ final class SparseMatrix {
 		return get(fromNode.getId().index(), toNode.getId().index());
 	}
 
+	SparseRow getRow(Node fromNode) {
+		return rows[fromNode.getId().index()];
+	}
+
 	void setRow(Node fromNode, SparseRow row) {
 		rows[fromNode.getId().index()] = row;
 	}
@@ -0,0 +1,310 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.zone.skims;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.contrib.dvrp.router.TimeAsTravelDisutility;
+import org.matsim.contrib.dvrp.util.TimeDiscretizer;
+import org.matsim.contrib.zone.Zone;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.io.IOUtils;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Zonal travel time matrices for consecutive time bins, computed from (congested) link travel times, typically the DVRP travel time
+ * estimates. Travel times between neighbouring nodes come from the free-speed sparse matrix and are scaled by the ratio of
+ * the congested to the free-speed zonal travel time.
+ * <p></p>
+ * The matrices are computed on first use, since optimisers may not need them. At the end of each iteration, only the time bins in which
+ * the travel time of some link (in the middle of the bin) changed by more than {@link DvrpTravelTimeMatrixParams#updateThreshold}
+ * are recomputed. If {@link DvrpTravelTimeMatrixParams#cacheDirectory} is set, the matrices are stored there after each update under a
+ * file name with a hash of the network, the matrix parameters and the travel time source, together with the link travel times they
+ * were computed from. Subsequent runs load both, so their first update only recomputes the time bins whose link travel times changed.
+ * <p></p>
+ * Updates must not run concurrently with queries (i.e. they must not happen during the mobsim).
+ *
+ * @see DvrpTravelTimeMatrixParams#timeDependent
+ */
+public final class TimeDependentTravelTimeMatrix implements TravelTimeMatrix, IterationEndsListener {
+	private static final Logger log = LogManager.getLogger(TimeDependentTravelTimeMatrix.class);
+
+	private static final int MAGIC = 0x44545454; // "DTTT"
+	private static final int VERSION = 2;
+
+	private final Network network;
+	private final DvrpTravelTimeMatrixParams params;
+	private final int numberOfThreads;
+	private final double qSimTimeStepSize;
+	private final TravelTime travelTime;
+	private final TimeDiscretizer timeDiscretizer;
+	private final List<Link> links;
+
+	private volatile FreeSpeedTravelTimeMatrix freeSpeedMatrix;// null until first use
+	private Matrix[] binMatrices;
+	private float[][] binLinkTravelTimes;// link travel times used for computing the bin matrices
+
+	public TimeDependentTravelTimeMatrix(Network dvrpNetwork, DvrpTravelTimeMatrixParams params, int numberOfThreads,
+			double qSimTimeStepSize, TravelTime travelTime) {
+		this.network = dvrpNetwork;
+		this.params = params;
+		this.numberOfThreads = numberOfThreads;
+		this.qSimTimeStepSize = qSimTimeStepSize;
+		this.travelTime = travelTime;
+		this.timeDiscretizer = new TimeDiscretizer(params.maxTime, params.timeBinSize);
+		this.links = new ArrayList<>(dvrpNetwork.getLinks().values());
+		this.links.sort(Comparator.comparing(Link::getId));// fixed order of the stored link travel times
+	}
+
+	@Override
+	public int getTravelTime(Node fromNode, Node toNode, double departureTime) {
+		if (fromNode == toNode) {
+			return 0;
+		}
+		FreeSpeedTravelTimeMatrix freeSpeed = freeSpeedMatrix;
+		if (freeSpeed == null) {
+			freeSpeed = initialize();
+		}
+
+		int freeSpeedTT = freeSpeed.getTravelTime(fromNode, toNode, departureTime);
+		int freeSpeedZonalTT = freeSpeed.getZonalTravelTime(fromNode, toNode, departureTime);
+		if (freeSpeedZonalTT == 0) {
+			return freeSpeedTT; // same zone: no congested travel time available
+		}
+
+		var gridSystem = freeSpeed.getGridSystem();
+		Matrix binMatrix = binMatrices[timeDiscretizer.getIdx(Math.max(departureTime, 0))];
+		int congestedZonalTT = binMatrix.get(gridSystem.getZone(fromNode), gridSystem.getZone(toNode));
+		// equals congestedZonalTT if there is no sparse (node-to-node) free-speed value
+		return (int)((long)freeSpeedTT * congestedZonalTT / freeSpeedZonalTT);
+	}
+
+	@Override
+	public void notifyIterationEnds(IterationEndsEvent event) {
+		if (freeSpeedMatrix != null) {// otherwise, not used so far
+			update();
+		}
+	}
+
+	private synchronized FreeSpeedTravelTimeMatrix initialize() {
+		if (freeSpeedMatrix == null) {
+			var freeSpeed = FreeSpeedTravelTimeMatrix.createFreeSpeedMatrix(network, params, numberOfThreads, qSimTimeStepSize);
+			binMatrices = new Matrix[timeDiscretizer.getIntervalCount()];
+			binLinkTravelTimes = new float[timeDiscretizer.getIntervalCount()][];
+			if (!loadFromCache(freeSpeed)) {
+				for (int bin = 0; bin < binMatrices.length; bin++) {
+					computeBin(bin, freeSpeed, calcLinkTravelTimes(bin));
+				}
+				saveToCache(freeSpeed);
+			}
+			freeSpeedMatrix = freeSpeed;
+		}
+		return freeSpeedMatrix;
+	}
+
+	synchronized int update() {
+		int updatedBins = 0;
+		for (int bin = 0; bin < binMatrices.length; bin++) {
+			float[] linkTravelTimes = calcLinkTravelTimes(bin);
+			if (hasChanged(binLinkTravelTimes[bin], linkTravelTimes)) {
+				computeBin(bin, freeSpeedMatrix, linkTravelTimes);
+				updatedBins++;
+			}
+		}
+		log.info("Time-dependent DVRP travel time matrix: updated " + updatedBins + " of " + binMatrices.length + " time bins");
+		if (updatedBins > 0) {
+			saveToCache(freeSpeedMatrix);
+		}
+		return updatedBins;
+	}
+
+	private void computeBin(int bin, FreeSpeedTravelTimeMatrix freeSpeed, float[] linkTravelTimes) {
+		var routingParams = new TravelTimeMatrices.RoutingParams(network, travelTime, new TimeAsTravelDisutility(travelTime),
+				numberOfThreads);
+		binMatrices[bin] = TravelTimeMatrices.calculateTravelTimeMatrix(routingParams, freeSpeed.getCentralNodes(), getBinMiddle(bin),
+				"DVRP time-dependent TT matrix (bin " + bin + "): zone ");
+		binLinkTravelTimes[bin] = linkTravelTimes;
+	}
+
+	private float[] calcLinkTravelTimes(int bin) {
+		double time = getBinMiddle(bin);
+		float[] linkTravelTimes = new float[links.size()];
+		for (int i = 0; i < linkTravelTimes.length; i++) {
+			linkTravelTimes[i] = (float)travelTime.getLinkTravelTime(links.get(i), time, null, null);
+		}
+		return linkTravelTimes;
+	}
+
+	private boolean hasChanged(float[] oldLinkTravelTimes, float[] newLinkTravelTimes) {
+		if (oldLinkTravelTimes == null) {
+			return true;
+		}
+		for (int i = 0; i < newLinkTravelTimes.length; i++) {
+			if (Math.abs(newLinkTravelTimes[i] - oldLinkTravelTimes[i]) > params.updateThreshold * oldLinkTravelTimes[i]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private double getBinMiddle(int bin) {
+		return (bin + 0.5) * timeDiscretizer.getTimeInterval();
+	}
+
+	private Path getCacheFile() {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		hasher.putInt(VERSION).putInt(params.cellSize).putDouble(params.maxNeighborDistance);
+		hasher.putInt(params.timeBinSize).putInt(params.maxTime).putDouble(qSimTimeStepSize);
+		hasher.putString(travelTime.getClass().getName(), UTF_8);
+		network.getNodes().values().stream().sorted(Comparator.comparing(Node::getId)).forEach(node -> {
+			hasher.putString(node.getId().toString(), UTF_8);
+			hasher.putDouble(node.getCoord().getX()).putDouble(node.getCoord().getY());
+		});
+		network.getLinks().values().stream().sorted(Comparator.comparing(Link::getId)).forEach(link -> {
+			hasher.putString(link.getId().toString(), UTF_8);
+			hasher.putString(link.getFromNode().getId().toString(), UTF_8);
+			hasher.putString(link.getToNode().getId().toString(), UTF_8);
+			hasher.putDouble(link.getLength()).putDouble(link.getFreespeed()).putDouble(link.getCapacity());
+		});
+		return Paths.get(params.cacheDirectory, "dvrp_travel_time_matrix_" + hasher.hash() + ".bin.gz");
+	}
+
+	private void saveToCache(FreeSpeedTravelTimeMatrix freeSpeed) {
+		if (params.cacheDirectory == null) {
+			return;
+		}
+		Path file = getCacheFile();
+		List<Zone> zones = new ArrayList<>(freeSpeed.getCentralNodes().keySet());
+		try {
+			Files.createDirectories(file.getParent());
+			// write to a temporary file first, so aborted or concurrent runs never leave a partially written file
+			Path tmpFile = Files.createTempFile(file.getParent(), "dvrp_travel_time_matrix_", ".tmp.gz");
+			try {
+				try (DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(IOUtils.getOutputStream(tmpFile.toUri().toURL(), false)))) {
+					out.writeInt(MAGIC);
+					out.writeInt(binMatrices.length);
+					out.writeInt(zones.size());
+					for (Zone zone : zones) {
+						out.writeUTF(zone.getId().toString());
+					}
+					out.writeInt(links.size());
+					for (int bin = 0; bin < binMatrices.length; bin++) {
+						for (Zone fromZone : zones) {
+							for (Zone toZone : zones) {
+								out.writeShort(binMatrices[bin].get(fromZone, toZone));
+							}
+						}
+						for (float linkTravelTime : binLinkTravelTimes[bin]) {
+							out.writeFloat(linkTravelTime);
+						}
+					}
+				}
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tmpFile);
+			}
+		} catch (IOException e) {
+			log.warn("Could not write time-dependent DVRP travel time matrix to " + file, e);
+			return;
+		}
+		log.info("Time-dependent DVRP travel time matrix written to " + file);
+	}
+
+	private boolean loadFromCache(FreeSpeedTravelTimeMatrix freeSpeed) {
+		if (params.cacheDirectory == null) {
+			return false;
+		}
+		Path file = getCacheFile();
+		if (!Files.exists(file)) {
+			return false;
+		}
+
+		Map<Zone, Node> centralNodes = freeSpeed.getCentralNodes();
+		Map<Id<Zone>, Zone> allZones = freeSpeed.getGridSystem().getZones();
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(IOUtils.getInputStream(file.toUri().toURL())))) {
+			if (in.readInt() != MAGIC || in.readInt() != binMatrices.length) {
+				log.warn("Ignoring incompatible time-dependent DVRP travel time matrix file: " + file);
+				return false;
+			}
+			List<Zone> zones = new ArrayList<>();
+			int zoneCount = in.readInt();
+			for (int i = 0; i < zoneCount; i++) {
+				Zone zone = allZones.get(Id.create(in.readUTF(), Zone.class));
+				if (zone == null || !centralNodes.containsKey(zone)) {
+					log.warn("Ignoring time-dependent DVRP travel time matrix file with unknown zones: " + file);
+					return false;
+				}
+				zones.add(zone);
+			}
+			if (zones.size() != centralNodes.size() || in.readInt() != links.size()) {
+				log.warn("Ignoring time-dependent DVRP travel time matrix file with missing zones or links: " + file);
+				return false;
+			}
+
+			for (int bin = 0; bin < binMatrices.length; bin++) {
+				Matrix matrix = new Matrix(centralNodes.keySet());
+				for (Zone fromZone : zones) {
+					for (Zone toZone : zones) {
+						matrix.set(fromZone, toZone, in.readUnsignedShort());
+					}
+				}
+				float[] linkTravelTimes = new float[links.size()];
+				for (int i = 0; i < linkTravelTimes.length; i++) {
+					linkTravelTimes[i] = in.readFloat();
+				}
+				binMatrices[bin] = matrix;
+				binLinkTravelTimes[bin] = linkTravelTimes;
+			}
+		} catch (IOException | UncheckedIOException e) {
+			log.warn("Could not read time-dependent DVRP travel time matrix from " + file + ", it will be re-calculated.", e);
+			return false;
+		}
+		log.info("Time-dependent DVRP travel time matrix read from " + file);
+		return true;
+	}
+}
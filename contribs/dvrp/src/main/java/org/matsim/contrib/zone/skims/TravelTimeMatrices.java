@@ -34,9 +34,14 @@ public final class TravelTimeMatrices {
 	}
 
 	public static Matrix calculateTravelTimeMatrix(RoutingParams params, Map<Zone, Node> centralNodes, double departureTime) {
+		return calculateTravelTimeMatrix(params, centralNodes, departureTime, "DVRP free-speed TT matrix: zone ");
+	}
+
+	static Matrix calculateTravelTimeMatrix(RoutingParams params, Map<Zone, Node> centralNodes, double departureTime,
+			String counterPrefix) {
 		Matrix travelTimeMatrix = new Matrix(centralNodes.keySet());
 		Calculation<Zone> calculation = (lcpTree, z) -> computeForDepartureZone(z, centralNodes, departureTime, travelTimeMatrix, lcpTree);
-		calculate(params, centralNodes.keySet(), calculation, "DVRP free-speed TT matrix: zone ");
+		calculate(params, centralNodes.keySet(), calculation, counterPrefix);
 		return travelTimeMatrix;
 	}
 
@@ -22,7 +22,13 @@ package org.matsim.contrib.zone.skims;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Network;
@@ -33,6 +39,8 @@ import org.matsim.core.network.NetworkUtils;
  * @author Michal Maciejewski (michalm)
  */
 public class FreeSpeedTravelTimeMatrixTest {
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
 
 	private final Network network = NetworkUtils.createNetwork();
 	private final Node nodeA = NetworkUtils.createAndAddNode(network, Id.createNodeId("A"), new Coord(0, 0));
@@ -85,4 +93,47 @@ public class FreeSpeedTravelTimeMatrixTest {
 		assertThat(matrix.getTravelTime(nodeB, nodeC, 0)).isEqualTo(20 + 11 + 2); // 2 s for moving over nodes
 		assertThat(matrix.getTravelTime(nodeC, nodeB, 0)).isEqualTo(10 + 9 + 2); // 2 s for moving over nodes
 	}
+
+	@Test
+	public void cache() throws Exception {
+		DvrpTravelTimeMatrixParams params = new DvrpTravelTimeMatrixParams();
+		params.cellSize = 100;
+		params.maxNeighborDistance = 9999;
+		File cacheDirectory = temporaryFolder.newFolder();
+		var matrix = FreeSpeedTravelTimeMatrix.createFreeSpeedMatrix(network, params, 1, 1, cacheDirectory.getPath());
+		assertThat(cacheDirectory.list()).hasSize(1);
+
+		// the next run reads the stored matrices
+		var cachedMatrix = FreeSpeedTravelTimeMatrix.createFreeSpeedMatrix(network, params, 1, 1, cacheDirectory.getPath());
+		assertThat(cacheDirectory.list()).hasSize(1);
+		for (Node fromNode : List.of(nodeA, nodeB, nodeC)) {
+			for (Node toNode : List.of(nodeA, nodeB, nodeC)) {
+				assertThat(cachedMatrix.getTravelTime(fromNode, toNode, 0)).isEqualTo(matrix.getTravelTime(fromNode, toNode, 0));
+				assertThat(cachedMatrix.getZonalTravelTime(fromNode, toNode, 0)).isEqualTo(
+						matrix.getZonalTravelTime(fromNode, toNode, 0));
+			}
+		}
+
+		// other parameters are not read from the cache
+		params.maxNeighborDistance = 0;
+		var otherParamsMatrix = FreeSpeedTravelTimeMatrix.createFreeSpeedMatrix(network, params, 1, 1, cacheDirectory.getPath());
+		assertThat(cacheDirectory.list()).hasSize(2);
+		assertThat(otherParamsMatrix.getTravelTime(nodeA, nodeC, 0)).isEqualTo(0);
+
+		// a different network is not read from the cache
+		network.getLinks().get(Id.createLinkId("AB")).setFreespeed(30);
+		var otherNetworkMatrix = FreeSpeedTravelTimeMatrix.createFreeSpeedMatrix(network, params, 1, 1, cacheDirectory.getPath());
+		assertThat(cacheDirectory.list()).hasSize(3);
+		assertThat(otherNetworkMatrix.getTravelTime(nodeA, nodeB, 0)).isEqualTo(5 + 1); // 1 s for moving over nodes
+
+		// a corrupt file is re-calculated and replaced
+		for (File file : cacheDirectory.listFiles()) {
+			Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+		}
+		var recalculatedMatrix = FreeSpeedTravelTimeMatrix.createFreeSpeedMatrix(network, params, 1, 1, cacheDirectory.getPath());
+		assertThat(cacheDirectory.list()).hasSize(3);
+		assertThat(recalculatedMatrix.getTravelTime(nodeA, nodeB, 0)).isEqualTo(5 + 1);
+		var rereadMatrix = FreeSpeedTravelTimeMatrix.createFreeSpeedMatrix(network, params, 1, 1, cacheDirectory.getPath());
+		assertThat(rereadMatrix.getTravelTime(nodeA, nodeB, 0)).isEqualTo(5 + 1);
+	}
 }
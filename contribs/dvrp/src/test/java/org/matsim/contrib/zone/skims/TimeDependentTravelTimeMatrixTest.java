@@ -0,0 +1,130 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.zone.skims;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.TravelTime;
+
+public class TimeDependentTravelTimeMatrixTest {
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final Network network = NetworkUtils.createNetwork();
+	private final Node nodeA = NetworkUtils.createAndAddNode(network, Id.createNodeId("A"), new Coord(0, 0));
+	private final Node nodeB = NetworkUtils.createAndAddNode(network, Id.createNodeId("B"), new Coord(150, 150));
+	private final Node nodeC = NetworkUtils.createAndAddNode(network, Id.createNodeId("C"), new Coord(-10, -10));
+
+	private final DvrpTravelTimeMatrixParams params = new DvrpTravelTimeMatrixParams();
+
+	// free-speed travel times until 01:00, afterwards multiplied by congestionFactor
+	private double congestionFactor = 2;
+	private final TravelTime travelTime = (link, time, person, vehicle) -> link.getLength() / link.getFreespeed() * (
+			time < 3600 ? 1 : congestionFactor);
+
+	public TimeDependentTravelTimeMatrixTest() {
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("AB"), nodeA, nodeB, 150, 15, 20, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("BA"), nodeB, nodeA, 300, 15, 40, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("AC"), nodeA, nodeC, 165, 15, 20, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("CA"), nodeC, nodeA, 135, 15, 20, 1);
+
+		params.cellSize = 100;
+		params.maxNeighborDistance = 0;
+		params.timeBinSize = 3600;
+		params.maxTime = 7200; // 3 bins: [0, 1h), [1h, 2h), [2h, inf)
+	}
+
+	@Test
+	public void travelTimesPerTimeBin() {
+		var matrix = new TimeDependentTravelTimeMatrix(network, params, 1, 1, travelTime);
+
+		assertThat(matrix.getTravelTime(nodeA, nodeA, 0)).isEqualTo(0);
+		assertThat(matrix.getTravelTime(nodeA, nodeB, 0)).isEqualTo(10);
+		assertThat(matrix.getTravelTime(nodeA, nodeB, 3600)).isEqualTo(20);
+		assertThat(matrix.getTravelTime(nodeA, nodeB, 99999)).isEqualTo(20);
+		assertThat(matrix.getTravelTime(nodeB, nodeA, 0)).isEqualTo(20);
+		assertThat(matrix.getTravelTime(nodeB, nodeA, 5000)).isEqualTo(40);
+
+		// C and A are in the same zone: free-speed travel times
+		assertThat(matrix.getTravelTime(nodeA, nodeC, 5000)).isEqualTo(0);
+		// C is in the zone of A
+		assertThat(matrix.getTravelTime(nodeC, nodeB, 5000)).isEqualTo(20);
+	}
+
+	@Test
+	public void update_onlyChangedTimeBins() {
+		var matrix = new TimeDependentTravelTimeMatrix(network, params, 1, 1, travelTime);
+		assertThat(matrix.getTravelTime(nodeA, nodeB, 0)).isEqualTo(10);
+		assertThat(matrix.getTravelTime(nodeA, nodeB, 3600)).isEqualTo(20);
+
+		congestionFactor = 3;
+		matrix.update();
+		assertThat(matrix.getTravelTime(nodeA, nodeB, 0)).isEqualTo(10);
+		assertThat(matrix.getTravelTime(nodeA, nodeB, 3600)).isEqualTo(30);
+		assertThat(matrix.getTravelTime(nodeA, nodeB, 99999)).isEqualTo(30);
+	}
+
+	@Test
+	public void cache_reusedByNextRun() throws Exception {
+		params.cacheDirectory = temporaryFolder.newFolder().getPath();
+		var matrix = new TimeDependentTravelTimeMatrix(network, params, 1, 1, travelTime);
+		assertThat(matrix.getTravelTime(nodeA, nodeB, 3600)).isEqualTo(20);
+
+		// the next run starts from the stored matrices and link travel times, so unchanged time bins are not recomputed
+		var nextRunMatrix = new TimeDependentTravelTimeMatrix(network, params, 1, 1, travelTime);
+		assertThat(nextRunMatrix.getTravelTime(nodeA, nodeB, 3600)).isEqualTo(20);
+		assertThat(nextRunMatrix.update()).isEqualTo(0);
+
+		// ... and only updates the time bins with changed travel times
+		congestionFactor = 5;
+		var thirdRunMatrix = new TimeDependentTravelTimeMatrix(network, params, 1, 1, travelTime);
+		assertThat(thirdRunMatrix.getTravelTime(nodeA, nodeB, 3600)).isEqualTo(20);
+		assertThat(thirdRunMatrix.update()).isEqualTo(2);
+		assertThat(thirdRunMatrix.getTravelTime(nodeA, nodeB, 0)).isEqualTo(10);
+		assertThat(thirdRunMatrix.getTravelTime(nodeA, nodeB, 3600)).isEqualTo(50);
+
+		// a corrupt cache file is re-calculated
+		try (var files = Files.list(Paths.get(params.cacheDirectory))) {
+			for (Path file : (Iterable<Path>)files::iterator) {
+				Files.write(file, new byte[] { 1, 2, 3 });
+			}
+		}
+		var corruptCacheMatrix = new TimeDependentTravelTimeMatrix(network, params, 1, 1, travelTime);
+		assertThat(corruptCacheMatrix.getTravelTime(nodeA, nodeB, 3600)).isEqualTo(50);
+
+		// a different network is not read from the cache
+		network.getLinks().get(Id.createLinkId("AB")).setFreespeed(30);
+		var otherNetworkMatrix = new TimeDependentTravelTimeMatrix(network, params, 1, 1, travelTime);
+		assertThat(otherNetworkMatrix.getTravelTime(nodeA, nodeB, 3600)).isEqualTo(25);
+	}
+}
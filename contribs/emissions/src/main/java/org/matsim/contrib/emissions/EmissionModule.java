@@ -227,11 +227,25 @@ public final class EmissionModule {
 	private void createEmissionHandlers() {
 		logger.info("entering createEmissionHandlers");
 
-		warmEmissionHandler = new WarmEmissionHandler(scenario, avgHbefaWarmTable, detailedHbefaWarmTable, hbefaRoadTrafficSpeeds, warmPollutants, eventsManager);
+		warmEmissionHandler = createWarmEmissionHandler(eventsManager);
 
-		coldEmissionHandler = new ColdEmissionHandler(scenario, avgHbefaColdTable, detailedHbefaColdTable, coldPollutants, eventsManager);
+		coldEmissionHandler = createColdEmissionHandler(eventsManager);
 		// this initiates all cold emissions processing!
 
 		logger.info("leaving createEmissionHandlers");
 	}
+
+	// further handlers sharing the lookup tables, e.g. one per thread for parallel offline calculations
+	/*package-private*/ WarmEmissionHandler createWarmEmissionHandler(EventsManager eventsManager) {
+		return new WarmEmissionHandler(scenario, avgHbefaWarmTable, detailedHbefaWarmTable, hbefaRoadTrafficSpeeds, warmPollutants, eventsManager);
+	}
+
+	/*package-private*/ HbefaWarmEmissionFactorTable createWarmEmissionFactorTable() {
+		return new HbefaWarmEmissionFactorTable(avgHbefaWarmTable, detailedHbefaWarmTable, hbefaRoadTrafficSpeeds, warmPollutants,
+				emissionConfigGroup);
+	}
+
+	/*package-private*/ ColdEmissionHandler createColdEmissionHandler(EventsManager eventsManager) {
+		return new ColdEmissionHandler(scenario, avgHbefaColdTable, detailedHbefaColdTable, coldPollutants, eventsManager);
+	}
 }
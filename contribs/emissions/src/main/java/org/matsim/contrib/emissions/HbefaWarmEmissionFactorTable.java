@@ -0,0 +1,374 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.emissions;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.contrib.emissions.utils.EmissionsConfigGroup;
+import org.matsim.core.gbl.Gbl;
+import org.matsim.core.utils.collections.Tuple;
+import org.matsim.vehicles.VehicleType;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.matsim.contrib.emissions.HbefaTrafficSituation.*;
+import static org.matsim.contrib.emissions.utils.EmissionsConfigGroup.EmissionsComputationMethod.AverageSpeed;
+import static org.matsim.contrib.emissions.utils.EmissionsConfigGroup.EmissionsComputationMethod.StopAndGoFraction;
+
+/**
+ * Precompiled version of the warm emission factor tables used by {@link WarmEmissionAnalysisModule}, for computing the warm emissions
+ * of many link leave events (e.g. offline, from an events file) without building keys, looking them up in hash maps and allocating
+ * result maps for each event.
+ * <p></p>
+ * Road types and vehicle types are coded as ints.  When a vehicle type is seen for the first time, the fallbacks of the
+ * {@link EmissionsConfigGroup.DetailedVsAverageLookupBehavior} are resolved for all road types, traffic situations and pollutants,
+ * and the resulting factors and speeds are stored in a contiguous <code>double[]</code>.  After that,
+ * {@link #addWarmEmissions(int, int, double, double, double, double[])} only does array accesses and arithmetic.
+ * <p></p>
+ * The results are the same as those of {@link WarmEmissionAnalysisModule#checkVehicleInfoAndCalculateWarmEmissions}, except that the
+ * counters of the module are not updated.  The table can be used by several threads concurrently.
+ */
+public final class HbefaWarmEmissionFactorTable {
+	private static final Logger logger = LogManager.getLogger(HbefaWarmEmissionFactorTable.class);
+
+	private static final HbefaTrafficSituation[] SITUATIONS = HbefaTrafficSituation.values();
+	private static final int NOF_SITUATIONS = SITUATIONS.length;
+	private static final int NOF_VEHICLE_CATEGORIES = HbefaVehicleCategory.values().length;
+
+	private final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgHbefaWarmTable;
+	private final Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable;
+	private final EmissionsConfigGroup ecg;
+
+	private final Pollutant[] pollutants;
+	private final Map<String, Integer> roadTypeIndices = new HashMap<>();
+	private final String[] roadTypes;
+	/** [(vehicleCategory * roadTypes + roadType) * situations + situation]; NaN if there is no speed for this situation */
+	private final double[] trafficSpeeds;
+
+	private final Map<VehicleType, Integer> vehicleTypeIndices = new ConcurrentHashMap<>();
+	private final Map<Tuple<HbefaVehicleCategory, HbefaVehicleAttributes>, Integer> vehicleIndices = new HashMap<>();
+	/** copy-on-write, so that computing emissions does not need any locking */
+	private volatile VehicleEntry[] vehicles = new VehicleEntry[0];
+
+	/** the table is shared by the emission calculation threads */
+	private final AtomicInteger highSpeedWarnCnt = new AtomicInteger();
+
+	HbefaWarmEmissionFactorTable(Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgHbefaWarmTable,
+								 Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable,
+								 Map<HbefaRoadVehicleCategoryKey, Map<HbefaTrafficSituation, Double>> hbefaRoadTrafficSpeeds,
+								 Set<Pollutant> warmPollutants, EmissionsConfigGroup ecg) {
+		this.avgHbefaWarmTable = avgHbefaWarmTable;
+		this.detailedHbefaWarmTable = detailedHbefaWarmTable;
+		this.ecg = ecg;
+		this.pollutants = warmPollutants.toArray(new Pollutant[0]);
+
+		for (Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> table : Arrays.asList(avgHbefaWarmTable, detailedHbefaWarmTable)) {
+			if (table != null) {
+				for (HbefaWarmEmissionFactorKey key : table.keySet()) {
+					roadTypeIndices.putIfAbsent(key.getRoadCategory(), roadTypeIndices.size());
+				}
+			}
+		}
+		if (hbefaRoadTrafficSpeeds != null) {
+			for (HbefaRoadVehicleCategoryKey key : hbefaRoadTrafficSpeeds.keySet()) {
+				roadTypeIndices.putIfAbsent(key.getHbefaRoadCategory(), roadTypeIndices.size());
+			}
+		}
+		this.roadTypes = new String[roadTypeIndices.size()];
+		roadTypeIndices.forEach((roadType, index) -> roadTypes[index] = roadType);
+
+		this.trafficSpeeds = new double[NOF_VEHICLE_CATEGORIES * roadTypes.length * NOF_SITUATIONS];
+		Arrays.fill(trafficSpeeds, Double.NaN);
+		if (hbefaRoadTrafficSpeeds != null) {
+			hbefaRoadTrafficSpeeds.forEach((key, speedsBySituation) -> {
+				int offset = (key.getHbefaVehicleCategory().ordinal() * roadTypes.length + roadTypeIndices.get(key.getHbefaRoadCategory()))
+						* NOF_SITUATIONS;
+				speedsBySituation.forEach((situation, speed) -> trafficSpeeds[offset + situation.ordinal()] = speed);
+			});
+		}
+	}
+
+	/**
+	 * @return the index of the given road type, or -1 if it does not appear in the tables (computing emissions will then fail)
+	 */
+	public int getRoadTypeIndex(String roadType) {
+		Integer index = roadTypeIndices.get(roadType);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Returns the index of the given vehicle type, resolving all emission factors for it on the first call.
+	 */
+	public int getVehicleIndex(VehicleType vehicleType) {
+		Integer index = vehicleTypeIndices.get(vehicleType);
+		if (index == null) {
+			// (this will, importantly, repair the hbefa description in the vehicle type. kai/kai, jan'20)
+			Gbl.assertNotNull(EmissionUtils.getHbefaVehicleDescription(vehicleType, this.ecg));
+			Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple = EmissionUtils.convertVehicleDescription2VehicleInformationTuple(
+					vehicleType);
+			Gbl.assertNotNull(vehicleInformationTuple);
+			if (vehicleInformationTuple.getFirst() == null) {
+				throw new RuntimeException("Vehicle category for vehicle " + vehicleType + " is not valid. " +
+						"Please make sure that requirements for emission vehicles in " +
+						EmissionsConfigGroup.GROUP_NAME + " config group are met. Aborting...");
+			}
+			index = getVehicleIndex(vehicleInformationTuple);
+			vehicleTypeIndices.put(vehicleType, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the index of the given hbefa vehicle category and attributes, resolving all emission factors for it on the first call.
+	 */
+	public synchronized int getVehicleIndex(Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple) {
+		Integer index = vehicleIndices.get(vehicleInformationTuple);
+		if (index != null) {
+			return index;
+		}
+
+		double[] vehicleFactors = null;
+		double[] vehicleSpeeds = null;
+		if (vehicleInformationTuple.getFirst() != HbefaVehicleCategory.NON_HBEFA_VEHICLE) {
+			vehicleFactors = new double[roadTypes.length * NOF_SITUATIONS * pollutants.length];
+			vehicleSpeeds = new double[vehicleFactors.length];
+			HbefaWarmEmissionFactorKey efkey = createKey(vehicleInformationTuple);
+			int i = 0;
+			for (String roadType : roadTypes) {
+				efkey.setRoadCategory(roadType);
+				for (HbefaTrafficSituation situation : SITUATIONS) {
+					efkey.setTrafficSituation(situation);
+					for (Pollutant pollutant : pollutants) {
+						efkey.setComponent(pollutant);
+						HbefaWarmEmissionFactor ef = lookup(vehicleInformationTuple, new HbefaWarmEmissionFactorKey(efkey));
+						vehicleFactors[i] = ef == null ? Double.NaN : ef.getFactor();
+						vehicleSpeeds[i] = ef == null ? Double.NaN : ef.getSpeed();
+						i++;
+					}
+				}
+			}
+		}
+
+		index = vehicles.length;
+		VehicleEntry[] newVehicles = Arrays.copyOf(vehicles, index + 1);
+		newVehicles[index] = new VehicleEntry(vehicleInformationTuple, vehicleFactors, vehicleSpeeds);
+		vehicles = newVehicles;
+		vehicleIndices.put(vehicleInformationTuple, index);
+		return index;
+	}
+
+	/**
+	 * Adds the warm emissions of one vehicle on one link to <code>emissions</code>, which is indexed by {@link Pollutant#ordinal()}.
+	 *
+	 * @param vehicle  the index from {@link #getVehicleIndex}
+	 * @param roadType the index from {@link #getRoadTypeIndex}
+	 */
+	public void addWarmEmissions(int vehicle, int roadType, double travelTime_sec, double freeVelocity_ms, double linkLength_m,
+								 double[] emissions) {
+		VehicleEntry entry = vehicles[vehicle];
+		if (entry.factors == null) {
+			// non-hbefa vehicles are set to zero emissions, see WarmEmissionAnalysisModule
+			return;
+		}
+		double[] vehicleFactors = entry.factors;
+		double[] vehicleSpeeds = entry.speeds;
+
+		double averageSpeed_kmh = (linkLength_m / 1000) / (travelTime_sec / 3600);
+		double freeFlowSpeed_kmh = freeVelocity_ms * 3.6;
+
+		// hedge against odd average speeds:
+		if (averageSpeed_kmh <= 0.0) {
+			throw new RuntimeException("Average speed has been calculated to 0.0 or a negative value. Aborting...");
+		}
+		if ((averageSpeed_kmh - freeFlowSpeed_kmh) > 1.0) {
+			if (ecg.getHandleHighAverageSpeeds()) {
+				// the first check avoids contention on the counter once the warnings are suppressed
+				if (highSpeedWarnCnt.get() < 10) {
+					int warnCnt = highSpeedWarnCnt.incrementAndGet();
+					if (warnCnt <= 10) {
+						logger.warn("averageSpeed was capped from " + averageSpeed_kmh + " to" + freeFlowSpeed_kmh);
+						if (warnCnt == 10) {
+							logger.warn(Gbl.FUTURE_SUPPRESSED);
+						}
+					}
+				}
+				averageSpeed_kmh = freeFlowSpeed_kmh;
+			} else {
+				throw new RuntimeException("Average speed has been calculated to be greater than free flow speed; this might produce negative warm emissions. Aborting...");
+			}
+		}
+
+		double linkLength_km = linkLength_m / 1000;
+		if (ecg.getEmissionsComputationMethod() == AverageSpeed) {
+			HbefaTrafficSituation situation = getTrafficSituation(entry, roadType, averageSpeed_kmh);
+			int offset = (roadType * NOF_SITUATIONS + situation.ordinal()) * pollutants.length;
+			for (int p = 0; p < pollutants.length; p++) {
+				emissions[pollutants[p].ordinal()] += linkLength_km * getFactor(vehicleFactors, offset + p, entry, roadType, situation, p);
+			}
+		} else if (ecg.getEmissionsComputationMethod() == StopAndGoFraction) {
+			int freeFlowOffset = roadType < 0 ? -1 : (roadType * NOF_SITUATIONS + FREEFLOW.ordinal()) * pollutants.length;
+			int stopGoOffset = roadType < 0 ? -1 : (roadType * NOF_SITUATIONS + STOPANDGO.ordinal()) * pollutants.length;
+			for (int p = 0; p < pollutants.length; p++) {
+				// speed and factor are from the same lookup, so both are NaN if it failed
+				double stopGoSpeedFromTable_kmh = getFactor(vehicleSpeeds, stopGoOffset + p, entry, roadType, STOPANDGO, p);
+
+				double fractionStopGo;
+				if ((averageSpeed_kmh - freeFlowSpeed_kmh) >= -1.0) {
+					fractionStopGo = 0.0;
+				} else if ((averageSpeed_kmh - stopGoSpeedFromTable_kmh) <= 0.0) {
+					fractionStopGo = 1.0;
+				} else {
+					fractionStopGo = stopGoSpeedFromTable_kmh * (freeFlowSpeed_kmh - averageSpeed_kmh) / (averageSpeed_kmh * (freeFlowSpeed_kmh - stopGoSpeedFromTable_kmh));
+				}
+
+				double efStopGo_gpkm = fractionStopGo > 0 ? vehicleFactors[stopGoOffset + p] : 0.;
+				double efFreeFlow_gpkm = fractionStopGo < 1. ?
+						getFactor(vehicleFactors, freeFlowOffset + p, entry, roadType, FREEFLOW, p) : 0.;
+				double ef_gpkm = ((1 - fractionStopGo) * efFreeFlow_gpkm) + (fractionStopGo * efStopGo_gpkm);
+				emissions[pollutants[p].ordinal()] += linkLength_km * ef_gpkm;
+			}
+		} else {
+			throw new RuntimeException(Gbl.NOT_IMPLEMENTED);
+		}
+	}
+
+	private double getFactor(double[] values, int index, VehicleEntry entry, int roadType, HbefaTrafficSituation situation, int pollutant) {
+		double value = index < 0 ? Double.NaN : values[index];
+		if (Double.isNaN(value)) {
+			HbefaWarmEmissionFactorKey efkey = createKey(entry.vehicleInformationTuple);
+			efkey.setRoadCategory(roadType < 0 ? null : roadTypes[roadType]);
+			efkey.setTrafficSituation(situation);
+			efkey.setComponent(pollutants[pollutant]);
+			throw new RuntimeException("Was not able to lookup emissions factor. Maybe you wanted to look up detailed values and did not specify this in " +
+					"the config OR " +
+					"you should use another fallback setting when using detailed calculation OR values ar missing in your emissions table(s) either average or detailed OR... ? efkey: " + efkey);
+		}
+		return value;
+	}
+
+	private HbefaTrafficSituation getTrafficSituation(VehicleEntry entry, int roadType, double averageSpeed_kmh) {
+		HbefaVehicleCategory vehicleCategory = entry.vehicleInformationTuple.getFirst();
+		int offset = roadType < 0 ? -1 : (vehicleCategory.ordinal() * roadTypes.length + roadType) * NOF_SITUATIONS;
+		double freeFlow = offset < 0 ? Double.NaN : trafficSpeeds[offset + FREEFLOW.ordinal()];
+		if (Double.isNaN(freeFlow)) {
+			throw new RuntimeException("At least the FREEFLOW condition must be specified for all emission factor keys. " +
+					"It was not found for " + vehicleCategory + "; " + (roadType < 0 ? null : roadTypes[roadType]));
+		}
+
+		// same order as in WarmEmissionAnalysisModule; comparisons with NaN (situation not in the table) are false
+		HbefaTrafficSituation trafficSituation = FREEFLOW;
+		if (averageSpeed_kmh <= trafficSpeeds[offset + HEAVY.ordinal()]) {
+			trafficSituation = HEAVY;
+		}
+		if (averageSpeed_kmh <= trafficSpeeds[offset + SATURATED.ordinal()]) {
+			trafficSituation = SATURATED;
+		}
+		if (averageSpeed_kmh <= trafficSpeeds[offset + STOPANDGO.ordinal()] && averageSpeed_kmh != freeFlow) {
+			trafficSituation = STOPANDGO;
+		}
+		return trafficSituation;
+	}
+
+	private HbefaWarmEmissionFactorKey createKey(Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple) {
+		HbefaWarmEmissionFactorKey efkey = new HbefaWarmEmissionFactorKey();
+		efkey.setVehicleCategory(vehicleInformationTuple.getFirst());
+		if (this.detailedHbefaWarmTable != null) {
+			HbefaVehicleAttributes hbefaVehicleAttributes = new HbefaVehicleAttributes();
+			hbefaVehicleAttributes.setHbefaTechnology(vehicleInformationTuple.getSecond().getHbefaTechnology());
+			hbefaVehicleAttributes.setHbefaSizeClass(vehicleInformationTuple.getSecond().getHbefaSizeClass());
+			hbefaVehicleAttributes.setHbefaEmConcept(vehicleInformationTuple.getSecond().getHbefaEmConcept());
+			efkey.setVehicleAttributes(hbefaVehicleAttributes);
+		}
+		return efkey;
+	}
+
+	/**
+	 * The fallbacks of WarmEmissionAnalysisModule.getEf(), without logging.
+	 *
+	 * @return null if the lookup failed
+	 */
+	private HbefaWarmEmissionFactor lookup(Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple,
+										   HbefaWarmEmissionFactorKey efkey) {
+		switch (ecg.getDetailedVsAverageLookupBehavior()) {
+			case onlyTryDetailedElseAbort:
+				return lookupDetailed(vehicleInformationTuple, efkey, false);
+			case tryDetailedThenTechnologyAverageElseAbort:
+				return lookupDetailed(vehicleInformationTuple, efkey, true);
+			case tryDetailedThenTechnologyAverageThenAverageTable: {
+				HbefaWarmEmissionFactor ef = lookupDetailed(vehicleInformationTuple, efkey, true);
+				if (ef != null) {
+					return ef;
+				}
+				HbefaWarmEmissionFactorKey efkey3 = new HbefaWarmEmissionFactorKey(efkey);
+				efkey3.setVehicleAttributes(new HbefaVehicleAttributes());
+				return this.avgHbefaWarmTable == null ? null : this.avgHbefaWarmTable.get(efkey3);
+			}
+			case directlyTryAverageTable:
+				efkey.setVehicleAttributes(new HbefaVehicleAttributes());
+				return this.avgHbefaWarmTable == null ? null : this.avgHbefaWarmTable.get(efkey);
+			default:
+				throw new IllegalStateException("Unexpected value: " + ecg.getDetailedVsAverageLookupBehavior());
+		}
+	}
+
+	private HbefaWarmEmissionFactor lookupDetailed(Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple,
+												   HbefaWarmEmissionFactorKey efkey, boolean tryTechnologyAverage) {
+		if (this.detailedHbefaWarmTable == null) {
+			return null;
+		}
+		HbefaWarmEmissionFactor ef = this.detailedHbefaWarmTable.get(efkey);
+		if (ef != null) {
+			return ef;
+		}
+		// try to rewrite from HBEFA3 to HBEFA4
+		HbefaWarmEmissionFactorKey efkey2 = new HbefaWarmEmissionFactorKey(efkey);
+		HbefaVehicleAttributes attribs2 = EmissionUtils.tryRewriteHbefa3toHbefa4(vehicleInformationTuple);
+		efkey2.setVehicleAttributes(attribs2);
+		ef = this.detailedHbefaWarmTable.get(efkey2);
+		if (ef != null || !tryTechnologyAverage) {
+			return ef;
+		}
+		// try "<technology>; average; average"
+		attribs2.setHbefaSizeClass("average");
+		attribs2.setHbefaEmConcept("average");
+		return this.detailedHbefaWarmTable.get(efkey2);
+	}
+
+	private static final class VehicleEntry {
+		final Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple;
+		/** [(roadType * situations + situation) * pollutants + pollutant]; NaN if the lookup failed; null for non-hbefa vehicles */
+		final double[] factors;
+		/** same layout as {@link #factors} */
+		final double[] speeds;
+
+		VehicleEntry(Tuple<HbefaVehicleCategory, HbefaVehicleAttributes> vehicleInformationTuple, double[] factors, double[] speeds) {
+			this.vehicleInformationTuple = vehicleInformationTuple;
+			this.factors = factors;
+			this.speeds = speeds;
+		}
+	}
+
+}
@@ -0,0 +1,470 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.emissions;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.HasVehicleId;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.analysis.time.TimeBinMap;
+import org.matsim.contrib.emissions.analysis.EmissionsByPollutant;
+import org.matsim.contrib.emissions.analysis.EmissionsOnLinkEventHandler;
+import org.matsim.contrib.emissions.events.ColdEmissionEvent;
+import org.matsim.contrib.emissions.events.ColdEmissionEventHandler;
+import org.matsim.contrib.emissions.events.WarmEmissionEvent;
+import org.matsim.contrib.emissions.events.WarmEmissionEventHandler;
+import org.matsim.contrib.emissions.utils.EmissionsConfigGroup;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Computes the emissions of an events file offline, using several threads, and sums them up per link and time bin.
+ * <p></p>
+ * The events are partitioned by vehicle id, and each worker thread has its own {@link WarmEmissionHandler} and {@link ColdEmissionHandler}
+ * (sharing the lookup tables of one {@link EmissionModule}), so the per-vehicle state of the handlers sees all events of a vehicle in
+ * their original order.  The emissions are summed up by each worker into arrays indexed by time bin, link index and pollutant, which
+ * are merged at the end.  The totals are the same as when adding an {@link EmissionsOnLinkEventHandler} to the emission events of a
+ * sequential run, up to rounding differences from the order of the additions.
+ * <p></p>
+ * Warm emissions are computed with one {@link HbefaWarmEmissionFactorTable} shared by all workers, and no warm emission events are
+ * created, unless the events are written (see {@link #setEmissionEventsFile(String)}).
+ * <p></p>
+ * The memory needed per worker is about 8 bytes per link and time bin, plus the emissions of each link and time bin with traffic.
+ */
+public final class OfflineEmissionCalculator {
+	private static final Logger log = LogManager.getLogger(OfflineEmissionCalculator.class);
+
+	private static final int BATCH_SIZE = 1000;
+	private static final List<Event> END_OF_EVENTS = List.of();
+
+	private final EmissionModule emissionModule;
+	private final HbefaWarmEmissionFactorTable warmEmissionFactorTable;
+	private final int numberOfThreads;
+	private final double timeBinSize;
+	private final Pollutant[] pollutants;
+	private final int[] pollutantIndices = new int[Pollutant.values().length];
+
+	/** [bin][link index][pollutant index], null where there were no emissions */
+	private double[][][] emissions = new double[0][][];
+
+	private String emissionEventsFile = null;
+
+	public OfflineEmissionCalculator(Scenario scenario, int numberOfThreads, double timeBinSize) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException("numberOfThreads must be at least 1, but is " + numberOfThreads);
+		}
+		this.emissionModule = new EmissionModule(scenario, EventsUtils.createEventsManager());
+		this.warmEmissionFactorTable = emissionModule.createWarmEmissionFactorTable();
+		this.numberOfThreads = numberOfThreads;
+		this.timeBinSize = timeBinSize;
+
+		Set<Pollutant> pollutantSet = EnumSet.noneOf(Pollutant.class);
+		pollutantSet.addAll(emissionModule.getWarmPollutants());
+		pollutantSet.addAll(emissionModule.getColdPollutants());
+		this.pollutants = pollutantSet.toArray(new Pollutant[0]);
+		Arrays.fill(pollutantIndices, -1);
+		for (int i = 0; i < pollutants.length; i++) {
+			pollutantIndices[pollutants[i].ordinal()] = i;
+		}
+
+		// repairing the hbefa description modifies the vehicle types, so this must happen before they are used by several threads
+		EmissionsConfigGroup ecg = ConfigUtils.addOrGetModule(scenario.getConfig(), EmissionsConfigGroup.class);
+		for (VehicleType vehicleType : scenario.getVehicles().getVehicleTypes().values()) {
+			EmissionUtils.getHbefaVehicleDescription(vehicleType, ecg);
+		}
+	}
+
+	/**
+	 * Writes the events of the following calculations, together with the warm and cold emission events computed from them, to the
+	 * given file (<code>null</code> to not write them), like an {@link EventWriterXML} added to the events manager of the
+	 * {@link EmissionModule} does.  The events of different workers would not be ordered by time, so this needs a single thread.
+	 */
+	public void setEmissionEventsFile(String emissionEventsFile) {
+		if (emissionEventsFile != null && numberOfThreads > 1) {
+			throw new IllegalStateException("emission events can only be written with one thread, but there are " + numberOfThreads);
+		}
+		this.emissionEventsFile = emissionEventsFile;
+	}
+
+	/**
+	 * Computes the emissions of the events in the given file.  Results of previous calls are discarded.
+	 */
+	public void processEventsFile(String eventsFile) {
+		process(eventsManager -> new MatsimEventsReader(eventsManager).readFile(eventsFile));
+	}
+
+	/**
+	 * Computes the emissions of the given events.  Results of previous calls are discarded.
+	 */
+	public void processEvents(Iterable<? extends Event> events) {
+		process(eventsManager -> events.forEach(eventsManager::processEvent));
+	}
+
+	private void process(Consumer<EventsManager> eventSource) {
+		EventWriterXML emissionEventWriter = emissionEventsFile == null ? null : new EventWriterXML(emissionEventsFile);
+		Worker[] workers = new Worker[numberOfThreads];
+		Thread[] threads = new Thread[numberOfThreads];
+		for (int i = 0; i < numberOfThreads; i++) {
+			workers[i] = new Worker(emissionEventWriter);
+			threads[i] = new Thread(workers[i], "OfflineEmissionCalculator-" + i);
+			threads[i].start();
+		}
+
+		// when writing the events, the single worker gets all of them, not only the ones with a vehicle
+		Dispatcher dispatcher = new Dispatcher(workers, emissionEventWriter != null);
+		EventsManager reader = EventsUtils.createEventsManager();
+		reader.addHandler(dispatcher);
+		reader.initProcessing();
+		try {
+			eventSource.accept(reader);
+			reader.finishProcessing();
+		} finally {
+			dispatcher.finish();
+			for (Thread thread : threads) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				}
+			}
+			if (emissionEventWriter != null) {
+				emissionEventWriter.closeFile();
+			}
+		}
+
+		for (Worker worker : workers) {
+			if (worker.failure != null) {
+				throw new RuntimeException("emission calculation failed", worker.failure);
+			}
+		}
+
+		// merge in a fixed order, so that the results do not depend on the scheduling of the threads
+		double[][][] merged = new double[0][][];
+		for (Worker worker : workers) {
+			if (worker.emissions.length > merged.length) {
+				merged = Arrays.copyOf(merged, worker.emissions.length);
+			}
+			for (int bin = 0; bin < worker.emissions.length; bin++) {
+				double[][] byLink = worker.emissions[bin];
+				if (byLink == null) {
+					continue;
+				}
+				if (merged[bin] == null || merged[bin].length < byLink.length) {
+					merged[bin] = merged[bin] == null ? new double[byLink.length][] : Arrays.copyOf(merged[bin], byLink.length);
+				}
+				for (int link = 0; link < byLink.length; link++) {
+					if (byLink[link] == null) {
+						continue;
+					}
+					if (merged[bin][link] == null) {
+						merged[bin][link] = byLink[link];
+					} else {
+						for (int p = 0; p < pollutants.length; p++) {
+							merged[bin][link][p] += byLink[link][p];
+						}
+					}
+				}
+			}
+		}
+		this.emissions = merged;
+		log.info("computed emissions for " + merged.length + " time bins with " + numberOfThreads + " threads.");
+	}
+
+	public double getTimeBinSize() {
+		return timeBinSize;
+	}
+
+	/**
+	 * @return the warm and cold pollutants of the emission tables, i.e. the ones for which emissions are computed
+	 */
+	public List<Pollutant> getPollutants() {
+		return List.of(pollutants);
+	}
+
+	/**
+	 * @return the number of time bins, i.e. the index of the last time bin with emissions + 1
+	 */
+	public int getTimeBinCount() {
+		return emissions.length;
+	}
+
+	public double getEmissions(int timeBin, Id<Link> linkId, Pollutant pollutant) {
+		int p = pollutantIndices[pollutant.ordinal()];
+		if (p < 0 || timeBin >= emissions.length || emissions[timeBin] == null || linkId.index() >= emissions[timeBin].length) {
+			return 0;
+		}
+		double[] values = emissions[timeBin][linkId.index()];
+		return values == null ? 0 : values[p];
+	}
+
+	/**
+	 * @return the total emissions over all links and time bins, indexed by {@link Pollutant#ordinal()}
+	 */
+	public double[] getTotalEmissions() {
+		double[] totals = new double[Pollutant.values().length];
+		for (double[][] byLink : emissions) {
+			if (byLink != null) {
+				for (double[] values : byLink) {
+					if (values != null) {
+						for (int p = 0; p < pollutants.length; p++) {
+							totals[pollutants[p].ordinal()] += values[p];
+						}
+					}
+				}
+			}
+		}
+		return totals;
+	}
+
+	/**
+	 * @return the emissions by time bin and link id, in the format of {@link EmissionsOnLinkEventHandler#getTimeBins()}
+	 */
+	public TimeBinMap<Map<Id<Link>, EmissionsByPollutant>> getTimeBins() {
+		TimeBinMap<Map<Id<Link>, EmissionsByPollutant>> timeBins = new TimeBinMap<>(timeBinSize);
+		for (int bin = 0; bin < emissions.length; bin++) {
+			if (emissions[bin] == null) {
+				continue;
+			}
+			Map<Id<Link>, EmissionsByPollutant> byLink = new HashMap<>();
+			for (int link = 0; link < emissions[bin].length; link++) {
+				if (emissions[bin][link] != null) {
+					byLink.put(Id.get(link, Link.class), new EmissionsByPollutant(toMap(emissions[bin][link])));
+				}
+			}
+			timeBins.getTimeBin(bin * timeBinSize).setValue(byLink);
+		}
+		return timeBins;
+	}
+
+	/**
+	 * @return the total emissions by link id, in the format of {@link EmissionsOnLinkEventHandler#getLink2pollutants()}
+	 */
+	public Map<Id<Link>, Map<Pollutant, Double>> getLink2pollutants() {
+		Map<Id<Link>, Map<Pollutant, Double>> link2pollutants = new HashMap<>();
+		for (double[][] byLink : emissions) {
+			if (byLink == null) {
+				continue;
+			}
+			for (int link = 0; link < byLink.length; link++) {
+				if (byLink[link] != null) {
+					Map<Pollutant, Double> values = toMap(byLink[link]);
+					link2pollutants.merge(Id.get(link, Link.class), values, (a, b) -> {
+						b.forEach((pollutant, value) -> a.merge(pollutant, value, Double::sum));
+						return a;
+					});
+				}
+			}
+		}
+		return link2pollutants;
+	}
+
+	private Map<Pollutant, Double> toMap(double[] values) {
+		Map<Pollutant, Double> map = new HashMap<>();
+		for (int p = 0; p < pollutants.length; p++) {
+			map.put(pollutants[p], values[p]);
+		}
+		return map;
+	}
+
+	/**
+	 * Collects the events of each vehicle into batches for the worker responsible for this vehicle.
+	 */
+	private static final class Dispatcher implements BasicEventHandler {
+		private final Worker[] workers;
+		private final boolean allEvents;
+		private final List<List<Event>> batches = new ArrayList<>();
+
+		Dispatcher(Worker[] workers, boolean allEvents) {
+			this.workers = workers;
+			this.allEvents = allEvents;
+			for (int i = 0; i < workers.length; i++) {
+				batches.add(new ArrayList<>(BATCH_SIZE));
+			}
+		}
+
+		@Override
+		public void handleEvent(Event event) {
+			// only events with a vehicle are relevant for the emission handlers
+			Id<Vehicle> vehicleId = getVehicleId(event);
+			if (vehicleId != null || allEvents) {
+				int shard = vehicleId == null ? 0 : Math.floorMod(vehicleId.index(), workers.length);
+				List<Event> batch = batches.get(shard);
+				batch.add(event);
+				if (batch.size() == BATCH_SIZE) {
+					workers[shard].put(batch);
+					batches.set(shard, new ArrayList<>(BATCH_SIZE));
+				}
+			}
+		}
+
+		/**
+		 * @return the vehicle of the event, or <code>null</code> if it has none.  {@link VehicleLeavesTrafficEvent} is no
+		 * {@link HasVehicleId}, but the emission handlers need it to end the warm emissions of a trip and to start the parking time.
+		 */
+		private static Id<Vehicle> getVehicleId(Event event) {
+			if (event instanceof HasVehicleId) {
+				return ((HasVehicleId)event).getVehicleId();
+			}
+			if (event instanceof VehicleLeavesTrafficEvent) {
+				return ((VehicleLeavesTrafficEvent)event).getVehicleId();
+			}
+			return null;
+		}
+
+		void finish() {
+			for (int shard = 0; shard < workers.length; shard++) {
+				if (!batches.get(shard).isEmpty()) {
+					workers[shard].put(batches.get(shard));
+				}
+				workers[shard].put(END_OF_EVENTS);
+			}
+		}
+	}
+
+	private final class Worker implements Runnable, WarmEmissionEventHandler, ColdEmissionEventHandler {
+		private final BlockingQueue<List<Event>> queue = new ArrayBlockingQueue<>(16);
+		private final EventsManager eventsManager = EventsUtils.createEventsManager();
+		private volatile Throwable failure;
+		/** same layout as {@link OfflineEmissionCalculator#emissions} */
+		private double[][][] emissions = new double[0][][];
+		/** warm emissions of one link leave, indexed by {@link Pollutant#ordinal()} */
+		private final double[] warmEmissions = new double[Pollutant.values().length];
+
+		Worker(EventWriterXML emissionEventWriter) {
+			// the handlers add themselves to the events manager
+			WarmEmissionHandler warmEmissionHandler = emissionModule.createWarmEmissionHandler(eventsManager);
+			emissionModule.createColdEmissionHandler(eventsManager);
+			if (emissionEventWriter == null) {
+				warmEmissionHandler.setWarmEmissionSink(this::addWarmEmissions);
+			} else {
+				eventsManager.addHandler(emissionEventWriter);
+			}
+			eventsManager.addHandler(this);
+		}
+
+		void put(List<Event> batch) {
+			try {
+				queue.put(batch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void run() {
+			eventsManager.initProcessing();
+			try {
+				while (true) {
+					List<Event> batch = queue.take();
+					if (batch == END_OF_EVENTS) {
+						break;
+					}
+					if (failure == null) {
+						// after a failure, keep on taking batches, so that the dispatcher is not blocked
+						try {
+							for (Event event : batch) {
+								eventsManager.processEvent(event);
+							}
+						} catch (RuntimeException | Error e) {
+							failure = e;
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				failure = e;
+				Thread.currentThread().interrupt();
+			}
+			eventsManager.finishProcessing();
+		}
+
+		@Override
+		public void handleEvent(WarmEmissionEvent event) {
+			add(event.getTime(), event.getLinkId(), event.getWarmEmissions());
+		}
+
+		@Override
+		public void handleEvent(ColdEmissionEvent event) {
+			add(event.getTime(), event.getLinkId(), event.getColdEmissions());
+		}
+
+		private void addWarmEmissions(double leaveTime, Vehicle vehicle, Link link, double travelTime) {
+			Arrays.fill(warmEmissions, 0);
+			warmEmissionFactorTable.addWarmEmissions(warmEmissionFactorTable.getVehicleIndex(vehicle.getType()),
+					warmEmissionFactorTable.getRoadTypeIndex(EmissionUtils.getHbefaRoadType(link)), travelTime, link.getFreespeed(),
+					link.getLength(), warmEmissions);
+			double[] linkValues = getLinkValues(leaveTime, link.getId());
+			for (int p = 0; p < pollutants.length; p++) {
+				linkValues[p] += warmEmissions[pollutants[p].ordinal()];
+			}
+		}
+
+		private void add(double time, Id<Link> linkId, Map<Pollutant, Double> values) {
+			double[] linkValues = getLinkValues(time, linkId);
+			for (Map.Entry<Pollutant, Double> e : values.entrySet()) {
+				linkValues[pollutantIndices[e.getKey().ordinal()]] += e.getValue();
+			}
+		}
+
+		private double[] getLinkValues(double time, Id<Link> linkId) {
+			int bin = (int)(time / timeBinSize);
+			if (bin >= emissions.length) {
+				emissions = Arrays.copyOf(emissions, bin + 1);
+			}
+			double[][] byLink = emissions[bin];
+			int link = linkId.index();
+			if (byLink == null || link >= byLink.length) {
+				int length = Math.max(link + 1, Id.getNumberOfIds(Link.class));
+				byLink = byLink == null ? new double[length][] : Arrays.copyOf(byLink, length);
+				emissions[bin] = byLink;
+			}
+			double[] linkValues = byLink[link];
+			if (linkValues == null) {
+				linkValues = new double[pollutants.length];
+				byLink[link] = linkValues;
+			}
+			return linkValues;
+		}
+	}
+
+}
@@ -56,6 +56,7 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 
 	private final EventsManager eventsManager;
 	private final EmissionsConfigGroup ecg;
+	private volatile HbefaWarmEmissionFactorTable warmEmissionFactorTable;
 
 	private int detailedReadingInfoCnt = 0;
 	private int detailedTransformToHbefa4Cnt = 0;
@@ -208,6 +209,37 @@ public final class WarmEmissionAnalysisModule implements LinkEmissionsCalculator
 		return checkVehicleInfoAndCalculateWarmEmissions(vehicle.getType(), vehicle.getId(), link, travelTime);
 	}
 
+	/**
+	 * Allocation-free variant of {@link #checkVehicleInfoAndCalculateWarmEmissions(Vehicle, Link, double)} for processing many events,
+	 * e.g. offline: adds the warm emissions to <code>emissions</code>, which is indexed by {@link Pollutant#ordinal()}.  The counters of
+	 * this module are not updated.
+	 *
+	 * @see HbefaWarmEmissionFactorTable
+	 */
+	public void addWarmEmissions(VehicleType vehicleType, Link link, double travelTime, double[] emissions) {
+		HbefaWarmEmissionFactorTable table = getWarmEmissionFactorTable();
+		table.addWarmEmissions(table.getVehicleIndex(vehicleType), table.getRoadTypeIndex(EmissionUtils.getHbefaRoadType(link)), travelTime,
+				link.getFreespeed(), link.getLength(), emissions);
+	}
+
+	/**
+	 * @return the emission factors of this module, precompiled for fast lookups.  Created on the first call.
+	 */
+	public HbefaWarmEmissionFactorTable getWarmEmissionFactorTable() {
+		HbefaWarmEmissionFactorTable table = this.warmEmissionFactorTable;
+		if (table == null) {
+			synchronized (this) {
+				table = this.warmEmissionFactorTable;
+				if (table == null) {
+					table = new HbefaWarmEmissionFactorTable(avgHbefaWarmTable, detailedHbefaWarmTable, hbefaRoadTrafficSpeeds, warmPollutants,
+							ecg);
+					this.warmEmissionFactorTable = table;
+				}
+			}
+		}
+		return table;
+	}
+
 	private static int cnt = 10;
 
 	/*package-private*/ Map<Pollutant, Double> checkVehicleInfoAndCalculateWarmEmissions(VehicleType vehicleType, Id<Vehicle> vehicleId,
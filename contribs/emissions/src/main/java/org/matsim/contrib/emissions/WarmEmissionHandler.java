@@ -70,6 +70,16 @@ class WarmEmissionHandler implements LinkEnterEventHandler, LinkLeaveEventHandle
 	private final Map<Id<Vehicle>, Tuple<Id<Link>, Double>> linkEnterMap = new HashMap<>();
 	private final Map<Id<Vehicle>, Tuple<Id<Link>, Double>> vehicleEntersTrafficMap = new HashMap<>();
 
+	private WarmEmissionSink warmEmissionSink = null;
+
+	/**
+	 * Receives the warm emission calculations of a handler instead of its analysis module, e.g. to compute and sum them up without
+	 * creating emission events.
+	 */
+	/*package-private*/ interface WarmEmissionSink {
+		void addWarmEmissions(double leaveTime, Vehicle vehicle, Link link, double travelTime);
+	}
+
 	/*package-private*/ WarmEmissionHandler( Scenario scenario, Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> avgHbefaWarmTable,
 											 Map<HbefaWarmEmissionFactorKey, HbefaWarmEmissionFactor> detailedHbefaWarmTable,
 											 Map<HbefaRoadVehicleCategoryKey, Map<HbefaTrafficSituation, Double>> hbefaRoadTrafficSpeeds, Set<Pollutant> warmPollutants,
@@ -182,7 +192,15 @@ class WarmEmissionHandler implements LinkEnterEventHandler, LinkLeaveEventHandle
 
 	}
 
+	/*package-private*/ void setWarmEmissionSink(WarmEmissionSink warmEmissionSink) {
+		this.warmEmissionSink = warmEmissionSink;
+	}
+
 	private void emissionsCalculation(Id<Vehicle> vehicleId, Vehicle vehicle, Link link, double leaveTime, double travelTime) {
+		if (warmEmissionSink != null) {
+			warmEmissionSink.addWarmEmissions(leaveTime, vehicle, link, travelTime);
+			return;
+		}
 		VehicleType vehicleType = vehicle.getType();
 		Map<Pollutant, Double> warmEmissions = warmEmissionAnalysisModule.checkVehicleInfoAndCalculateWarmEmissions(vehicleType, vehicleId, link, travelTime);
 		warmEmissionAnalysisModule.throwWarmEmissionEvent(leaveTime, link.getId(), vehicleId, warmEmissions);
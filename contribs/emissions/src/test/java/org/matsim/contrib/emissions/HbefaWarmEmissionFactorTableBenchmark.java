@@ -0,0 +1,98 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.emissions;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.emissions.utils.EmissionsConfigGroup.DetailedVsAverageLookupBehavior;
+import org.matsim.contrib.emissions.utils.EmissionsConfigGroup.EmissionsComputationMethod;
+import org.matsim.vehicles.EngineInformation;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the time needed for computing warm emissions with {@link WarmEmissionAnalysisModule#checkVehicleInfoAndCalculateWarmEmissions}
+ * (hash map lookups, a result map per event) and with {@link WarmEmissionAnalysisModule#addWarmEmissions} (precompiled
+ * {@link HbefaWarmEmissionFactorTable}), using the factors of the emissions sample scenario and random travel times between free flow
+ * and stop and go.
+ * <p></p>
+ * Usage: <code>HbefaWarmEmissionFactorTableBenchmark [events]</code>, default is 5 million events per computation method.
+ */
+public class HbefaWarmEmissionFactorTableBenchmark {
+	public static void main(String[] args) {
+		int events = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+		for (EmissionsComputationMethod method : EmissionsComputationMethod.values()) {
+			run(method, events);
+		}
+	}
+
+	private static void run(EmissionsComputationMethod method, int events) {
+		WarmEmissionAnalysisModule module = TestHbefaWarmEmissionFactorTable.setUpScenario(
+				DetailedVsAverageLookupBehavior.tryDetailedThenTechnologyAverageThenAverageTable, method).getWarmEmissionAnalysisModule();
+
+		Link link = TestWarmEmissionAnalysisModule.createMockLink("link", 200, 13.89);
+		EmissionUtils.setHbefaRoadType(link, "URB/Local/50");
+		VehicleType vehicleType = VehicleUtils.createVehicleType(Id.create("dieselCar", VehicleType.class));
+		EngineInformation engineInformation = vehicleType.getEngineInformation();
+		VehicleUtils.setHbefaVehicleCategory(engineInformation, "PASSENGER_CAR");
+		VehicleUtils.setHbefaTechnology(engineInformation, "diesel");
+		VehicleUtils.setHbefaEmissionsConcept(engineInformation, "PC-D-Euro-3");
+		VehicleUtils.setHbefaSizeClass(engineInformation, ">1,4L");
+		Vehicle vehicle = VehicleUtils.createVehicle(Id.createVehicleId("dieselCar"), vehicleType);
+
+		double[] travelTimes = new double[1024];
+		Random random = new Random(4711);
+		for (int i = 0; i < travelTimes.length; i++) {
+			travelTimes[i] = 200 / 13.89 * (1 + 5 * random.nextDouble());
+		}
+
+		// warm up both variants
+		double[] emissions = new double[Pollutant.values().length];
+		for (int i = 0; i < 100_000; i++) {
+			module.checkVehicleInfoAndCalculateWarmEmissions(vehicle, link, travelTimes[i & 1023]);
+			module.addWarmEmissions(vehicleType, link, travelTimes[i & 1023], emissions);
+		}
+
+		double mapCo2 = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < events; i++) {
+			Map<Pollutant, Double> warmEmissions = module.checkVehicleInfoAndCalculateWarmEmissions(vehicle, link, travelTimes[i & 1023]);
+			mapCo2 += warmEmissions.get(Pollutant.CO2_TOTAL);
+		}
+		long mapNanos = System.nanoTime() - start;
+
+		emissions = new double[Pollutant.values().length];
+		start = System.nanoTime();
+		for (int i = 0; i < events; i++) {
+			module.addWarmEmissions(vehicleType, link, travelTimes[i & 1023], emissions);
+		}
+		long tableNanos = System.nanoTime() - start;
+
+		System.out.println(method + ", " + events + " events:");
+		System.out.printf("\tmaps:             %8.1f ns / event (CO2: %.1f kg)%n", (double)mapNanos / events, mapCo2 / 1000);
+		System.out.printf("\tprecompiled:      %8.1f ns / event (CO2: %.1f kg)%n", (double)tableNanos / events,
+				emissions[Pollutant.CO2_TOTAL.ordinal()] / 1000);
+	}
+}
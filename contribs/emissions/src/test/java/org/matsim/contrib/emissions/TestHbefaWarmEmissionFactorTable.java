@@ -0,0 +1,144 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.emissions;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.emissions.utils.EmissionsConfigGroup;
+import org.matsim.contrib.emissions.utils.EmissionsConfigGroup.DetailedVsAverageLookupBehavior;
+import org.matsim.contrib.emissions.utils.EmissionsConfigGroup.EmissionsComputationMethod;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.EngineInformation;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleUtils;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the results of {@link HbefaWarmEmissionFactorTable} with those of
+ * {@link WarmEmissionAnalysisModule#checkVehicleInfoAndCalculateWarmEmissions}, for all fallback behaviours and computation methods.
+ */
+public class TestHbefaWarmEmissionFactorTable {
+
+	@Test
+	public void testSameResultsAsWarmEmissionAnalysisModule() {
+		Link link = TestWarmEmissionAnalysisModule.createMockLink("link1", 200, 9.72);
+		EmissionUtils.setHbefaRoadType(link, "URB/Local/50");
+		Link unknownRoadTypeLink = TestWarmEmissionAnalysisModule.createMockLink("link2", 200, 9.72);
+		EmissionUtils.setHbefaRoadType(unknownRoadTypeLink, "URB/NotInTable/50");
+
+		List<VehicleType> vehicleTypes = List.of(
+				createVehicleType("full", "diesel", "PC-D-Euro-3"),
+				createVehicleType("technologyAverage", "diesel", "PC-D-Euro-3_NotInTable"),
+				createVehicleType("averageTable", "diesel_NotInTable", "PC-D-Euro-3"));
+
+		int compared = 0;
+		int failed = 0;
+		for (DetailedVsAverageLookupBehavior lookupBehavior : DetailedVsAverageLookupBehavior.values()) {
+			for (EmissionsComputationMethod method : EmissionsComputationMethod.values()) {
+				WarmEmissionAnalysisModule module = setUpScenario(lookupBehavior, method).getWarmEmissionAnalysisModule();
+				for (VehicleType vehicleType : vehicleTypes) {
+					for (Link l : List.of(link, unknownRoadTypeLink)) {
+						// free flow, a bit slower, stop and go
+						for (double travelTime : new double[] { 21, 30, 200 }) {
+							Map<Pollutant, Double> expected;
+							try {
+								expected = module.checkVehicleInfoAndCalculateWarmEmissions(vehicleType, Id.createVehicleId("v"), l, travelTime);
+							} catch (RuntimeException e) {
+								expected = null;
+							}
+
+							double[] emissions = new double[Pollutant.values().length];
+							try {
+								module.addWarmEmissions(vehicleType, l, travelTime, emissions);
+								Assert.assertNotNull(lookupBehavior + ", " + method + ": table found factors, but module did not", expected);
+							} catch (RuntimeException e) {
+								Assert.assertNull(lookupBehavior + ", " + method + ": module found factors, but table did not", expected);
+								failed++;
+								continue;
+							}
+							for (Pollutant pollutant : Pollutant.values()) {
+								Assert.assertEquals(lookupBehavior + ", " + method + ", " + pollutant,
+										expected.getOrDefault(pollutant, 0.), emissions[pollutant.ordinal()], MatsimTestUtils.EPSILON);
+							}
+							compared++;
+						}
+					}
+				}
+			}
+		}
+		Assert.assertTrue(compared > 0);
+		Assert.assertTrue(failed > 0);
+	}
+
+	@Test
+	public void testAccumulates() {
+		WarmEmissionAnalysisModule module = setUpScenario(DetailedVsAverageLookupBehavior.tryDetailedThenTechnologyAverageThenAverageTable,
+				EmissionsComputationMethod.AverageSpeed).getWarmEmissionAnalysisModule();
+		Link link = TestWarmEmissionAnalysisModule.createMockLink("link1", 200, 9.72);
+		EmissionUtils.setHbefaRoadType(link, "URB/Local/50");
+		VehicleType vehicleType = createVehicleType("full", "diesel", "PC-D-Euro-3");
+
+		double[] emissions = new double[Pollutant.values().length];
+		module.addWarmEmissions(vehicleType, link, 21, emissions);
+		module.addWarmEmissions(vehicleType, link, 21, emissions);
+		Assert.assertEquals(2 * 30.34984742, emissions[Pollutant.CO2_TOTAL.ordinal()], MatsimTestUtils.EPSILON);
+
+		HbefaWarmEmissionFactorTable table = module.getWarmEmissionFactorTable();
+		Assert.assertSame(table, module.getWarmEmissionFactorTable());
+		Assert.assertEquals(table.getVehicleIndex(vehicleType), table.getVehicleIndex(vehicleType));
+		Assert.assertEquals(-1, table.getRoadTypeIndex("URB/NotInTable/50"));
+	}
+
+	private static VehicleType createVehicleType(String id, String technology, String emissionsConcept) {
+		VehicleType vehicleType = VehicleUtils.createVehicleType(Id.create(id, VehicleType.class));
+		EngineInformation engineInformation = vehicleType.getEngineInformation();
+		VehicleUtils.setHbefaVehicleCategory(engineInformation, "PASSENGER_CAR");
+		VehicleUtils.setHbefaTechnology(engineInformation, technology);
+		VehicleUtils.setHbefaEmissionsConcept(engineInformation, emissionsConcept);
+		VehicleUtils.setHbefaSizeClass(engineInformation, ">1,4L");
+		return vehicleType;
+	}
+
+	static EmissionModule setUpScenario(DetailedVsAverageLookupBehavior lookupBehavior, EmissionsComputationMethod method) {
+		Config config = ConfigUtils.loadConfig(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("emissions-sampleScenario"), "config_empty.xml").toString());
+		EmissionsConfigGroup emissionsConfig = ConfigUtils.addOrGetModule(config, EmissionsConfigGroup.class);
+		emissionsConfig.setDetailedVsAverageLookupBehavior(lookupBehavior);
+		emissionsConfig.setEmissionsComputationMethod(method);
+		emissionsConfig.setAverageColdEmissionFactorsFile("sample_41_EFA_ColdStart_vehcat_2020average.csv");
+		emissionsConfig.setDetailedColdEmissionFactorsFile("sample_41_EFA_ColdStart_SubSegm_2020detailed.csv");
+		emissionsConfig.setAverageWarmEmissionFactorsFile("sample_41_EFA_HOT_vehcat_2020average.csv");
+		emissionsConfig.setDetailedWarmEmissionFactorsFile("sample_41_EFA_HOT_SubSegm_2020detailed.csv");
+
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		return new EmissionModule(scenario, new HandlerToTestEmissionAnalysisModules());
+	}
+
+}
@@ -0,0 +1,158 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.emissions;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.emissions.analysis.EmissionsOnLinkEventHandler;
+import org.matsim.contrib.emissions.events.EmissionEventsReader;
+import org.matsim.contrib.emissions.utils.EmissionsConfigGroup;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Compares the parallel {@link OfflineEmissionCalculator} with the sequential emission calculation.
+ */
+public class TestOfflineEmissionCalculator {
+
+	private static final double TIME_BIN_SIZE = 3600;
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSameResultsAsSequentialCalculation() {
+		URL scenarioUrl = ExamplesUtils.getTestScenarioURL("emissions-sampleScenario/testv2_Vehv2");
+
+		// sequential reference
+		Scenario scenario = loadScenario(scenarioUrl);
+		String eventsFile = IOUtils.extendUrl(scenario.getConfig().getContext(), "../output_events.xml.gz").toString();
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		EmissionModule emissionModule = new EmissionModule(scenario, eventsManager);
+		EmissionsOnLinkEventHandler expected = new EmissionsOnLinkEventHandler(TIME_BIN_SIZE);
+		emissionModule.getEmissionEventsManager().addHandler(expected);
+		eventsManager.initProcessing();
+		new MatsimEventsReader(eventsManager).readFile(eventsFile);
+		eventsManager.finishProcessing();
+
+		// one thread as in AirPollutionByVehicleCategory's default, and several threads with vehicles split across them
+		for (int threads : new int[]{1, 4}) {
+			OfflineEmissionCalculator calculator = new OfflineEmissionCalculator(loadScenario(scenarioUrl), threads, TIME_BIN_SIZE);
+			calculator.processEventsFile(eventsFile);
+			assertSameEmissions(expected, calculator);
+		}
+	}
+
+	private static void assertSameEmissions(EmissionsOnLinkEventHandler expected, OfflineEmissionCalculator calculator) {
+		Map<Id<Link>, Map<Pollutant, Double>> expectedByLink = expected.getLink2pollutants();
+		Map<Id<Link>, Map<Pollutant, Double>> actualByLink = calculator.getLink2pollutants();
+		Assert.assertFalse(expectedByLink.isEmpty());
+		Assert.assertEquals(expectedByLink.keySet(), actualByLink.keySet());
+
+		double[] totals = new double[Pollutant.values().length];
+		for (Map.Entry<Id<Link>, Map<Pollutant, Double>> e : expectedByLink.entrySet()) {
+			Map<Pollutant, Double> actual = actualByLink.get(e.getKey());
+			for (Map.Entry<Pollutant, Double> pollutant : e.getValue().entrySet()) {
+				// the order of the additions differs, so the results may differ in the last digits
+				double value = pollutant.getValue();
+				Assert.assertEquals("link " + e.getKey() + ", " + pollutant.getKey(), value, actual.get(pollutant.getKey()), 1e-9 * Math.max(1, Math.abs(value)));
+				totals[pollutant.getKey().ordinal()] += value;
+			}
+		}
+		double[] actualTotals = calculator.getTotalEmissions();
+		for (Pollutant pollutant : Pollutant.values()) {
+			double value = totals[pollutant.ordinal()];
+			Assert.assertEquals(pollutant.name(), value, actualTotals[pollutant.ordinal()], 1e-9 * Math.max(1, Math.abs(value)));
+		}
+
+		// per time bin
+		expected.getTimeBins().getTimeBins().forEach(bin -> bin.getValue().forEach((linkId, emissions) ->
+				emissions.getEmissions().forEach((pollutant, value) -> Assert.assertEquals(value,
+						calculator.getEmissions((int)(bin.getStartTime() / TIME_BIN_SIZE), linkId, pollutant), 1e-9 * Math.max(1, Math.abs(value))))));
+	}
+
+	@Test
+	public void testWriteEmissionEvents() {
+		URL scenarioUrl = ExamplesUtils.getTestScenarioURL("emissions-sampleScenario/testv2_Vehv2");
+		Scenario scenario = loadScenario(scenarioUrl);
+		String eventsFile = IOUtils.extendUrl(scenario.getConfig().getContext(), "../output_events.xml.gz").toString();
+		String emissionEventsFile = utils.getOutputDirectory() + "emission_events.xml.gz";
+
+		// with emission events, the warm emissions are computed by the analysis module and not by the precompiled table
+		OfflineEmissionCalculator calculator = new OfflineEmissionCalculator(scenario, 1, TIME_BIN_SIZE);
+		calculator.setEmissionEventsFile(emissionEventsFile);
+		calculator.processEventsFile(eventsFile);
+
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		EmissionsOnLinkEventHandler written = new EmissionsOnLinkEventHandler(TIME_BIN_SIZE);
+		eventsManager.addHandler(written);
+		// the events the emissions were computed from are written as well
+		int[] linkLeaveEvents = {0};
+		eventsManager.addHandler(new LinkLeaveEventHandler() {
+			@Override
+			public void handleEvent(LinkLeaveEvent event) {
+				linkLeaveEvents[0]++;
+			}
+		});
+		eventsManager.initProcessing();
+		new EmissionEventsReader(eventsManager).readFile(emissionEventsFile);
+		eventsManager.finishProcessing();
+
+		Map<Id<Link>, Map<Pollutant, Double>> writtenByLink = written.getLink2pollutants();
+		Map<Id<Link>, Map<Pollutant, Double>> actualByLink = calculator.getLink2pollutants();
+		Assert.assertFalse(writtenByLink.isEmpty());
+		Assert.assertTrue(linkLeaveEvents[0] > 0);
+		Assert.assertEquals(writtenByLink.keySet(), actualByLink.keySet());
+		writtenByLink.forEach((linkId, emissions) -> emissions.forEach((pollutant, value) -> Assert.assertEquals(
+				"link " + linkId + ", " + pollutant, value, actualByLink.get(linkId).get(pollutant), 1e-9 * Math.max(1, Math.abs(value)))));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testEmissionEventsNeedOneThread() {
+		URL scenarioUrl = ExamplesUtils.getTestScenarioURL("emissions-sampleScenario/testv2_Vehv2");
+		new OfflineEmissionCalculator(loadScenario(scenarioUrl), 2, TIME_BIN_SIZE).setEmissionEventsFile(
+				utils.getOutputDirectory() + "emission_events.xml.gz");
+	}
+
+	private static Scenario loadScenario(URL scenarioUrl) {
+		Config config = ConfigUtils.loadConfig(IOUtils.extendUrl(scenarioUrl, "config_average.xml"), new EmissionsConfigGroup());
+		EmissionsConfigGroup ecg = ConfigUtils.addOrGetModule(config, EmissionsConfigGroup.class);
+		ecg.setHbefaVehicleDescriptionSource(EmissionsConfigGroup.HbefaVehicleDescriptionSource.asEngineInformationAttributes);
+		return ScenarioUtils.loadScenario(config);
+	}
+
+}
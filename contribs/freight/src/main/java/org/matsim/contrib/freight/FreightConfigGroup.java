@@ -22,6 +22,7 @@ import org.matsim.core.config.ConfigGroup;
 import org.matsim.core.config.ReflectiveConfigGroup;
 
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import java.net.URL;
 import java.util.Map;
 
@@ -55,6 +56,18 @@ public class FreightConfigGroup extends ReflectiveConfigGroup {
     private UseDistanceConstraintForTourPlanning useDistanceConstraintForTourPlanning = UseDistanceConstraintForTourPlanning.noDistanceConstraint;
     private static final String USE_DISTANCE_CONSTRAINT_DESC = "Use distance constraint within the tour planning phase. This does NOT ensure that the tours in MATSim will respect this limitation";
 
+    @PositiveOrZero
+    private int numberOfThreadsForTourPlanning = 0;
+    static final String NUMBER_OF_THREADS_FOR_TOUR_PLANNING = "numberOfThreadsForTourPlanning";
+    private static final String NUMBER_OF_THREADS_FOR_TOUR_PLANNING_DESC = "Number of carriers whose tours are planned in parallel. " +
+            "0 means the number of available processors. Default value is 0.";
+
+    private boolean precomputeTransportCosts = false;
+    static final String PRECOMPUTE_TRANSPORT_COSTS = "precomputeTransportCosts";
+    private static final String PRECOMPUTE_TRANSPORT_COSTS_DESC = "If true, the transport costs between all locations of all carriers are " +
+            "computed once before the tour planning and shared by all carriers, instead of computing them on demand. " +
+            "This needs memory quadratic in the number of locations. Default value is false.";
+
     public FreightConfigGroup() {
         super(GROUPNAME);
     }
@@ -174,6 +187,38 @@ public class FreightConfigGroup extends ReflectiveConfigGroup {
 		this.useDistanceConstraintForTourPlanning = useDistanceConstraintForTourPlanning;
 	}
 
+	/**
+	 * @return numberOfThreadsForTourPlanning --{@value #NUMBER_OF_THREADS_FOR_TOUR_PLANNING_DESC}
+	 */
+	@StringGetter(NUMBER_OF_THREADS_FOR_TOUR_PLANNING)
+	public int getNumberOfThreadsForTourPlanning() {
+		return numberOfThreadsForTourPlanning;
+	}
+
+	/**
+	 * @param numberOfThreadsForTourPlanning --{@value #NUMBER_OF_THREADS_FOR_TOUR_PLANNING_DESC}
+	 */
+	@StringSetter(NUMBER_OF_THREADS_FOR_TOUR_PLANNING)
+	public void setNumberOfThreadsForTourPlanning(int numberOfThreadsForTourPlanning) {
+		this.numberOfThreadsForTourPlanning = numberOfThreadsForTourPlanning;
+	}
+
+	/**
+	 * @return precomputeTransportCosts --{@value #PRECOMPUTE_TRANSPORT_COSTS_DESC}
+	 */
+	@StringGetter(PRECOMPUTE_TRANSPORT_COSTS)
+	public boolean isPrecomputeTransportCosts() {
+		return precomputeTransportCosts;
+	}
+
+	/**
+	 * @param precomputeTransportCosts --{@value #PRECOMPUTE_TRANSPORT_COSTS_DESC}
+	 */
+	@StringSetter(PRECOMPUTE_TRANSPORT_COSTS)
+	public void setPrecomputeTransportCosts(boolean precomputeTransportCosts) {
+		this.precomputeTransportCosts = precomputeTransportCosts;
+	}
+
 	//---
 	//---
 	@Override
@@ -184,6 +229,8 @@ public class FreightConfigGroup extends ReflectiveConfigGroup {
         map.put(VEHICLE_ROUTING_ALGORITHM, VEHICLE_ROUTING_ALGORITHM_DESC);
         map.put(TRAVEL_TIME_SLICE_WIDTH, TRAVEL_TIME_SLICE_WIDTH_DESC);
         map.put(USE_DISTANCE_CONSTRAINT, USE_DISTANCE_CONSTRAINT_DESC);
+        map.put(NUMBER_OF_THREADS_FOR_TOUR_PLANNING, NUMBER_OF_THREADS_FOR_TOUR_PLANNING_DESC);
+        map.put(PRECOMPUTE_TRANSPORT_COSTS, PRECOMPUTE_TRANSPORT_COSTS_DESC);
         return map;
     }
 
@@ -138,5 +138,18 @@ public class CarrierUtils{
 		carrier.getAttributes().putAttribute( JSPRIT_ITERATIONS , jspritIterations ) ;
 	}
 
+	private static final String JSPRIT_COMPUTATION_TIME="jspritComputationTime" ;
+	/**
+	 * @return the seconds the tour planning of the carrier took, or NaN if it has not been recorded
+	 */
+	public static double getJspritComputationTime( Carrier carrier ) {
+		Double result = (Double) carrier.getAttributes().getAttribute( JSPRIT_COMPUTATION_TIME );
+		return result == null ? Double.NaN : result ;
+	}
+
+	public static void setJspritComputationTime( Carrier carrier, double seconds ) {
+		carrier.getAttributes().putAttribute( JSPRIT_COMPUTATION_TIME , seconds ) ;
+	}
+
 
 }
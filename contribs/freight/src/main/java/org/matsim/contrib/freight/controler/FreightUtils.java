@@ -47,7 +47,9 @@ import org.matsim.vehicles.VehicleType;
 import javax.management.InvalidAttributeValueException;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -71,10 +73,16 @@ public class FreightUtils {
 
 	/**
 	 * Runs jsprit and so solves the VehicleRoutingProblem (VRP) for all {@link Carriers}, doing the following steps:
-	 * 	- creating NetbasedCosts based on the network
-	 * 	- building and solving the VRP for all carriers using jsprit
+	 * 	- creating NetbasedCosts based on the network (precomputed for all locations of all carriers, if set in the {@link FreightConfigGroup})
+	 * 	- building and solving the VRP for all carriers using jsprit, with {@link FreightConfigGroup#getNumberOfThreadsForTourPlanning()} carriers
+	 * 	  in parallel, starting with the largest ones
 	 * 	- take the (best) solution, route and add it as {@link CarrierPlan} to the {@link Carrier}.
 	 * <p>
+	 * Each carrier gets its own random number generator, seeded with the global random seed and the carrier id, so that its solution
+	 * does not depend on the other carriers (as far as jsprit supports this, see
+	 * {@link MatsimJspritFactory#loadOrCreateVehicleRoutingAlgorithm(Scenario, FreightConfigGroup, NetworkBasedTransportCosts, VehicleRoutingProblem, Random)}).
+	 * The computation time of each carrier is stored with {@link CarrierUtils#setJspritComputationTime(Carrier, double)}, the objective
+	 * is the score of the new plan.
 	 *
 	 * @param scenario
 	 * @throws ExecutionException, InterruptedException
@@ -82,11 +90,16 @@ public class FreightUtils {
 	public static void runJsprit(Scenario scenario) throws ExecutionException, InterruptedException{
 		FreightConfigGroup freightConfigGroup = ConfigUtils.addOrGetModule( scenario.getConfig(), FreightConfigGroup.class );
 
-		final NetworkBasedTransportCosts netBasedCosts = NetworkBasedTransportCosts.Builder.newInstance(
-				scenario.getNetwork(), FreightUtils.getCarrierVehicleTypes(scenario).getVehicleTypes().values() ).build() ;
-
 		Carriers carriers = FreightUtils.getCarriers(scenario);
 
+		NetworkBasedTransportCosts.Builder netBuilder = NetworkBasedTransportCosts.Builder.newInstance(
+				scenario.getNetwork(), FreightUtils.getCarrierVehicleTypes(scenario).getVehicleTypes().values() );
+		if (freightConfigGroup.isPrecomputeTransportCosts()) {
+			// the time slice width is not set, so there is only one time slice
+			netBuilder.setPrecomputedLocations(getLocationIds(carriers), 0., getNumberOfThreadsForTourPlanning(freightConfigGroup));
+		}
+		final NetworkBasedTransportCosts netBasedCosts = netBuilder.build() ;
+
 		HashMap<Id<Carrier>, Integer> carrierActivityCounterMap = new HashMap<>();
 
 		// Fill carrierActivityCounterMap -> basis for sorting the carriers by number of activities before solving in parallel
@@ -99,46 +112,90 @@ public class FreightUtils {
 										   .sorted(Collections.reverseOrder(Map.Entry.comparingByValue()))
 										   .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e2, LinkedHashMap::new));
 
-		ArrayList<Id<Carrier>> tempList = new ArrayList<>(sortedMap.keySet());
-		ForkJoinPool forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
-		forkJoinPool.submit(() -> tempList.parallelStream().forEach(carrierId -> {
+		// a fixed thread pool takes the carriers in the order of submission, i.e. the largest ones first
+		ExecutorService executor = Executors.newFixedThreadPool(getNumberOfThreadsForTourPlanning(freightConfigGroup));
+		List<Future<?>> futures = new ArrayList<>();
+		for (Id<Carrier> carrierId : sortedMap.keySet()) {
 			Carrier carrier = carriers.getCarriers().get(carrierId);
-
-			double start = System.currentTimeMillis();
-			int serviceCount = carrier.getServices().size();
-			log.info("Start tour planning for " + carrier.getId() + " which has " + serviceCount + " services");
-
-			VehicleRoutingProblem problem = MatsimJspritFactory.createRoutingProblemBuilder(carrier, scenario.getNetwork()).setRoutingCost(netBasedCosts).build();
-			VehicleRoutingAlgorithm algorithm = MatsimJspritFactory.loadOrCreateVehicleRoutingAlgorithm(scenario, freightConfigGroup, netBasedCosts, problem);
-
-			algorithm.getAlgorithmListeners().addListener(new StopWatch(), VehicleRoutingAlgorithmListeners.Priority.HIGH);
-			int jspritIterations = CarrierUtils.getJspritIterations(carrier);
-			try {
-				if (jspritIterations > 0) {
-					algorithm.setMaxIterations(jspritIterations);
-				} else {
-					throw new InvalidAttributeValueException(
-							"Carrier has invalid number of jsprit iterations. They must be positive! Carrier id: "
-									+ carrier.getId().toString());}
-			} catch (Exception e) {
-				throw new RuntimeException(e);
-//				e.printStackTrace();
+			futures.add(executor.submit(() -> runJspritForCarrier(scenario, freightConfigGroup, netBasedCosts, carrier)));
+		}
+		try {
+			for (Future<?> future : futures) {
+				future.get();
 			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		for (Id<Carrier> carrierId : sortedMap.keySet()) {
+			Carrier carrier = carriers.getCarriers().get(carrierId);
+			log.info("carrier " + carrierId + ": objective " + (-carrier.getSelectedPlan().getScore()) + ", tour planning plus routing took "
+					+ CarrierUtils.getJspritComputationTime(carrier) + " seconds.");
+		}
+	}
+
+	private static void runJspritForCarrier(Scenario scenario, FreightConfigGroup freightConfigGroup, NetworkBasedTransportCosts netBasedCosts, Carrier carrier) {
+		double start = System.currentTimeMillis();
+		int serviceCount = carrier.getServices().size();
+		log.info("Start tour planning for " + carrier.getId() + " which has " + serviceCount + " services");
+
+		VehicleRoutingProblem problem = MatsimJspritFactory.createRoutingProblemBuilder(carrier, scenario.getNetwork()).setRoutingCost(netBasedCosts).build();
+		Random random = new Random(scenario.getConfig().global().getRandomSeed() + carrier.getId().toString().hashCode());
+		VehicleRoutingAlgorithm algorithm = MatsimJspritFactory.loadOrCreateVehicleRoutingAlgorithm(scenario, freightConfigGroup, netBasedCosts, problem, random);
+
+		algorithm.getAlgorithmListeners().addListener(new StopWatch(), VehicleRoutingAlgorithmListeners.Priority.HIGH);
+		int jspritIterations = CarrierUtils.getJspritIterations(carrier);
+		try {
+			if (jspritIterations > 0) {
+				algorithm.setMaxIterations(jspritIterations);
+			} else {
+				throw new InvalidAttributeValueException(
+						"Carrier has invalid number of jsprit iterations. They must be positive! Carrier id: "
+								+ carrier.getId().toString());}
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+//			e.printStackTrace();
+		}
 
-			VehicleRoutingProblemSolution solution = Solutions.bestOf(algorithm.searchSolutions());
+		VehicleRoutingProblemSolution solution = Solutions.bestOf(algorithm.searchSolutions());
 
-			log.info("tour planning for carrier " + carrier.getId() + " took " + (System.currentTimeMillis() - start) / 1000 + " seconds.");
+		log.info("tour planning for carrier " + carrier.getId() + " took " + (System.currentTimeMillis() - start) / 1000 + " seconds.");
 
-			CarrierPlan newPlan = MatsimJspritFactory.createPlan(carrier, solution);
-			// yy In principle, the carrier should know the vehicle types that it can deploy.
+		CarrierPlan newPlan = MatsimJspritFactory.createPlan(carrier, solution);
+		// yy In principle, the carrier should know the vehicle types that it can deploy.
 
-			log.info("routing plan for carrier " + carrier.getId());
-			NetworkRouter.routePlan(newPlan, netBasedCosts);
-			log.info("routing for carrier " + carrier.getId() + " finished. Tour planning plus routing took " + (System.currentTimeMillis() - start) / 1000 + " seconds.");
+		log.info("routing plan for carrier " + carrier.getId());
+		NetworkRouter.routePlan(newPlan, netBasedCosts);
+		double computationTime = (System.currentTimeMillis() - start) / 1000;
+		log.info("routing for carrier " + carrier.getId() + " finished. Tour planning plus routing took " + computationTime + " seconds.");
 
-			carrier.setSelectedPlan(newPlan);
-		})).get();
+		carrier.setSelectedPlan(newPlan);
+		CarrierUtils.setJspritComputationTime(carrier, computationTime);
+	}
+
+	private static int getNumberOfThreadsForTourPlanning(FreightConfigGroup freightConfigGroup) {
+		int numberOfThreads = freightConfigGroup.getNumberOfThreadsForTourPlanning();
+		return numberOfThreads > 0 ? numberOfThreads : Runtime.getRuntime().availableProcessors();
+	}
 
+	/**
+	 * @return the ids of the links of all services, shipments and vehicles of the carriers
+	 */
+	private static Set<String> getLocationIds(Carriers carriers) {
+		Set<String> locationIds = new LinkedHashSet<>();
+		for (Carrier carrier : carriers.getCarriers().values()) {
+			for (CarrierVehicle vehicle : carrier.getCarrierCapabilities().getCarrierVehicles().values()) {
+				locationIds.add(vehicle.getLinkId().toString());
+			}
+			for (CarrierService service : carrier.getServices().values()) {
+				locationIds.add(service.getLocationLinkId().toString());
+			}
+			for (CarrierShipment shipment : carrier.getShipments().values()) {
+				locationIds.add(shipment.getFrom().toString());
+				locationIds.add(shipment.getTo().toString());
+			}
+		}
+		return locationIds;
 	}
 
 	/**
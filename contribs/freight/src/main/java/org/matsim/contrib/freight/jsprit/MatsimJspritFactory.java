@@ -12,9 +12,15 @@
  ******************************************************************************/
 package org.matsim.contrib.freight.jsprit;
 
+import com.graphhopper.jsprit.core.algorithm.SearchStrategy;
+import com.graphhopper.jsprit.core.algorithm.SearchStrategyModule;
 import com.graphhopper.jsprit.core.algorithm.VehicleRoutingAlgorithm;
 import com.graphhopper.jsprit.core.algorithm.box.Jsprit;
 import com.graphhopper.jsprit.core.algorithm.box.SchrimpfFactory;
+import com.graphhopper.jsprit.core.algorithm.module.RuinAndRecreateModule;
+import com.graphhopper.jsprit.core.algorithm.recreate.AbstractInsertionStrategy;
+import com.graphhopper.jsprit.core.algorithm.ruin.AbstractRuinStrategy;
+import com.graphhopper.jsprit.core.algorithm.selector.SelectRandomly;
 import com.graphhopper.jsprit.core.algorithm.state.StateId;
 import com.graphhopper.jsprit.core.algorithm.state.StateManager;
 import com.graphhopper.jsprit.core.problem.Location;
@@ -57,6 +63,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 
 /**
  * A factory that creates matsim-object from jsprit
@@ -747,6 +754,21 @@ public final class MatsimJspritFactory {
 	 */
 	public static VehicleRoutingAlgorithm loadOrCreateVehicleRoutingAlgorithm(Scenario scenario,
 			FreightConfigGroup freightConfig, NetworkBasedTransportCosts netBasedCosts, VehicleRoutingProblem problem) {
+		return loadOrCreateVehicleRoutingAlgorithm(scenario, freightConfig, netBasedCosts, problem, null);
+	}
+
+	/**
+	 * Same as {@link #loadOrCreateVehicleRoutingAlgorithm(Scenario, FreightConfigGroup, NetworkBasedTransportCosts, VehicleRoutingProblem)},
+	 * but the algorithm draws its random numbers from the given random (if not null) instead of jsprit's global one. This is needed
+	 * for reproducible results if several problems are solved in parallel.
+	 * <p>
+	 * Without an algorithm file, the algorithm is built with {@link Jsprit.Builder}, which uses the random everywhere; the default
+	 * algorithm then has the settings of {@link SchrimpfFactory}. Algorithms read from a file are created by jsprit-io, which does
+	 * not take a random. There, the random is set afterwards on the strategy selection and the ruin, insertion and selection
+	 * components of the strategies, but the construction of the initial solution still uses jsprit's global random.
+	 */
+	public static VehicleRoutingAlgorithm loadOrCreateVehicleRoutingAlgorithm(Scenario scenario,
+			FreightConfigGroup freightConfig, NetworkBasedTransportCosts netBasedCosts, VehicleRoutingProblem problem, Random random) {
 		VehicleRoutingAlgorithm algorithm;
 		final String vehicleRoutingAlgorithmFile = freightConfig.getVehicleRoutingAlgorithmFile();
 
@@ -759,7 +781,10 @@ public final class MatsimJspritFactory {
 				throw new RuntimeException(e);
 			}
 			switch (freightConfig.getUseDistanceConstraintForTourPlanning()) {
-				case noDistanceConstraint -> algorithm = VehicleRoutingAlgorithms.readAndCreateAlgorithm(problem, vraURL);
+				case noDistanceConstraint -> {
+					algorithm = VehicleRoutingAlgorithms.readAndCreateAlgorithm(problem, vraURL);
+					setRandom(algorithm, random);
+				}
 				case basedOnEnergyConsumption -> {
 					log.info("Use the distanceConstraint based on energy consumption.");
 					StateManager stateManager = new StateManager(problem);
@@ -775,6 +800,7 @@ public final class MatsimJspritFactory {
 					xmlReader.read(vraURL);
 					algorithm = VehicleRoutingAlgorithms.readAndCreateAlgorithm(problem, algorithmConfig, 0, null,
 							stateManager, constraintManager, true);
+					setRandom(algorithm, random);
 				}
 				default -> throw new IllegalStateException(
 						"Unexpected value: " + freightConfig.getUseDistanceConstraintForTourPlanning());
@@ -783,7 +809,7 @@ public final class MatsimJspritFactory {
 		} else {
 			log.info("Use a VehicleRoutingAlgorithm out of the box.");
 			switch (freightConfig.getUseDistanceConstraintForTourPlanning()) {
-				case noDistanceConstraint -> algorithm = new SchrimpfFactory().createAlgorithm(problem);
+				case noDistanceConstraint -> algorithm = random == null ? new SchrimpfFactory().createAlgorithm(problem) : createSchrimpfAlgorithm(problem, random);
 				case basedOnEnergyConsumption -> {
 					log.info("Use the distanceConstraint based on energy consumption.");
 					StateManager stateManager = new StateManager(problem);
@@ -794,8 +820,12 @@ public final class MatsimJspritFactory {
 							new DistanceConstraint(
 									FreightUtils.getCarrierVehicleTypes(scenario), netBasedCosts),
 							ConstraintManager.Priority.CRITICAL);
-					algorithm = Jsprit.Builder.newInstance(problem)
-							.setStateAndConstraintManager(stateManager, constraintManager).buildAlgorithm();
+					Jsprit.Builder algorithmBuilder = Jsprit.Builder.newInstance(problem)
+							.setStateAndConstraintManager(stateManager, constraintManager);
+					if (random != null) {
+						algorithmBuilder.setRandom(random);
+					}
+					algorithm = algorithmBuilder.buildAlgorithm();
 				}
 				default -> throw new IllegalStateException(
 						"Unexpected value: " + freightConfig.getUseDistanceConstraintForTourPlanning());
@@ -803,4 +833,53 @@ public final class MatsimJspritFactory {
 		}
 		return algorithm;
 	}
+
+	/**
+	 * The algorithm of {@link SchrimpfFactory#createAlgorithm(VehicleRoutingProblem)}, but with the given random.
+	 */
+	static VehicleRoutingAlgorithm createSchrimpfAlgorithm(VehicleRoutingProblem problem, Random random) {
+		int radialShare = (int) (problem.getJobs().size() * 0.3);
+		int randomShare = (int) (problem.getJobs().size() * 0.5);
+		return Jsprit.Builder.newInstance(problem)
+				.setRandom(random)
+				.setProperty(Jsprit.Parameter.THRESHOLD_ALPHA, "0.0")
+				.setProperty(Jsprit.Strategy.RADIAL_BEST, "0.5")
+				.setProperty(Jsprit.Strategy.RADIAL_REGRET, "0.0")
+				.setProperty(Jsprit.Strategy.RANDOM_BEST, "0.5")
+				.setProperty(Jsprit.Strategy.RANDOM_REGRET, "0.0")
+				.setProperty(Jsprit.Strategy.WORST_BEST, "0.0")
+				.setProperty(Jsprit.Strategy.WORST_REGRET, "0.0")
+				.setProperty(Jsprit.Strategy.CLUSTER_BEST, "0.0")
+				.setProperty(Jsprit.Strategy.CLUSTER_REGRET, "0.0")
+				.setProperty(Jsprit.Parameter.RADIAL_MIN_SHARE, String.valueOf(radialShare))
+				.setProperty(Jsprit.Parameter.RADIAL_MAX_SHARE, String.valueOf(radialShare))
+				.setProperty(Jsprit.Parameter.RANDOM_BEST_MIN_SHARE, String.valueOf(randomShare))
+				.setProperty(Jsprit.Parameter.RANDOM_BEST_MAX_SHARE, String.valueOf(randomShare))
+				.buildAlgorithm();
+	}
+
+	/**
+	 * Replaces jsprit's global random in the components of an algorithm read from a file, as far as they are accessible.
+	 */
+	private static void setRandom(VehicleRoutingAlgorithm algorithm, Random random) {
+		if (random == null) {
+			return;
+		}
+		algorithm.getSearchStrategyManager().setRandom(random);
+		for (SearchStrategy strategy : algorithm.getSearchStrategyManager().getStrategies()) {
+			if (strategy.getSolutionSelector() instanceof SelectRandomly selectRandomly) {
+				selectRandomly.setRandom(random);
+			}
+			for (SearchStrategyModule module : strategy.getSearchStrategyModules()) {
+				if (module instanceof RuinAndRecreateModule ruinAndRecreate) {
+					if (ruinAndRecreate.getRuin() instanceof AbstractRuinStrategy ruin) {
+						ruin.setRandom(random);
+					}
+					if (ruinAndRecreate.getInsertion() instanceof AbstractInsertionStrategy insertion) {
+						insertion.setRandom(random);
+					}
+				}
+			}
+		}
+	}
 }
@@ -37,6 +37,7 @@ import org.matsim.vehicles.VehicleUtils;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This calculates transport-times, transport-costs and the distance to cover
@@ -68,7 +69,10 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * <p>
  * Keep in mind that if you have many locations, small time-bins and many
- * vehicleTypes, calculations get very time- and memory-consuming.
+ * vehicleTypes, calculations get very time- and memory-consuming. The cache
+ * can be bounded with {@link Builder#setMaxCacheSize(int)}, and the
+ * transport-data between a known set of locations can be precomputed in
+ * parallel with {@link Builder#setPrecomputedLocations(Collection, double, int)}.
  *
  * @author stefan schröder
  *
@@ -383,6 +387,16 @@ public class NetworkBasedTransportCosts implements VRPTransportCosts {
 
 		private final String defaultTypeId = UUID.randomUUID().toString();
 
+		private final Collection<VehicleType> vehicleTypes;
+
+		private int maxCacheSize = Integer.MAX_VALUE;
+
+		private Collection<String> precomputedLocationIds = null;
+
+		private double precomputationMaxDepartureTime;
+
+		private int precomputationThreads = 1;
+
 		/**
 		 * Creates the builder requiring {@link Network} and a collection of
 		 * {@link VehicleType}.
@@ -393,6 +407,7 @@ public class NetworkBasedTransportCosts implements VRPTransportCosts {
 		 */
 		private Builder(Network network, Collection<VehicleType> vehicleTypes) {
 			this.network = network;
+			this.vehicleTypes = vehicleTypes;
 			retrieveTypeSpecificCosts(vehicleTypes);
 		}
 
@@ -472,6 +487,44 @@ public class NetworkBasedTransportCosts implements VRPTransportCosts {
 			return this;
 		}
 
+		/**
+		 * Bounds the number of cached {@link TransportData}. If the cache is full,
+		 * the least recently used entry is dropped. By default, the cache is
+		 * unbounded.
+		 */
+		public Builder setMaxCacheSize(int maxCacheSize) {
+			if (maxCacheSize <= 0) {
+				throw new IllegalArgumentException("maxCacheSize must be positive");
+			}
+			this.maxCacheSize = maxCacheSize;
+			return this;
+		}
+
+		/**
+		 * Precomputes the transport-data between all pairs of the given locations
+		 * when building, for all vehicleTypes given to the builder (and the default
+		 * type) and for all time-bins up to the given departure time. Each location
+		 * needs one least-cost path tree per vehicleType and time-bin, which are
+		 * computed with the given number of threads.
+		 * <p>
+		 * The precomputed values are the ones for a departure at the start of the
+		 * time-bin. Requests which are not covered are computed and cached as
+		 * usual. Note that the precomputation always uses least-cost path trees on
+		 * the network, i.e. it does not use the leastCostPathCalculatorFactory.
+		 *
+		 * @param locationIds      the ids of the links of the locations, e.g. of
+		 *                         all services and depots of a carrier
+		 * @param maxDepartureTime the latest departure time to precompute for
+		 * @param numberOfThreads  the number of threads for the precomputation
+		 * @return this builder
+		 */
+		public Builder setPrecomputedLocations(Collection<String> locationIds, double maxDepartureTime, int numberOfThreads) {
+			this.precomputedLocationIds = locationIds;
+			this.precomputationMaxDepartureTime = maxDepartureTime;
+			this.precomputationThreads = numberOfThreads;
+			return this;
+		}
+
 		/**
 		 * Builds the network-based transport costs which are the basis for solving the
 		 * {@link VehicleRoutingProblem}.
@@ -522,7 +575,18 @@ public class NetworkBasedTransportCosts implements VRPTransportCosts {
 	 * cost-cache to cache transport-costs and transport-times (see
 	 * {@link TransportData}) according to {@link TransportDataKey}
 	 */
-	private final ConcurrentHashMap<TransportDataKey, TransportData> costCache = new ConcurrentHashMap<>();
+	private final Map<TransportDataKey, TransportData> costCache;
+
+	/**
+	 * precomputed transport-data, null if nothing is precomputed
+	 */
+	private final TransportDataMatrix precomputedData;
+
+	private final LongAdder cacheHits = new LongAdder();
+
+	private final LongAdder cacheMisses = new LongAdder();
+
+	private final LongAdder precomputedHits = new LongAdder();
 
 	/**
 	 * caches leastCostPathCalculators according to
@@ -567,6 +631,29 @@ public class NetworkBasedTransportCosts implements VRPTransportCosts {
 		this.defaultTypeId = builder.defaultTypeId;
 		this.ttMemorizedCounter = new Counter("#TransportCostValues cached ");
 		this.ttRequestedCounter = new Counter("numTravelCosts requested ");
+		if (builder.maxCacheSize == Integer.MAX_VALUE) {
+			this.costCache = new ConcurrentHashMap<>();
+		} else {
+			final int maxCacheSize = builder.maxCacheSize;
+			this.costCache = Collections.synchronizedMap(new LinkedHashMap<TransportDataKey, TransportData>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<TransportDataKey, TransportData> eldest) {
+					return size() > maxCacheSize;
+				}
+			});
+		}
+		if (builder.precomputedLocationIds == null) {
+			this.precomputedData = null;
+		} else {
+			Map<String, org.matsim.vehicles.Vehicle> vehicles = new LinkedHashMap<>();
+			for (VehicleType type : builder.vehicleTypes) {
+				vehicles.put(type.getId().toString(), VehicleUtils.createVehicle(Id.create(type.getId().toString(), org.matsim.vehicles.Vehicle.class), type));
+			}
+			vehicles.put(defaultTypeId, new MatsimVehicleWrapper(getDefaultVehicle(Location.newInstance("default"))));
+			this.precomputedData = TransportDataMatrix.calculate(network, builder.precomputedLocationIds, vehicles,
+					getTimeSlice(builder.precomputationMaxDepartureTime) + 1, timeSliceWidth, travelTime, travelDisutility,
+					builder.precomputationThreads);
+		}
 	}
 
 	/**
@@ -574,10 +661,10 @@ public class NetworkBasedTransportCosts implements VRPTransportCosts {
 	 *
 	 * <p>
 	 * If <code>fromId.equals(toId)</code> it returns 0.0. Otherwise, it looks up in
-	 * the cache whether the transport-time has already been computed (see
-	 * {@link TransportDataKey}, {@link TransportData}). If so, it returns the
-	 * cached travel-time. If not, it computes and caches new values with the
-	 * leastCostPathCalc defined in here.
+	 * the precomputed data and in the cache whether the transport-time has already
+	 * been computed (see {@link TransportDataKey}, {@link TransportData}). If so, it
+	 * returns the stored travel-time. If not, it computes and caches new values
+	 * with the leastCostPathCalc defined in here.
 	 *
 	 * @Throws {@link IllegalStateException} if vehicle is null
 	 */
@@ -590,47 +677,16 @@ public class NetworkBasedTransportCosts implements VRPTransportCosts {
 		if (vehicle == null) {
 			vehicle = getDefaultVehicle(fromId);
 		}
-		String typeId = vehicle.getType().getTypeId();
 		int timeSlice = getTimeSlice(departureTime);
-		TransportDataKey transportDataKey = makeKey(fromId.getId(), toId.getId(), timeSlice, typeId);
-		TransportData data = costCache.get(transportDataKey);
-		double transportTime;
-
-		if (data != null) {
-			transportTime = data.transportTime;
-		} else {
-			informStartCalc();
-			Id<Link> fromLinkId = Id.create(fromId.getId(), Link.class);
-			Id<Link> toLinkId = Id.create(toId.getId(), Link.class);
-			Link fromLink = network.getLinks().get(fromLinkId);
-			Link toLink = network.getLinks().get(toLinkId);
-			// because path not includes in&out Link
-
-			org.matsim.vehicles.Vehicle matsimVehicle = getMatsimVehicle(vehicle);
-			LeastCostPathCalculator router = createLeastCostPathCalculator();
-			Path path = router.calcLeastCostPath(fromLink.getToNode(), toLink.getFromNode(), departureTime, null,
-					matsimVehicle);
-//			if(path == null) return Double.MAX_VALUE;
-			double additionalCostTo = travelDisutility.getLinkTravelDisutility(toLink, departureTime + path.travelTime,
-					null, matsimVehicle);
-			double additionalTimeTo = travelTime.getLinkTravelTime(toLink, departureTime + path.travelTime, null,
-					matsimVehicle);
-
-			double travelDistance = fromLink.getLength();
-			for (Link link : path.links) {
-				travelDistance = travelDistance + link.getLength();
+		if (precomputedData != null) {
+			double transportTime = precomputedData.getTransportTime(fromId.getId(), toId.getId(), timeSlice,
+					vehicle.getType().getTypeId());
+			if (!Double.isNaN(transportTime)) {
+				precomputedHits.increment();
+				return transportTime;
 			}
-			TransportData newData = new TransportData(path.travelCost + additionalCostTo,
-					path.travelTime + additionalTimeTo, travelDistance);
-			TransportData existingData = costCache.putIfAbsent(transportDataKey, newData);
-			ttMemorizedCounter.incCounter();
-			if (existingData == null) {
-				existingData = newData;
-			}
-			transportTime = existingData.transportTime;
-			informEndCalc();
 		}
-		return transportTime;
+		return getTransportData(fromId, toId, departureTime, timeSlice, vehicle).transportTime;
 	}
 
 	private VehicleImpl getDefaultVehicle(Location fromId) {
@@ -654,10 +710,10 @@ public class NetworkBasedTransportCosts implements VRPTransportCosts {
 	 *
 	 * <p>
 	 * If <code>fromId.equals(toId)</code> it returns 0.0. Otherwise, it looks up in
-	 * the cache whether the transport-costs have already been computed (see
-	 * {@link TransportDataKey}, {@link TransportData}). If so, it returns the
-	 * cached travel-cost value. If not, it computes and caches new values with the
-	 * leastCostPathCalc defined in here.
+	 * the precomputed data and in the cache whether the transport-costs have
+	 * already been computed (see {@link TransportDataKey}, {@link TransportData}).
+	 * If so, it returns the stored travel-cost value. If not, it computes and
+	 * caches new values with the leastCostPathCalc defined in here.
 	 *
 	 * @Throws {@link IllegalStateException} if vehicle is null
 	 */
@@ -673,47 +729,16 @@ public class NetworkBasedTransportCosts implements VRPTransportCosts {
 		if (vehicle == null) {
 			vehicle = getDefaultVehicle(fromId);
 		}
-		Id<Link> fromLinkId = Id.create(fromId.getId(), Link.class);
-		Id<Link> toLinkId = Id.create(toId.getId(), Link.class);
-		Link fromLink = network.getLinks().get(fromLinkId);
-		Link toLink = network.getLinks().get(toLinkId);
-		LeastCostPathCalculator router = createLeastCostPathCalculator();
-
 		int timeSlice = getTimeSlice(departureTime);
-		String typeId = vehicle.getType().getTypeId();
-		TransportDataKey transportDataKey = makeKey(fromId.getId(), toId.getId(), timeSlice, typeId);
-		TransportData data = costCache.get(transportDataKey);
-		double transportCost;
-
-		if (data != null) {
-			transportCost = data.transportCosts;
-		} else {
-			informStartCalc();
-			org.matsim.vehicles.Vehicle matsimVehicle = getMatsimVehicle(vehicle);
-			Path path = router.calcLeastCostPath(fromLink.getToNode(), toLink.getFromNode(), departureTime, null,
-					matsimVehicle);
-//			if(path == null) return Double.MAX_VALUE;
-			double additionalCostTo = travelDisutility.getLinkTravelDisutility(toLink, departureTime + path.travelTime,
-					null, matsimVehicle);
-			double additionalTimeTo = travelTime.getLinkTravelTime(toLink, departureTime + path.travelTime, null,
-					matsimVehicle);
-			double travelDistance = fromLink.getLength();
-			for (Link link : path.links) {
-				travelDistance = travelDistance + link.getLength();
+		if (precomputedData != null) {
+			double transportCosts = precomputedData.getTransportCosts(fromId.getId(), toId.getId(), timeSlice,
+					vehicle.getType().getTypeId());
+			if (!Double.isNaN(transportCosts)) {
+				precomputedHits.increment();
+				return transportCosts;
 			}
-
-			TransportData newData = new TransportData(path.travelCost + additionalCostTo,
-					path.travelTime + additionalTimeTo, travelDistance);
-			TransportData existingData = costCache.putIfAbsent(transportDataKey, newData);
-			ttMemorizedCounter.incCounter();
-			if (existingData == null) {
-				// succeeded
-				existingData = newData;
-			}
-			transportCost = existingData.transportCosts;
-			informEndCalc();
 		}
-		return transportCost;
+		return getTransportData(fromId, toId, departureTime, timeSlice, vehicle).transportCosts;
 	}
 
 	/**
@@ -721,10 +746,10 @@ public class NetworkBasedTransportCosts implements VRPTransportCosts {
 	 *
 	 * <p>
 	 * If <code>fromId.equals(toId)</code> it returns 0.0. Otherwise, it looks up in
-	 * the cache whether the transport-distance has already been computed (see
-	 * {@link TransportDataKey}, {@link TransportData}). If so, it returns the
-	 * cached distance. If not, it computes and caches new values with the
-	 * leastCostPathCalc defined in here.
+	 * the precomputed data and in the cache whether the transport-distance has
+	 * already been computed (see {@link TransportDataKey}, {@link TransportData}).
+	 * If so, it returns the stored distance. If not, it computes and caches new
+	 * values with the leastCostPathCalc defined in here.
 	 *
 	 * @Throws {@link IllegalStateException} if vehicle is null
 	 */
@@ -736,43 +761,93 @@ public class NetworkBasedTransportCosts implements VRPTransportCosts {
 		if (vehicle == null) {
 			vehicle = getDefaultVehicle(fromId);
 		}
-		String typeId = vehicle.getType().getTypeId();
 		int timeSlice = getTimeSlice(departureTime);
+		if (precomputedData != null) {
+			double distance = precomputedData.getDistance(fromId.getId(), toId.getId(), timeSlice,
+					vehicle.getType().getTypeId());
+			if (!Double.isNaN(distance)) {
+				precomputedHits.increment();
+				return distance;
+			}
+		}
+		return getTransportData(fromId, toId, departureTime, timeSlice, vehicle).transportDistance;
+	}
+
+	/**
+	 * Looks up the transport-data in the cache, or computes and caches it.
+	 */
+	private TransportData getTransportData(Location fromId, Location toId, double departureTime, int timeSlice,
+			Vehicle vehicle) {
+		String typeId = vehicle.getType().getTypeId();
 		TransportDataKey transportDataKey = makeKey(fromId.getId(), toId.getId(), timeSlice, typeId);
 		TransportData data = costCache.get(transportDataKey);
-		double travelDistance;
 		if (data != null) {
-			travelDistance = data.transportDistance;
-		} else {
-			informStartCalc();
-			Id<Link> fromLinkId = Id.create(fromId.getId(), Link.class);
-			Id<Link> toLinkId = Id.create(toId.getId(), Link.class);
-			Link fromLink = network.getLinks().get(fromLinkId);
-			Link toLink = network.getLinks().get(toLinkId);
-			travelDistance = fromLink.getLength();
-			org.matsim.vehicles.Vehicle matsimVehicle = getMatsimVehicle(vehicle);
-			LeastCostPathCalculator router = createLeastCostPathCalculator();
-			Path path = router.calcLeastCostPath(fromLink.getToNode(), toLink.getFromNode(), departureTime, null,
-					matsimVehicle);
-//			if(path == null) return Double.MAX_VALUE;
-			double additionalCostTo = travelDisutility.getLinkTravelDisutility(toLink, departureTime + path.travelTime,
-					null, matsimVehicle);
-			double additionalTimeTo = travelTime.getLinkTravelTime(toLink, departureTime + path.travelTime, null,
-					matsimVehicle);
-			for (Link link : path.links) {
-				travelDistance = travelDistance + link.getLength();
-			}
-			TransportData newData = new TransportData(path.travelCost + additionalCostTo,
-					path.travelTime + additionalTimeTo, travelDistance);
-			TransportData existingData = costCache.putIfAbsent(transportDataKey, newData);
-			ttMemorizedCounter.incCounter();
-			if (existingData == null) {
-				existingData = newData;
-			}
-			travelDistance = existingData.transportDistance;
-			informEndCalc();
+			cacheHits.increment();
+			return data;
 		}
-		return travelDistance;
+		cacheMisses.increment();
+		informStartCalc();
+		Id<Link> fromLinkId = Id.create(fromId.getId(), Link.class);
+		Id<Link> toLinkId = Id.create(toId.getId(), Link.class);
+		Link fromLink = network.getLinks().get(fromLinkId);
+		Link toLink = network.getLinks().get(toLinkId);
+		// because path not includes in&out Link
+
+		org.matsim.vehicles.Vehicle matsimVehicle = getMatsimVehicle(vehicle);
+		LeastCostPathCalculator router = createLeastCostPathCalculator();
+		Path path = router.calcLeastCostPath(fromLink.getToNode(), toLink.getFromNode(), departureTime, null,
+				matsimVehicle);
+//		if(path == null) return Double.MAX_VALUE;
+		double additionalCostTo = travelDisutility.getLinkTravelDisutility(toLink, departureTime + path.travelTime,
+				null, matsimVehicle);
+		double additionalTimeTo = travelTime.getLinkTravelTime(toLink, departureTime + path.travelTime, null,
+				matsimVehicle);
+
+		double travelDistance = fromLink.getLength();
+		for (Link link : path.links) {
+			travelDistance = travelDistance + link.getLength();
+		}
+		TransportData newData = new TransportData(path.travelCost + additionalCostTo,
+				path.travelTime + additionalTimeTo, travelDistance);
+		TransportData existingData = costCache.putIfAbsent(transportDataKey, newData);
+		ttMemorizedCounter.incCounter();
+		if (existingData == null) {
+			// succeeded
+			existingData = newData;
+		}
+		informEndCalc();
+		return existingData;
+	}
+
+	/**
+	 * @return the number of requests answered by the cache
+	 */
+	public long getCacheHits() {
+		return cacheHits.sum();
+	}
+
+	/**
+	 * @return the number of requests that had to be computed
+	 */
+	public long getCacheMisses() {
+		return cacheMisses.sum();
+	}
+
+	/**
+	 * @return the number of requests answered by the precomputed data
+	 */
+	public long getPrecomputedHits() {
+		return precomputedHits.sum();
+	}
+
+	/**
+	 * @return the share of requests that did not have to be computed, i.e. which
+	 *         were answered by the precomputed data or the cache
+	 */
+	public double getCacheHitRate() {
+		long hits = cacheHits.sum() + precomputedHits.sum();
+		long requests = hits + cacheMisses.sum();
+		return requests == 0 ? 0. : (double) hits / requests;
 	}
 
 	/**
@@ -0,0 +1,192 @@
+/*
+ *   *********************************************************************** *
+ *   project: org.matsim.*
+ *   *********************************************************************** *
+ *                                                                           *
+ *   copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                     LICENSE and WARRANTY file.                            *
+ *   email           : info at matsim dot org                                *
+ *                                                                           *
+ *   *********************************************************************** *
+ *                                                                           *
+ *     This program is free software; you can redistribute it and/or modify  *
+ *     it under the terms of the GNU General Public License as published by  *
+ *     the Free Software Foundation; either version 2 of the License, or     *
+ *     (at your option) any later version.                                   *
+ *     See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                           *
+ *   ***********************************************************************
+ *
+ */
+
+package org.matsim.contrib.freight.jsprit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.router.speedy.LeastCostPathTree;
+import org.matsim.core.router.speedy.SpeedyGraph;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.misc.Counter;
+import org.matsim.core.utils.misc.OptionalTime;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Transport-costs, transport-times and distances between all pairs of a fixed set of locations, for a fixed set of vehicle types and
+ * time-slices. They are computed in advance with one least-cost path tree per location, vehicle type and time-slice (instead of one
+ * least-cost path search per pair) and stored in primitive arrays.
+ *
+ * <p>
+ * The values are the same as the ones computed by {@link NetworkBasedTransportCosts} on demand, but for a departure at the start of
+ * the time-slice, i.e. the distance includes the links of the path and the fromLink, and the costs and times include the toLink.
+ *
+ * @see NetworkBasedTransportCosts.Builder#setPrecomputedLocations(Collection, double, int)
+ */
+final class TransportDataMatrix {
+	private static final Logger log = LogManager.getLogger(TransportDataMatrix.class);
+
+	private final Map<String, Integer> locationIndices = new HashMap<>();
+
+	private final Map<String, Integer> typeIndices = new HashMap<>();
+
+	private final int numberOfLocations;
+
+	private final int numberOfTimeSlices;
+
+	/**
+	 * [type * numberOfTimeSlices + timeSlice][(from * numberOfLocations + to) * 3 + (0: costs, 1: time, 2: distance)]
+	 */
+	private final double[][] data;
+
+	private TransportDataMatrix(List<String> locationIds, List<String> typeIds, int numberOfTimeSlices) {
+		for (String locationId : locationIds) {
+			locationIndices.putIfAbsent(locationId, locationIndices.size());
+		}
+		for (String typeId : typeIds) {
+			typeIndices.put(typeId, typeIndices.size());
+		}
+		this.numberOfLocations = locationIndices.size();
+		this.numberOfTimeSlices = numberOfTimeSlices;
+		if ((long) numberOfLocations * numberOfLocations * 3 > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("too many locations to precompute: " + numberOfLocations);
+		}
+		this.data = new double[typeIds.size() * numberOfTimeSlices][numberOfLocations * numberOfLocations * 3];
+	}
+
+	/**
+	 * Computes the matrix with the given number of threads.
+	 *
+	 * @param locationIds the ids of the links of the locations
+	 * @param vehicles    a representative vehicle per vehicle type id
+	 */
+	static TransportDataMatrix calculate(Network network, Collection<String> locationIds, Map<String, Vehicle> vehicles,
+										 int numberOfTimeSlices, int timeSliceWidth, TravelTime travelTime, TravelDisutility travelDisutility, int numberOfThreads) {
+		List<String> typeIds = new ArrayList<>(vehicles.keySet());
+		TransportDataMatrix matrix = new TransportDataMatrix(new ArrayList<>(locationIds), typeIds, numberOfTimeSlices);
+
+		Link[] links = new Link[matrix.numberOfLocations];
+		for (Map.Entry<String, Integer> e : matrix.locationIndices.entrySet()) {
+			Link link = network.getLinks().get(Id.createLinkId(e.getKey()));
+			if (link == null) {
+				throw new IllegalArgumentException("location " + e.getKey() + " is not a link of the network.");
+			}
+			links[e.getValue()] = link;
+		}
+
+		log.info("precomputing transport data for " + matrix.numberOfLocations + " locations, " + typeIds.size() + " vehicle types and "
+				+ numberOfTimeSlices + " time slices with " + numberOfThreads + " threads...");
+		SpeedyGraph graph = new SpeedyGraph(network);
+		ThreadLocal<LeastCostPathTree> trees = ThreadLocal.withInitial(() -> new LeastCostPathTree(graph, travelTime, travelDisutility));
+		Counter counter = new Counter("precomputed transport data for location # ");
+		ForkJoinPool forkJoinPool = new ForkJoinPool(numberOfThreads);
+		try {
+			forkJoinPool.submit(() -> IntStream.range(0, matrix.numberOfLocations).parallel().forEach(from -> {
+				LeastCostPathTree tree = trees.get();
+				for (int type = 0; type < typeIds.size(); type++) {
+					Vehicle vehicle = vehicles.get(typeIds.get(type));
+					for (int timeSlice = 0; timeSlice < numberOfTimeSlices; timeSlice++) {
+						double departureTime = timeSlice * (double) timeSliceWidth;
+						matrix.calculateRow(tree, links, from, departureTime, vehicle, travelTime, travelDisutility,
+								matrix.data[type * numberOfTimeSlices + timeSlice]);
+					}
+				}
+				counter.incCounter();
+			})).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			forkJoinPool.shutdown();
+		}
+		counter.printCounter();
+		return matrix;
+	}
+
+	private void calculateRow(LeastCostPathTree tree, Link[] links, int from, double departureTime, Vehicle vehicle,
+							  TravelTime travelTime, TravelDisutility travelDisutility, double[] values) {
+		Link fromLink = links[from];
+		tree.calculate(fromLink.getToNode().getId().index(), departureTime, null, vehicle);
+		for (int to = 0; to < numberOfLocations; to++) {
+			if (to == from) {
+				continue; // zero
+			}
+			int index = (from * numberOfLocations + to) * 3;
+			Link toLink = links[to];
+			int node = toLink.getFromNode().getId().index();
+			OptionalTime arrivalTime = tree.getTime(node);
+			if (arrivalTime.isUndefined()) {
+				values[index] = Double.POSITIVE_INFINITY;
+				values[index + 1] = Double.POSITIVE_INFINITY;
+				values[index + 2] = Double.POSITIVE_INFINITY;
+				continue;
+			}
+			// because the path does not include the fromLink and toLink
+			double time = arrivalTime.seconds();
+			values[index] = tree.getCost(node) + travelDisutility.getLinkTravelDisutility(toLink, time, null, vehicle);
+			values[index + 1] = time - departureTime + travelTime.getLinkTravelTime(toLink, time, null, vehicle);
+			values[index + 2] = fromLink.getLength() + tree.getDistance(node);
+		}
+	}
+
+	/**
+	 * @return the transport-costs, or NaN if the request is not covered by this matrix
+	 */
+	double getTransportCosts(String fromId, String toId, int timeSlice, String typeId) {
+		return get(fromId, toId, timeSlice, typeId, 0);
+	}
+
+	/**
+	 * @return the transport-time, or NaN if the request is not covered by this matrix
+	 */
+	double getTransportTime(String fromId, String toId, int timeSlice, String typeId) {
+		return get(fromId, toId, timeSlice, typeId, 1);
+	}
+
+	/**
+	 * @return the distance, or NaN if the request is not covered by this matrix
+	 */
+	double getDistance(String fromId, String toId, int timeSlice, String typeId) {
+		return get(fromId, toId, timeSlice, typeId, 2);
+	}
+
+	private double get(String fromId, String toId, int timeSlice, String typeId, int offset) {
+		if (timeSlice < 0 || timeSlice >= numberOfTimeSlices) {
+			return Double.NaN;
+		}
+		Integer type = typeIndices.get(typeId);
+		Integer from = locationIndices.get(fromId);
+		Integer to = locationIndices.get(toId);
+		if (type == null || from == null || to == null) {
+			return Double.NaN;
+		}
+		return data[type * numberOfTimeSlices + timeSlice][(from * numberOfLocations + to) * 3 + offset];
+	}
+
+}
@@ -1,7 +1,6 @@
 package org.matsim.contrib.freight.jsprit;
 
 import com.graphhopper.jsprit.core.algorithm.VehicleRoutingAlgorithm;
-import com.graphhopper.jsprit.core.algorithm.box.SchrimpfFactory;
 import com.graphhopper.jsprit.core.problem.VehicleRoutingProblem;
 import com.graphhopper.jsprit.core.problem.solution.VehicleRoutingProblemSolution;
 import com.graphhopper.jsprit.core.reporting.SolutionPrinter;
@@ -21,6 +20,7 @@ import org.matsim.core.network.io.MatsimNetworkReader;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.testcases.MatsimTestUtils;
 
+import java.util.Random;
 import java.util.concurrent.ExecutionException;
 
 public class IntegrationIT {
@@ -57,11 +57,12 @@ public class IntegrationIT {
 		for (Carrier carrier : FreightUtils.getCarriers(scenario).getCarriers().values()) {
 			scoreWithRunJsprit = scoreWithRunJsprit + carrier.getSelectedPlan().getScore();
 		}
-		double scoreRunWithOldStructure = generateCarrierPlans(scenario.getNetwork(), FreightUtils.getCarriers(scenario), FreightUtils.getCarrierVehicleTypes(scenario));
+		double scoreRunWithOldStructure = generateCarrierPlans(scenario.getNetwork(), FreightUtils.getCarriers(scenario), FreightUtils.getCarrierVehicleTypes(scenario),
+				config.global().getRandomSeed());
 		Assert.assertEquals("The score of both runs are not the same", scoreWithRunJsprit, scoreRunWithOldStructure, MatsimTestUtils.EPSILON);
 	}
 
-	private static double generateCarrierPlans(Network network, Carriers carriers, CarrierVehicleTypes vehicleTypes) {
+	private static double generateCarrierPlans(Network network, Carriers carriers, CarrierVehicleTypes vehicleTypes, long randomSeed) {
 		final Builder netBuilder = NetworkBasedTransportCosts.Builder.newInstance(network,
 				vehicleTypes.getVehicleTypes().values());
 		// netBuilder.setBaseTravelTimeAndDisutility(travelTime, travelDisutility) ;
@@ -77,7 +78,9 @@ public class IntegrationIT {
 			vrpBuilder.setRoutingCost(netBasedCosts);
 			VehicleRoutingProblem problem = vrpBuilder.build();
 
-			VehicleRoutingAlgorithm algorithm = new SchrimpfFactory().createAlgorithm(problem);
+			// the same random as in FreightUtils.runJsprit
+			Random random = new Random(randomSeed + carrier.getId().toString().hashCode());
+			VehicleRoutingAlgorithm algorithm = MatsimJspritFactory.createSchrimpfAlgorithm(problem, random);
 
 			VehicleRoutingProblemSolution solution = Solutions.bestOf(algorithm.searchSolutions());
 			CarrierPlan newPlan = MatsimJspritFactory.createPlan(carrier, solution);
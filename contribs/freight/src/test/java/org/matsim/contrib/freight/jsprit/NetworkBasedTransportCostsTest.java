@@ -4,6 +4,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.util.Arrays;
+import java.util.List;
 
 import com.graphhopper.jsprit.core.problem.Location;
 import com.graphhopper.jsprit.core.problem.driver.Driver;
@@ -139,4 +140,93 @@ public class NetworkBasedTransportCostsTest {
 		Assert.assertEquals(20000.0, networkBasedTransportCosts.getDistance(Location.newInstance("6"), Location.newInstance("21"), 0.0, vehicle2), 0.01);
 	}
 
+	@Test
+	public void test_whenPrecomputingLocations_itMustReturnTheSameValuesAsOnDemand(){
+		Config config = new Config();
+		config.addCoreModules();
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		String NETWORK_FILENAME = utils.getClassInputDirectory() + "network.xml";
+		new MatsimNetworkReader(scenario.getNetwork()).readFile(NETWORK_FILENAME);
+
+		VehicleType vehType1 = VehicleUtils.getFactory().createVehicleType(Id.create( "type1", VehicleType.class ));
+		vehType1.getCostInformation().setFixedCost( 0.0 ).setCostsPerMeter( 2.0 ).setCostsPerSecond( 1.0 );
+		vehType1.setMaximumVelocity( 5.0 );
+
+		List<String> locations = Arrays.asList("1", "6", "14", "20", "21");
+		NetworkBasedTransportCosts onDemand = NetworkBasedTransportCosts.Builder.newInstance(scenario.getNetwork(), List.of(vehType1))
+				.setTimeSliceWidth(900)
+				.build();
+		NetworkBasedTransportCosts precomputed = NetworkBasedTransportCosts.Builder.newInstance(scenario.getNetwork(), List.of(vehType1))
+				.setTimeSliceWidth(900)
+				.setPrecomputedLocations(locations, 3600., 2)
+				.build();
+
+		Vehicle vehicle1 = mock(Vehicle.class);
+		com.graphhopper.jsprit.core.problem.vehicle.VehicleType type1 = mock( com.graphhopper.jsprit.core.problem.vehicle.VehicleType.class );
+		when(type1.getMaxVelocity()).thenReturn(5.0);
+		when(type1.getTypeId()).thenReturn("type1");
+		when(vehicle1.getType()).thenReturn(type1);
+		when(vehicle1.getId()).thenReturn("vehicle1");
+
+		for (String from : locations) {
+			for (String to : locations) {
+				Location fromLocation = Location.newInstance(from);
+				Location toLocation = Location.newInstance(to);
+				Assert.assertEquals(onDemand.getTransportCost(fromLocation, toLocation, 1800., mock(Driver.class), vehicle1),
+						precomputed.getTransportCost(fromLocation, toLocation, 1800., mock(Driver.class), vehicle1), 0.01);
+				Assert.assertEquals(onDemand.getTransportTime(fromLocation, toLocation, 1800., mock(Driver.class), vehicle1),
+						precomputed.getTransportTime(fromLocation, toLocation, 1800., mock(Driver.class), vehicle1), 0.01);
+				Assert.assertEquals(onDemand.getDistance(fromLocation, toLocation, 1800., vehicle1),
+						precomputed.getDistance(fromLocation, toLocation, 1800., vehicle1), 0.01);
+				Assert.assertEquals(onDemand.getDistance(fromLocation, toLocation, 1800., null),
+						precomputed.getDistance(fromLocation, toLocation, 1800., null), 0.01);
+			}
+		}
+		Assert.assertEquals(0, precomputed.getCacheMisses());
+		Assert.assertEquals(1.0, precomputed.getCacheHitRate(), 0.0);
+
+		// not covered by the precomputed time slices
+		Assert.assertEquals(onDemand.getDistance(Location.newInstance("6"), Location.newInstance("21"), 7200., vehicle1),
+				precomputed.getDistance(Location.newInstance("6"), Location.newInstance("21"), 7200., vehicle1), 0.01);
+		Assert.assertEquals(1, precomputed.getCacheMisses());
+	}
+
+	@Test
+	public void test_whenCacheIsBounded_itMustDropTheLeastRecentlyUsedEntries(){
+		Config config = new Config();
+		config.addCoreModules();
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		String NETWORK_FILENAME = utils.getClassInputDirectory() + "network.xml";
+		new MatsimNetworkReader(scenario.getNetwork()).readFile(NETWORK_FILENAME);
+
+		NetworkBasedTransportCosts.Builder builder = NetworkBasedTransportCosts.Builder.newInstance(scenario.getNetwork());
+		builder.addVehicleTypeSpecificCosts("type1", 10.0, 0.0, 2.0);
+		NetworkBasedTransportCosts c = builder.setMaxCacheSize(2).build();
+
+		Vehicle vehicle1 = mock(Vehicle.class);
+		com.graphhopper.jsprit.core.problem.vehicle.VehicleType type1 = mock( com.graphhopper.jsprit.core.problem.vehicle.VehicleType.class );
+		when(type1.getMaxVelocity()).thenReturn(5.0);
+		when(type1.getTypeId()).thenReturn("type1");
+		when(vehicle1.getType()).thenReturn(type1);
+		when(vehicle1.getId()).thenReturn("vehicle1");
+
+		Location l6 = Location.newInstance("6");
+		Location l20 = Location.newInstance("20");
+		Location l21 = Location.newInstance("21");
+		Assert.assertEquals(20000.0, c.getTransportCost(l20, l21, 0.0, mock(Driver.class), vehicle1), 0.01);
+		Assert.assertEquals(20000.0, c.getDistance(l6, l21, 0.0, vehicle1), 0.01);
+		Assert.assertEquals(20000.0, c.getTransportCost(l20, l21, 0.0, mock(Driver.class), vehicle1), 0.01);
+		Assert.assertEquals(2, c.getCacheMisses());
+		Assert.assertEquals(1, c.getCacheHits());
+
+		// drops 6->21, which was used less recently than 20->21
+		c.getDistance(l21, l6, 0.0, vehicle1);
+		c.getTransportCost(l20, l21, 0.0, mock(Driver.class), vehicle1);
+		Assert.assertEquals(3, c.getCacheMisses());
+		Assert.assertEquals(20000.0, c.getDistance(l6, l21, 0.0, vehicle1), 0.01);
+		Assert.assertEquals(4, c.getCacheMisses());
+		Assert.assertEquals(2, c.getCacheHits());
+		Assert.assertEquals(0.33, c.getCacheHitRate(), 0.01);
+	}
+
 }
@@ -20,6 +20,8 @@ package org.matsim.contrib.freight.utils;
 
 import java.net.URL;
 import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
 
 import org.apache.logging.log4j.LogManager;
@@ -471,6 +473,71 @@ public class FreightUtilsTest {
 		Assert.assertNull(ConfigUtils.addOrGetModule(scenario.getConfig(), FreightConfigGroup.class).getVehicleRoutingAlgorithmFile());
 	}
 
+	@Test
+	public void testRunJsprit_precomputedTransportCostsInParallel() throws ExecutionException, InterruptedException {
+		Config config = prepareConfig();
+		config.controler().setOutputDirectory(utils.getOutputDirectory());
+		FreightConfigGroup freightConfigGroup = ConfigUtils.addOrGetModule(config, FreightConfigGroup.class);
+		freightConfigGroup.setPrecomputeTransportCosts(true);
+		freightConfigGroup.setNumberOfThreadsForTourPlanning(2);
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		FreightUtils.loadCarriersAccordingToFreightConfig(scenario);
+
+		FreightUtils.runJsprit(scenario);
+
+		for (Carrier carrier : FreightUtils.getCarriers(scenario).getCarriers().values()) {
+			Assert.assertNotNull(carrier.getSelectedPlan());
+			Assert.assertFalse(carrier.getSelectedPlan().getScheduledTours().isEmpty());
+			Assert.assertTrue(CarrierUtils.getJspritComputationTime(carrier) >= 0.);
+		}
+	}
+
+	/**
+	 * Each carrier has its own random number generator, so the plans must not depend on the number of threads.
+	 */
+	@Test
+	public void testRunJsprit_sameResultsWithDifferentNumberOfThreads() throws ExecutionException, InterruptedException {
+		Map<Id<Carrier>, String> plansWithOneThread = runJspritWithMultipleCarriers(1);
+		Map<Id<Carrier>, String> plansWithFourThreads = runJspritWithMultipleCarriers(4);
+
+		Assert.assertTrue(plansWithOneThread.size() > 1);
+		Assert.assertEquals(plansWithOneThread, plansWithFourThreads);
+	}
+
+	/**
+	 * @return the score and the tours of the selected plan of each carrier
+	 */
+	private Map<Id<Carrier>, String> runJspritWithMultipleCarriers(int numberOfThreads) throws ExecutionException, InterruptedException {
+		Config config = prepareConfig();
+		config.controler().setOutputDirectory(utils.getOutputDirectory());
+		FreightConfigGroup freightConfigGroup = ConfigUtils.addOrGetModule(config, FreightConfigGroup.class);
+		freightConfigGroup.setCarriersFile(IOUtils.extendUrl(ExamplesUtils.getTestScenarioURL("freight-chessboard-9x9"),
+				"multipleCarriers_withoutTW_withDepots_withoutPlan.xml").toString());
+		freightConfigGroup.setNumberOfThreadsForTourPlanning(numberOfThreads);
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+		FreightUtils.loadCarriersAccordingToFreightConfig(scenario);
+		for (Carrier carrier : FreightUtils.getCarriers(scenario).getCarriers().values()) {
+			CarrierUtils.setJspritIterations(carrier, 2);
+		}
+
+		FreightUtils.runJsprit(scenario);
+
+		Map<Id<Carrier>, String> plans = new TreeMap<>();
+		for (Carrier carrier : FreightUtils.getCarriers(scenario).getCarriers().values()) {
+			StringBuilder plan = new StringBuilder().append(carrier.getSelectedPlan().getScore());
+			for (ScheduledTour scheduledTour : carrier.getSelectedPlan().getScheduledTours()) {
+				plan.append(" | ").append(scheduledTour.getVehicle().getId()).append(" ").append(scheduledTour.getDeparture());
+				for (Tour.TourElement element : scheduledTour.getTour().getTourElements()) {
+					if (element instanceof Tour.TourActivity activity) {
+						plan.append(" ").append(activity.getActivityType()).append("@").append(activity.getLocation());
+					}
+				}
+			}
+			plans.put(carrier.getId(), plan.toString());
+		}
+		return plans;
+	}
+
 	private Config prepareConfig(){
 		URL scenarioUrl = ExamplesUtils.getTestScenarioURL( "freight-chessboard-9x9" ) ;
 		Config config = ConfigUtils.loadConfig(IOUtils.extendUrl(scenarioUrl, "config.xml" ) );
@@ -71,13 +71,14 @@ final class BestReplyLocationChoicePlanAlgorithm implements PlanAlgorithm {
 	private final FrozenTastesConfigGroup dccg;
 	private final Scenario scenario;
 	private final TimeInterpretation timeInterpretation;
+	private final LeastCostPathCache pathCache;
 
 	public BestReplyLocationChoicePlanAlgorithm(
 		  TreeMap<String, QuadTree<ActivityFacilityWithIndex>> quad_trees,
 		  ObjectAttributes personsMaxDCScoreUnscaled, DestinationChoiceContext lcContext,
 		  DestinationSampler sampler, TripRouter tripRouter, MultiNodeDijkstra forwardMultiNodeDijkstra,
 		  BackwardFastMultiNodeDijkstra backwardMultiNodeDijkstra, ScoringFunctionFactory scoringFunctionFactory,
-		  int iteration, Map<Id<ActivityFacility>, Id<Link>> nearestLinks, TimeInterpretation timeInterpretation ) {
+		  int iteration, Map<Id<ActivityFacility>, Id<Link>> nearestLinks, TimeInterpretation timeInterpretation, LeastCostPathCache pathCache ) {
 		this.facilities = lcContext.getScenario().getActivityFacilities();
 		this.personsMaxDCScoreUnscaled = personsMaxDCScoreUnscaled;
 		this.scaleEpsilon = lcContext.getScaleEpsilon();
@@ -89,6 +90,7 @@ final class BestReplyLocationChoicePlanAlgorithm implements PlanAlgorithm {
 		this.scoringFunctionFactory = scoringFunctionFactory;
 		this.iteration = iteration;
 		this.timeInterpretation = timeInterpretation;
+		this.pathCache = pathCache;
 
 		this.quadTreesOfType = quad_trees;
 		this.tripRouter = tripRouter;
@@ -161,7 +163,7 @@ final class BestReplyLocationChoicePlanAlgorithm implements PlanAlgorithm {
 			final FrozenTastesConfigGroup.ApproximationLevel travelTimeApproximationLevel,
 			final Activity actToMove, double maxRadius, Coord center) {
 
-		ChoiceSet cs = new ChoiceSet(travelTimeApproximationLevel, scenario, timeInterpretation );
+		ChoiceSet cs = new ChoiceSet(travelTimeApproximationLevel, scenario, timeInterpretation, this.pathCache );
 
 		final String convertedType = actToMove.getType();
 		Gbl.assertNotNull(convertedType);
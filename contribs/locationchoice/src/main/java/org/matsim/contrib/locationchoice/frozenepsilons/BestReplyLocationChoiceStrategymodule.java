@@ -77,6 +77,8 @@ final class BestReplyLocationChoiceStrategymodule extends AbstractMultithreadedM
 	private ScoringFunctionFactory scoringFunctionFactory;
 	private Map<String, TravelTime> travelTimes;
 	private Map<String, TravelDisutilityFactory> travelDisutilities;
+	private final boolean usePathCache;
+	private LeastCostPathCache pathCache = null;
 
 	public BestReplyLocationChoiceStrategymodule( Provider<TripRouter> tripRouterProvider, DestinationChoiceContext lcContext, ObjectAttributes personsMaxDCScoreUnscaled,
 								    ScoringFunctionFactory scoringFunctionFactory, Map<String, TravelTime> travelTimes, Map<String, TravelDisutilityFactory> travelDisutilities,
@@ -98,6 +100,16 @@ final class BestReplyLocationChoiceStrategymodule extends AbstractMultithreadedM
 		this.forwardMultiNodeDijsktaFactory = new FastMultiNodeDijkstraFactory(true);
 		this.backwardMultiNodeDijsktaFactory = new BackwardFastMultiNodeDijkstraFactory(true);
 
+		// the shared trees assume that the travel disutility is the same for all persons, which the randomizing one is not:
+		if ( dccg.getLeastCostPathCacheSize() > 0 && this.scenario.getConfig().plansCalcRoute().getRoutingRandomness() > 0. ) {
+			log.warn( "leastCostPathCacheSize is " + dccg.getLeastCostPathCacheSize() + ", but routingRandomness is "
+					+ this.scenario.getConfig().plansCalcRoute().getRoutingRandomness() + ", i.e. the travel disutility is person dependent. "
+					+ "The least-cost trees are therefore not shared between persons." );
+			this.usePathCache = false;
+		} else {
+			this.usePathCache = dccg.getLeastCostPathCacheSize() > 0;
+		}
+
 		// create cache which is used in ChoiceSet
 		// instead of just the nearest link we probably should check whether the facility is attached to a link? cdobler, oct'14
 		this.nearestLinks = new HashMap<>();
@@ -129,11 +141,25 @@ final class BestReplyLocationChoiceStrategymodule extends AbstractMultithreadedM
 		}
 	}
 
+	@Override
+	protected final void beforePrepareReplanningHook(ReplanningContext replanningContextTmp) {
+		// the travel times change between iterations, so the shared trees are only valid for one replanning run
+		FrozenTastesConfigGroup dccg = ConfigUtils.addOrGetModule( this.scenario.getConfig(), FrozenTastesConfigGroup.class );
+		if (this.usePathCache) {
+			this.pathCache = new LeastCostPathCache(dccg.getLeastCostPathCacheSize(), dccg.getLeastCostPathCacheTimeBinSize());
+		}
+	}
+
 	@Override
 	protected final void beforeFinishReplanningHook() {
 		Gbl.printMemoryUsage();
 	}
 
+	@Override
+	protected final void afterFinishReplanningHook() {
+		this.pathCache = null;
+	}
+
 	@Override
 	public final PlanAlgorithm getPlanAlgoInstance() {
 
@@ -156,6 +182,6 @@ final class BestReplyLocationChoiceStrategymodule extends AbstractMultithreadedM
 		int iteration = replanningContext.getIteration();
 
 		return new BestReplyLocationChoicePlanAlgorithm(this.quadTreesOfType, this.personsMaxEpsUnscaled,
-			  this.lcContext, this.sampler, tripRouter, forwardMultiNodeDijkstra, backwardMultiNodeDijkstra, scoringFunctionFactory, iteration, this.nearestLinks, timeInterpretation);
+			  this.lcContext, this.sampler, tripRouter, forwardMultiNodeDijkstra, backwardMultiNodeDijkstra, scoringFunctionFactory, iteration, this.nearestLinks, timeInterpretation, this.pathCache);
 	}
 }
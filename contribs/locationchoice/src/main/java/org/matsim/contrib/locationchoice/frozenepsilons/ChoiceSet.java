@@ -22,9 +22,11 @@ package org.matsim.contrib.locationchoice.frozenepsilons;
 import static org.matsim.core.router.TripStructureUtils.StageActivityHandling.ExcludeStageActivities;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
 
@@ -37,6 +39,7 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.contrib.locationchoice.router.BackwardFastMultiNodeDijkstra;
 import org.matsim.core.gbl.Gbl;
@@ -58,6 +61,8 @@ import org.matsim.facilities.FacilitiesUtils;
 class ChoiceSet {
 	private static final Logger log = LogManager.getLogger( ChoiceSet.class ) ;
 
+	private static final int REDUCED_CHOICE_SET_SIZE = 5;
+
 	private final Network network;
 	private final FrozenTastesConfigGroup dccg;
 	private FrozenTastesConfigGroup.ApproximationLevel approximationLevel;
@@ -66,6 +71,7 @@ class ChoiceSet {
 	private final ActivityFacilities facilities;
 	private final Scenario scenario;
 	private final TimeInterpretation timeInterpretation;
+	private final LeastCostPathCache pathCache;
 
 	private MultiNodeDijkstra forwardMultiNodeDijkstra;
 	private BackwardFastMultiNodeDijkstra backwardMultiNodeDijkstra;
@@ -85,8 +91,14 @@ class ChoiceSet {
 		return stb.toString() ;
 	}
 
-	ChoiceSet( FrozenTastesConfigGroup.ApproximationLevel approximationLevel, Scenario scenario, TimeInterpretation timeInterpretation ) {
+	/**
+	 * @param pathCache least-cost paths shared with other persons, or <code>null</code> to compute the trees of each activity
+	 * separately
+	 */
+	ChoiceSet( FrozenTastesConfigGroup.ApproximationLevel approximationLevel, Scenario scenario, TimeInterpretation timeInterpretation,
+			 LeastCostPathCache pathCache ) {
 		this.approximationLevel = approximationLevel;
+		this.pathCache = pathCache;
 		this.facilities = scenario.getActivityFacilities();
 		this.scenario = scenario;
 		this.timeInterpretation = timeInterpretation;
@@ -105,16 +117,11 @@ class ChoiceSet {
 								    ScoringFunctionFactory scoringFunction, Plan plan, TripRouter tripRouter, double pKVal,
 								    MultiNodeDijkstra forwardMultiNodeDijkstra,
 								    BackwardFastMultiNodeDijkstra backwardMultiNodeDijkstra, int iteration ) {
-		this.forwardMultiNodeDijkstra = forwardMultiNodeDijkstra;
-		this.backwardMultiNodeDijkstra = backwardMultiNodeDijkstra;
-
 		List<ScoredAlternative> list;
 
 		if (this.destinations.size() > 0) {
-			Plan planTmp = PopulationUtils.createPlan( plan.getPerson() ) ;
-			PopulationUtils.copyFromTo( plan, planTmp );
 			// === this is where the work is done:
-			list = this.createReducedChoiceSetWithPseudoScores(actlegIndex, this.facilities, scoringFunction, planTmp, tripRouter );
+			list = this.createReducedChoiceSet( actlegIndex, scoringFunction, plan, tripRouter, forwardMultiNodeDijkstra, backwardMultiNodeDijkstra );
 			// ===
 		} else {
 			// if we have no destinations defined so far, we can shorten this
@@ -137,6 +144,21 @@ class ChoiceSet {
 
 	}
 
+	/**
+	 * Scores the destinations on a copy of the plan and returns the best ones, i.e. the set from which
+	 * {@link #getWeightedRandomChoice} draws.
+	 */
+	List<ScoredAlternative> createReducedChoiceSet( int actlegIndex, ScoringFunctionFactory scoringFunction, Plan plan, TripRouter tripRouter,
+							    MultiNodeDijkstra forwardMultiNodeDijkstra,
+							    BackwardFastMultiNodeDijkstra backwardMultiNodeDijkstra ) {
+		this.forwardMultiNodeDijkstra = forwardMultiNodeDijkstra;
+		this.backwardMultiNodeDijkstra = backwardMultiNodeDijkstra;
+
+		Plan planTmp = PopulationUtils.createPlan( plan.getPerson() ) ;
+		PopulationUtils.copyFromTo( plan, planTmp );
+		return this.createReducedChoiceSetWithPseudoScores(actlegIndex, this.facilities, scoringFunction, planTmp, tripRouter );
+	}
+
 	/**
 	 * the following two lines seem to be outdated:
 	 * The "score", which is behind the "Double" in the TreeMap, is some pseudo score 0.6, 0.84, ..., see {ChoiceSet#generateReducedChoiceSet(ArrayList)}.
@@ -159,6 +181,9 @@ class ChoiceSet {
 		// currently handled activity which should be re-located
 		Activity activityToRelocate = activities.get(actlegIndex);
 
+		Map<Id<Node>, LeastCostPathCalculator.Path> forwardPaths = null;
+		Map<Id<Node>, LeastCostPathCalculator.Path> backwardPaths = null;
+
 		// We need to calculate the multi node dijkstra stuff only in case localRouting is used.
 		if (this.approximationLevel == FrozenTastesConfigGroup.ApproximationLevel.localRouting )
 		{
@@ -179,30 +204,43 @@ class ChoiceSet {
 				InitialNode initialToNode = new InitialNode( toNode, 0.0, 0.0 );
 				destinationNodes.add( initialToNode );
 			}
-			ImaginaryNode destinationNode = MultiNodeDijkstra.createImaginaryNode( destinationNodes );
-
-			// (1) forward tree
-			{
+			if ( this.pathCache != null ) {
+				// (1) and (2) from the trees shared with other persons, searching only for the destinations not seen so far
 				Activity previousActivity = activities.get(actlegIndex - 1);
-				Node nextActNode = this.network.getLinks().get( PopulationUtils.decideOnLinkIdForActivity( previousActivity, scenario ) ).getToNode();
+				Node previousActNode = this.network.getLinks().get( PopulationUtils.decideOnLinkIdForActivity( previousActivity, scenario ) ).getToNode();
+				forwardPaths = getCachedPaths( false, previousActNode, timeInterpretation.decideOnActivityEndTimeAlongPlan(previousActivity, planTmp).seconds(), destinationNodes, planTmp.getPerson() );
 
-				forwardMultiNodeDijkstra.setSearchAllEndNodes( true );
-				forwardMultiNodeDijkstra.calcLeastCostPath( nextActNode, destinationNode, timeInterpretation.decideOnActivityEndTimeAlongPlan(previousActivity, planTmp).seconds(), planTmp.getPerson(), null );
-			}
-
-			// (2) backward tree
-			{
 				Activity nextActivity = activities.get(actlegIndex + 1);
 				Node nextActNode = this.network.getLinks().get( PopulationUtils.decideOnLinkIdForActivity( nextActivity, scenario ) ).getToNode();
+				backwardPaths = getCachedPaths( true, nextActNode, timeInterpretation.decideOnActivityEndTimeAlongPlan(activityToRelocate, planTmp).seconds(), destinationNodes, planTmp.getPerson() );
+			} else {
+				ImaginaryNode destinationNode = MultiNodeDijkstra.createImaginaryNode( destinationNodes );
+
+				// (1) forward tree
+				{
+					Activity previousActivity = activities.get(actlegIndex - 1);
+					Node nextActNode = this.network.getLinks().get( PopulationUtils.decideOnLinkIdForActivity( previousActivity, scenario ) ).getToNode();
+
+					forwardMultiNodeDijkstra.setSearchAllEndNodes( true );
+					forwardMultiNodeDijkstra.calcLeastCostPath( nextActNode, destinationNode, timeInterpretation.decideOnActivityEndTimeAlongPlan(previousActivity, planTmp).seconds(), planTmp.getPerson(), null );
+				}
 
-				backwardMultiNodeDijkstra.setSearchAllEndNodes( true );
-				backwardMultiNodeDijkstra.calcLeastCostPath( nextActNode, destinationNode,  timeInterpretation.decideOnActivityEndTimeAlongPlan(activityToRelocate, planTmp).seconds(), planTmp.getPerson(), null );
-				// yy it is not clear to me how the dp time is interpreted for the backwards Dijkstra.  kai, mar'19
+				// (2) backward tree
+				{
+					Activity nextActivity = activities.get(actlegIndex + 1);
+					Node nextActNode = this.network.getLinks().get( PopulationUtils.decideOnLinkIdForActivity( nextActivity, scenario ) ).getToNode();
+
+					backwardMultiNodeDijkstra.setSearchAllEndNodes( true );
+					backwardMultiNodeDijkstra.calcLeastCostPath( nextActNode, destinationNode,  timeInterpretation.decideOnActivityEndTimeAlongPlan(activityToRelocate, planTmp).seconds(), planTmp.getPerson(), null );
+					// yy it is not clear to me how the dp time is interpreted for the backwards Dijkstra.  kai, mar'19
+				}
 			}
 			// ---
 		}
 
-		ArrayList<ScoredAlternative> list = new ArrayList<ScoredAlternative>();
+		// the best alternatives so far, in the order of ScoredAlternative.compareTo; avoids sorting all alternatives
+		ScoredAlternative[] bestAlternatives = new ScoredAlternative[REDUCED_CHOICE_SET_SIZE];
+		int numberOfBestAlternatives = 0;
 		double largestValue = Double.NEGATIVE_INFINITY;
 		Id<ActivityFacility> facilityIdWithLargestScore = activityToRelocate.getFacilityId();
 
@@ -237,7 +275,8 @@ class ChoiceSet {
 							startTime = timeInterpretation.decideOnActivityEndTimeAlongPlan( previousActivity, planTmp ).seconds();
 						}
 
-						LeastCostPathCalculator.Path result = this.forwardMultiNodeDijkstra.constructPath( link.getToNode(), movedActNode, startTime );
+						LeastCostPathCalculator.Path result = forwardPaths != null ? forwardPaths.get( movedActNode.getId() ) :
+							this.forwardMultiNodeDijkstra.constructPath( link.getToNode(), movedActNode, startTime );
 						NetworkRoute linkNetworkRouteImpl = getNetworkRoute(activityToRelocate, link, result);
 						Objects.requireNonNull(previousLeg).setRoute(linkNetworkRouteImpl);
 						Objects.requireNonNull( previousLeg ).setTravelTime( result.travelTime );
@@ -252,7 +291,8 @@ class ChoiceSet {
 						}
 						double startTime = timeInterpretation.decideOnActivityEndTimeAlongPlan( activityToRelocate, planTmp ).seconds();
 
-						LeastCostPathCalculator.Path result = this.backwardMultiNodeDijkstra.constructPath( link.getToNode(), movedActNode, startTime );
+						LeastCostPathCalculator.Path result = backwardPaths != null ? backwardPaths.get( movedActNode.getId() ) :
+							this.backwardMultiNodeDijkstra.constructPath( link.getToNode(), movedActNode, startTime );
 						NetworkRoute linkNetworkRouteImpl = getNetworkRoute(activityToRelocate, link, result);
 						Objects.requireNonNull(nextLeg).setRoute(linkNetworkRouteImpl);
 						Objects.requireNonNull( nextLeg ).setTravelTime( result.travelTime );
@@ -269,18 +309,68 @@ class ChoiceSet {
 				largestValue = score;
 				facilityIdWithLargestScore = destinationId;
 			}
-			list.add(new ScoredAlternative(score, destinationId));
+			numberOfBestAlternatives = insertIntoBestAlternatives( bestAlternatives, numberOfBestAlternatives, new ScoredAlternative( score, destinationId ) );
 		}
 
-		Collections.sort( list );
-		if ( !list.isEmpty() ) {
-			return list.subList( 0,Math.min( list.size(), 5) ) ;
+		if ( numberOfBestAlternatives > 0 ) {
+			return Arrays.asList( Arrays.copyOf( bestAlternatives, numberOfBestAlternatives ) ) ;
 		} else  {
 			// I don't think that this can happen.  But it was in the code before, and better safe than sorry.  kai, mar'19
 			return Collections.singletonList( new ScoredAlternative( largestValue, facilityIdWithLargestScore ) )  ;
 		}
 	}
 
+	/**
+	 * Inserts the alternative into the sorted array of the best alternatives if it is better than the worst of them.
+	 *
+	 * @return the new number of alternatives in the array
+	 */
+	static int insertIntoBestAlternatives( ScoredAlternative[] bestAlternatives, int size, ScoredAlternative alternative ) {
+		if ( size == bestAlternatives.length ) {
+			if ( alternative.compareTo( bestAlternatives[size - 1] ) >= 0 ) {
+				return size;
+			}
+			size--;
+		}
+		int i = size;
+		while ( i > 0 && alternative.compareTo( bestAlternatives[i - 1] ) < 0 ) {
+			bestAlternatives[i] = bestAlternatives[i - 1];
+			i--;
+		}
+		bestAlternatives[i] = alternative;
+		return size + 1;
+	}
+
+	private Map<Id<Node>, LeastCostPathCalculator.Path> getCachedPaths( boolean backward, Node anchorNode, double time,
+											    List<InitialNode> destinationNodes, Person person ) {
+		Map<Id<Node>, LeastCostPathCalculator.Path> paths = this.pathCache.getTree( backward, anchorNode, time );
+		List<InitialNode> missingNodes = new ArrayList<>();
+		for ( InitialNode destinationNode : destinationNodes ) {
+			if ( !paths.containsKey( destinationNode.node.getId() ) ) {
+				missingNodes.add( destinationNode );
+			}
+		}
+		if ( missingNodes.isEmpty() ) {
+			return paths;
+		}
+		double binStartTime = this.pathCache.getBinStartTime( time );
+		ImaginaryNode missingNode = MultiNodeDijkstra.createImaginaryNode( missingNodes );
+		if ( backward ) {
+			this.backwardMultiNodeDijkstra.setSearchAllEndNodes( true );
+			this.backwardMultiNodeDijkstra.calcLeastCostPath( anchorNode, missingNode, binStartTime, person, null );
+			for ( InitialNode destinationNode : missingNodes ) {
+				paths.put( destinationNode.node.getId(), this.backwardMultiNodeDijkstra.constructPath( anchorNode, destinationNode.node, binStartTime ) );
+			}
+		} else {
+			this.forwardMultiNodeDijkstra.setSearchAllEndNodes( true );
+			this.forwardMultiNodeDijkstra.calcLeastCostPath( anchorNode, missingNode, binStartTime, person, null );
+			for ( InitialNode destinationNode : missingNodes ) {
+				paths.put( destinationNode.node.getId(), this.forwardMultiNodeDijkstra.constructPath( anchorNode, destinationNode.node, binStartTime ) );
+			}
+		}
+		return paths;
+	}
+
 	private NetworkRoute getNetworkRoute(Activity activityToRelocate, Link link, LeastCostPathCalculator.Path result) {
 		NetworkRoute linkNetworkRouteImpl = RouteUtils.createLinkNetworkRouteImpl(activityToRelocate.getLinkId(), link.getId());
 		double distance = 0;
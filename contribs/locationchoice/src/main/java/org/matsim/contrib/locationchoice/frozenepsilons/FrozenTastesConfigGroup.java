@@ -66,6 +66,8 @@ public class FrozenTastesConfigGroup extends ReflectiveConfigGroup implements De
 	private static final String IDEXCLUSION = "idExclusion";
 	
 	private static final String DESTINATIONSAMPLE_PCT = "destinationSamplePercent";
+	private static final String PATH_CACHE_SIZE = "leastCostPathCacheSize";
+	private static final String PATH_CACHE_TIME_BIN_SIZE = "leastCostPathCacheTimeBinSize";
 
 	private static final String USE_CONFIG_PARAMS_FOR_SCORING = "useConfigParamsForScoring";
 	private static final String USE_INDIVIDUAL_SCORING_PARAMETERS = "useIndividualScoringParameters";
@@ -97,6 +99,8 @@ public class FrozenTastesConfigGroup extends ReflectiveConfigGroup implements De
 	private double analysisBinSize = 20000;
 	private Long idExclusion = null;
 	private double destinationSamplePercent = 100.0;
+	private int leastCostPathCacheSize = 0;
+	private double leastCostPathCacheTimeBinSize = 900.;
 	
 	/* experimental stuff */
 	private boolean useConfigParamsForScoring = true;
@@ -113,6 +117,11 @@ public class FrozenTastesConfigGroup extends ReflectiveConfigGroup implements De
 		map.put(USE_CONFIG_PARAMS_FOR_SCORING, "Default is 'true'. Parameter was already present in the DCScoringFunction.");
 		map.put(USE_INDIVIDUAL_SCORING_PARAMETERS, "MATSim supports individual scoring parameters for sub-populations or even single agents. "
 				+ "If you use global parameters, this can be set to 'false' (default is 'true').");
+		map.put(PATH_CACHE_SIZE, "Number of least-cost trees (per anchor node, direction and time bin) that are shared between persons "
+				+ "in the best response location choice with localRouting. Paths are then computed for the start of the time bin. "
+				+ "Default is 0, i.e. the trees are computed for every activity separately. "
+				+ "Only used if routingRandomness is 0, since the trees assume a travel disutility that is the same for all persons.");
+		map.put(PATH_CACHE_TIME_BIN_SIZE, "Size of the departure time bins of the shared least-cost trees, in seconds. Default is 900.");
 
 		return map;
 	}
@@ -367,6 +376,22 @@ public class FrozenTastesConfigGroup extends ReflectiveConfigGroup implements De
 	public void setDestinationSamplePercent(double destinationSamplePercent) {
 		this.destinationSamplePercent = destinationSamplePercent;
 	}
+	@StringGetter( PATH_CACHE_SIZE )
+	public int getLeastCostPathCacheSize() {
+		return this.leastCostPathCacheSize;
+	}
+	@StringSetter( PATH_CACHE_SIZE )
+	public void setLeastCostPathCacheSize(int leastCostPathCacheSize) {
+		this.leastCostPathCacheSize = leastCostPathCacheSize;
+	}
+	@StringGetter( PATH_CACHE_TIME_BIN_SIZE )
+	public double getLeastCostPathCacheTimeBinSize() {
+		return this.leastCostPathCacheTimeBinSize;
+	}
+	@StringSetter( PATH_CACHE_TIME_BIN_SIZE )
+	public void setLeastCostPathCacheTimeBinSize(double leastCostPathCacheTimeBinSize) {
+		this.leastCostPathCacheTimeBinSize = leastCostPathCacheTimeBinSize;
+	}
 	@StringGetter( USE_CONFIG_PARAMS_FOR_SCORING )
 	// yyyyyy should always be true
 	public boolean getUseConfigParamsForScoring() {
@@ -0,0 +1,73 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.locationchoice.frozenepsilons;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+
+/**
+ * Least-cost paths from an anchor node (the activity before the one to relocate) or to it (the activity after), shared by all
+ * persons and threads of one replanning run.  The paths of an anchor node are computed for the start of the departure time bin,
+ * so all persons leaving the same anchor within the same bin can use them, and each person only has to search for the
+ * destinations that no other person has asked for so far.
+ * <p></p>
+ * This assumes that the travel disutility does not depend on the person.  The cache keeps the most recently used trees, i.e. the
+ * paths of one anchor node, direction and time bin each.
+ */
+final class LeastCostPathCache {
+
+	private final double timeBinSize;
+	private final Map<TreeKey, Map<Id<Node>, Path>> trees;
+
+	LeastCostPathCache( int maxNumberOfTrees, double timeBinSize ) {
+		this.timeBinSize = timeBinSize;
+		this.trees = Collections.synchronizedMap( new LinkedHashMap<TreeKey, Map<Id<Node>, Path>>( 16, 0.75f, true ) {
+			@Override
+			protected boolean removeEldestEntry( Map.Entry<TreeKey, Map<Id<Node>, Path>> eldest ) {
+				return size() > maxNumberOfTrees;
+			}
+		} );
+	}
+
+	/**
+	 * @return the time to use for computing the paths of a departure at the given time
+	 */
+	double getBinStartTime( double time ) {
+		return Math.floor( time / timeBinSize ) * timeBinSize;
+	}
+
+	/**
+	 * @return the (possibly still incomplete) paths by destination node; thread-safe
+	 */
+	Map<Id<Node>, Path> getTree( boolean backward, Node anchorNode, double time ) {
+		TreeKey key = new TreeKey( backward, anchorNode.getId(), (int) Math.floor( time / timeBinSize ) );
+		return trees.computeIfAbsent( key, k -> new ConcurrentHashMap<>() );
+	}
+
+	private record TreeKey(boolean backward, Id<Node> anchorNodeId, int timeBin) {
+	}
+}
@@ -0,0 +1,219 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.locationchoice.frozenepsilons;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.contrib.locationchoice.router.BackwardFastMultiNodeDijkstra;
+import org.matsim.contrib.locationchoice.router.BackwardFastMultiNodeDijkstraFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup.ActivityParams;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.FastMultiNodeDijkstraFactory;
+import org.matsim.core.router.MultiNodeDijkstra;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.scoring.ScoringFunctionFactory;
+import org.matsim.core.scoring.functions.CharyparNagelScoringFunctionFactory;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.matsim.core.utils.timing.TimeInterpretation;
+import org.matsim.facilities.ActivityFacilities;
+import org.matsim.facilities.ActivityFacility;
+
+public class ChoiceSetTest {
+
+	@Test
+	public void testBestAlternativesEqualSortedPrefix() {
+		Random random = new Random(4711);
+		List<ScoredAlternative> all = new ArrayList<>();
+		ScoredAlternative[] best = new ScoredAlternative[5];
+		int size = 0;
+		for (int i = 0; i < 200; i++) {
+			// few distinct scores, so that the tie-breaking by id is tested as well
+			ScoredAlternative alternative = new ScoredAlternative(random.nextInt(20), Id.create(i, ActivityFacility.class));
+			all.add(alternative);
+			size = ChoiceSet.insertIntoBestAlternatives(best, size, alternative);
+		}
+		Collections.sort(all);
+		assertEquals(5, size);
+		for (int i = 0; i < size; i++) {
+			assertEquals(all.get(i).getAlternativeId(), best[i].getAlternativeId());
+		}
+	}
+
+	@Test
+	public void testFewerAlternativesThanChoiceSetSize() {
+		ScoredAlternative[] best = new ScoredAlternative[5];
+		int size = ChoiceSet.insertIntoBestAlternatives(best, 0, new ScoredAlternative(1., Id.create("a", ActivityFacility.class)));
+		size = ChoiceSet.insertIntoBestAlternatives(best, size, new ScoredAlternative(2., Id.create("b", ActivityFacility.class)));
+		assertEquals(2, size);
+		assertEquals(Id.create("b", ActivityFacility.class), best[0].getAlternativeId());
+		assertEquals(Id.create("a", ActivityFacility.class), best[1].getAlternativeId());
+	}
+
+	/**
+	 * With a travel disutility that is the same for all persons, the least-cost trees shared between persons must give the same
+	 * choice set as the trees computed for each activity. Free speed travel times do not depend on the time, so the trees computed
+	 * for the start of the time bin are the same as the ones for the actual departure times.
+	 */
+	@Test
+	public void testCachedPathsGiveSameChoiceSet() {
+		Config config = ConfigUtils.createConfig();
+		ConfigUtils.addOrGetModule(config, FrozenTastesConfigGroup.class).setTravelTimeApproximationLevel(FrozenTastesConfigGroup.ApproximationLevel.localRouting);
+		config.planCalcScore().addActivityParams(new ActivityParams("home").setTypicalDuration(12 * 3600.));
+		config.planCalcScore().addActivityParams(new ActivityParams("shop").setTypicalDuration(3600.));
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		// grid with different speeds, so that the least-cost paths are not trivial
+		Network network = scenario.getNetwork();
+		int size = 5;
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), new Coord(x * 1000., y * 1000.));
+			}
+		}
+		int linkCount = 0;
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					addLinks(network, nodes[x][y], nodes[x + 1][y], 5. + (linkCount++ * 7) % 11);
+				}
+				if (y + 1 < size) {
+					addLinks(network, nodes[x][y], nodes[x][y + 1], 5. + (linkCount++ * 7) % 11);
+				}
+			}
+		}
+
+		ActivityFacilities facilities = scenario.getActivityFacilities();
+		List<Id<ActivityFacility>> destinations = new ArrayList<>();
+		List<Link> links = new ArrayList<>(network.getLinks().values());
+		for (int i = 0; i < 10; i++) {
+			Link link = links.get((i * 13 + 5) % links.size());
+			ActivityFacility facility = facilities.getFactory().createActivityFacility(Id.create("shop" + i, ActivityFacility.class), link.getCoord(), link.getId());
+			facility.addActivityOption(facilities.getFactory().createActivityOption("shop"));
+			facilities.addActivityFacility(facility);
+			destinations.add(facility.getId());
+		}
+
+		// the second person departs later within the same time bin and has more destinations, so that the cached trees have to be extended
+		Id<Link> homeLinkId = links.get(0).getId();
+		Plan plan1 = createPlan(scenario, "1", homeLinkId, 8 * 3600., destinations.get(0));
+		Plan plan2 = createPlan(scenario, "2", homeLinkId, 8 * 3600. + 300., destinations.get(0));
+
+		TravelTime travelTime = new FreeSpeedTravelTime();
+		TravelDisutility travelDisutility = new OnlyTimeDependentTravelDisutility(travelTime);
+		MultiNodeDijkstra forwardDijkstra = (MultiNodeDijkstra) new FastMultiNodeDijkstraFactory(true).createPathCalculator(network, travelDisutility, travelTime);
+		BackwardFastMultiNodeDijkstra backwardDijkstra = (BackwardFastMultiNodeDijkstra) new BackwardFastMultiNodeDijkstraFactory(true).createPathCalculator(network, travelDisutility, travelTime);
+		ScoringFunctionFactory scoringFunctionFactory = new CharyparNagelScoringFunctionFactory(scenario);
+		TimeInterpretation timeInterpretation = TimeInterpretation.create(config);
+		LeastCostPathCache pathCache = new LeastCostPathCache(10, 900.);
+
+		List<Id<ActivityFacility>> destinations1 = destinations.subList(0, 5);
+		List<ScoredAlternative> uncached1 = createChoiceSet(scenario, timeInterpretation, null, destinations1)
+				.createReducedChoiceSet(1, scoringFunctionFactory, plan1, null, forwardDijkstra, backwardDijkstra);
+		List<ScoredAlternative> cached1 = createChoiceSet(scenario, timeInterpretation, pathCache, destinations1)
+				.createReducedChoiceSet(1, scoringFunctionFactory, plan1, null, forwardDijkstra, backwardDijkstra);
+		assertSameAlternatives(uncached1, cached1);
+
+		List<ScoredAlternative> uncached2 = createChoiceSet(scenario, timeInterpretation, null, destinations)
+				.createReducedChoiceSet(1, scoringFunctionFactory, plan2, null, forwardDijkstra, backwardDijkstra);
+		List<ScoredAlternative> cached2 = createChoiceSet(scenario, timeInterpretation, pathCache, destinations)
+				.createReducedChoiceSet(1, scoringFunctionFactory, plan2, null, forwardDijkstra, backwardDijkstra);
+		assertSameAlternatives(uncached2, cached2);
+	}
+
+	private static void addLinks(Network network, Node a, Node b, double freespeed) {
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(a.getId() + "-" + b.getId()), a, b, 1000., freespeed, 1000., 1.);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(b.getId() + "-" + a.getId()), b, a, 1000., freespeed, 1000., 1.);
+	}
+
+	private static Plan createPlan(Scenario scenario, String personId, Id<Link> homeLinkId, double departureTime, Id<ActivityFacility> shopId) {
+		PopulationFactory factory = scenario.getPopulation().getFactory();
+		Person person = factory.createPerson(Id.createPersonId(personId));
+		Plan plan = factory.createPlan();
+		Coord homeCoord = scenario.getNetwork().getLinks().get(homeLinkId).getCoord();
+		Activity home = factory.createActivityFromLinkId("home", homeLinkId);
+		home.setCoord(homeCoord);
+		home.setEndTime(departureTime);
+		plan.addActivity(home);
+		plan.addLeg(createCarLeg(factory));
+		ActivityFacility shopFacility = scenario.getActivityFacilities().getFacilities().get(shopId);
+		Activity shop = factory.createActivityFromLinkId("shop", shopFacility.getLinkId());
+		shop.setFacilityId(shopId);
+		shop.setCoord(shopFacility.getCoord());
+		shop.setEndTime(10 * 3600.);
+		plan.addActivity(shop);
+		plan.addLeg(createCarLeg(factory));
+		Activity homeAgain = factory.createActivityFromLinkId("home", homeLinkId);
+		homeAgain.setCoord(homeCoord);
+		plan.addActivity(homeAgain);
+		person.addPlan(plan);
+		scenario.getPopulation().addPerson(person);
+		return plan;
+	}
+
+	private static Leg createCarLeg(PopulationFactory factory) {
+		Leg leg = factory.createLeg(TransportMode.car);
+		TripStructureUtils.setRoutingMode(leg, TransportMode.car);
+		return leg;
+	}
+
+	private static ChoiceSet createChoiceSet(Scenario scenario, TimeInterpretation timeInterpretation, LeastCostPathCache pathCache,
+			List<Id<ActivityFacility>> destinations) {
+		ChoiceSet choiceSet = new ChoiceSet(FrozenTastesConfigGroup.ApproximationLevel.localRouting, scenario, timeInterpretation, pathCache);
+		for (Id<ActivityFacility> destination : destinations) {
+			choiceSet.addDestination(destination);
+		}
+		return choiceSet;
+	}
+
+	private static void assertSameAlternatives(List<ScoredAlternative> expected, List<ScoredAlternative> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getAlternativeId(), actual.get(i).getAlternativeId());
+			assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), 1e-9);
+		}
+	}
+
+}
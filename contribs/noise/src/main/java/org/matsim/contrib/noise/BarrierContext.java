@@ -51,4 +51,8 @@ public class BarrierContext {
     public Collection<NoiseBarrier> query(Envelope envelopeInternal) {
         return noiseBarriers.query(envelopeInternal);
     }
+
+    Collection<NoiseBarrier> getAllBarriers() {
+        return noiseBarriers.query(new Envelope(-Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE));
+    }
 }
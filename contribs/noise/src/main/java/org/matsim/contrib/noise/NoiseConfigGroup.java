@@ -87,6 +87,8 @@ public final class NoiseConfigGroup extends ReflectiveConfigGroup {
 	private static final String NOISE_COMPUTATION_METHOD = "noiseComputationMethod";
 	private static final String USE_DEM = "useDGM";
 	private static final String DEM_FILE = "DGMFile";
+	private static final String USE_PROPAGATION_MATRIX = "usePropagationMatrix";
+	private static final String CORRECTION_TERMS_CACHE_FILE = "correctionTermsCacheFile";
 
 	public NoiseConfigGroup() {
 		super(GROUP_NAME);
@@ -152,6 +154,9 @@ public final class NoiseConfigGroup extends ReflectiveConfigGroup {
     }
 
     private NoiseComputationMethod noiseComputationMethod = NoiseComputationMethod.RLS90;
+
+	private boolean usePropagationMatrix = false;
+	private String correctionTermsCacheFile = null;
     
     // ########################################################################################################
 	
@@ -213,6 +218,12 @@ public final class NoiseConfigGroup extends ReflectiveConfigGroup {
 
         comments.put(NOISE_COMPUTATION_METHOD, "Specifies the computation method of different guidelines: " + Arrays.toString(NoiseComputationMethod.values()));
 
+		comments.put(USE_PROPAGATION_MATRIX, "Set to 'true' if the immissions should be computed from a precomputed receiver point x link matrix, which is much faster for many receiver points. "
+				+ "Results only differ by rounding. Only used if no causing agents are computed, as these need the immissions of each single link. Default: false.");
+		comments.put(CORRECTION_TERMS_CACHE_FILE, "Path to a file in which the correction terms (distance, angle, shielding, reflection) of all receiver point-link relations are stored. "
+				+ "If the file exists and was written for the same network, receiver points, noise barriers and computation method, the correction terms are read from it, otherwise they are computed and written to it. "
+				+ "Default: null, i.e. the correction terms are always computed.");
+
 		return comments;
 	}
 
@@ -799,4 +810,24 @@ public final class NoiseConfigGroup extends ReflectiveConfigGroup {
 	public void setNoiseComputationMethod(NoiseComputationMethod noiseComputationMethod) {
 		this.noiseComputationMethod = noiseComputationMethod;
 	}
+
+	@StringGetter(USE_PROPAGATION_MATRIX)
+	public boolean isUsePropagationMatrix() {
+		return this.usePropagationMatrix;
+	}
+
+	@StringSetter(USE_PROPAGATION_MATRIX)
+	public void setUsePropagationMatrix(boolean usePropagationMatrix) {
+		this.usePropagationMatrix = usePropagationMatrix;
+	}
+
+	@StringGetter(CORRECTION_TERMS_CACHE_FILE)
+	public String getCorrectionTermsCacheFile() {
+		return this.correctionTermsCacheFile;
+	}
+
+	@StringSetter(CORRECTION_TERMS_CACHE_FILE)
+	public void setCorrectionTermsCacheFile(String correctionTermsCacheFile) {
+		this.correctionTermsCacheFile = correctionTermsCacheFile;
+	}
 }
@@ -0,0 +1,276 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.noise;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.locationtech.jts.geom.Coordinate;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores the correction terms of all receiver point-link relations in a binary file, so that the expensive geometric
+ * computations (shielding, reflections, intersections) are only done once for a given setup. The file contains a
+ * fingerprint of everything the correction terms depend on, i.e. the network geometry, the intersection types of the
+ * nodes (see {@link IntersectionContext}), the receiver points, the noise barriers and the relevant noise parameters; a file with a different fingerprint is ignored (and overwritten).
+ * <p>
+ * The file is read memory-mapped, which limits its size to 2 GB.
+ *
+ * @see NoiseConfigGroup#getCorrectionTermsCacheFile()
+ */
+final class NoiseCorrectionTermsCache {
+
+	private static final Logger log = LogManager.getLogger(NoiseCorrectionTermsCache.class);
+
+	private static final int MAGIC = 0x4e435443; // "NCTC"
+	private static final int VERSION = 2;
+	private static final int FINGERPRINT_LENGTH = 32;
+
+	private NoiseCorrectionTermsCache() {
+	}
+
+	static byte[] computeFingerprint(NoiseConfigGroup noiseParams, Network network, Collection<NoiseReceiverPoint> receiverPoints,
+									 BarrierContext barrierContext) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest)))) {
+			out.writeInt(VERSION);
+			out.writeUTF(noiseParams.getNoiseComputationMethod().name());
+			out.writeDouble(noiseParams.getRelevantRadius());
+			out.writeBoolean(noiseParams.isConsiderNoiseBarriers());
+
+			List<Link> links = new ArrayList<>(network.getLinks().values());
+			links.sort(Comparator.comparing(link -> link.getId().toString()));
+			out.writeInt(links.size());
+			for (Link link : links) {
+				out.writeUTF(link.getId().toString());
+				writeCoord(out, link.getFromNode().getCoord());
+				writeCoord(out, link.getToNode().getCoord());
+			}
+
+			List<Node> nodes = new ArrayList<>(network.getNodes().values());
+			nodes.sort(Comparator.comparing(node -> node.getId().toString()));
+			out.writeInt(nodes.size());
+			for (Node node : nodes) {
+				Object intersectionType = node.getAttributes().getAttribute(IntersectionContext.INTERSECTION_TYPE);
+				out.writeUTF(node.getId().toString());
+				out.writeUTF(intersectionType == null ? "" : intersectionType.toString());
+			}
+
+			List<NoiseReceiverPoint> rps = new ArrayList<>(receiverPoints);
+			rps.sort(Comparator.comparing(rp -> rp.getId().toString()));
+			out.writeInt(rps.size());
+			for (NoiseReceiverPoint rp : rps) {
+				out.writeUTF(rp.getId().toString());
+				writeCoord(out, rp.getCoord());
+			}
+
+			if (noiseParams.isConsiderNoiseBarriers()) {
+				List<NoiseBarrier> barriers = new ArrayList<>(barrierContext.getAllBarriers());
+				barriers.sort(Comparator.comparing(barrier -> barrier.getId().toString()));
+				out.writeInt(barriers.size());
+				for (NoiseBarrier barrier : barriers) {
+					out.writeUTF(barrier.getId().toString());
+					out.writeDouble(barrier.getHeight());
+					Coordinate[] coordinates = barrier.getGeometry().getGeometry().getCoordinates();
+					out.writeInt(coordinates.length);
+					for (Coordinate coordinate : coordinates) {
+						out.writeDouble(coordinate.x);
+						out.writeDouble(coordinate.y);
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return digest.digest();
+	}
+
+	private static void writeCoord(DataOutputStream out, Coord coord) throws IOException {
+		out.writeDouble(coord.getX());
+		out.writeDouble(coord.getY());
+		out.writeDouble(coord.hasZ() ? coord.getZ() : Double.NaN);
+	}
+
+	/**
+	 * Sets the correction terms of the receiver points from the given file and marks them as initialized.
+	 *
+	 * @return <code>false</code> if the file does not exist or was written for another fingerprint; the receiver points are not
+	 * changed in this case
+	 */
+	static boolean read(Path file, byte[] fingerprint, Map<Id<ReceiverPoint>, NoiseReceiverPoint> receiverPoints) {
+		if (!Files.exists(file)) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				log.warn("Correction terms cache " + file + " is too large to be read. Computing the correction terms instead.");
+				return false;
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			byte[] fileFingerprint = new byte[FINGERPRINT_LENGTH];
+			if (buffer.remaining() < 8 + FINGERPRINT_LENGTH || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				log.warn(file + " is not a correction terms cache of this version. Computing the correction terms instead.");
+				return false;
+			}
+			buffer.get(fileFingerprint);
+			if (!Arrays.equals(fingerprint, fileFingerprint)) {
+				log.info("Correction terms cache " + file + " was written for another network, receiver points, noise barriers or noise parameters. "
+						+ "Computing the correction terms instead.");
+				return false;
+			}
+
+			int numberOfLinks = buffer.getInt();
+			List<Id<Link>> linkIds = new ArrayList<>(numberOfLinks);
+			for (int i = 0; i < numberOfLinks; i++) {
+				linkIds.add(Id.createLinkId(readString(buffer)));
+			}
+			int numberOfReceiverPoints = buffer.getInt();
+			// read everything before changing the receiver points, so that they are not changed if the file is damaged
+			List<NoiseReceiverPoint> rps = new ArrayList<>(numberOfReceiverPoints);
+			List<int[]> rpLinks = new ArrayList<>(numberOfReceiverPoints);
+			List<double[]> rpCorrections = new ArrayList<>(numberOfReceiverPoints);
+			for (int i = 0; i < numberOfReceiverPoints; i++) {
+				String rpId = readString(buffer);
+				NoiseReceiverPoint rp = receiverPoints.get(Id.create(rpId, ReceiverPoint.class));
+				if (rp == null) {
+					throw new IllegalStateException("unknown receiver point " + rpId + " in " + file);
+				}
+				int[] links = new int[buffer.getInt()];
+				double[] corrections = new double[links.length];
+				for (int j = 0; j < links.length; j++) {
+					links[j] = buffer.getInt();
+					corrections[j] = buffer.getDouble();
+				}
+				rps.add(rp);
+				rpLinks.add(links);
+				rpCorrections.add(corrections);
+			}
+
+			for (int i = 0; i < rps.size(); i++) {
+				NoiseReceiverPoint rp = rps.get(i);
+				for (int j = 0; j < rpLinks.get(i).length; j++) {
+					rp.setLinkId2Correction(linkIds.get(rpLinks.get(i)[j]), rpCorrections.get(i)[j]);
+				}
+				rp.setInitialized();
+			}
+			log.info("Read the correction terms of " + rps.size() + " receiver points from " + file);
+			return true;
+		} catch (IOException | RuntimeException e) {
+			log.warn("Could not read correction terms cache " + file + ". Computing the correction terms instead.", e);
+			return false;
+		}
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes the correction terms of the receiver points. The file is written to a temporary file first, so that a concurrent
+	 * or interrupted run never leaves a partially written cache behind.
+	 */
+	static void write(Path file, byte[] fingerprint, Collection<NoiseReceiverPoint> receiverPoints) {
+		Map<Id<Link>, Integer> linkIndices = new HashMap<>();
+		List<Id<Link>> linkIds = new ArrayList<>();
+		for (NoiseReceiverPoint rp : receiverPoints) {
+			for (Id<Link> linkId : rp.getRelevantLinks()) {
+				if (linkIndices.putIfAbsent(linkId, linkIds.size()) == null) {
+					linkIds.add(linkId);
+				}
+			}
+		}
+
+		try {
+			Path parent = file.toAbsolutePath().getParent();
+			Files.createDirectories(parent);
+			Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+			try {
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					out.write(fingerprint);
+					out.writeInt(linkIds.size());
+					for (Id<Link> linkId : linkIds) {
+						writeString(out, linkId.toString());
+					}
+					out.writeInt(receiverPoints.size());
+					for (NoiseReceiverPoint rp : receiverPoints) {
+						writeString(out, rp.getId().toString());
+						Collection<Id<Link>> relevantLinks = rp.getRelevantLinks();
+						out.writeInt(relevantLinks.size());
+						for (Id<Link> linkId : relevantLinks) {
+							out.writeInt(linkIndices.get(linkId));
+							out.writeDouble(rp.getLinkCorrection(linkId));
+						}
+					}
+				}
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				// only left over if writing failed
+				Files.deleteIfExists(tmp);
+			}
+			log.info("Wrote the correction terms of " + receiverPoints.size() + " receiver points to " + file);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not write correction terms cache " + file, e);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+}
@@ -27,4 +27,22 @@ public interface NoiseImmission {
     double calculateCorrection(double projectedDistance, NoiseReceiverPoint nrp, Link candidateLink);
 
     void setCurrentRp(NoiseReceiverPoint nrp);
+
+    /**
+     * Converts the correction term of a link-receiver point relation into a factor for the linear emission
+     * 10^(0.1 * emission) of the link, such that the product is the linear immission of the link at the receiver point.
+     * Used by {@link NoisePropagationMatrix}.
+     * @param correction The correction term as returned by {@link #calculateCorrection(double, NoiseReceiverPoint, Link)}.
+     * @return the factor, or {@link Double#NaN} if the immission cannot be computed this way.
+     */
+    default double getPropagationFactor(double correction) {
+        return Double.NaN;
+    }
+
+    /**
+     * @return the linear immission a single link must exceed to be considered in the resulting immission.
+     */
+    default double getMinimumLinearLinkImmission() {
+        return 0;
+    }
 }
@@ -0,0 +1,118 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.noise;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * The propagation factors of all receiver point-link relations, stored as a sparse matrix with one row per receiver point
+ * (compressed sparse rows). The factors are derived once from the correction terms of the receiver points, which already
+ * contain the distance, shielding and reflection corrections. The immissions of a time bin are then the product of this
+ * matrix with the vector of linear link emissions, which avoids the map lookups and the per-link objects of
+ * {@link NoiseImmission#calculateImmission(NoiseReceiverPoint, double)}.
+ * <p>
+ * This only yields the resulting immission of each receiver point, not the isolated immissions of single links.
+ *
+ * @see NoiseConfigGroup#isUsePropagationMatrix()
+ */
+final class NoisePropagationMatrix {
+
+	private final NoiseReceiverPoint[] receiverPoints;
+	private final int[] rowStart;
+	private final int[] linkIndices;
+	private final double[] factors;
+	private final double minimumLinearLinkImmission;
+
+	NoisePropagationMatrix(Collection<NoiseReceiverPoint> receiverPoints, NoiseImmission immission) {
+		this.receiverPoints = receiverPoints.toArray(new NoiseReceiverPoint[0]);
+		this.rowStart = new int[this.receiverPoints.length + 1];
+		int entries = 0;
+		for (NoiseReceiverPoint rp : this.receiverPoints) {
+			entries += rp.getRelevantLinks().size();
+		}
+		this.linkIndices = new int[entries];
+		this.factors = new double[entries];
+		this.minimumLinearLinkImmission = immission.getMinimumLinearLinkImmission();
+
+		int entry = 0;
+		for (int row = 0; row < this.receiverPoints.length; row++) {
+			NoiseReceiverPoint rp = this.receiverPoints[row];
+			rowStart[row] = entry;
+			// same order as in the immission modules, so that the sums are the same
+			for (Id<Link> linkId : rp.getRelevantLinks()) {
+				double factor = immission.getPropagationFactor(rp.getLinkCorrection(linkId));
+				if (Double.isNaN(factor)) {
+					throw new IllegalArgumentException(immission.getClass().getSimpleName() + " does not support a propagation matrix.");
+				}
+				linkIndices[entry] = linkId.index();
+				factors[entry] = factor;
+				entry++;
+			}
+		}
+		rowStart[this.receiverPoints.length] = entry;
+	}
+
+	/**
+	 * @return the linear emission 10^(0.1 * emission) of each link, indexed by {@link Id#index()}; 0 for links without emission
+	 * and for tunnel links
+	 */
+	static double[] calculateLinearEmissions(Collection<NoiseLink> noiseLinks, Set<Id<Link>> tunnelLinkIds) {
+		double[] linearEmissions = new double[Id.getNumberOfIds(Link.class)];
+		for (NoiseLink noiseLink : noiseLinks) {
+			double emission = noiseLink.getEmission();
+			if (emission != 0. && !tunnelLinkIds.contains(noiseLink.getId())) {
+				linearEmissions[noiseLink.getId().index()] = Math.pow(10, 0.1 * emission);
+			}
+		}
+		return linearEmissions;
+	}
+
+	int getNumberOfReceiverPoints() {
+		return receiverPoints.length;
+	}
+
+	NoiseReceiverPoint getReceiverPoint(int row) {
+		return receiverPoints[row];
+	}
+
+	/**
+	 * @param linearEmissions as returned by {@link #calculateLinearEmissions(Collection, Set)}
+	 * @return the resulting immission in dB(A) at the receiver point of the given row
+	 */
+	double calculateImmission(int row, double[] linearEmissions) {
+		double sum = 0.;
+		for (int entry = rowStart[row]; entry < rowStart[row + 1]; entry++) {
+			int linkIndex = linkIndices[entry];
+			if (linkIndex < linearEmissions.length) {
+				double linkImmission = linearEmissions[linkIndex] * factors[entry];
+				if (linkImmission > minimumLinearLinkImmission) {
+					sum += linkImmission;
+				}
+			}
+		}
+		return sum > 0 ? 10 * Math.log10(sum) : 0.;
+	}
+
+}
@@ -42,10 +42,12 @@ import org.matsim.core.utils.misc.Time;
 import org.matsim.utils.MemoryObserver;
 import org.matsim.vehicles.Vehicle;
 
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 /**
  * A handler which computes noise emissions, immisions, affected agent units and damages for each receiver point and time interval.
@@ -75,11 +77,12 @@ class NoiseTimeTracker implements VehicleEntersTrafficEventHandler, PersonEnters
     private final NoiseVehicleIdentifier vehicleIdentifier;
 	private final Set<NoiseVehicleType> vehicleTypes;
 	private String networkModesToIgnore;
+	private NoisePropagationMatrix propagationMatrix = null;
 
 	@Inject
 	NoiseTimeTracker(NoiseContext context, NoiseEmission emission, NoiseImmission immissionModule,
 					 NoiseDamageCalculation damageCalculation, NoiseVehicleIdentifier vehicleIdentifier,
-					 Set<NoiseVehicleType> vehicleTypes) {
+					 Set<NoiseVehicleType> vehicleTypes, BarrierContext barrierContext) {
 		this.noiseContext = context;
 		this.emission = emission;
 		this.immissionModule = immissionModule;
@@ -87,15 +90,27 @@ class NoiseTimeTracker implements VehicleEntersTrafficEventHandler, PersonEnters
         this.vehicleIdentifier = vehicleIdentifier;
 		this.vehicleTypes = vehicleTypes;
 		networkModesToIgnore = this.noiseContext.getNoiseParams().getNetworkModesToIgnore();
-		setRelevantLinkInfo();
+		setRelevantLinkInfo(barrierContext);
+		createPropagationMatrix();
 	}
 
-	private void setRelevantLinkInfo() {
+	private void setRelevantLinkInfo(BarrierContext barrierContext) {
 		MemoryObserver.start(60);
 		Counter cnt = new Counter("set relevant link-info # ");
 		final NoiseConfigGroup noiseParams = noiseContext.getNoiseParams();
+
+		Path cacheFile = noiseParams.getCorrectionTermsCacheFile() == null ? null : Path.of(noiseParams.getCorrectionTermsCacheFile());
+		byte[] fingerprint = null;
+		if (cacheFile != null) {
+			fingerprint = NoiseCorrectionTermsCache.computeFingerprint(noiseParams, noiseContext.getScenario().getNetwork(),
+					noiseContext.getGrid().getReceiverPoints().values(), barrierContext);
+			NoiseCorrectionTermsCache.read(cacheFile, fingerprint, noiseContext.getGrid().getReceiverPoints());
+		}
+
+		boolean computedCorrections = false;
 		for(NoiseReceiverPoint nrp: noiseContext.getGrid().getReceiverPoints().values()) {
 			if(!nrp.isInitialized()) {
+				computedCorrections = true;
 				// get the zone grid cell around the receiver point
 				Set<Id<Link>> potentialLinks = noiseContext.getPotentialLinks(nrp);
 				immissionModule.setCurrentRp(nrp);
@@ -121,6 +136,27 @@ class NoiseTimeTracker implements VehicleEntersTrafficEventHandler, PersonEnters
 		}
 		cnt.printCounter();
 		MemoryObserver.stop();
+
+		if (cacheFile != null && computedCorrections) {
+			NoiseCorrectionTermsCache.write(cacheFile, fingerprint, noiseContext.getGrid().getReceiverPoints().values());
+		}
+	}
+
+	private void createPropagationMatrix() {
+		final NoiseConfigGroup noiseParams = noiseContext.getNoiseParams();
+		if (!noiseParams.isUsePropagationMatrix()) {
+			return;
+		}
+		if (noiseParams.isComputeCausingAgents()) {
+			log.warn("The propagation matrix does not provide the immissions of single links, which are required to compute the causing agents. "
+					+ "Computing the immissions for each receiver point and link instead.");
+		} else if (Double.isNaN(immissionModule.getPropagationFactor(0.))) {
+			log.warn(immissionModule.getClass().getSimpleName() + " does not support a propagation matrix. "
+					+ "Computing the immissions for each receiver point and link instead.");
+		} else {
+			this.propagationMatrix = new NoisePropagationMatrix(noiseContext.getReceiverPoints().values(), immissionModule);
+			log.info("Created propagation matrix for " + propagationMatrix.getNumberOfReceiverPoints() + " receiver points.");
+		}
 	}
 
 
@@ -253,15 +289,27 @@ class NoiseTimeTracker implements VehicleEntersTrafficEventHandler, PersonEnters
 	 */
 	private void calculateNoiseImmissionsAndDamages() {
 		Counter cnt = new Counter("process noise receiver point # ");
-		this.noiseContext.getReceiverPoints().values().parallelStream().forEach( rp -> {
-			immissionModule.calculateImmission(rp, this.noiseContext.getCurrentTimeBinEndTime());
-			damageCalculation.calculateDamages(rp);
-            cnt.incCounter();
-
-            //free up memory
-            rp.setLinkId2IsolatedImmission(null);
-            rp.setLinkId2IsolatedImmissionPlusOneVehicle(null);
-		});
+		if (propagationMatrix != null) {
+			final double currentTimeBinEndTime = this.noiseContext.getCurrentTimeBinEndTime();
+			final double[] linearEmissions = NoisePropagationMatrix.calculateLinearEmissions(this.noiseContext.getNoiseLinks().values(),
+					this.noiseContext.getNoiseParams().getTunnelLinkIDsSet());
+			IntStream.range(0, propagationMatrix.getNumberOfReceiverPoints()).parallel().forEach(row -> {
+				NoiseReceiverPoint rp = propagationMatrix.getReceiverPoint(row);
+				rp.setCurrentImmission(propagationMatrix.calculateImmission(row, linearEmissions), currentTimeBinEndTime);
+				damageCalculation.calculateDamages(rp);
+				cnt.incCounter();
+			});
+		} else {
+			this.noiseContext.getReceiverPoints().values().parallelStream().forEach( rp -> {
+				immissionModule.calculateImmission(rp, this.noiseContext.getCurrentTimeBinEndTime());
+				damageCalculation.calculateDamages(rp);
+				cnt.incCounter();
+
+				//free up memory
+				rp.setLinkId2IsolatedImmission(null);
+				rp.setLinkId2IsolatedImmissionPlusOneVehicle(null);
+			});
+		}
 		cnt.printCounter();
 		log.info("Done processing receiver points.");
 		damageCalculation.finishNoiseDamageCosts();
@@ -104,6 +104,12 @@ public class RLS19NoiseImmission implements NoiseImmission {
         reflection.setCurrentReceiver(nrp);
     }
 
+    @Override
+    public double getPropagationFactor(double correction) {
+        // the correction term is already linear, see calculateLinkImmission
+        return correction;
+    }
+
     private double getSectionsCorrection(NoiseReceiverPoint nrp, Link link) {
 
         Coordinate nrpCoordinate = CoordUtils.createGeotoolsCoordinate(nrp.getCoord());
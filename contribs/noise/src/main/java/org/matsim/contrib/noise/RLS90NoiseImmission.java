@@ -149,6 +149,18 @@ class RLS90NoiseImmission implements NoiseImmission {
 
     }
 
+    @Override
+    public double getPropagationFactor(double correction) {
+        // emission + correction in dB(A) corresponds to a product of the linear values
+        return Math.pow(10, 0.1 * correction);
+    }
+
+    @Override
+    public double getMinimumLinearLinkImmission() {
+        // isolated immissions below 0 dB(A) are not considered, see calculateIsolatedLinkImmission
+        return 1;
+    }
+
     static double calculateDistanceCorrection(double distance) {
         double correctionTermDs = 15.8 - (10 * Math.log10(distance)) - (0.0142 * (Math.pow(distance, 0.9)));
         return correctionTermDs;
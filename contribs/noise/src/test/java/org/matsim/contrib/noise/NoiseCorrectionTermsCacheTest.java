@@ -0,0 +1,106 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.noise;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class NoiseCorrectionTermsCacheTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testWriteAndRead() {
+		Network network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("a"), new Coord(0, 0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("b"), new Coord(100, 0));
+		Link ab = NetworkUtils.createAndAddLink(network, Id.createLinkId("ab"), a, b, 100, 10, 1000, 1);
+		Link ba = NetworkUtils.createAndAddLink(network, Id.createLinkId("ba"), b, a, 100, 10, 1000, 1);
+
+		NoiseConfigGroup noiseParams = new NoiseConfigGroup();
+		BarrierContext barrierContext = new BarrierContext(Collections.emptyList());
+
+		Map<Id<ReceiverPoint>, NoiseReceiverPoint> receiverPoints = createReceiverPoints();
+		receiverPoints.get(Id.create("1", ReceiverPoint.class)).setLinkId2Correction(ab.getId(), 1.5);
+		receiverPoints.get(Id.create("1", ReceiverPoint.class)).setLinkId2Correction(ba.getId(), -2.25);
+		receiverPoints.get(Id.create("2", ReceiverPoint.class)).setLinkId2Correction(ba.getId(), 3.125);
+
+		Path file = Path.of(utils.getOutputDirectory(), "correctionTerms.bin");
+		byte[] fingerprint = NoiseCorrectionTermsCache.computeFingerprint(noiseParams, network, receiverPoints.values(), barrierContext);
+		NoiseCorrectionTermsCache.write(file, fingerprint, receiverPoints.values());
+
+		Map<Id<ReceiverPoint>, NoiseReceiverPoint> readReceiverPoints = createReceiverPoints();
+		Assert.assertArrayEquals(fingerprint, NoiseCorrectionTermsCache.computeFingerprint(noiseParams, network, readReceiverPoints.values(), barrierContext));
+		Assert.assertTrue(NoiseCorrectionTermsCache.read(file, fingerprint, readReceiverPoints));
+
+		NoiseReceiverPoint rp1 = readReceiverPoints.get(Id.create("1", ReceiverPoint.class));
+		Assert.assertTrue(rp1.isInitialized());
+		Assert.assertEquals(2, rp1.getRelevantLinks().size());
+		Assert.assertEquals(1.5, rp1.getLinkCorrection(ab.getId()), 0.);
+		Assert.assertEquals(-2.25, rp1.getLinkCorrection(ba.getId()), 0.);
+		NoiseReceiverPoint rp2 = readReceiverPoints.get(Id.create("2", ReceiverPoint.class));
+		Assert.assertEquals(1, rp2.getRelevantLinks().size());
+		Assert.assertEquals(3.125, rp2.getLinkCorrection(ba.getId()), 0.);
+		NoiseReceiverPoint rp3 = readReceiverPoints.get(Id.create("3", ReceiverPoint.class));
+		Assert.assertTrue(rp3.isInitialized());
+		Assert.assertTrue(rp3.getRelevantLinks().isEmpty());
+
+		// a changed network or changed parameters invalidate the cache
+		b.setCoord(new Coord(100, 1));
+		byte[] changedNetwork = NoiseCorrectionTermsCache.computeFingerprint(noiseParams, network, receiverPoints.values(), barrierContext);
+		Assert.assertFalse(NoiseCorrectionTermsCache.read(file, changedNetwork, createReceiverPoints()));
+		b.setCoord(new Coord(100, 0));
+		b.getAttributes().putAttribute(IntersectionContext.INTERSECTION_TYPE, IntersectionContext.RLS19IntersectionType.signalized);
+		byte[] changedIntersection = NoiseCorrectionTermsCache.computeFingerprint(noiseParams, network, receiverPoints.values(), barrierContext);
+		Assert.assertFalse(NoiseCorrectionTermsCache.read(file, changedIntersection, createReceiverPoints()));
+		b.getAttributes().removeAttribute(IntersectionContext.INTERSECTION_TYPE);
+		Assert.assertArrayEquals(fingerprint, NoiseCorrectionTermsCache.computeFingerprint(noiseParams, network, receiverPoints.values(), barrierContext));
+		noiseParams.setRelevantRadius(noiseParams.getRelevantRadius() + 1);
+		byte[] changedParams = NoiseCorrectionTermsCache.computeFingerprint(noiseParams, network, receiverPoints.values(), barrierContext);
+		Map<Id<ReceiverPoint>, NoiseReceiverPoint> notRead = createReceiverPoints();
+		Assert.assertFalse(NoiseCorrectionTermsCache.read(file, changedParams, notRead));
+		Assert.assertFalse(notRead.get(Id.create("1", ReceiverPoint.class)).isInitialized());
+	}
+
+	private static Map<Id<ReceiverPoint>, NoiseReceiverPoint> createReceiverPoints() {
+		Map<Id<ReceiverPoint>, NoiseReceiverPoint> receiverPoints = new LinkedHashMap<>();
+		for (int i = 1; i <= 3; i++) {
+			Id<ReceiverPoint> id = Id.create(String.valueOf(i), ReceiverPoint.class);
+			receiverPoints.put(id, new NoiseReceiverPoint(id, new Coord(50 * i, 20)));
+		}
+		return receiverPoints;
+	}
+
+}
@@ -0,0 +1,107 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.noise;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compares the immissions from the {@link NoisePropagationMatrix} with the ones of the immission modules.
+ */
+public class NoisePropagationMatrixTest {
+
+	@Test
+	public void testRLS90() {
+		NoiseContextStub noiseContext = createNoiseContext();
+		compare(noiseContext, new RLS90NoiseImmission(noiseContext, null), RLS90VehicleType.values(), -30, 10);
+	}
+
+	@Test
+	public void testRLS19() {
+		NoiseContextStub noiseContext = createNoiseContext();
+		compare(noiseContext, new RLS19NoiseImmission(noiseContext, null, null, null), RLS19VehicleType.values(), 0, 0.1);
+	}
+
+	private static NoiseContextStub createNoiseContext() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		NoiseContextStub noiseContext = new NoiseContextStub(scenario);
+		noiseContext.getNoiseParams().setTunnelLinkIDsSet(Set.of(Id.createLinkId("matrix_tunnel")));
+		return noiseContext;
+	}
+
+	private static void compare(NoiseContextStub noiseContext, NoiseImmission immission, NoiseVehicleType[] vehicleTypes,
+								double minCorrection, double maxCorrection) {
+		Random random = new Random(4711);
+
+		List<Id<Link>> linkIds = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			Id<Link> linkId = Id.createLinkId("matrix_" + i);
+			linkIds.add(linkId);
+			NoiseLink noiseLink = new NoiseLink(linkId);
+			// some links without emission
+			double emission = i % 10 == 0 ? 0. : 10 + 60 * random.nextDouble();
+			noiseLink.setEmission(emission);
+			for (NoiseVehicleType type : vehicleTypes) {
+				noiseLink.setEmissionPlusOneVehicle(type, emission + 0.1);
+			}
+			noiseContext.getNoiseLinks().put(linkId, noiseLink);
+		}
+		Id<Link> tunnelLinkId = Id.createLinkId("matrix_tunnel");
+		linkIds.add(tunnelLinkId);
+		NoiseLink tunnelLink = new NoiseLink(tunnelLinkId);
+		tunnelLink.setEmission(70);
+		noiseContext.getNoiseLinks().put(tunnelLinkId, tunnelLink);
+
+		List<NoiseReceiverPoint> receiverPoints = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			NoiseReceiverPoint rp = new NoiseReceiverPoint(Id.create("matrix_" + i, ReceiverPoint.class), new Coord(i, i));
+			// the first receiver point has no relevant links
+			for (int j = 0; j < (i == 0 ? 0 : 20); j++) {
+				rp.setLinkId2Correction(linkIds.get(random.nextInt(linkIds.size())), minCorrection + (maxCorrection - minCorrection) * random.nextDouble());
+			}
+			receiverPoints.add(rp);
+		}
+
+		NoisePropagationMatrix matrix = new NoisePropagationMatrix(receiverPoints, immission);
+		double[] linearEmissions = NoisePropagationMatrix.calculateLinearEmissions(noiseContext.getNoiseLinks().values(),
+				noiseContext.getNoiseParams().getTunnelLinkIDsSet());
+
+		Assert.assertEquals(receiverPoints.size(), matrix.getNumberOfReceiverPoints());
+		for (int row = 0; row < matrix.getNumberOfReceiverPoints(); row++) {
+			NoiseReceiverPoint rp = matrix.getReceiverPoint(row);
+			immission.calculateImmission(rp, 8 * 3600);
+			Assert.assertEquals("Wrong immission at " + rp.getId(), rp.getCurrentImmission(), matrix.calculateImmission(row, linearEmissions), MatsimTestUtils.EPSILON);
+		}
+	}
+
+}
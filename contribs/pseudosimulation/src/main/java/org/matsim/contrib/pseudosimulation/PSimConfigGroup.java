@@ -9,6 +9,8 @@ public class PSimConfigGroup extends ReflectiveConfigGroup {
 	private int iterationsPerCycle = 5;
 	public static final String FULL_TRANSIT_PERFORMANCE_TRANSMISSION = "fullTransitPerformanceTransmission";
 	private boolean fullTransitPerformanceTransmission = true;
+	public static final String PRECOMPUTE_LINK_TRAVEL_TIMES = "precomputeLinkTravelTimes";
+	private boolean precomputeLinkTravelTimes = false;
 
 	public PSimConfigGroup() {
 		super(GROUP_NAME);
@@ -35,6 +37,24 @@ public class PSimConfigGroup extends ReflectiveConfigGroup {
 		this.fullTransitPerformanceTransmission = fullTransitPerformanceTransmission;
 	}
 
+	/**
+	 * If true, PSim evaluates the car travel times once per run into a table by link index and time bin (of the size
+	 * of the travel time calculator), and its threads execute the plans in small chunks taken from a shared counter.
+	 * This pays off when the travel time is expensive to evaluate or the plans vary a lot in length. The table holds the
+	 * travel time at the start of each bin, without interpolation. The events are still processed by the events manager;
+	 * to speed up the scoring of them, use several scoring threads, see
+	 * {@link org.matsim.core.config.groups.PlanCalcScoreConfigGroup#setNumberOfScoringThreads(int)}.
+	 */
+	@StringGetter(PRECOMPUTE_LINK_TRAVEL_TIMES)
+	public boolean isPrecomputeLinkTravelTimes() {
+		return precomputeLinkTravelTimes;
+	}
+
+	@StringSetter(PRECOMPUTE_LINK_TRAVEL_TIMES)
+	public void setPrecomputeLinkTravelTimes(boolean precomputeLinkTravelTimes) {
+		this.precomputeLinkTravelTimes = precomputeLinkTravelTimes;
+	}
+
 
 
 }
@@ -0,0 +1,351 @@
+package org.matsim.contrib.pseudosimulation.distributed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.contrib.pseudosimulation.distributed.plans.PlanGenome;
+import org.matsim.contrib.pseudosimulation.distributed.scoring.PlanScoreComponent;
+import org.matsim.contrib.pseudosimulation.distributed.scoring.ScoreComponentType;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.utils.misc.OptionalTime;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.pt.routes.DefaultTransitPassengerRouteFactory;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Compact binary encoding of the plans and link travel times exchanged between {@link MasterControler} and
+ * {@link SlaveControler}, used instead of java serialization of {@link PlanSerializable} and
+ * {@link SerializableLinkTravelTimes} if {@link DistributedSimConfigGroup#isBinaryProtocol()} is set.
+ * <p></p>
+ * Plans are written element by element, with all strings (person and link ids, modes, activity types, genomes) going
+ * through a dictionary that is built up per message, so a link id that appears in many routes is only sent once
+ * and referenced by a variable length int afterwards. Undefined times are sent as NaN. Travel times are sent as
+ * one block of raw doubles per link, converted in bulk through a {@link ByteBuffer}.
+ * <p></p>
+ * Both sides read and write through the {@link java.io.ObjectOutputStream}/{@link java.io.ObjectInputStream} of the
+ * connection, so binary and serialized messages can be mixed on the same socket.
+ */
+final class BinaryProtocol {
+
+    private static final int NULL_STRING = 0;
+    private static final int NEW_STRING = 1;
+
+    private static final byte ACTIVITY = 0;
+    private static final byte LEG = 1;
+
+    private static final byte NO_ROUTE = 0;
+    private static final byte NETWORK_ROUTE = 1;
+    private static final byte GENERIC_ROUTE = 2;
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * Writes the selected plan of every person, with the plan's score as its PSim score, like
+     * {@link SlaveControler#transmitPlans()} does with {@link PlanSerializable}.
+     */
+    static void writeSelectedPlans(DataOutput out, Population population) throws IOException {
+        Writer writer = new Writer(out);
+        writer.writeVarInt(population.getPersons().size());
+        for (Person person : population.getPersons().values()) {
+            Plan plan = person.getSelectedPlan();
+            writer.writeString(person.getId().toString());
+            writer.writePlan(plan, plan.getScore() == null ? 0 : plan.getScore());
+        }
+    }
+
+    /**
+     * @return the plans written by {@link #writeSelectedPlans(DataOutput, Population)} by person id, as
+     * {@link PlanGenome}s of the persons in the given population
+     */
+    static Map<String, Plan> readPlans(DataInput in, Population population) throws IOException {
+        Reader reader = new Reader(in);
+        int size = reader.readVarInt();
+        Map<String, Plan> plans = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            String personId = reader.readString();
+            plans.put(personId, reader.readPlan(population.getPersons().get(Id.createPersonId(personId))));
+        }
+        return plans;
+    }
+
+    static void writeTravelTimes(DataOutput out, SerializableLinkTravelTimes travelTimes) throws IOException {
+        String[] linkIds = travelTimes.getLinkIds();
+        double[][] times = travelTimes.getTimes();
+        int bins = times.length == 0 ? 0 : times[0].length;
+        out.writeInt(travelTimes.getTravelTimeBinSize());
+        out.writeInt(linkIds.length);
+        out.writeInt(bins);
+        for (String linkId : linkIds)
+            out.writeUTF(linkId);
+        ByteBuffer buffer = ByteBuffer.allocate(bins * Double.BYTES);
+        for (double[] row : times) {
+            buffer.clear();
+            buffer.asDoubleBuffer().put(row);
+            out.write(buffer.array());
+        }
+    }
+
+    static SerializableLinkTravelTimes readTravelTimes(DataInput in) throws IOException {
+        int travelTimeBinSize = in.readInt();
+        String[] linkIds = new String[in.readInt()];
+        int bins = in.readInt();
+        for (int i = 0; i < linkIds.length; i++)
+            linkIds[i] = in.readUTF();
+        double[][] times = new double[linkIds.length][bins];
+        ByteBuffer buffer = ByteBuffer.allocate(bins * Double.BYTES);
+        for (double[] row : times) {
+            in.readFully(buffer.array());
+            buffer.clear();
+            buffer.asDoubleBuffer().get(row);
+        }
+        return new SerializableLinkTravelTimes(linkIds, times, travelTimeBinSize);
+    }
+
+    private static double toDouble(OptionalTime time) {
+        return time.isDefined() ? time.seconds() : Double.NaN;
+    }
+
+    private static final class Writer {
+        private final DataOutput out;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        Writer(DataOutput out) {
+            this.out = out;
+        }
+
+        void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        void writeString(String s) throws IOException {
+            if (s == null) {
+                writeVarInt(NULL_STRING);
+                return;
+            }
+            Integer index = dictionary.get(s);
+            if (index != null) {
+                writeVarInt(index + 2);
+                return;
+            }
+            dictionary.put(s, dictionary.size());
+            writeVarInt(NEW_STRING);
+            out.writeUTF(s);
+        }
+
+        void writePlan(Plan plan, double pSimScore) throws IOException {
+            out.writeDouble(plan.getScore() == null ? Double.NaN : plan.getScore());
+            writeString(plan.getType());
+            out.writeDouble(pSimScore);
+            List<PlanScoreComponent> scoreComponents = new ArrayList<>();
+            if (plan instanceof PlanGenome) {
+                writeString(((PlanGenome) plan).getGenome());
+                scoreComponents = ((PlanGenome) plan).getScoreComponents();
+            } else {
+                writeString("");
+            }
+            writeVarInt(scoreComponents.size());
+            for (PlanScoreComponent component : scoreComponents) {
+                out.writeByte(component.getType().ordinal());
+                out.writeDouble(component.getScore());
+                writeString(component.getDescription());
+            }
+            writeVarInt(plan.getPlanElements().size());
+            for (PlanElement planElement : plan.getPlanElements()) {
+                if (planElement instanceof Activity) {
+                    out.writeByte(ACTIVITY);
+                    writeActivity((Activity) planElement);
+                } else {
+                    out.writeByte(LEG);
+                    writeLeg((Leg) planElement);
+                }
+            }
+        }
+
+        private void writeActivity(Activity act) throws IOException {
+            writeString(act.getType());
+            out.writeDouble(act.getCoord().getX());
+            out.writeDouble(act.getCoord().getY());
+            writeString(act.getLinkId() == null ? null : act.getLinkId().toString());
+            writeString(act.getFacilityId() == null ? null : act.getFacilityId().toString());
+            out.writeDouble(toDouble(act.getStartTime()));
+            out.writeDouble(toDouble(act.getEndTime()));
+            out.writeDouble(toDouble(act.getMaximumDuration()));
+        }
+
+        private void writeLeg(Leg leg) throws IOException {
+            writeString(leg.getMode());
+            writeString(TripStructureUtils.getRoutingMode(leg));
+            out.writeDouble(toDouble(leg.getDepartureTime()));
+            out.writeDouble(toDouble(leg.getTravelTime()));
+            Route route = leg.getRoute();
+            if (route == null) {
+                out.writeByte(NO_ROUTE);
+                return;
+            }
+            boolean networkRoute = leg.getMode().equals(TransportMode.car);
+            out.writeByte(networkRoute ? NETWORK_ROUTE : GENERIC_ROUTE);
+            writeString(route.getStartLinkId().toString());
+            writeString(route.getEndLinkId().toString());
+            out.writeDouble(route.getDistance());
+            out.writeDouble(toDouble(route.getTravelTime()));
+            if (networkRoute) {
+                NetworkRoute netRoute = (NetworkRoute) route;
+                out.writeDouble(netRoute.getTravelCost());
+                writeString(netRoute.getVehicleId() == null ? null : netRoute.getVehicleId().toString());
+                List<Id<Link>> linkIds = netRoute.getLinkIds();
+                writeVarInt(linkIds.size());
+                for (Id<Link> linkId : linkIds)
+                    writeString(linkId.toString());
+            } else {
+                writeString(route.getRouteDescription());
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final DataInput in;
+        private final List<String> dictionary = new ArrayList<>();
+
+        Reader(DataInput in) {
+            this.in = in;
+        }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = in.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        String readString() throws IOException {
+            int code = readVarInt();
+            if (code == NULL_STRING)
+                return null;
+            if (code == NEW_STRING) {
+                String s = in.readUTF();
+                dictionary.add(s);
+                return s;
+            }
+            return dictionary.get(code - 2);
+        }
+
+        PlanGenome readPlan(Person person) throws IOException {
+            PlanGenome plan = new PlanGenome(person);
+            double score = in.readDouble();
+            plan.setScore(Double.isNaN(score) ? null : score);
+            plan.setType(readString());
+            plan.setpSimScore(in.readDouble());
+            plan.setGenome(readString());
+            int numberOfComponents = readVarInt();
+            ArrayList<PlanScoreComponent> scoreComponents = new ArrayList<>(numberOfComponents);
+            for (int i = 0; i < numberOfComponents; i++) {
+                ScoreComponentType type = ScoreComponentType.values()[in.readByte()];
+                double componentScore = in.readDouble();
+                scoreComponents.add(new PlanScoreComponent(type, componentScore, readString()));
+            }
+            plan.setAltScoreComponents(scoreComponents);
+            int numberOfElements = readVarInt();
+            for (int i = 0; i < numberOfElements; i++) {
+                if (in.readByte() == ACTIVITY)
+                    plan.addActivity(readActivity());
+                else
+                    plan.addLeg(readLeg());
+            }
+            return plan;
+        }
+
+        private Activity readActivity() throws IOException {
+            String type = readString();
+            Coord coord = new Coord(in.readDouble(), in.readDouble());
+            String linkId = readString();
+            String facilityId = readString();
+            Activity activity = PopulationUtils.createActivityFromCoordAndLinkId(type, coord, linkId == null ? null : Id.createLinkId(linkId));
+            activity.setFacilityId(facilityId == null ? null : Id.create(facilityId, ActivityFacility.class));
+            double startTime = in.readDouble();
+            if (!Double.isNaN(startTime))
+                activity.setStartTime(startTime);
+            double endTime = in.readDouble();
+            if (!Double.isNaN(endTime))
+                activity.setEndTime(endTime);
+            double maximumDuration = in.readDouble();
+            if (!Double.isNaN(maximumDuration))
+                activity.setMaximumDuration(maximumDuration);
+            return activity;
+        }
+
+        private Leg readLeg() throws IOException {
+            String mode = readString();
+            Leg leg = PopulationUtils.createLeg(mode);
+            TripStructureUtils.setRoutingMode(leg, readString());
+            double departureTime = in.readDouble();
+            if (!Double.isNaN(departureTime))
+                leg.setDepartureTime(departureTime);
+            double travelTime = in.readDouble();
+            if (!Double.isNaN(travelTime))
+                leg.setTravelTime(travelTime);
+            byte routeType = in.readByte();
+            if (routeType == NO_ROUTE)
+                return leg;
+            Id<Link> startLinkId = Id.createLinkId(readString());
+            Id<Link> endLinkId = Id.createLinkId(readString());
+            double distance = in.readDouble();
+            double routeTravelTime = in.readDouble();
+            Route route;
+            if (routeType == NETWORK_ROUTE) {
+                NetworkRoute netRoute = RouteUtils.createLinkNetworkRouteImpl(startLinkId, endLinkId);
+                netRoute.setTravelCost(in.readDouble());
+                String vehicleId = readString();
+                netRoute.setVehicleId(vehicleId == null ? null : Id.create(vehicleId, Vehicle.class));
+                int numberOfLinks = readVarInt();
+                List<Id<Link>> linkIds = new ArrayList<>(numberOfLinks);
+                for (int i = 0; i < numberOfLinks; i++)
+                    linkIds.add(Id.createLinkId(readString()));
+                netRoute.setLinkIds(startLinkId, linkIds, endLinkId);
+                route = netRoute;
+            } else {
+                if (mode.equals(TransportMode.pt) && PlanSerializable.isUseTransit)
+                    route = new DefaultTransitPassengerRouteFactory().createRoute(startLinkId, endLinkId);
+                else
+                    route = RouteUtils.createGenericRouteImpl(startLinkId, endLinkId);
+                route.setRouteDescription(readString());
+            }
+            route.setDistance(distance);
+            if (!Double.isNaN(routeTravelTime))
+                route.setTravelTime(routeTravelTime);
+            leg.setRoute(route);
+            return leg;
+        }
+    }
+
+}
@@ -63,6 +63,25 @@ public class DistributedSimConfigGroup extends ReflectiveConfigGroup {
      */
     static final String PARALLEL_SIMULATION = "slavesRunInParallelToMaster";
     private boolean slavesRunInParallelToMaster = true;
+    /**
+     * If true, plans and link travel times are exchanged with the slaves in a compact binary format
+     * (see {@link BinaryProtocol}) instead of java serialization.
+     */
+    static final String BINARY_PROTOCOL = "binaryProtocol";
+    private boolean binaryProtocol = false;
+    /**
+     * The number of slaves the master starts itself, as separate JVMs on the same machine, each with
+     * defaultNumThreadsOnSlave threads. This allows a big machine to be used by several smaller heaps instead
+     * of a single huge one with long GC pauses. They count towards the initialNumberOfSlaves.
+     */
+    static final String NUM_LOCAL_SLAVES = "numberOfLocalSlaves";
+    private int numberOfLocalSlaves = 0;
+    /**
+     * Maximum heap of each local slave JVM, in the format of the -Xmx option, e.g. 16g.
+     * If empty, the JVM default is used.
+     */
+    static final String LOCAL_SLAVE_MAX_HEAP = "localSlaveMaxHeap";
+    private String localSlaveMaxHeap = "";
 
     public DistributedSimConfigGroup() {
         super(GROUP_NAME);
@@ -147,4 +166,28 @@ public class DistributedSimConfigGroup extends ReflectiveConfigGroup {
     public void setSlavesRunInParallelToMaster(boolean slavesRunInParallelToMaster) {
         this.slavesRunInParallelToMaster = slavesRunInParallelToMaster;
     }
+    @StringGetter(BINARY_PROTOCOL)
+    public boolean isBinaryProtocol() {
+        return binaryProtocol;
+    }
+    @StringSetter(BINARY_PROTOCOL)
+    public void setBinaryProtocol(boolean binaryProtocol) {
+        this.binaryProtocol = binaryProtocol;
+    }
+    @StringGetter(NUM_LOCAL_SLAVES)
+    public int getNumberOfLocalSlaves() {
+        return numberOfLocalSlaves;
+    }
+    @StringSetter(NUM_LOCAL_SLAVES)
+    public void setNumberOfLocalSlaves(int numberOfLocalSlaves) {
+        this.numberOfLocalSlaves = numberOfLocalSlaves;
+    }
+    @StringGetter(LOCAL_SLAVE_MAX_HEAP)
+    public String getLocalSlaveMaxHeap() {
+        return localSlaveMaxHeap;
+    }
+    @StringSetter(LOCAL_SLAVE_MAX_HEAP)
+    public void setLocalSlaveMaxHeap(String localSlaveMaxHeap) {
+        this.localSlaveMaxHeap = localSlaveMaxHeap;
+    }
 }
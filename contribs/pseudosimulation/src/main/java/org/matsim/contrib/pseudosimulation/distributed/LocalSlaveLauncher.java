@@ -0,0 +1,50 @@
+package org.matsim.contrib.pseudosimulation.distributed;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Starts {@link SlaveControler}s as separate JVMs on the local machine, with the class path of the current JVM,
+ * so replanning and PSim scoring are spread over several heaps. The slaves connect to the master like remote ones.
+ */
+class LocalSlaveLauncher {
+    private static final Logger log = LogManager.getLogger(LocalSlaveLauncher.class);
+    private final List<Process> processes = new ArrayList<>();
+
+    void launch(int numberOfSlaves, String configFile, int masterPortNumber, int threadsPerSlave, String maxHeap) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        for (int i = 0; i < numberOfSlaves; i++) {
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            if (maxHeap != null && !maxHeap.isEmpty())
+                command.add("-Xmx" + maxHeap);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(SlaveControler.class.getName());
+            command.add("-c");
+            command.add(configFile);
+            command.add("-h");
+            command.add("localhost");
+            command.add("-p");
+            command.add(Integer.toString(masterPortNumber));
+            command.add("-t");
+            command.add(Integer.toString(threadsPerSlave));
+            processes.add(new ProcessBuilder(command).inheritIO().start());
+        }
+        log.warn("Started " + numberOfSlaves + " local slave JVMs" + (maxHeap == null || maxHeap.isEmpty() ? "." : " with a maximum heap of " + maxHeap + " each."));
+    }
+
+    /**
+     * Kills the slave JVMs that are still running, e.g. if the master failed before it could tell them to shut down.
+     */
+    void destroy() {
+        for (Process process : processes)
+            if (process.isAlive())
+                process.destroy();
+    }
+}
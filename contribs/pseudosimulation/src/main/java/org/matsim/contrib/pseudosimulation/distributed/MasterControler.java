@@ -59,6 +59,8 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
     private  final double masterBorrowingRate;
     private  final boolean TrackGenome = false; // todo genome tracking
     private  final boolean intelligentRouters;
+    private  final boolean binaryProtocol;
+    private final LocalSlaveLauncher localSlaveLauncher = new LocalSlaveLauncher();
 
     private int innovationEndsAtIter = -1;
     private int slaveNumberOfPlans=3;
@@ -114,6 +116,11 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
         SelectedSimulationMode = distributedSimConfigGroup.isSlavesRunInParallelToMaster() ? SimulationMode.PARALLEL : SimulationMode.SERIAL;
         slaveIterationsPerMasterIteration = distributedSimConfigGroup.getSlaveIterationsPerMasterIteration();
         fullTransitPerformanceTransmission = distributedSimConfigGroup.isFullTransitPerformanceTransmission();
+        binaryProtocol = distributedSimConfigGroup.isBinaryProtocol();
+        if (distributedSimConfigGroup.getNumberOfLocalSlaves() > initialNumberOfSlaves)
+            throw new IllegalArgumentException(DistributedSimConfigGroup.NUM_LOCAL_SLAVES + " (" + distributedSimConfigGroup.getNumberOfLocalSlaves()
+                    + ") must not be larger than " + DistributedSimConfigGroup.INIT_NUM_SLAVES + " (" + initialNumberOfSlaves
+                    + "), since the local slaves count towards the initial slaves.");
 
         slaveHandlerTreeMap = new TreeMap<>();
         slaveScoreStats = new SlaveScoreStats(this.config);
@@ -122,6 +129,9 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
 
 //        register initial number of slaves
         ServerSocket writeServer = new ServerSocket(masterPortNumber);
+        if (distributedSimConfigGroup.getNumberOfLocalSlaves() > 0)
+            localSlaveLauncher.launch(distributedSimConfigGroup.getNumberOfLocalSlaves(), configFile, masterPortNumber,
+                    distributedSimConfigGroup.getDefaultNumThreadsOnSlave(), distributedSimConfigGroup.getLocalSlaveMaxHeap());
         for (int i = 0; i < initialNumberOfSlaves; i++) {
             Socket socket = writeServer.accept();
             System.out.println("Slave " + (i + 1) + " out of an initial " + initialNumberOfSlaves + " accepted.\n");
@@ -300,6 +310,7 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
                 ) {
             masterLogger.error(re.getStackTrace());
             master.hydra.killHydra();
+            master.localSlaveLauncher.destroy();
             Runtime.getRuntime().halt(-1);
         }
         Runtime.getRuntime().halt(0);
@@ -759,10 +770,16 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
             int timesIteration = reader.readInt();
             slaveLogger.warn(String.format("Plan signature: M%03dP%03dT%03d ", currentIteration + 1, slaveIteration, timesIteration));
             slaveLogger.warn("(M = iteration for execution on master,P = PSim iteration when plan came from on slave, T = travel time iteration from master used to generate plan on slave)");
-            Map<String, PlanSerializable> serialPlans = (Map<String, PlanSerializable>) reader.readObject();
-            slaveLogger.warn("RECEIVED " + serialPlans.size() + " plans from slave number " + myNumber);
-            for (Entry<String, PlanSerializable> entry : serialPlans.entrySet()) {
-                plans.put(entry.getKey(), entry.getValue().getPlan(matsimControler.getScenario().getPopulation()));
+            if (binaryProtocol) {
+                Map<String, Plan> slavePlans = BinaryProtocol.readPlans(reader, matsimControler.getScenario().getPopulation());
+                slaveLogger.warn("RECEIVED " + slavePlans.size() + " plans from slave number " + myNumber);
+                plans.putAll(slavePlans);
+            } else {
+                Map<String, PlanSerializable> serialPlans = (Map<String, PlanSerializable>) reader.readObject();
+                slaveLogger.warn("RECEIVED " + serialPlans.size() + " plans from slave number " + myNumber);
+                for (Entry<String, PlanSerializable> entry : serialPlans.entrySet()) {
+                    plans.put(entry.getKey(), entry.getValue().getPlan(matsimControler.getScenario().getPopulation()));
+                }
             }
             this.currentPopulationSize = plans.size();
         }
@@ -776,7 +793,10 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
         public void transmitTravelTimes() throws IOException {
             slaveLogger.warn("About to send travel times to slave number " + myNumber);
             writer.writeInt(currentIteration);
-            writer.writeObject(linkTravelTimes);
+            if (binaryProtocol)
+                BinaryProtocol.writeTravelTimes(writer, linkTravelTimes);
+            else
+                writer.writeObject(linkTravelTimes);
             if (config.transit().isUseTransit()) {
                 writer.writeObject(stopStopTimeCalculator.getStopStopTimes());
                 writer.writeObject(waitTimeCalculator.getWaitTimes());
@@ -976,6 +996,7 @@ public class MasterControler implements AfterMobsimListener, ShutdownListener, S
         slaveHandler.sendBoolean(TrackGenome);
         slaveHandler.sendBoolean(intelligentRouters);
         slaveHandler.sendBoolean(false); //for diversity generation;
+        slaveHandler.sendBoolean(binaryProtocol);
         slaveHandler.readMemoryStats();
         slaveHandler.readNumberOfThreadsOnSlave();
     }
@@ -33,6 +33,31 @@ public class SerializableLinkTravelTimes implements Serializable, TravelTime {
 		}
 	}
 
+	SerializableLinkTravelTimes(String[] linkIds, double[][] times, int travelTimeBinSize) {
+		this.travelTimeBinSize = travelTimeBinSize;
+		this.times = times;
+		for (int i = 0; i < linkIds.length; i++)
+			indices.put(linkIds[i], i);
+	}
+
+	/**
+	 * @return the link ids in the order of the rows of {@link #getTimes()}
+	 */
+	String[] getLinkIds() {
+		String[] linkIds = new String[times.length];
+		for (Map.Entry<String, Integer> entry : indices.entrySet())
+			linkIds[entry.getValue()] = entry.getKey();
+		return linkIds;
+	}
+
+	double[][] getTimes() {
+		return times;
+	}
+
+	int getTravelTimeBinSize() {
+		return travelTimeBinSize;
+	}
+
 	@Override
 	public double getLinkTravelTime(Link link, double time, Person person,
 			Vehicle vehicle) {
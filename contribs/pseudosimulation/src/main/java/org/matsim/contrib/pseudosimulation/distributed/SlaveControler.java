@@ -78,6 +78,7 @@ public class SlaveControler implements IterationStartsListener, StartupListener,
     private static double slaveMutationRate;
     private final int numberOfPlansOnSlave;
     private boolean initialRouting;
+    private boolean binaryProtocol;
     private int numberOfIterations = -1;
     private int executedPlanCount;
     private int currentIteration = 0;
@@ -215,6 +216,7 @@ public class SlaveControler implements IterationStartsListener, StartupListener,
         boolean trackGenome = reader.readBoolean();
         IntelligentRouters = reader.readBoolean();
         boolean diversityGeneratingPlanSelection = reader.readBoolean();
+        binaryProtocol = reader.readBoolean();
 
         if (initialRouting) slaveLogger.warn("Performing initial routing.");
 
@@ -429,6 +431,14 @@ public class SlaveControler implements IterationStartsListener, StartupListener,
     }
 
     public void transmitPlans() throws IOException, ClassNotFoundException {
+        if (binaryProtocol) {
+            slaveLogger.warn("Sending " + matsimControler.getScenario().getPopulation().getPersons().size() + " plans...");
+            writer.writeInt(currentIteration);
+            writer.writeInt(masterCurrentIteration);
+            BinaryProtocol.writeSelectedPlans(writer, matsimControler.getScenario().getPopulation());
+            slaveLogger.warn("Sending completed.");
+            return;
+        }
         Map<String, PlanSerializable> tempPlansCopyForSending = new HashMap<>();
         for (Person person : matsimControler.getScenario().getPopulation().getPersons().values()) {
             PlanSerializable planSerializable = new PlanSerializable(person.getSelectedPlan());
@@ -447,7 +457,7 @@ public class SlaveControler implements IterationStartsListener, StartupListener,
     public void transmitTravelTimes() throws IOException, ClassNotFoundException {
         slaveLogger.warn("RECEIVING travel times...");
         masterCurrentIteration = reader.readInt();
-        linkTravelTimes = (SerializableLinkTravelTimes) reader.readObject();
+        linkTravelTimes = binaryProtocol ? BinaryProtocol.readTravelTimes(reader) : (SerializableLinkTravelTimes) reader.readObject();
         if (config.transit().isUseTransit()) {
             stopStopTimes = (StopStopTime) reader.readObject();
             waitTimes = (WaitTime) reader.readObject();
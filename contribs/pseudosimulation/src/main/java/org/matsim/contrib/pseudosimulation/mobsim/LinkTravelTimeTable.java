@@ -0,0 +1,52 @@
+package org.matsim.contrib.pseudosimulation.mobsim;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Link travel times per time bin, evaluated once from a {@link TravelTime} and stored in a flat array addressed by
+ * the link index (see {@link Id#index()}, as used by the speedy routers), so looking them up during PSim needs
+ * neither a network map lookup nor a call to the (possibly expensive) travel time implementation.
+ * <p></p>
+ * Each bin holds the travel time at the start of the bin, and all times within the bin get that value, without
+ * interpolation between bins. This is what the default travel time calculator returns anyway, but it differs if the
+ * travel time calculator interpolates (travelTimeGetterType linearinterpolation) or the {@link TravelTime} is not
+ * piecewise constant per bin. Times after the last bin are looked up in the last bin.
+ */
+final class LinkTravelTimeTable {
+
+    private final double[] times;
+    private final int binSize;
+    private final int numberOfBins;
+
+    LinkTravelTimeTable(Network network, TravelTime travelTime, int binSize, double endTime, int numberOfThreads) {
+        this.binSize = binSize;
+        this.numberOfBins = (int) (endTime / binSize) + 1;
+        this.times = new double[Id.getNumberOfIds(Link.class) * numberOfBins];
+        Link[] links = network.getLinks().values().toArray(new Link[0]);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, numberOfThreads));
+        try {
+            pool.submit(() -> IntStream.range(0, links.length).parallel().forEach(i -> {
+                Link link = links[i];
+                int offset = link.getId().index() * numberOfBins;
+                for (int bin = 0; bin < numberOfBins; bin++)
+                    times[offset + bin] = travelTime.getLinkTravelTime(link, (double) bin * binSize, null, null);
+            })).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Could not compute the link travel time table", e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    double getLinkTravelTime(int linkIndex, double time) {
+        int bin = Math.min(Math.max(0, (int) (time / binSize)), numberOfBins - 1);
+        return times[linkIndex * numberOfBins + bin];
+    }
+}
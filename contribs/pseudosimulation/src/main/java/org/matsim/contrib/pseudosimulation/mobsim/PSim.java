@@ -3,11 +3,10 @@
  */
 package org.matsim.contrib.pseudosimulation.mobsim;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -36,6 +35,7 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.api.core.v01.population.Route;
+import org.matsim.contrib.pseudosimulation.PSimConfigGroup;
 import org.matsim.contrib.pseudosimulation.mobsim.transitperformance.TransitEmulator;
 import org.matsim.contrib.pseudosimulation.util.CollectionUtils;
 import org.matsim.core.api.experimental.events.EventsManager;
@@ -60,6 +60,15 @@ import org.matsim.vehicles.Vehicle;
  * @author fouriep, sergioo
  *         <p></p>
  *         Extended for transit simulation.
+ *         <p></p>
+ *         If {@link PSimConfigGroup#isPrecomputeLinkTravelTimes()} is set, car travel times are looked up in a
+ *         {@link LinkTravelTimeTable} computed once per run, and the threads take chunks of plans from a shared
+ *         counter until all plans are executed, instead of working on one fixed segment each. Each thread buffers the
+ *         events of a chunk and passes them to the events manager together. PSim itself keeps no scoring state: all
+ *         events go through the {@link EventsManager}, so that scoring, road pricing, experienced plans etc. see them
+ *         as before. To score on several threads, set
+ *         {@link org.matsim.core.config.groups.PlanCalcScoreConfigGroup#setNumberOfScoringThreads(int)}; the
+ *         scoring then keeps its state per person shard, each on its own thread.
  */
 public class PSim implements Mobsim {
 
@@ -70,12 +79,16 @@ public class PSim implements Mobsim {
 
     private final static double MIN_LEG_DURATION = 0.0;
 
+    private final static int PLANS_PER_CHUNK = 100;
+
     private final SimThread[] threads;
     AtomicInteger numThreads;
 
     private final TravelTime carLinkTravelTimes;
     private final Collection<Plan> plans;
     private final double endTime;
+    private final boolean precomputeLinkTravelTimes;
+    private final int travelTimeBinSize;
     
     // Encapsulates TransitPerformance, WaitTime, StopStopTime, ...
     private TransitEmulator transitEmulator = null;
@@ -93,6 +106,8 @@ public class PSim implements Mobsim {
 
         this.carLinkTravelTimes = carLinkTravelTimes;
         this.plans = plans;
+        this.precomputeLinkTravelTimes = ConfigUtils.addOrGetModule(sc.getConfig(), PSimConfigGroup.class).isPrecomputeLinkTravelTimes();
+        this.travelTimeBinSize = sc.getConfig().travelTimeCalculator().getTraveltimeBinSize();
     }
 
     public PSim(Scenario sc, EventsManager eventsManager, Collection<Plan> plans, TravelTime carLinkTravelTimes, TransitEmulator transitEmulator) {
@@ -108,6 +123,11 @@ public class PSim implements Mobsim {
 
         Network network = scenario.getNetwork();
 
+        if (precomputeLinkTravelTimes) {
+            runInChunks(network);
+            return;
+        }
+
 		/*
          * split collection in approx even segments
 		 */
@@ -121,6 +141,22 @@ public class PSim implements Mobsim {
             threads[i].init(segments[i], network, eventManager);
             new Thread(threads[i]).start();
         }
+        waitForThreads();
+    }
+
+    private void runInChunks(Network network) {
+        LinkTravelTimeTable travelTimeTable = new LinkTravelTimeTable(network, carLinkTravelTimes, travelTimeBinSize, endTime, threads.length);
+        Plan[] planArray = plans.toArray(new Plan[0]);
+        AtomicInteger nextPlan = new AtomicInteger(0);
+        numThreads = new AtomicInteger(threads.length);
+        for (SimThread thread : threads) {
+            thread.init(planArray, nextPlan, travelTimeTable, network, eventManager);
+            new Thread(thread).start();
+        }
+        waitForThreads();
+    }
+
+    private void waitForThreads() {
 		/*
 		 * wait for threads
 		 */
@@ -141,124 +177,166 @@ public class PSim implements Mobsim {
 
         private Network network;
 
+        private Plan[] planArray;
+
+        private AtomicInteger nextPlan;
+
+        private LinkTravelTimeTable travelTimeTable;
+
+        private final List<Event> eventBuffer = new ArrayList<>();
+
         public void init(Collection<Plan> plans, Network network, EventsManager eventManager) {
             this.threadPlans = plans;
             this.network = network;
             this.eventManager = eventManager;
         }
 
+        void init(Plan[] plans, AtomicInteger nextPlan, LinkTravelTimeTable travelTimeTable, Network network, EventsManager eventManager) {
+            this.planArray = plans;
+            this.nextPlan = nextPlan;
+            this.travelTimeTable = travelTimeTable;
+            this.network = network;
+            this.eventManager = eventManager;
+        }
+
         @Override
         public void run() {
-            // plans:
-            for( Plan plan : threadPlans ){
-                Queue<Event> eventQueue = new LinkedList<>();
-                Id<Person> personId = plan.getPerson().getId();
-                Id<Vehicle> personVehicleId = Id.createVehicleId( personId.toString() ); // TODO: find cleaner access to vehicle id
-                List<PlanElement> elements = plan.getPlanElements();
-
-                double prevEndTime = 0;
-
-                // legs:
-                for( int idx = 0 ; idx < elements.size() ; idx += 2 ){
-                    Activity act = (Activity) elements.get( idx );
+            if (planArray != null) {
+                int start;
+                while ((start = nextPlan.getAndAdd(PLANS_PER_CHUNK)) < planArray.length) {
+                    int end = Math.min(start + PLANS_PER_CHUNK, planArray.length);
+                    for (int i = start; i < end; i++)
+                        simulatePlan(planArray[i]);
+                    flushEvents();
+                }
+            } else {
+                for (Plan plan : threadPlans) {
+                    simulatePlan(plan);
+                    flushEvents();
+                }
+            }
+
+            numThreads.decrementAndGet();
+        }
+
+        private void flushEvents() {
+            for (Event event : eventBuffer)
+                eventManager.processEvent(event);
+            eventBuffer.clear();
+        }
+
+        private void simulatePlan(Plan plan) {
+            List<Event> eventQueue = new ArrayList<>();
+            Id<Person> personId = plan.getPerson().getId();
+            Id<Vehicle> personVehicleId = Id.createVehicleId( personId.toString() ); // TODO: find cleaner access to vehicle id
+            List<PlanElement> elements = plan.getPlanElements();
+
+            double prevEndTime = 0;
+
+            // legs:
+            for( int idx = 0 ; idx < elements.size() ; idx += 2 ){
+                Activity act = (Activity) elements.get( idx );
+                /*
+                 * Make sure that the activity does not end before the previous activity.
+                 */
+                double actEndTime = Math.max( prevEndTime + MIN_ACT_DURATION, act.getEndTime().orElse(0));
+                if( idx > 0 ){
                     /*
-                     * Make sure that the activity does not end before the previous activity.
+                     * If this is not the first activity, then there must exist a leg before.
                      */
-                    double actEndTime = Math.max( prevEndTime + MIN_ACT_DURATION, act.getEndTime().orElse(0));
-                    if( idx > 0 ){
-                        /*
-                         * If this is not the first activity, then there must exist a leg before.
-                         */
-
-                        Leg prevLeg = (Leg) elements.get( idx - 1 );
-                        double travelTime = 0.0;
-                        if( prevLeg.getMode().equals( TransportMode.car ) ){
-                            try{
-                                eventQueue.add( new PersonEntersVehicleEvent( prevEndTime, personId, personVehicleId ) );
-                                eventQueue.add( new VehicleEntersTrafficEvent( prevEndTime, personId, prevLeg.getRoute().getStartLinkId(), personVehicleId,
-                                        TransportMode.car, 1.0 ) );
-                                NetworkRoute croute = (NetworkRoute) prevLeg.getRoute();
-
-                                travelTime = calcRouteTravelTime( croute, prevEndTime, carLinkTravelTimes, network, eventQueue, personVehicleId );
-                                eventQueue.add(
-                                        new VehicleLeavesTrafficEvent( prevEndTime + travelTime, personId, prevLeg.getRoute().getEndLinkId(), personVehicleId,
-                                                TransportMode.car, 1.0 ) );
-                                eventQueue.add( new PersonLeavesVehicleEvent( prevEndTime + travelTime, personId, personVehicleId ) );
-                            } catch( NullPointerException ne ){
-                                LogManager.getLogger( this.getClass() ).error( "No route for car leg. Continuing with next leg" );
-                                continue;
-                            }
-                        } else if( transitModes.contains( prevLeg.getMode() ) ){
-                            TransitEmulator.Trip trip = transitEmulator.findTrip( prevLeg, prevEndTime );
-                            if( trip != null ){
-
-                                Id<Vehicle> vehicleId = trip.vehicleId();
-                                if( vehicleId == null ){
-                                    vehicleId = Id.create( "dummy", Vehicle.class );
-                                }
-                                eventQueue.add( new PersonEntersVehicleEvent( trip.accessTime_s(), personId, vehicleId ) ); // dummyVehicleId));
-                                eventQueue.add( new PersonLeavesVehicleEvent( trip.egressTime_s(), personId, vehicleId ) ); // dummyVehicleId));
-                                travelTime = trip.egressTime_s() - prevEndTime;
+
+                    Leg prevLeg = (Leg) elements.get( idx - 1 );
+                    double travelTime = 0.0;
+                    if( prevLeg.getMode().equals( TransportMode.car ) ){
+                        try{
+                            eventQueue.add( new PersonEntersVehicleEvent( prevEndTime, personId, personVehicleId ) );
+                            eventQueue.add( new VehicleEntersTrafficEvent( prevEndTime, personId, prevLeg.getRoute().getStartLinkId(), personVehicleId,
+                                    TransportMode.car, 1.0 ) );
+                            NetworkRoute croute = (NetworkRoute) prevLeg.getRoute();
+
+                            travelTime = calcRouteTravelTime( croute, prevEndTime, eventQueue, personVehicleId );
+                            eventQueue.add(
+                                    new VehicleLeavesTrafficEvent( prevEndTime + travelTime, personId, prevLeg.getRoute().getEndLinkId(), personVehicleId,
+                                            TransportMode.car, 1.0 ) );
+                            eventQueue.add( new PersonLeavesVehicleEvent( prevEndTime + travelTime, personId, personVehicleId ) );
+                        } catch( NullPointerException ne ){
+                            LogManager.getLogger( this.getClass() ).error( "No route for car leg. Continuing with next leg" );
+                            continue;
+                        }
+                    } else if( transitModes.contains( prevLeg.getMode() ) ){
+                        TransitEmulator.Trip trip = transitEmulator.findTrip( prevLeg, prevEndTime );
+                        if( trip != null ){
+
+                            Id<Vehicle> vehicleId = trip.vehicleId();
+                            if( vehicleId == null ){
+                                vehicleId = Id.create( "dummy", Vehicle.class );
                             }
-                        } else{
-                                Route route = prevLeg.getRoute();
-                                if (route == null) {
-                                    LogManager.getLogger( this.getClass() ).error( "No route for this leg. Continuing with next leg" );
-                                    continue;
-                                }
-
-                                travelTime = route.getTravelTime().orElse(0);
-                                eventQueue.add( new TeleportationArrivalEvent( prevEndTime + travelTime, personId,
-                                        route.getDistance()
-                                        , prevLeg.getMode()
-                                ) );
+                            eventQueue.add( new PersonEntersVehicleEvent( trip.accessTime_s(), personId, vehicleId ) ); // dummyVehicleId));
+                            eventQueue.add( new PersonLeavesVehicleEvent( trip.egressTime_s(), personId, vehicleId ) ); // dummyVehicleId));
+                            travelTime = trip.egressTime_s() - prevEndTime;
                         }
+                    } else{
+                            Route route = prevLeg.getRoute();
+                            if (route == null) {
+                                LogManager.getLogger( this.getClass() ).error( "No route for this leg. Continuing with next leg" );
+                                continue;
+                            }
 
-                        travelTime = Math.max( MIN_LEG_DURATION, travelTime );
-                        double arrivalTime = travelTime + prevEndTime;
-
-                        /*
-                         * Make sure that the activity does not end before the
-                         * agent arrives.
-                         */
-                        actEndTime = Math.max( arrivalTime + MIN_ACT_DURATION, actEndTime );
-                        /*
-                         * Send arrival and activity start events.
-                         */
-                        PersonArrivalEvent arrivalEvent = new PersonArrivalEvent( arrivalTime, personId, act.getLinkId(), prevLeg.getMode() );
-                        eventQueue.add( arrivalEvent );
-                        ActivityStartEvent startEvent = new ActivityStartEvent( arrivalTime, personId, act.getLinkId(), act.getFacilityId(), act.getType() );
-                        eventQueue.add( startEvent );
+                            travelTime = route.getTravelTime().orElse(0);
+                            eventQueue.add( new TeleportationArrivalEvent( prevEndTime + travelTime, personId,
+                                    route.getDistance()
+                                    , prevLeg.getMode()
+                            ) );
                     }
 
-                    if( idx < elements.size() - 1 ){
-                        /*
-                         * This is not the last activity, send activity end and
-                         * departure events.
-                         */
-                        Leg nextLeg = (Leg) elements.get( idx + 1 );
-                        ActivityEndEvent endEvent = new ActivityEndEvent( actEndTime, personId, act.getLinkId(), act.getFacilityId(), act.getType() );
-                        eventQueue.add( endEvent );
-                        PersonDepartureEvent departureEvent = new PersonDepartureEvent( actEndTime, personId, act.getLinkId(), nextLeg.getMode(), TripStructureUtils.getRoutingMode(nextLeg) );
-
-                        eventQueue.add( departureEvent );
-                    }
+                    travelTime = Math.max( MIN_LEG_DURATION, travelTime );
+                    double arrivalTime = travelTime + prevEndTime;
+
+                    /*
+                     * Make sure that the activity does not end before the
+                     * agent arrives.
+                     */
+                    actEndTime = Math.max( arrivalTime + MIN_ACT_DURATION, actEndTime );
+                    /*
+                     * Send arrival and activity start events.
+                     */
+                    PersonArrivalEvent arrivalEvent = new PersonArrivalEvent( arrivalTime, personId, act.getLinkId(), prevLeg.getMode() );
+                    eventQueue.add( arrivalEvent );
+                    ActivityStartEvent startEvent = new ActivityStartEvent( arrivalTime, personId, act.getLinkId(), act.getFacilityId(), act.getType() );
+                    eventQueue.add( startEvent );
+                }
+
+                if( idx < elements.size() - 1 ){
+                    /*
+                     * This is not the last activity, send activity end and
+                     * departure events.
+                     */
+                    Leg nextLeg = (Leg) elements.get( idx + 1 );
+                    ActivityEndEvent endEvent = new ActivityEndEvent( actEndTime, personId, act.getLinkId(), act.getFacilityId(), act.getType() );
+                    eventQueue.add( endEvent );
+                    PersonDepartureEvent departureEvent = new PersonDepartureEvent( actEndTime, personId, act.getLinkId(), nextLeg.getMode(), TripStructureUtils.getRoutingMode(nextLeg) );
 
-                    prevEndTime = actEndTime;
+                    eventQueue.add( departureEvent );
                 }
-                for( Event event : eventQueue ){
-                    if( event.getTime() > endTime ){
-                        eventManager.processEvent( new PersonStuckEvent( endTime, personId, null, null ) );
-                        break;
-                    }
-                    eventManager.processEvent( event );
+
+                prevEndTime = actEndTime;
+            }
+            for( Event event : eventQueue ){
+                if( event.getTime() > endTime ){
+                    eventBuffer.add( new PersonStuckEvent( endTime, personId, null, null ) );
+                    break;
                 }
+                eventBuffer.add( event );
             }
+        }
 
-            numThreads.decrementAndGet();
+        private double getLinkTravelTime(Id<Link> linkId, double time) {
+            if (travelTimeTable != null)
+                return travelTimeTable.getLinkTravelTime(linkId.index(), time);
+            return carLinkTravelTimes.getLinkTravelTime(network.getLinks().get(linkId), time, null, null);
         }
 
-        private double calcRouteTravelTime(NetworkRoute route, double startTime, TravelTime travelTime, Network network, Queue<Event> eventQueue, Id<Vehicle> personVehicleId) {
+        private double calcRouteTravelTime(NetworkRoute route, double startTime, List<Event> eventQueue, Id<Vehicle> personVehicleId) {
 
             double tt = 0;
             if (route.getStartLinkId() != route.getEndLinkId()) {
@@ -274,7 +352,7 @@ public class PSim implements Mobsim {
                     linkEnterEvent = new LinkEnterEvent(linkEnterTime, personVehicleId, routeLinkId);
                     eventQueue.add(linkEnterEvent);
 
-                    double linkTime = travelTime.getLinkTravelTime(network.getLinks().get(routeLinkId), linkEnterTime, null, null);
+                    double linkTime = getLinkTravelTime(routeLinkId, linkEnterTime);
                     tt += Math.max(linkTime, 1.0);
 
                     linkLeaveTime = Math.max(linkEnterTime + 1, linkEnterTime + linkTime);
@@ -285,7 +363,7 @@ public class PSim implements Mobsim {
             }
             LinkEnterEvent linkEnterEvent = new LinkEnterEvent(startTime + tt, personVehicleId, route.getEndLinkId());
             eventQueue.add(linkEnterEvent);
-            return tt + travelTime.getLinkTravelTime(network.getLinks().get(route.getEndLinkId()), tt + startTime, null, null);
+            return tt + getLinkTravelTime(route.getEndLinkId(), tt + startTime);
         }
     }
 }
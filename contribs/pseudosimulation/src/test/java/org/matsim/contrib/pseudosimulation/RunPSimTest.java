@@ -47,12 +47,42 @@ public class RunPSimTest {
 	 */
 	@Test
 	public void testA() {
+		final String outDir = utils.getOutputDirectory();
+		double psimScore = runPSim(false);
+		logger.info("RunPSim score was " + psimScore);
+		Population popExpected = PopulationUtils.createPopulation( config ) ;
+		PopulationUtils.readPopulation( popExpected, utils.getInputDirectory() + "/output_plans.xml.gz" );
+		Population popActual = PopulationUtils.createPopulation( config );
+		PopulationUtils.readPopulation( popActual, outDir + "/output_plans.xml.gz" );
+		new PopulationComparison().compare( popExpected, popActual ) ;
+		Assert.assertEquals("RunPsim score changed.", 138.90472630897597d, psimScore, MatsimTestUtils.EPSILON);
+//		Assert.assertEquals("RunPsim score changed.", 134.54001491094124d, psimScore, MatsimTestUtils.EPSILON);
+//		Assert.assertEquals("RunPsim score changed.", 134.52369453719413d, psimScore, MatsimTestUtils.EPSILON);
+//		Assert.assertEquals("RunPsim score changed.", 132.73129073101293d, psimScore, MatsimTestUtils.EPSILON);
+	}
+
+	/**
+	 * Same as testA, but with the car travel times precomputed per link index and time bin, the plans executed in
+	 * chunks, and the events scored on several threads. The table takes the travel time at the start of each bin, which
+	 * is what the default travel time calculator returns for the whole bin, and the scores do not depend on the number of
+	 * scoring threads, so the score must be the same as in testA.
+	 */
+	@Test
+	public void testC() {
+		config.planCalcScore().setNumberOfScoringThreads(2);
+		double psimScore = runPSim(true);
+		logger.info("RunPSim score with precomputed link travel times was " + psimScore);
+		Assert.assertEquals("RunPsim score with precomputed link travel times differs from the default mode.", 138.90472630897597d, psimScore, MatsimTestUtils.EPSILON);
+	}
+
+	private double runPSim(boolean precomputeLinkTravelTimes) {
 		config.transit().setRoutingAlgorithmType(TransitRoutingAlgorithmType.DijkstraBased);
 		config.controler().setCreateGraphs(false);
 
 		PSimConfigGroup pSimConfigGroup = new PSimConfigGroup();
 		config.addModule(pSimConfigGroup);
 		pSimConfigGroup.setIterationsPerCycle(20);
+		pSimConfigGroup.setPrecomputeLinkTravelTimes(precomputeLinkTravelTimes);
 		
 		config.plansCalcRoute().setRoutingRandomness(0.);
 
@@ -102,17 +132,7 @@ public class RunPSimTest {
 		
 		
 		runPSim.run();
-		double psimScore = execScoreTracker.executedScore;
-		logger.info("RunPSim score was " + psimScore);
-		Population popExpected = PopulationUtils.createPopulation( config ) ;
-		PopulationUtils.readPopulation( popExpected, utils.getInputDirectory() + "/output_plans.xml.gz" );
-		Population popActual = PopulationUtils.createPopulation( config );
-		PopulationUtils.readPopulation( popActual, outDir + "/output_plans.xml.gz" );
-		new PopulationComparison().compare( popExpected, popActual ) ;
-		Assert.assertEquals("RunPsim score changed.", 138.90472630897597d, psimScore, MatsimTestUtils.EPSILON);
-//		Assert.assertEquals("RunPsim score changed.", 134.54001491094124d, psimScore, MatsimTestUtils.EPSILON);
-//		Assert.assertEquals("RunPsim score changed.", 134.52369453719413d, psimScore, MatsimTestUtils.EPSILON);
-//		Assert.assertEquals("RunPsim score changed.", 132.73129073101293d, psimScore, MatsimTestUtils.EPSILON);
+		return execScoreTracker.executedScore;
 	}
 
 	/**
@@ -0,0 +1,177 @@
+package org.matsim.contrib.pseudosimulation.distributed;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+public class BinaryProtocolTest {
+
+    @Test
+    public void testPlansRoundTrip() throws IOException {
+        Population population = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getPopulation();
+        PopulationFactory factory = population.getFactory();
+
+        // car, pt and teleported legs; activities with and without link and facility ids and times
+        Person person1 = factory.createPerson(Id.createPersonId("1"));
+        Plan plan1 = factory.createPlan();
+        plan1.setScore(12.5);
+        plan1.setType("typeA");
+        Activity home = factory.createActivityFromLinkId("home", Id.createLinkId("a"));
+        home.setCoord(new Coord(1., 2.));
+        home.setEndTime(7 * 3600.);
+        plan1.addActivity(home);
+        Leg car = factory.createLeg(TransportMode.car);
+        TripStructureUtils.setRoutingMode(car, TransportMode.car);
+        car.setDepartureTime(7 * 3600.);
+        car.setTravelTime(600.);
+        NetworkRoute networkRoute = RouteUtils.createLinkNetworkRouteImpl(Id.createLinkId("a"),
+                Arrays.asList(Id.createLinkId("b"), Id.createLinkId("c"), Id.createLinkId("b")), Id.createLinkId("d"));
+        networkRoute.setDistance(1234.);
+        networkRoute.setTravelTime(600.);
+        networkRoute.setTravelCost(3.5);
+        networkRoute.setVehicleId(Id.create("v1", Vehicle.class));
+        car.setRoute(networkRoute);
+        plan1.addLeg(car);
+        Activity work = factory.createActivityFromCoord("work", new Coord(3., 4.));
+        work.setFacilityId(Id.create("f1", ActivityFacility.class));
+        work.setStartTime(7.5 * 3600.);
+        work.setMaximumDuration(8 * 3600.);
+        plan1.addActivity(work);
+        Leg pt = factory.createLeg(TransportMode.pt);
+        TripStructureUtils.setRoutingMode(pt, TransportMode.pt);
+        Route ptRoute = RouteUtils.createGenericRouteImpl(Id.createLinkId("d"), Id.createLinkId("a"));
+        ptRoute.setDistance(2000.);
+        ptRoute.setRouteDescription("line 1");
+        pt.setRoute(ptRoute);
+        plan1.addLeg(pt);
+        Activity shop = factory.createActivityFromCoord("shop", new Coord(5., 6.));
+        plan1.addActivity(shop);
+        Leg walk = factory.createLeg(TransportMode.walk);
+        walk.setRoute(RouteUtils.createGenericRouteImpl(Id.createLinkId("a"), Id.createLinkId("a")));
+        plan1.addLeg(walk);
+        Leg withoutRoute = factory.createLeg(TransportMode.bike);
+        plan1.addLeg(withoutRoute);
+        Activity homeAgain = factory.createActivityFromLinkId("home", Id.createLinkId("a"));
+        homeAgain.setCoord(new Coord(1., 2.));
+        plan1.addActivity(homeAgain);
+        person1.addPlan(plan1);
+        population.addPerson(person1);
+
+        // no score, a single activity
+        Person person2 = factory.createPerson(Id.createPersonId("2"));
+        Plan plan2 = factory.createPlan();
+        plan2.addActivity(factory.createActivityFromCoord("home", new Coord(0., 0.)));
+        person2.addPlan(plan2);
+        population.addPerson(person2);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            BinaryProtocol.writeSelectedPlans(out, population);
+        }
+        Map<String, Plan> plans;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            plans = BinaryProtocol.readPlans(in, population);
+        }
+
+        Assert.assertEquals(Arrays.asList("1", "2"), List.copyOf(plans.keySet()));
+        assertPlanEquals(plan1, plans.get("1"));
+        Assert.assertEquals(12.5, ((PlanGenome) plans.get("1")).getpSimScore(), 0.);
+        assertPlanEquals(plan2, plans.get("2"));
+        Assert.assertEquals(0., ((PlanGenome) plans.get("2")).getpSimScore(), 0.);
+        Assert.assertSame(person2, plans.get("2").getPerson());
+    }
+
+    @Test
+    public void testTravelTimesRoundTrip() throws IOException {
+        String[] linkIds = {"a", "b", "c"};
+        double[][] times = {{1., 2., 3.5}, {Double.POSITIVE_INFINITY, 0., 1e-9}, {100., 200., 300.}};
+        SerializableLinkTravelTimes travelTimes = new SerializableLinkTravelTimes(linkIds, times, 900);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            BinaryProtocol.writeTravelTimes(out, travelTimes);
+        }
+        SerializableLinkTravelTimes read;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = BinaryProtocol.readTravelTimes(in);
+        }
+
+        Assert.assertEquals(900, read.getTravelTimeBinSize());
+        Assert.assertArrayEquals(linkIds, read.getLinkIds());
+        for (int i = 0; i < times.length; i++)
+            Assert.assertArrayEquals(times[i], read.getTimes()[i], 0.);
+    }
+
+    private static void assertPlanEquals(Plan expected, Plan actual) {
+        Assert.assertEquals(expected.getScore(), actual.getScore());
+        Assert.assertEquals(expected.getType(), actual.getType());
+        Assert.assertEquals(expected.getPlanElements().size(), actual.getPlanElements().size());
+        for (int i = 0; i < expected.getPlanElements().size(); i++) {
+            PlanElement expectedElement = expected.getPlanElements().get(i);
+            PlanElement actualElement = actual.getPlanElements().get(i);
+            if (expectedElement instanceof Activity) {
+                Activity expectedAct = (Activity) expectedElement;
+                Activity actualAct = (Activity) actualElement;
+                Assert.assertEquals(expectedAct.getType(), actualAct.getType());
+                Assert.assertEquals(expectedAct.getCoord(), actualAct.getCoord());
+                Assert.assertEquals(expectedAct.getLinkId(), actualAct.getLinkId());
+                Assert.assertEquals(expectedAct.getFacilityId(), actualAct.getFacilityId());
+                Assert.assertEquals(expectedAct.getStartTime(), actualAct.getStartTime());
+                Assert.assertEquals(expectedAct.getEndTime(), actualAct.getEndTime());
+                Assert.assertEquals(expectedAct.getMaximumDuration(), actualAct.getMaximumDuration());
+            } else {
+                Leg expectedLeg = (Leg) expectedElement;
+                Leg actualLeg = (Leg) actualElement;
+                Assert.assertEquals(expectedLeg.getMode(), actualLeg.getMode());
+                Assert.assertEquals(TripStructureUtils.getRoutingMode(expectedLeg), TripStructureUtils.getRoutingMode(actualLeg));
+                Assert.assertEquals(expectedLeg.getDepartureTime(), actualLeg.getDepartureTime());
+                Assert.assertEquals(expectedLeg.getTravelTime(), actualLeg.getTravelTime());
+                Route expectedRoute = expectedLeg.getRoute();
+                Route actualRoute = actualLeg.getRoute();
+                if (expectedRoute == null) {
+                    Assert.assertNull(actualRoute);
+                    continue;
+                }
+                Assert.assertEquals(expectedRoute.getStartLinkId(), actualRoute.getStartLinkId());
+                Assert.assertEquals(expectedRoute.getEndLinkId(), actualRoute.getEndLinkId());
+                Assert.assertEquals(expectedRoute.getDistance(), actualRoute.getDistance(), 0.);
+                Assert.assertEquals(expectedRoute.getTravelTime(), actualRoute.getTravelTime());
+                if (expectedRoute instanceof NetworkRoute) {
+                    NetworkRoute expectedNetworkRoute = (NetworkRoute) expectedRoute;
+                    NetworkRoute actualNetworkRoute = (NetworkRoute) actualRoute;
+                    Assert.assertEquals(expectedNetworkRoute.getLinkIds(), actualNetworkRoute.getLinkIds());
+                    Assert.assertEquals(expectedNetworkRoute.getVehicleId(), actualNetworkRoute.getVehicleId());
+                    Assert.assertEquals(expectedNetworkRoute.getTravelCost(), actualNetworkRoute.getTravelCost(), 0.);
+                } else {
+                    Assert.assertEquals(expectedRoute.getRouteDescription(), actualRoute.getRouteDescription());
+                }
+            }
+        }
+    }
+}
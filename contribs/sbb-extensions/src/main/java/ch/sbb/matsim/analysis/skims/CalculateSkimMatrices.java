@@ -5,6 +5,7 @@
 package ch.sbb.matsim.analysis.skims;
 
 import ch.sbb.matsim.analysis.skims.NetworkSkimMatrices.NetworkIndicators;
+import ch.sbb.matsim.config.SwissRailRaptorConfigGroup;
 import ch.sbb.matsim.routing.pt.raptor.RaptorParameters;
 import ch.sbb.matsim.routing.pt.raptor.RaptorStaticConfig;
 import ch.sbb.matsim.routing.pt.raptor.RaptorUtils;
@@ -17,6 +18,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -24,6 +26,7 @@ import java.util.Set;
 import java.util.function.BiPredicate;
 import java.util.function.Predicate;
 import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.locationtech.jts.geom.Coordinate;
@@ -95,6 +98,7 @@ public class CalculateSkimMatrices {
     private final String outputDirectory;
     private final int numberOfThreads;
     private Map<String, Coord[]> coordsPerZone = null;
+    private SkimMatrixCache cache = null;
 
     public CalculateSkimMatrices(String outputDirectory, int numberOfThreads) {
         this.outputDirectory = outputDirectory;
@@ -114,6 +118,14 @@ public class CalculateSkimMatrices {
         this.numberOfThreads = numberOfThreads;
     }
 
+    /**
+     * Enables caching of calculated network and PT matrices in the given directory. Matrices are re-used if the network, schedule,
+     * sampling points and relevant config parameters are the same as for a previous calculation, see {@link SkimMatrixCache}.
+     */
+    public final void setCacheDirectory(String cacheDirectory) {
+        this.cache = cacheDirectory == null ? null : new SkimMatrixCache(cacheDirectory);
+    }
+
     private static <T> void combineMatrices(FloatMatrix<T> matrix1, FloatMatrix<T> matrix2) {
         Set<T> ids = matrix2.id2index.keySet();
         for (T fromId : ids) {
@@ -350,6 +362,30 @@ public class CalculateSkimMatrices {
         log.info("loading network from " + networkFilename);
         new MatsimNetworkReader(scenario.getNetwork()).readFile(networkFilename);
 
+        log.info("extracting car-only network");
+        final Network carNetwork = NetworkUtils.createNetwork(config);
+        new TransportModeNetworkFilter(scenario.getNetwork()).filter(carNetwork, Collections.singleton(TransportMode.car));
+
+        log.info("filter car-only network for assigning links to locations");
+        final Network xy2linksNetwork = extractXy2LinksNetwork(carNetwork, xy2linksPredicate, config);
+
+        SkimMatrixCache.Fingerprint fingerprint = null;
+        if (this.cache != null) {
+            fingerprint = new SkimMatrixCache.Fingerprint()
+                    .add("car")
+                    .addNetwork(carNetwork)
+                    .addSorted(xy2linksNetwork.getLinks().keySet().stream().map(Object::toString).collect(Collectors.toList()))
+                    .addZones(this.coordsPerZone)
+                    .add(times)
+                    .add(eventsFilename == null ? "freespeed" : "events")
+                    .addFile(eventsFilename)
+                    .addConfigGroup(config.travelTimeCalculator());
+            NetworkIndicators<String> cached = new NetworkIndicators<>(this.coordsPerZone.keySet());
+            if (this.cache.load(fingerprint, getNetworkMatricesByName(cached), id -> id)) {
+                return cached;
+            }
+        }
+
         TravelTime tt;
         if (eventsFilename != null) {
             log.info("extracting actual travel times from " + eventsFilename);
@@ -366,13 +402,6 @@ public class CalculateSkimMatrices {
 
         TravelDisutility td = new OnlyTimeDependentTravelDisutility(tt);
 
-        log.info("extracting car-only network");
-        final Network carNetwork = NetworkUtils.createNetwork(config);
-        new TransportModeNetworkFilter(scenario.getNetwork()).filter(carNetwork, Collections.singleton(TransportMode.car));
-
-        log.info("filter car-only network for assigning links to locations");
-        final Network xy2linksNetwork = extractXy2LinksNetwork(carNetwork, xy2linksPredicate, config);
-
         log.info("calc CAR matrix for " + Time.writeTime(times[0]));
         NetworkIndicators<String> netIndicators = NetworkSkimMatrices.calculateSkimMatrices(
                 xy2linksNetwork, carNetwork, coordsPerZone, times[0], tt, td, this.numberOfThreads);
@@ -392,9 +421,19 @@ public class CalculateSkimMatrices {
             netIndicators.travelTimeMatrix.multiply((float) (1.0 / times.length));
             netIndicators.distanceMatrix.multiply((float) (1.0 / times.length));
         }
+        if (this.cache != null) {
+            this.cache.store(fingerprint, getNetworkMatricesByName(netIndicators));
+        }
         return netIndicators;
     }
 
+    private static <T> Map<String, FloatMatrix<T>> getNetworkMatricesByName(NetworkIndicators<T> indicators) {
+        Map<String, FloatMatrix<T>> matrices = new LinkedHashMap<>();
+        matrices.put("car_traveltimes", indicators.travelTimeMatrix);
+        matrices.put("car_distances", indicators.distanceMatrix);
+        return matrices;
+    }
+
     private Network extractXy2LinksNetwork(Network network, Predicate<Link> xy2linksPredicate, Config config) {
         Network xy2lNetwork = NetworkUtils.createNetwork(config);
         NetworkFactory nf = xy2lNetwork.getFactory();
@@ -464,6 +503,32 @@ public class CalculateSkimMatrices {
         new TransitScheduleReader(scenario).readFile(transitScheduleFilename);
         new MatsimNetworkReader(scenario.getNetwork()).readFile(networkFilename);
 
+        SkimMatrixCache.Fingerprint fingerprint = null;
+        if (this.cache != null) {
+            List<String> trainRouteIds = new ArrayList<>();
+            for (TransitLine line : scenario.getTransitSchedule().getTransitLines().values()) {
+                for (TransitRoute route : line.getRoutes().values()) {
+                    if (trainDetector.test(line, route)) {
+                        trainRouteIds.add(line.getId() + "/" + route.getId());
+                    }
+                }
+            }
+            fingerprint = new SkimMatrixCache.Fingerprint()
+                    .add("pt")
+                    .addTransitSchedule(scenario.getTransitSchedule())
+                    .addNetwork(scenario.getNetwork())
+                    .addZones(this.coordsPerZone)
+                    .add(startTime, endTime, 120)
+                    .addSorted(trainRouteIds)
+                    .addConfigGroup(config.transitRouter())
+                    .addConfigGroup(config.planCalcScore())
+                    .addConfigGroup(config.getModules().get(SwissRailRaptorConfigGroup.GROUP));
+            PTSkimMatrices.PtIndicators<String> cached = new PTSkimMatrices.PtIndicators<>(this.coordsPerZone.keySet());
+            if (this.cache.load(fingerprint, getPTMatricesByName(cached), id -> id)) {
+                return cached;
+            }
+        }
+
         log.info("prepare PT Matrix calculation");
         RaptorStaticConfig raptorConfig = RaptorUtils.createStaticConfig(config);
         raptorConfig.setOptimization(RaptorStaticConfig.RaptorOptimization.OneToAllRouting);
@@ -473,10 +538,28 @@ public class CalculateSkimMatrices {
         log.info("calc PT matrices for " + Time.writeTime(startTime) + " - " + Time.writeTime(endTime));
         PTSkimMatrices.PtIndicators<String> matrices = PTSkimMatrices.calculateSkimMatrices(
                 raptorData, this.coordsPerZone, startTime, endTime, 120, raptorParameters, this.numberOfThreads, trainDetector);
+        if (this.cache != null) {
+            this.cache.store(fingerprint, getPTMatricesByName(matrices));
+        }
         return matrices;
 
     }
 
+    private static <T> Map<String, FloatMatrix<T>> getPTMatricesByName(PTSkimMatrices.PtIndicators<T> indicators) {
+        Map<String, FloatMatrix<T>> matrices = new LinkedHashMap<>();
+        matrices.put("pt_adaptiontimes", indicators.adaptionTimeMatrix);
+        matrices.put("pt_frequencies", indicators.frequencyMatrix);
+        matrices.put("pt_distances", indicators.distanceMatrix);
+        matrices.put("pt_traveltimes", indicators.travelTimeMatrix);
+        matrices.put("pt_accesstimes", indicators.accessTimeMatrix);
+        matrices.put("pt_egresstimes", indicators.egressTimeMatrix);
+        matrices.put("pt_transfercounts", indicators.transferCountMatrix);
+        matrices.put("pt_trainshare_bytime", indicators.trainTravelTimeShareMatrix);
+        matrices.put("pt_trainshare_bydistance", indicators.trainDistanceShareMatrix);
+        matrices.put("pt_datacounts", indicators.dataCountMatrix);
+        return matrices;
+    }
+
     private String findZone(Coord coord, SpatialIndex zonesQt, String zonesIdAttributeName) {
         Point pt = GEOMETRY_FACTORY.createPoint(new Coordinate(coord.getX(), coord.getY()));
         List elements = zonesQt.query(pt.getEnvelopeInternal());
@@ -31,7 +31,7 @@ public class FloatMatrix<T> {
 
     final Map<T, Integer> id2index;
     private final int size;
-    private final float[] data;
+    final float[] data;
 
     public FloatMatrix(Set<T> zones, float defaultValue) {
         this.size = zones.size();
@@ -6,16 +6,26 @@ package ch.sbb.matsim.analysis.skims;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
 import org.matsim.core.utils.io.IOUtils;
 
 /**
- * Helper methods to write and read matrices as CSV files (well, actually semi-colon separated files).
+ * Helper methods to write and read matrices as CSV files (well, actually semi-colon separated files),
+ * or in a binary format that is memory-mapped when reading, which is much faster for large matrices.
  *
  * @author mrieser / SBB
  */
@@ -25,6 +35,12 @@ public final class FloatMatrixIO {
     private final static String HEADER = "FROM" + SEP + "TO" + SEP + "VALUE";
     private final static String NL = "\n";
 
+    private final static int BINARY_MAGIC = 0x464d4154; // "FMAT"
+    private final static int BINARY_VERSION = 1;
+    private final static int BINARY_PREFIX_SIZE = 3 * Integer.BYTES; // magic, version, header size
+    private final static long MAX_MAPPED_BYTES = 1 << 30;
+    private final static long WRITE_BUFFER_BYTES = 1 << 24;
+
     public static <T> void writeAsCSV(FloatMatrix<T> matrix, String filename) throws IOException {
         try (BufferedWriter writer = IOUtils.getBufferedWriter(filename)) {
             writeCSV(matrix, writer);
@@ -79,6 +95,114 @@ public final class FloatMatrixIO {
         }
     }
 
+    /**
+     * Writes the matrix in a binary format: a header with the row/column ids, followed by all values as one block of floats, row by row.
+     * The file is not compressed, so that it can be memory-mapped when reading it. It is meant as a cache, not as exchange format.
+     */
+    public static <T> void writeAsBinary(FloatMatrix<T> matrix, String filename) throws IOException {
+        T[] zoneIds = getSortedIds(matrix);
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        try (DataOutputStream header = new DataOutputStream(headerBytes)) {
+            header.writeInt(zoneIds.length);
+            for (T zoneId : zoneIds) {
+                header.writeUTF(zoneId.toString());
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer prefix = ByteBuffer.allocate(BINARY_PREFIX_SIZE + headerBytes.size());
+            prefix.putInt(BINARY_MAGIC).putInt(BINARY_VERSION).putInt(headerBytes.size()).put(headerBytes.toByteArray()).flip();
+            while (prefix.hasRemaining()) {
+                channel.write(prefix);
+            }
+
+            // write through a buffer instead of a mapping, so the file can be moved right afterwards also on Windows
+            int size = zoneIds.length;
+            int rowsPerChunk = getRowsPerChunk(size, WRITE_BUFFER_BYTES);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(rowsPerChunk * size * Float.BYTES);
+            for (int row = 0; row < size; row += rowsPerChunk) {
+                int rows = Math.min(rowsPerChunk, size - row);
+                buffer.clear();
+                buffer.asFloatBuffer().put(matrix.data, row * size, rows * size);
+                buffer.limit(rows * size * Float.BYTES);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a matrix written by {@link #writeAsBinary(FloatMatrix, String)} into the given matrix, which must contain all ids stored in
+     * the file. If the ids are in the same order in the file and in the matrix (e.g. the matrix was created with the same set of ids),
+     * the values are copied in bulk.
+     */
+    public static <T> void readAsBinary(FloatMatrix<T> matrix, String filename, IdConverter<T> idConverter) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            ByteBuffer prefix = readFully(channel, 0, BINARY_PREFIX_SIZE);
+            if (prefix.getInt() != BINARY_MAGIC) {
+                throw new IOException(filename + " is not a binary matrix file.");
+            }
+            int version = prefix.getInt();
+            if (version != BINARY_VERSION) {
+                throw new IOException("Unsupported binary matrix version " + version + " in " + filename);
+            }
+            int headerSize = prefix.getInt();
+            ByteBuffer headerBytes = readFully(channel, BINARY_PREFIX_SIZE, headerSize);
+
+            int[] matrixIndices;
+            boolean sameOrder = true;
+            try (DataInputStream header = new DataInputStream(new ByteArrayInputStream(headerBytes.array()))) {
+                matrixIndices = new int[header.readInt()];
+                for (int i = 0; i < matrixIndices.length; i++) {
+                    String zoneId = header.readUTF();
+                    Integer matrixIndex = matrix.id2index.get(idConverter.parse(zoneId));
+                    if (matrixIndex == null) {
+                        throw new IOException("Zone " + zoneId + " from " + filename + " is not part of the matrix.");
+                    }
+                    matrixIndices[i] = matrixIndex;
+                    sameOrder &= matrixIndex == i;
+                }
+            }
+            int matrixSize = matrix.id2index.size();
+            sameOrder &= matrixIndices.length == matrixSize;
+
+            int size = matrixIndices.length;
+            int rowsPerChunk = getRowsPerChunk(size, MAX_MAPPED_BYTES);
+            for (int row = 0; row < size; row += rowsPerChunk) {
+                int rows = Math.min(rowsPerChunk, size - row);
+                long offset = BINARY_PREFIX_SIZE + headerSize + (long) row * size * Float.BYTES;
+                FloatBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) rows * size * Float.BYTES).asFloatBuffer();
+                if (sameOrder) {
+                    values.get(matrix.data, row * size, rows * size);
+                } else {
+                    for (int r = row; r < row + rows; r++) {
+                        int fromIndex = matrixIndices[r] * matrixSize;
+                        for (int c = 0; c < size; c++) {
+                            matrix.data[fromIndex + matrixIndices[c]] = values.get();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int getRowsPerChunk(int size, long maxBytes) {
+        return (int) Math.max(1, Math.min(size, maxBytes / Math.max(1, (long) size * Float.BYTES)));
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of binary matrix file.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
     private static <T> T[] getSortedIds(FloatMatrix<T> matrix) {
         // the array-creation is only safe as long as the generated array is only within this class!
         @SuppressWarnings("unchecked")
@@ -184,14 +184,12 @@ public class PTSkimMatrices {
                 accessTimes.put(stop.getId(), accessTime);
             }
 
-            List<Map<Id<TransitStopFacility>, TravelInfo>> trees = new ArrayList<>();
-
             double timeWindow = this.maxDepartureTime - this.minDepartureTime;
+            double startTime = this.minDepartureTime - timeWindow;
             double endTime = this.maxDepartureTime + timeWindow;
-            for (double time = this.minDepartureTime - timeWindow; time < endTime; time += this.stepSize) {
-                Map<Id<TransitStopFacility>, TravelInfo> tree = this.raptor.calcTree(fromStops, time, this.parameters, null);
-                trees.add(tree);
-            }
+            // all departure times in [startTime, endTime) in one profile query, instead of one tree query per departure time
+            int stepCount = (int) Math.ceil((endTime - startTime) / this.stepSize);
+            List<Map<Id<TransitStopFacility>, TravelInfo>> trees = this.raptor.calcTrees(fromStops, startTime, this.stepSize, stepCount, this.parameters, null);
 
             for (T toZoneId : this.destinationZones) {
                 Coord[] toCoords = this.coordsPerZone.get(toZoneId);
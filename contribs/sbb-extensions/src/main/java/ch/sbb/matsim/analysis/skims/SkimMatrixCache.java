@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) Schweizerische Bundesbahnen SBB, 2022.
+ */
+
+package ch.sbb.matsim.analysis.skims;
+
+import ch.sbb.matsim.analysis.skims.FloatMatrixIO.IdConverter;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.ConfigGroup;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.MinimalTransferTimes.MinimalTransferTimesIterator;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Stores skim matrices on disk, keyed by a {@link Fingerprint} of all inputs that were used to calculate them (network, schedule, zones,
+ * relevant config parameters). If the skims are requested again with the same inputs, they are read from the cache instead of being
+ * re-calculated. The matrices are stored in the binary format of {@link FloatMatrixIO}, which is memory-mapped when reading.
+ * <p>
+ * Cached matrices are stored in <code>&lt;cacheDirectory&gt;/&lt;fingerprint&gt;/&lt;name&gt;.bin</code>. Old entries are never deleted
+ * automatically.
+ */
+public final class SkimMatrixCache {
+
+    private static final Logger log = LogManager.getLogger(SkimMatrixCache.class);
+    private static final String SUFFIX = ".bin";
+
+    private final File cacheDirectory;
+
+    public SkimMatrixCache(String cacheDirectory) {
+        this.cacheDirectory = new File(cacheDirectory);
+    }
+
+    /**
+     * Fills the given matrices with the cached values, if all of them are available for the given fingerprint.
+     *
+     * @return <code>true</code> if all matrices were loaded from the cache, <code>false</code> otherwise. In the latter case, the content of the matrices is undefined.
+     */
+    public <T> boolean load(Fingerprint fingerprint, Map<String, FloatMatrix<T>> matrices, IdConverter<T> idConverter) {
+        File directory = new File(this.cacheDirectory, fingerprint.toString());
+        for (String name : matrices.keySet()) {
+            if (!new File(directory, name + SUFFIX).isFile()) {
+                return false;
+            }
+        }
+        try {
+            for (Map.Entry<String, FloatMatrix<T>> e : matrices.entrySet()) {
+                FloatMatrixIO.readAsBinary(e.getValue(), new File(directory, e.getKey() + SUFFIX).getPath(), idConverter);
+            }
+        } catch (IOException e) {
+            log.warn("could not read cached skim matrices from " + directory + ", they will be re-calculated.", e);
+            return false;
+        }
+        log.info("loaded skim matrices " + matrices.keySet() + " from cache " + directory);
+        return true;
+    }
+
+    /**
+     * Stores the given matrices for the given fingerprint. Each file is first written to a temporary file and then moved into place, so
+     * concurrent or aborted runs never leave a partially written matrix in the cache. Failures are logged, but not thrown, as the cache
+     * is only an optimization.
+     */
+    public <T> void store(Fingerprint fingerprint, Map<String, FloatMatrix<T>> matrices) {
+        File directory = new File(this.cacheDirectory, fingerprint.toString());
+        directory.mkdirs();
+        try {
+            for (Map.Entry<String, FloatMatrix<T>> e : matrices.entrySet()) {
+                File file = new File(directory, e.getKey() + SUFFIX);
+                File tmpFile = File.createTempFile(e.getKey(), ".tmp", directory);
+                try {
+                    FloatMatrixIO.writeAsBinary(e.getValue(), tmpFile.getPath());
+                    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tmpFile.toPath());
+                }
+            }
+            log.info("stored skim matrices " + matrices.keySet() + " in cache " + directory);
+        } catch (IOException e) {
+            log.warn("could not store skim matrices in cache " + directory, e);
+        }
+    }
+
+    /**
+     * Content hash over all inputs that influence a skim calculation. Collections are hashed in a sorted order, so the fingerprint only
+     * depends on the content and not on the order in which elements were read.
+     */
+    public static final class Fingerprint {
+
+        private final Hasher hasher = Hashing.murmur3_128().newHasher();
+        private String hash = null;
+
+        public Fingerprint add(String value) {
+            checkNotFinished();
+            if (value == null) {
+                this.hasher.putInt(-1);
+            } else {
+                this.hasher.putInt(value.length());
+                this.hasher.putString(value, StandardCharsets.UTF_8);
+            }
+            return this;
+        }
+
+        public Fingerprint add(double... values) {
+            checkNotFinished();
+            this.hasher.putInt(values.length);
+            for (double value : values) {
+                this.hasher.putDouble(value);
+            }
+            return this;
+        }
+
+        public Fingerprint addNetwork(Network network) {
+            List<Link> links = new ArrayList<>(network.getLinks().values());
+            links.sort(Comparator.comparing(Link::getId));
+            add("network").add(links.size());
+            for (Link link : links) {
+                add(link.getId().toString());
+                add(link.getFromNode().getId().toString());
+                add(link.getToNode().getId().toString());
+                addCoord(link.getFromNode().getCoord());
+                addCoord(link.getToNode().getCoord());
+                add(link.getLength(), link.getFreespeed(), link.getCapacity(), link.getNumberOfLanes());
+                addSorted(link.getAllowedModes());
+            }
+            return this;
+        }
+
+        public Fingerprint addTransitSchedule(TransitSchedule schedule) {
+            List<TransitStopFacility> stops = new ArrayList<>(schedule.getFacilities().values());
+            stops.sort(Comparator.comparing(TransitStopFacility::getId));
+            add("transitSchedule").add(stops.size());
+            for (TransitStopFacility stop : stops) {
+                add(stop.getId().toString());
+                add(stop.getLinkId() == null ? null : stop.getLinkId().toString());
+                addCoord(stop.getCoord());
+            }
+
+            List<TransitLine> lines = new ArrayList<>(schedule.getTransitLines().values());
+            lines.sort(Comparator.comparing(TransitLine::getId));
+            add(lines.size());
+            for (TransitLine line : lines) {
+                add(line.getId().toString());
+                List<TransitRoute> routes = new ArrayList<>(line.getRoutes().values());
+                routes.sort(Comparator.comparing(TransitRoute::getId));
+                add(routes.size());
+                for (TransitRoute route : routes) {
+                    add(route.getId().toString());
+                    add(route.getTransportMode());
+                    add(route.getStops().size());
+                    for (TransitRouteStop routeStop : route.getStops()) {
+                        add(routeStop.getStopFacility().getId().toString());
+                        add(routeStop.getArrivalOffset().orElse(Double.NaN), routeStop.getDepartureOffset().orElse(Double.NaN));
+                        add(routeStop.isAwaitDepartureTime() ? 1 : 0);
+                    }
+                    List<Departure> departures = new ArrayList<>(route.getDepartures().values());
+                    departures.sort(Comparator.comparing(Departure::getId));
+                    add(departures.size());
+                    for (Departure departure : departures) {
+                        add(departure.getDepartureTime());
+                    }
+                }
+            }
+
+            Map<String, Map<String, Double>> transferTimes = new TreeMap<>();
+            MinimalTransferTimesIterator iterator = schedule.getMinimalTransferTimes().iterator();
+            while (iterator.hasNext()) {
+                iterator.next();
+                transferTimes.computeIfAbsent(iterator.getFromStopId().toString(), k -> new TreeMap<>())
+                        .put(iterator.getToStopId().toString(), iterator.getSeconds());
+            }
+            add(transferTimes.size());
+            for (Map.Entry<String, Map<String, Double>> fromStop : transferTimes.entrySet()) {
+                add(fromStop.getKey()).add(fromStop.getValue().size());
+                for (Map.Entry<String, Double> toStop : fromStop.getValue().entrySet()) {
+                    add(toStop.getKey()).add(toStop.getValue());
+                }
+            }
+            return this;
+        }
+
+        public Fingerprint addZones(Map<String, Coord[]> coordsPerZone) {
+            add("zones").add(coordsPerZone.size());
+            for (Map.Entry<String, Coord[]> e : new TreeMap<>(coordsPerZone).entrySet()) {
+                add(e.getKey());
+                add(e.getValue().length);
+                for (Coord coord : e.getValue()) {
+                    addCoord(coord);
+                }
+            }
+            return this;
+        }
+
+        public Fingerprint addConfigGroup(ConfigGroup configGroup) {
+            if (configGroup == null) {
+                return add((String) null);
+            }
+            add(configGroup.getName());
+            Map<String, String> params = new TreeMap<>(configGroup.getParams());
+            add(params.size());
+            for (Map.Entry<String, String> e : params.entrySet()) {
+                add(e.getKey()).add(e.getValue());
+            }
+            Map<String, Collection<? extends ConfigGroup>> parameterSets = new TreeMap<>(configGroup.getParameterSets());
+            add(parameterSets.size());
+            for (Map.Entry<String, Collection<? extends ConfigGroup>> e : parameterSets.entrySet()) {
+                add(e.getKey()).add(e.getValue().size());
+                List<String> hashes = new ArrayList<>();
+                for (ConfigGroup parameterSet : e.getValue()) {
+                    hashes.add(new Fingerprint().addConfigGroup(parameterSet).toString());
+                }
+                addSorted(hashes);
+            }
+            return this;
+        }
+
+        /**
+         * Identifies a file by its path, size and modification time, without reading its content. Useful for large input files (e.g. events)
+         * that are not otherwise loaded in memory.
+         */
+        public Fingerprint addFile(String filename) {
+            if (filename == null) {
+                return add((String) null);
+            }
+            File file = new File(filename);
+            return add(file.getAbsolutePath()).add(file.length(), file.lastModified());
+        }
+
+        public Fingerprint addSorted(Collection<String> values) {
+            List<String> sorted = new ArrayList<>(values);
+            sorted.sort(null);
+            add(sorted.size());
+            for (String value : sorted) {
+                add(value);
+            }
+            return this;
+        }
+
+        private void addCoord(Coord coord) {
+            if (coord.hasZ()) {
+                add(coord.getX(), coord.getY(), coord.getZ());
+            } else {
+                add(coord.getX(), coord.getY());
+            }
+        }
+
+        private void checkNotFinished() {
+            if (this.hash != null) {
+                throw new IllegalStateException("The fingerprint was already calculated and cannot be modified anymore.");
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (this.hash == null) {
+                this.hash = this.hasher.hash().toString();
+            }
+            return this.hash;
+        }
+    }
+}
@@ -6,17 +6,25 @@ package ch.sbb.matsim.analysis.skims;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * @author mrieser / SBB
  */
 public class FloatMatrixIOTest {
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Test
     public void testIO() throws IOException {
         Set<String> zoneIds = new HashSet<>();
@@ -55,4 +63,46 @@ public class FloatMatrixIOTest {
         Assert.assertEquals(27.0f, matrix2.get("tres", "dos"), epsilon);
         Assert.assertEquals(64.0f, matrix2.get("tres", "tres"), epsilon);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBinaryIO() throws IOException {
+        Set<String> zoneIds = new LinkedHashSet<>(List.of("un", "dos", "tres"));
+        FloatMatrix<String> matrix = new FloatMatrix<>(zoneIds, 0.0f);
+        for (String fromZoneId : zoneIds) {
+            for (String toZoneId : zoneIds) {
+                matrix.set(fromZoneId, toZoneId, fromZoneId.length() * 10 + toZoneId.length());
+            }
+        }
+        matrix.set("tres", "un", Float.NaN);
+
+        String filename = new File(this.tempFolder.getRoot(), "matrix.bin").getPath();
+        FloatMatrixIO.writeAsBinary(matrix, filename);
+
+        // same id order: bulk copy
+        FloatMatrix<String> matrix2 = new FloatMatrix<>(zoneIds, -1.0f);
+        FloatMatrixIO.readAsBinary(matrix2, filename, id -> id);
+        // different id order and an additional zone: copy cell by cell
+        FloatMatrix<String> matrix3 = new FloatMatrix<>(new LinkedHashSet<>(List.of("quatro", "tres", "un", "dos")), -1.0f);
+        FloatMatrixIO.readAsBinary(matrix3, filename, id -> id);
+
+        float epsilon = 1e-6f;
+        for (String fromZoneId : zoneIds) {
+            for (String toZoneId : zoneIds) {
+                Assert.assertEquals(matrix.get(fromZoneId, toZoneId), matrix2.get(fromZoneId, toZoneId), epsilon);
+                Assert.assertEquals(matrix.get(fromZoneId, toZoneId), matrix3.get(fromZoneId, toZoneId), epsilon);
+            }
+            Assert.assertEquals(-1.0f, matrix3.get(fromZoneId, "quatro"), epsilon);
+        }
+        Assert.assertTrue(Float.isNaN(matrix2.get("tres", "un")));
+        Assert.assertEquals(43.0f, matrix3.get("tres", "dos"), epsilon);
+    }
+
+    @Test(expected = IOException.class)
+    public void testBinaryIO_unknownZone() throws IOException {
+        FloatMatrix<String> matrix = new FloatMatrix<>(Set.of("un", "dos"), 1.0f);
+        String filename = new File(this.tempFolder.getRoot(), "matrix.bin").getPath();
+        FloatMatrixIO.writeAsBinary(matrix, filename);
+
+        FloatMatrixIO.readAsBinary(new FloatMatrix<>(Set.of("un"), 0.0f), filename, id -> id);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) Schweizerische Bundesbahnen SBB, 2022.
+ */
+
+package ch.sbb.matsim.analysis.skims;
+
+import ch.sbb.matsim.analysis.skims.SkimMatrixCache.Fingerprint;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+public class SkimMatrixCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testStoreAndLoad() {
+        SkimMatrixCache cache = new SkimMatrixCache(this.tempFolder.getRoot().getPath());
+        Fingerprint fingerprint = new Fingerprint().addNetwork(createNetwork(13.9)).add(7 * 3600.);
+
+        FloatMatrix<String> matrix = new FloatMatrix<>(Set.of("a", "b"), 0.0f);
+        matrix.set("a", "b", 42.0f);
+        matrix.set("b", "a", 17.0f);
+
+        FloatMatrix<String> loaded = new FloatMatrix<>(Set.of("a", "b"), 0.0f);
+        Assert.assertFalse(cache.load(fingerprint, Map.of("tt", loaded), id -> id));
+
+        cache.store(fingerprint, Map.of("tt", matrix));
+        Assert.assertTrue(cache.load(fingerprint, Map.of("tt", loaded), id -> id));
+        Assert.assertEquals(42.0f, loaded.get("a", "b"), 1e-6f);
+        Assert.assertEquals(17.0f, loaded.get("b", "a"), 1e-6f);
+
+        // not all requested matrices are available
+        Assert.assertFalse(cache.load(fingerprint, Map.of("tt", loaded, "distance", loaded), id -> id));
+    }
+
+    @Test
+    public void testFingerprint() {
+        String fingerprint = new Fingerprint().addNetwork(createNetwork(13.9)).add("x").toString();
+        Assert.assertEquals(fingerprint, new Fingerprint().addNetwork(createNetwork(13.9)).add("x").toString());
+        Assert.assertNotEquals(fingerprint, new Fingerprint().addNetwork(createNetwork(16.7)).add("x").toString());
+        Assert.assertNotEquals(fingerprint, new Fingerprint().addNetwork(createNetwork(13.9)).add("y").toString());
+
+        // strings are length-prefixed, so concatenations must not collide
+        Assert.assertNotEquals(new Fingerprint().add("ab").add("c").toString(), new Fingerprint().add("a").add("bc").toString());
+
+        Assert.assertEquals(new Fingerprint().addZones(Map.of("1", new Coord[] {new Coord(0, 0)}, "2", new Coord[] {new Coord(1, 1)})).toString(),
+                new Fingerprint().addZones(Map.of("2", new Coord[] {new Coord(1, 1)}, "1", new Coord[] {new Coord(0, 0)})).toString());
+    }
+
+    @Test
+    public void testTransitScheduleFingerprint() {
+        String fingerprint = new Fingerprint().addTransitSchedule(createSchedule(false, 120)).toString();
+        Assert.assertEquals(fingerprint, new Fingerprint().addTransitSchedule(createSchedule(false, 120)).toString());
+        Assert.assertNotEquals(fingerprint, new Fingerprint().addTransitSchedule(createSchedule(true, 120)).toString());
+        Assert.assertNotEquals(fingerprint, new Fingerprint().addTransitSchedule(createSchedule(false, 300)).toString());
+    }
+
+    private static TransitSchedule createSchedule(boolean awaitDepartureTime, double minimalTransferTime) {
+        TransitSchedule schedule = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getTransitSchedule();
+        TransitScheduleFactory f = schedule.getFactory();
+        TransitStopFacility stop1 = f.createTransitStopFacility(Id.create(1, TransitStopFacility.class), new Coord(0, 0), false);
+        TransitStopFacility stop2 = f.createTransitStopFacility(Id.create(2, TransitStopFacility.class), new Coord(1000, 0), false);
+        schedule.addStopFacility(stop1);
+        schedule.addStopFacility(stop2);
+        TransitRouteStop routeStop1 = f.createTransitRouteStop(stop1, 0, 0);
+        TransitRouteStop routeStop2 = f.createTransitRouteStop(stop2, 120, 120);
+        routeStop1.setAwaitDepartureTime(awaitDepartureTime);
+        TransitRoute route = f.createTransitRoute(Id.create(1, TransitRoute.class), null, List.of(routeStop1, routeStop2), "bus");
+        route.addDeparture(f.createDeparture(Id.create(1, Departure.class), 7 * 3600));
+        TransitLine line = f.createTransitLine(Id.create(1, TransitLine.class));
+        line.addRoute(route);
+        schedule.addTransitLine(line);
+        schedule.getMinimalTransferTimes().set(stop1.getId(), stop2.getId(), minimalTransferTime);
+        return schedule;
+    }
+
+    private static Network createNetwork(double freespeed) {
+        Network network = NetworkUtils.createNetwork();
+        Node n1 = NetworkUtils.createAndAddNode(network, Id.createNodeId(1), new Coord(0, 0));
+        Node n2 = NetworkUtils.createAndAddNode(network, Id.createNodeId(2), new Coord(1000, 0));
+        NetworkUtils.createAndAddLink(network, Id.createLinkId(1), n1, n2, 1000, freespeed, 1800, 1);
+        NetworkUtils.createAndAddLink(network, Id.createLinkId(2), n2, n1, 1000, freespeed, 1800, 1);
+        return network;
+    }
+}
@@ -235,6 +235,25 @@ public class SwissRailRaptor implements TransitRouter {
         return this.calcLeastCostTree(accessStops, departureTime, parameters, person);
     }
 
+    /**
+     * Calculates the trees for the <code>departureCount</code> departure times <code>earliestDepartureTime,
+     * earliestDepartureTime + stepSize, ...</code> in one pass, see {@link SwissRailRaptorCore#calcLeastCostTrees}.  This is much
+     * faster than calling {@link #calcTree(Collection, double, RaptorParameters, Person)} for each departure time.
+     *
+     * @return one tree per departure time, ordered by increasing departure time
+     */
+    public List<Map<Id<TransitStopFacility>, SwissRailRaptorCore.TravelInfo>> calcTrees(Collection<TransitStopFacility> fromStops, double earliestDepartureTime, double stepSize, int departureCount, RaptorParameters parameters, Person person) {
+        if (this.data.config.getOptimization() != RaptorStaticConfig.RaptorOptimization.OneToAllRouting && !this.treeWarningShown) {
+            log.warn("SwissRailRaptorData was not initialized with full support for tree calculations and may result in unexpected results. Use `RaptorStaticConfig.setOptimization(RaptorOptimization.OneToAllRouting)` to fix this issue.");
+            this.treeWarningShown = true;
+        }
+        List<InitialStop> accessStops = new ArrayList<>();
+        for (TransitStopFacility stop : fromStops) {
+            accessStops.add(new InitialStop(stop, 0, 0, 0, null));
+        }
+        return this.raptor.calcLeastCostTrees(earliestDepartureTime, stepSize, departureCount, accessStops, parameters, person);
+    }
+
     public Map<Id<TransitStopFacility>, SwissRailRaptorCore.TravelInfo> calcTree(Facility fromFacility, double departureTime, Person person, Attributes routingAttributes) {
         RaptorParameters parameters = this.parametersForPerson.getRaptorParameters(person);
         List<InitialStop> accessStops = findAccessStops(fromFacility, fromFacility, person, departureTime, routingAttributes, parameters);
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -52,6 +53,8 @@ public class SwissRailRaptorCore {
     private final PathElement[] arrivalPathPerStop;
     private final PathElement[] tmpArrivalPathPerStop; // only used to ensure parallel update
     private final BitSet tmpImprovedStops; // only used to ensure parallel update
+    private final BitSet touchedRouteStopIndices; // route stops with non-default values in the per-route-stop arrays, see reset()
+    private final BitSet touchedStopIndices; // same for the per-stop arrays
     private final boolean useCapacityConstraints;
     private final RaptorInVehicleCostCalculator inVehicleCostCalculator;
     private final RaptorTransferCostCalculator transferCostCalculator;
@@ -72,18 +75,35 @@ public class SwissRailRaptorCore {
         this.arrivalPathPerStop = new PathElement[this.data.countStops];
         this.tmpArrivalPathPerStop = new PathElement[this.data.countStops];
         this.tmpImprovedStops = new BitSet(this.data.countStops);
+        this.touchedRouteStopIndices = new BitSet(this.data.countRouteStops);
+        this.touchedStopIndices = new BitSet(this.data.countStops);
+        Arrays.fill(this.egressCostsPerRouteStop, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.leastArrivalCostAtRouteStop, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.leastArrivalCostAtStop, Double.POSITIVE_INFINITY);
         this.useCapacityConstraints = this.data.config.isUseCapacityConstraints();
         this.inVehicleCostCalculator = inVehicleCostCalculator;
         this.transferCostCalculator = transferCostCalculator;
         this.routeSegmentIterator = new RouteSegmentIteratorImpl(this.data);
     }
 
+    /**
+     * Resets the per-query state.  Only the entries that were written by the previous query are reset, so the cost of this
+     * depends on the size of the previous search, not on the size of the schedule.  Local queries in large schedules only
+     * touch a small fraction of all route stops.
+     */
     private void reset() {
-        Arrays.fill(this.arrivalPathPerRouteStop, null);
-        Arrays.fill(this.egressCostsPerRouteStop, Double.POSITIVE_INFINITY);
-        Arrays.fill(this.arrivalPathPerStop, null);
-        Arrays.fill(this.leastArrivalCostAtRouteStop, Double.POSITIVE_INFINITY);
-        Arrays.fill(this.leastArrivalCostAtStop, Double.POSITIVE_INFINITY);
+        for (int i = this.touchedRouteStopIndices.nextSetBit(0); i >= 0; i = this.touchedRouteStopIndices.nextSetBit(i + 1)) {
+            this.arrivalPathPerRouteStop[i] = null;
+            this.egressCostsPerRouteStop[i] = Double.POSITIVE_INFINITY;
+            this.leastArrivalCostAtRouteStop[i] = Double.POSITIVE_INFINITY;
+        }
+        for (int i = this.touchedStopIndices.nextSetBit(0); i >= 0; i = this.touchedStopIndices.nextSetBit(i + 1)) {
+            this.arrivalPathPerStop[i] = null;
+            this.tmpArrivalPathPerStop[i] = null;
+            this.leastArrivalCostAtStop[i] = Double.POSITIVE_INFINITY;
+        }
+        this.touchedRouteStopIndices.clear();
+        this.touchedStopIndices.clear();
         this.improvedStops.clear();
         this.improvedRouteStopIndices.clear();
         this.reachedRouteStopIndices.clear();
@@ -114,6 +134,7 @@ public class SwissRailRaptorCore {
                 for (int routeStopIndex : routeStopIndices) {
                     this.destinationRouteStopIndices.set(routeStopIndex); // set bit at index position to true
                     this.egressCostsPerRouteStop[routeStopIndex] = egressStop.accessCost; // set egress costs from given stop
+                    this.touchedRouteStopIndices.set(routeStopIndex);
                     // presumably, the routeStops are the stops for the different routes that stop at the same stopFacility
                 }
             }
@@ -177,12 +198,14 @@ public class SwissRailRaptorCore {
 
                     if (xCost < this.leastArrivalCostAtRouteStop[routeStopIndex]) {
                         this.arrivalPathPerRouteStop[routeStopIndex] = pe;
+                        this.touchedRouteStopIndices.set(routeStopIndex);
                         this.leastArrivalCostAtRouteStop[routeStopIndex] = xCost;
                         this.improvedRouteStopIndices.set(routeStopIndex);
                         if (xCost < this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex]) {
                             this.improvedStops.set(toRouteStop.stopFacilityIndex);
                             this.arrivalPathPerStop[toRouteStop.stopFacilityIndex] = pe;
                             this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex] = xCost;
+                            this.touchedStopIndices.set(toRouteStop.stopFacilityIndex);
                         }
                     }
                 } else if (isIntermodalAccess) {
@@ -196,12 +219,14 @@ public class SwissRailRaptorCore {
                     if (arrivalCost < this.leastArrivalCostAtRouteStop[routeStopIndex]) {
                         hasIntermodalAccess = true;
                         this.arrivalPathPerRouteStop[routeStopIndex] = pe;
+                        this.touchedRouteStopIndices.set(routeStopIndex);
                         this.leastArrivalCostAtRouteStop[routeStopIndex] = arrivalCost;
                         this.improvedRouteStopIndices.set(routeStopIndex);
                         if (arrivalCost < this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex]) {
                             this.improvedStops.set(toRouteStop.stopFacilityIndex);
                             this.arrivalPathPerStop[toRouteStop.stopFacilityIndex] = pe;
                             this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex] = arrivalCost;
+                            this.touchedStopIndices.set(toRouteStop.stopFacilityIndex);
                         }
                     }
                 }
@@ -336,6 +361,7 @@ public class SwissRailRaptorCore {
                 for (int routeStopIndex : routeStopIndices) {
                     this.destinationRouteStopIndices.set(routeStopIndex);
                     this.egressCostsPerRouteStop[routeStopIndex] = egressStop.accessCost;
+                    this.touchedRouteStopIndices.set(routeStopIndex);
                 }
             }
         }
@@ -351,9 +377,11 @@ public class SwissRailRaptorCore {
                 int routeStopIndex = depAtRouteStop.routeStopIndex;
                 PathElement pe = new PathElement(null, toRouteStop, depAtRouteStop.depTime, depAtRouteStop.depTime, arrivalTime, arrivalCost, 0, depAtRouteStop.accessStop.distance, 0, true, null, depAtRouteStop.accessStop);
                 this.arrivalPathPerRouteStop[routeStopIndex] = pe;
+                this.touchedRouteStopIndices.set(routeStopIndex);
                 this.leastArrivalCostAtRouteStop[routeStopIndex] = arrivalCost;
                 this.arrivalPathPerStop[toRouteStop.stopFacilityIndex] = pe;
                 this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex] = arrivalCost;
+                this.touchedStopIndices.set(toRouteStop.stopFacilityIndex);
                 this.improvedRouteStopIndices.set(routeStopIndex);
                 initialStopsPerStartPath.put(pe, depAtRouteStop.accessStop);
             }
@@ -482,9 +510,11 @@ public class SwissRailRaptorCore {
                 RRouteStop toRouteStop = this.data.routeStops[routeStopIndex];
                 PathElement pe = new PathElement(null, toRouteStop, TIME_UNDEFINED, TIME_UNDEFINED, arrivalTime, arrivalCost, 0, stop.distance, 0, true, null, stop);
                 this.arrivalPathPerRouteStop[routeStopIndex] = pe;
+                this.touchedRouteStopIndices.set(routeStopIndex);
                 this.arrivalPathPerStop[toRouteStop.stopFacilityIndex] = pe;
                 this.leastArrivalCostAtRouteStop[routeStopIndex] = arrivalCost;
                 this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex] = arrivalCost;
+                this.touchedStopIndices.set(toRouteStop.stopFacilityIndex);
                 this.improvedRouteStopIndices.set(routeStopIndex);
                 // this is special: make sure we can transfer even at the start stop
                 initialRouteStopIndices.set(routeStopIndex);
@@ -534,7 +564,113 @@ public class SwissRailRaptorCore {
         return result;
     }
 
+    /**
+     * Calculates least cost trees for the <code>departureCount</code> departure times <code>earliestDepTime,
+     * earliestDepTime + stepSize, ...</code> in one pass, in the spirit of rRAPTOR: departure times are processed from the latest
+     * to the earliest, and the labels of later departure times are kept.  Callers pass the number of departure times instead of
+     * the latest one, so it does not depend on how a division of floating point times is rounded.  A connection found for a later departure time is also a valid
+     * connection for an earlier one (by waiting longer at the first stop), so only improvements have to be explored for
+     * each additional departure time.
+     * <p></p>
+     * To make the labels of different departure times comparable, the cost of each departure time is offset by the waiting
+     * cost between the earliest departure time and it, similar to what {@link #calcRoutes} does.  The offset cancels out in
+     * the returned {@link TravelInfo}s.  Up to ties between connections with equal costs, the result for each departure time
+     * is the same as the one of {@link #calcLeastCostTree} for that time.
+     *
+     * @return one tree per departure time, ordered by increasing departure time
+     */
+    public List<Map<Id<TransitStopFacility>, TravelInfo>> calcLeastCostTrees(double earliestDepTime, double stepSize, int departureCount, Collection<InitialStop> startStops, RaptorParameters parameters, Person person) {
+        if (stepSize <= 0) {
+            throw new IllegalArgumentException("stepSize must be positive, but is " + stepSize);
+        }
+        if (departureCount < 0) {
+            throw new IllegalArgumentException("departureCount must not be negative, but is " + departureCount);
+        }
+        reset();
+
+        List<Map<Id<TransitStopFacility>, TravelInfo>> trees = new ArrayList<>(Collections.nCopies(departureCount, null));
+        double waitingCostPerSecond = -parameters.getMarginalUtilityOfWaitingPt_utl_s();
+
+        for (int i = departureCount - 1; i >= 0; i--) {
+            double depTime = earliestDepTime + i * stepSize;
+            double costOffset = (depTime - earliestDepTime) * waitingCostPerSecond;
+
+            this.improvedStops.clear();
+            this.improvedRouteStopIndices.clear();
+            this.bestArrivalCost = Double.POSITIVE_INFINITY;
+
+            BitSet initialRouteStopIndices = new BitSet();
+            BitSet initialStopIndices = new BitSet();
+            for (InitialStop stop : startStops) {
+                int[] routeStopIndices = this.data.routeStopsPerStopFacility.get(stop.stop);
+                for (int routeStopIndex : routeStopIndices) {
+                    int arrivalTime = (int) (depTime + stop.accessTime);
+                    double arrivalCost = stop.accessCost + costOffset;
+                    if (arrivalCost > this.leastArrivalCostAtRouteStop[routeStopIndex]) {
+                        continue; // the stop can be reached with less cost via some other start stop
+                    }
+                    RRouteStop toRouteStop = this.data.routeStops[routeStopIndex];
+                    PathElement pe = new PathElement(null, toRouteStop, TIME_UNDEFINED, TIME_UNDEFINED, arrivalTime, arrivalCost, 0, stop.distance, 0, true, null, stop);
+                    this.arrivalPathPerRouteStop[routeStopIndex] = pe;
+                    this.touchedRouteStopIndices.set(routeStopIndex);
+                    this.leastArrivalCostAtRouteStop[routeStopIndex] = arrivalCost;
+                    if (arrivalCost <= this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex]) {
+                        this.arrivalPathPerStop[toRouteStop.stopFacilityIndex] = pe;
+                        this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex] = arrivalCost;
+                        this.touchedStopIndices.set(toRouteStop.stopFacilityIndex);
+                        initialStopIndices.set(toRouteStop.stopFacilityIndex);
+                    }
+                    this.improvedRouteStopIndices.set(routeStopIndex);
+                    initialRouteStopIndices.set(routeStopIndex);
+                }
+            }
+
+            // the main loop, as in calcLeastCostTree
+            while (true) {
+                exploreRoutes(parameters, person);
+
+                if (initialRouteStopIndices != null) {
+                    // in contrast to calcLeastCostTree, do this before the stop criterion: the labels of a later departure time may
+                    // prevent any improvement by routes, but walking from the start stops still has to be updated to the new time.
+                    this.improvedRouteStopIndices.or(initialRouteStopIndices);
+                    this.improvedStops.or(initialStopIndices);
+                    initialRouteStopIndices = null;
+                    initialStopIndices = null;
+                }
+
+                if (this.improvedStops.isEmpty()) {
+                    break;
+                }
+
+                handleTransfers(true, parameters);
+
+                if (this.improvedRouteStopIndices.isEmpty()) {
+                    break;
+                }
+            }
+
+            Map<Id<TransitStopFacility>, TravelInfo> result = new HashMap<>();
+            for (Map.Entry<TransitStopFacility, Integer> e : this.data.stopFacilityIndices.entrySet()) {
+                PathElement destination = this.arrivalPathPerStop[e.getValue()];
+                if (destination != null) {
+                    result.put(e.getKey().getId(), getTravelInfo(destination, parameters, depTime));
+                }
+            }
+            trees.set(i, result);
+        }
+        return trees;
+    }
+
     private TravelInfo getTravelInfo(PathElement destination, RaptorParameters parameters) {
+        return getTravelInfo(destination, parameters, Double.NaN);
+    }
+
+    /**
+     * @param queryDepTime the departure time of the query if the path may have been found for a later departure time, see
+     *                     {@link #calcLeastCostTrees}.  The additional waiting time at the first stop is then added to the
+     *                     waiting time.  NaN if the path was found for the query's departure time.
+     */
+    private TravelInfo getTravelInfo(PathElement destination, RaptorParameters parameters, double queryDepTime) {
         PathElement firstStage = destination;
         PathElement secondStage = null;
         while (firstStage.comingFrom != null) {
@@ -554,6 +690,11 @@ public class SwissRailRaptorCore {
         double waitingCost = waitingTime * -parameters.getMarginalUtilityOfWaitingPt_utl_s();
 
         double travelCost = destination.arrivalTravelCost - firstStage.arrivalTravelCost - waitingCost;
+        if (!Double.isNaN(queryDepTime)) {
+            int additionalWaitingTime = firstStage.arrivalTime - (int) (queryDepTime + accessTime);
+            waitingTime += additionalWaitingTime;
+            waitingCost = waitingTime * -parameters.getMarginalUtilityOfWaitingPt_utl_s();
+        }
         int transferCount = destination.transferCount;
         if (destination.isTransfer && transferCount > 0) {
             transferCount--; // do not count this as transfer, as the router would merge it with the egress walk
@@ -628,9 +769,11 @@ public class SwissRailRaptorCore {
                         double distance = toRouteStop.distanceAlongRoute - boardingPE.toRouteStop.distanceAlongRoute;
                         PathElement pe = new PathElement(boardingPE, toRouteStop, firstDepartureTime, currentAgentBoardingTime, arrivalTime, arrivalTravelCost, arrivalTransferCost, distance, boardingPE.transferCount, false, null, null);
                         this.arrivalPathPerRouteStop[toRouteStopIndex] = pe;
+                        this.touchedRouteStopIndices.set(toRouteStopIndex);
                         this.leastArrivalCostAtRouteStop[toRouteStopIndex] = totalArrivalCost;
                         if (totalArrivalCost <= this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex]) {
                             this.leastArrivalCostAtStop[toRouteStop.stopFacilityIndex] = totalArrivalCost;
+                            this.touchedStopIndices.set(toRouteStop.stopFacilityIndex);
                             this.arrivalPathPerStop[toRouteStop.stopFacilityIndex] = pe;
                             this.improvedStops.set(toRouteStop.stopFacilityIndex);
                             checkForBestArrival(toRouteStopIndex, totalArrivalCost);
@@ -749,6 +892,7 @@ public class SwissRailRaptorCore {
                     RRouteStop toRouteStop = this.data.routeStops[toRouteStopIndex];
                     PathElement pe = new PathElement(fromPE, toRouteStop, fromPE.firstDepartureTime, TIME_UNDEFINED, newArrivalTime, newArrivalTravelCost, newArrivalTransferCost, transfer.transferDistance, fromPE.transferCount + 1, true, transfer, null);
                     this.arrivalPathPerRouteStop[toRouteStopIndex] = pe;
+                    this.touchedRouteStopIndices.set(toRouteStopIndex);
                     this.leastArrivalCostAtRouteStop[toRouteStopIndex] = newTotalArrivalCost;
                     this.improvedRouteStopIndices.set(toRouteStopIndex);
                     int toStopFacilityIndex = toRouteStop.stopFacilityIndex;
@@ -756,6 +900,7 @@ public class SwissRailRaptorCore {
                     if (newTotalArrivalCost < prevLeastArrivalCost || (!strict && newTotalArrivalCost <= prevLeastArrivalCost)) {
                         // store it in tmp only. We don't want that this PE is used by a stop processed later in the same round. ("parallel update")
                         this.leastArrivalCostAtStop[toStopFacilityIndex] = newTotalArrivalCost;
+                        this.touchedStopIndices.set(toStopFacilityIndex);
                         this.tmpArrivalPathPerStop[toStopFacilityIndex] = pe;
                         this.tmpImprovedStops.set(toStopFacilityIndex);
                     }
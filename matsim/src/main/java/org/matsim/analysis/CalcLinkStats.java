@@ -23,7 +23,6 @@ package org.matsim.analysis;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.router.util.TravelTime;
@@ -34,10 +33,14 @@ import javax.inject.Inject;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Comparator;
 
 /**
  * Calculates the average link volumes and travel times over any number of iterations.
+ * <p></p>
+ * The statistics of all links are stored in a few flat double arrays, addressed by the position of the link in the network (ordered by
+ * {@link Id#index()}), and not in a couple of arrays per link.
  *
  * @author mrieser
  */
@@ -45,21 +48,17 @@ public class CalcLinkStats {
 
 	private final static Logger log = LogManager.getLogger(CalcLinkStats.class);
 
-	private static class LinkData {
-		public final double[][] volumes;
-		public final double[][] ttimes;
-
-		public LinkData(final double[][] linksVolumes, final double[][] linksTTimes) {
-			this.volumes = linksVolumes.clone();
-			this.ttimes = linksTTimes.clone();
-		}
-	}
-
 	private double volScaleFactor = 1.0;
 
 	private int count = 0;
-	private final IdMap<Link, LinkData> linkData;
 	private final int nofHours;
+	private Id<Link>[] linkIds;
+	/** position of each link in {@link #linkIds}, by {@link Id#index()}; -1 for links not in the network */
+	private int[] positions;
+	/** [stat][position * (nofHours + 1) + hour], where hour == nofHours contains the daily values */
+	private double[][] volumes;
+	/** [stat][position * nofHours + hour] */
+	private double[][] ttimes;
 	private final Network network;
 
 	private static final int MIN = 0;
@@ -70,7 +69,6 @@ public class CalcLinkStats {
 	@Inject
 	public CalcLinkStats(final Network network) {
 		this.network = network;
-		this.linkData = new IdMap<>(Link.class);
 		this.nofHours = 24;
 		reset();
 	}
@@ -86,21 +84,52 @@ public class CalcLinkStats {
 		this.volScaleFactor = vol_scale_factor;
 	}
 
+	private CalcLinkStats(final CalcLinkStats original) {
+		this.network = original.network;
+		this.nofHours = original.nofHours;
+		this.volScaleFactor = original.volScaleFactor;
+		this.count = original.count;
+		// the link ids and positions are replaced, never modified, by reset()
+		this.linkIds = original.linkIds;
+		this.positions = original.positions;
+		this.volumes = new double[NOF_STATS][];
+		this.ttimes = new double[NOF_STATS][];
+		for (int stat = 0; stat < NOF_STATS; stat++) {
+			this.volumes[stat] = original.volumes[stat].clone();
+			this.ttimes[stat] = original.ttimes[stat].clone();
+		}
+	}
+
+	/**
+	 * @return a copy of the statistics gathered so far, which is not affected by further calls to {@link #addData} or
+	 * {@link #reset()} and can be written in the background
+	 */
+	public CalcLinkStats createSnapshot() {
+		return new CalcLinkStats(this);
+	}
+
 	public void addData(final VolumesAnalyzer analyzer, final TravelTime ttimes) {
 		this.count++;
 		// TODO verify ttimes has hourly timeBin-Settings
 
+		double[] volumes = new double[this.nofHours];
+		int[] slotVolumes = new int[analyzer.getVolumesArraySize()];
+		double[][] dataVolumes = this.volumes;
+		double[][] dataTTimes = this.ttimes;
+
 		// go through all links
-		for (Id<Link> linkId : this.linkData.keySet()) {
+		for (int position = 0; position < this.linkIds.length; position++) {
+			Id<Link> linkId = this.linkIds[position];
 			
 			// retrieve link from link ID
 			Link link = this.network.getLinks().get(linkId);
 			
 			// get the volumes for the link ID from the analyzier
-			double[] volumes = analyzer.getVolumesPerHourForLink(linkId);
+			analyzer.getVolumesPerHourForLink(linkId, volumes, slotVolumes);
 			
-			// get the destination container for the data from link data (could have gotten this through iterator right away)
-			LinkData data = this.linkData.get(linkId);
+			// offsets of this link in the data arrays
+			int v = position * (this.nofHours + 1);
+			int t = position * this.nofHours;
 			
 			// prepare the sum variables (for volumes);
 			long sumVolumes = 0; // daily (0-24) sum
@@ -117,45 +146,51 @@ public class CalcLinkStats {
 				// the following has something to do with the fact that we are doing this for multiple iterations.  So there are variations.
 				// this collects min and max.  There is, however, no good control over how many iterations this is collected.
 				if (this.count == 1) {
-					data.volumes[MIN][hour] = volumes[hour];
-					data.volumes[MAX][hour] = volumes[hour];
-					data.ttimes[MIN][hour] = ttime;
-					data.ttimes[MAX][hour] = ttime;
+					dataVolumes[MIN][v + hour] = volumes[hour];
+					dataVolumes[MAX][v + hour] = volumes[hour];
+					dataTTimes[MIN][t + hour] = ttime;
+					dataTTimes[MAX][t + hour] = ttime;
 				} else {
-					if (volumes[hour] < data.volumes[MIN][hour]) data.volumes[MIN][hour] = volumes[hour];
-					if (volumes[hour] > data.volumes[MAX][hour]) data.volumes[MAX][hour] = volumes[hour];
-					if (ttime < data.ttimes[MIN][hour]) data.ttimes[MIN][hour] = ttime;
-					if (ttime > data.ttimes[MAX][hour]) data.ttimes[MAX][hour] = ttime;
+					if (volumes[hour] < dataVolumes[MIN][v + hour]) dataVolumes[MIN][v + hour] = volumes[hour];
+					if (volumes[hour] > dataVolumes[MAX][v + hour]) dataVolumes[MAX][v + hour] = volumes[hour];
+					if (ttime < dataTTimes[MIN][t + hour]) dataTTimes[MIN][t + hour] = ttime;
+					if (ttime > dataTTimes[MAX][t + hour]) dataTTimes[MAX][t + hour] = ttime;
 				}
 				
 				// this is the regular summing up for each hour
-				data.volumes[SUM][hour] += volumes[hour];
-				data.ttimes[SUM][hour] += volumes[hour] * ttime;
+				dataVolumes[SUM][v + hour] += volumes[hour];
+				dataTTimes[SUM][t + hour] += volumes[hour] * ttime;
 			}
-			// dataVolumes[.][nofHours] are daily (0-24) values
+			// dataVolumes[.][v + nofHours] are daily (0-24) values
+			int day = v + this.nofHours;
 			if (this.count == 1) {
-				data.volumes[MIN][this.nofHours] = sumVolumes;
-				data.volumes[SUM][this.nofHours] = sumVolumes;
-				data.volumes[MAX][this.nofHours] = sumVolumes;
+				dataVolumes[MIN][day] = sumVolumes;
+				dataVolumes[SUM][day] = sumVolumes;
+				dataVolumes[MAX][day] = sumVolumes;
 			} else {
-				if (sumVolumes < data.volumes[MIN][this.nofHours]) data.volumes[MIN][this.nofHours] = sumVolumes;
-				data.volumes[SUM][this.nofHours] += sumVolumes;
-				if (sumVolumes > data.volumes[MAX][this.nofHours]) data.volumes[MAX][this.nofHours] = sumVolumes;
+				if (sumVolumes < dataVolumes[MIN][day]) dataVolumes[MIN][day] = sumVolumes;
+				dataVolumes[SUM][day] += sumVolumes;
+				if (sumVolumes > dataVolumes[MAX][day]) dataVolumes[MAX][day] = sumVolumes;
 			}
 		}
 	}
 
+	@SuppressWarnings("unchecked")
 	public void reset() {
-		this.linkData.clear();
 		this.count = 0;
 		log.info( " resetting `count' to zero.  This info is here since we want to check when this" +
 				" is happening during normal simulation runs.  kai, jan'11") ;
 
-		// initialize our data-table
-		for (Link link : this.network.getLinks().values()) {
-			LinkData data = new LinkData(new double[NOF_STATS][this.nofHours + 1], new double[NOF_STATS][this.nofHours]);
-			this.linkData.put(link.getId(), data);
+		// initialize our data-table, links ordered by index as in an IdMap
+		this.linkIds = this.network.getLinks().keySet().toArray(new Id[0]);
+		Arrays.sort(this.linkIds, Comparator.comparingInt(Id::index));
+		this.positions = new int[this.linkIds.length == 0 ? 0 : this.linkIds[this.linkIds.length - 1].index() + 1];
+		Arrays.fill(this.positions, -1);
+		for (int position = 0; position < this.linkIds.length; position++) {
+			this.positions[this.linkIds[position].index()] = position;
 		}
+		this.volumes = new double[NOF_STATS][this.linkIds.length * (this.nofHours + 1)];
+		this.ttimes = new double[NOF_STATS][this.linkIds.length * this.nofHours];
 
 	}
 
@@ -182,9 +217,10 @@ public class CalcLinkStats {
 			out.write("\n");
 
 			// write data
-			for (Map.Entry<Id<Link>, LinkData> entry : this.linkData.entrySet()) {
-				Id<Link> linkId = entry.getKey();
-				LinkData data = entry.getValue();
+			for (int position = 0; position < this.linkIds.length; position++) {
+				Id<Link> linkId = this.linkIds[position];
+				int v = position * (this.nofHours + 1);
+				int t = position * this.nofHours;
 				Link link = this.network.getLinks().get(linkId);
 
 				out.write(linkId.toString());
@@ -198,41 +234,41 @@ public class CalcLinkStats {
 				// HRS0-1, HRS1-2, ... HRS23-24
 //				int[] sum = {0, 0, 0};
 				for (int i = 0; i < this.nofHours; i++) {
-					out.write("\t" + Double.toString(data.volumes[MIN][i]));
-//					sum[MIN] = sum[MIN] + data.volumes[MIN][i];
-					out.write("\t" + Double.toString((data.volumes[SUM][i]) / this.count));
-//					sum[SUM] = sum[SUM] + data.volumes[SUM][i];
-					out.write("\t" + Double.toString(data.volumes[MAX][i]));
-//					sum[MAX] = sum[MAX] + data.volumes[MAX][i];
+					out.write("\t" + Double.toString(this.volumes[MIN][v + i]));
+//					sum[MIN] = sum[MIN] + this.volumes[MIN][v + i];
+					out.write("\t" + Double.toString((this.volumes[SUM][v + i]) / this.count));
+//					sum[SUM] = sum[SUM] + this.volumes[SUM][v + i];
+					out.write("\t" + Double.toString(this.volumes[MAX][v + i]));
+//					sum[MAX] = sum[MAX] + this.volumes[MAX][v + i];
 				}
 
 				// HRS0-nofHours
-				out.write("\t" + Double.toString(data.volumes[MIN][this.nofHours]));
-				out.write("\t" + Double.toString((data.volumes[SUM][this.nofHours]) / this.count));
-				out.write("\t" + Double.toString(data.volumes[MAX][this.nofHours]));
+				out.write("\t" + Double.toString(this.volumes[MIN][v + this.nofHours]));
+				out.write("\t" + Double.toString((this.volumes[SUM][v + this.nofHours]) / this.count));
+				out.write("\t" + Double.toString(this.volumes[MAX][v + this.nofHours]));
 
 				// TRAVELTIME0-1, TRAVELTIME1-2, ... TRAVELTIME23-24
 				for (int i = 0; i < this.nofHours; i++) {
-					String ttimesMin = Double.toString(data.ttimes[MIN][i]);
+					String ttimesMin = Double.toString(this.ttimes[MIN][t + i]);
 					out.write("\t" + ttimesMin);
-					if (data.volumes[SUM][i] == 0) {
+					if (this.volumes[SUM][v + i] == 0) {
 						// nobody traveled along the link in this hour, so we cannot calculate an average
 						// use the value available or the minimum instead (min and max should be the same, =freespeed)
-						double ttsum = data.ttimes[SUM][i];
+						double ttsum = this.ttimes[SUM][t + i];
 						if (ttsum != 0.0) {
 							out.write("\t" + Double.toString(ttsum));
 						} else {
 							out.write("\t" + ttimesMin);
 						}
 					} else {
-						double ttsum = data.ttimes[SUM][i];
+						double ttsum = this.ttimes[SUM][t + i];
 						if (ttsum == 0) {
 							out.write("\t" + ttimesMin);
 						} else {
-							out.write("\t" + Double.toString(ttsum / data.volumes[SUM][i]));
+							out.write("\t" + Double.toString(ttsum / this.volumes[SUM][v + i]));
 						}
 					}
-					out.write("\t" + Double.toString(data.ttimes[MAX][i]));
+					out.write("\t" + Double.toString(this.ttimes[MAX][t + i]));
 				}
 				out.write("\n");
 			}
@@ -274,64 +310,68 @@ public class CalcLinkStats {
 				String[] parts = StringUtils.explode(line, '\t');
 				if (parts.length == 154) {
 					Id<Link> linkId = Id.create(parts[0], Link.class);
-					LinkData data = this.linkData.get(linkId);
-					if (data == null) {
+					int position = getPosition(linkId);
+					if (position < 0) {
 						System.err.println("CalcLinkStats.readFile(); unknown link: " + linkId.toString());
 					} else {
+						int v = position * (this.nofHours + 1);
+						int t = position * this.nofHours;
 						int baseTTimes;
 						for (int i = 0; i < this.nofHours; i++) {
-							data.volumes[MIN][i] = Double.parseDouble(parts[7 + i*3]);
-							data.volumes[MIN][i] *= this.volScaleFactor;
-							data.volumes[SUM][i] = Double.parseDouble(parts[8 + i*3]);
-							data.volumes[SUM][i] *= this.volScaleFactor;
-							data.volumes[MAX][i] = Double.parseDouble(parts[9 + i*3]);
-							data.volumes[MAX][i] *= this.volScaleFactor;
+							this.volumes[MIN][v + i] = Double.parseDouble(parts[7 + i*3]);
+							this.volumes[MIN][v + i] *= this.volScaleFactor;
+							this.volumes[SUM][v + i] = Double.parseDouble(parts[8 + i*3]);
+							this.volumes[SUM][v + i] *= this.volScaleFactor;
+							this.volumes[MAX][v + i] = Double.parseDouble(parts[9 + i*3]);
+							this.volumes[MAX][v + i] *= this.volScaleFactor;
 							baseTTimes = 7 + (this.nofHours+1)*3;
-							data.ttimes[MIN][i] = Double.parseDouble(parts[baseTTimes + i*3]);
-							if (data.volumes[SUM][i] == 0) {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
+							this.ttimes[MIN][t + i] = Double.parseDouble(parts[baseTTimes + i*3]);
+							if (this.volumes[SUM][v + i] == 0) {
+								this.ttimes[SUM][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
 							} else {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * data.volumes[SUM][i];
+								this.ttimes[SUM][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * this.volumes[SUM][v + i];
 							}
-							data.ttimes[MAX][i] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
+							this.ttimes[MAX][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
 						}
-						data.volumes[MIN][this.nofHours] = Double.parseDouble(parts[7 + this.nofHours*3]);
-						data.volumes[MIN][this.nofHours] *= this.volScaleFactor;
-						data.volumes[SUM][this.nofHours] = Double.parseDouble(parts[8 + this.nofHours*3]);
-						data.volumes[SUM][this.nofHours] *= this.volScaleFactor;
-						data.volumes[MAX][this.nofHours] = Double.parseDouble(parts[9 + this.nofHours*3]);
-						data.volumes[MAX][this.nofHours] *= this.volScaleFactor;
+						this.volumes[MIN][v + this.nofHours] = Double.parseDouble(parts[7 + this.nofHours*3]);
+						this.volumes[MIN][v + this.nofHours] *= this.volScaleFactor;
+						this.volumes[SUM][v + this.nofHours] = Double.parseDouble(parts[8 + this.nofHours*3]);
+						this.volumes[SUM][v + this.nofHours] *= this.volScaleFactor;
+						this.volumes[MAX][v + this.nofHours] = Double.parseDouble(parts[9 + this.nofHours*3]);
+						this.volumes[MAX][v + this.nofHours] *= this.volScaleFactor;
 					}
 				}
 				else if (parts.length == 153) {
 					String linkId = parts[0];
-					LinkData data = this.linkData.get(Id.create(linkId, Link.class));
-					if (data == null) {
+					int position = getPosition(Id.create(linkId, Link.class));
+					if (position < 0) {
 						System.err.println("CalcLinkStats.readFile(); unknown link: " + linkId);
 					} else {
+						int v = position * (this.nofHours + 1);
+						int t = position * this.nofHours;
 						int baseTTimes;
 						for (int i = 0; i < this.nofHours; i++) {
-							data.volumes[MIN][i] = Double.parseDouble(parts[6 + i*3]);
-							data.volumes[MIN][i] *= this.volScaleFactor;
-							data.volumes[SUM][i] = Integer.parseInt(parts[7 + i*3]);
-							data.volumes[SUM][i] *= this.volScaleFactor;
-							data.volumes[MAX][i] = Double.parseDouble(parts[8 + i*3]);
-							data.volumes[MAX][i] *= this.volScaleFactor;
+							this.volumes[MIN][v + i] = Double.parseDouble(parts[6 + i*3]);
+							this.volumes[MIN][v + i] *= this.volScaleFactor;
+							this.volumes[SUM][v + i] = Integer.parseInt(parts[7 + i*3]);
+							this.volumes[SUM][v + i] *= this.volScaleFactor;
+							this.volumes[MAX][v + i] = Double.parseDouble(parts[8 + i*3]);
+							this.volumes[MAX][v + i] *= this.volScaleFactor;
 							baseTTimes = 6 + (this.nofHours+1)*3;
-							data.ttimes[MIN][i] = Double.parseDouble(parts[baseTTimes + i*3]);
-							if (data.volumes[SUM][i] == 0) {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
+							this.ttimes[MIN][t + i] = Double.parseDouble(parts[baseTTimes + i*3]);
+							if (this.volumes[SUM][v + i] == 0) {
+								this.ttimes[SUM][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
 							} else {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * data.volumes[SUM][i];
+								this.ttimes[SUM][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * this.volumes[SUM][v + i];
 							}
-							data.ttimes[MAX][i] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
+							this.ttimes[MAX][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
 						}
-						data.volumes[MIN][this.nofHours] = Double.parseDouble(parts[6 + this.nofHours*3]);
-						data.volumes[MIN][this.nofHours] *= this.volScaleFactor;
-						data.volumes[SUM][this.nofHours] = Double.parseDouble(parts[7 + this.nofHours*3]);
-						data.volumes[SUM][this.nofHours] *= this.volScaleFactor;
-						data.volumes[MAX][this.nofHours] = Double.parseDouble(parts[8 + this.nofHours*3]);
-						data.volumes[MAX][this.nofHours] *= this.volScaleFactor;
+						this.volumes[MIN][v + this.nofHours] = Double.parseDouble(parts[6 + this.nofHours*3]);
+						this.volumes[MIN][v + this.nofHours] *= this.volScaleFactor;
+						this.volumes[SUM][v + this.nofHours] = Double.parseDouble(parts[7 + this.nofHours*3]);
+						this.volumes[SUM][v + this.nofHours] *= this.volScaleFactor;
+						this.volumes[MAX][v + this.nofHours] = Double.parseDouble(parts[8 + this.nofHours*3]);
+						this.volumes[MAX][v + this.nofHours] *= this.volScaleFactor;
 					}
 				}
 				else {
@@ -358,16 +398,17 @@ public class CalcLinkStats {
 	 * @return if no data is available, an array with length 0 is returned.
 	 */
 	public double[] getAvgLinkVolumes(final Id<Link> linkId) {
-		LinkData data = this.linkData.get(linkId);
-		if (data == null) {
+		int position = getPosition(linkId);
+		if (position < 0) {
 			return new double[0];
 		}
 		if (this.count == 0) {
 			return new double[0];
 		}
+		int v = position * (this.nofHours + 1);
 		double[] volumes = new double[this.nofHours];
 		for (int i = 0; i < this.nofHours; i++) {
-			volumes[i] = (data.volumes[SUM][i]) / (this.count);
+			volumes[i] = (this.volumes[SUM][v + i]) / (this.count);
 		}
 		return volumes;
 	}
@@ -381,8 +422,8 @@ public class CalcLinkStats {
 	 */
 	@Deprecated
 	protected double[] getAvgTravelTimes(final Id<Link> linkId) {
-		LinkData data = this.linkData.get(linkId);
-		if (data == null) {
+		int position = getPosition(linkId);
+		if (position < 0) {
 			return new double[0];
 		}
 		if (this.count == 0) {
@@ -394,10 +435,12 @@ public class CalcLinkStats {
 		
 		double[] avgTTimes = new double[this.nofHours];
 		
+		int v = position * (this.nofHours + 1);
+		int t = position * this.nofHours;
 		for (int i = 0; i < this.nofHours; i++) {
-			volumes[i] = (data.volumes[SUM][i]) / (this.count);
-			ttimesMin[i] = (data.ttimes[MIN][i]) / (this.count);
-			ttimesSum[i] = (data.ttimes[SUM][i]) / (this.count);
+			volumes[i] = (this.volumes[SUM][v + i]) / (this.count);
+			ttimesMin[i] = (this.ttimes[MIN][t + i]) / (this.count);
+			ttimesSum[i] = (this.ttimes[SUM][t + i]) / (this.count);
 
 			if (volumes[i] == 0.) {
 				avgTTimes[i] = ttimesMin[i];
@@ -408,4 +451,9 @@ public class CalcLinkStats {
 		return avgTTimes;
 	}
 
+	private int getPosition(final Id<Link> linkId) {
+		int index = linkId.index();
+		return index < this.positions.length ? this.positions[index] : -1;
+	}
+
 }
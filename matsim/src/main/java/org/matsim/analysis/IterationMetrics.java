@@ -0,0 +1,437 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * A registry of named counters, timers, histograms and gauges, complementing the {@link IterationStopWatch} with finer grained and
+ * thread-safe measurements.  Counters, timers and histograms are reset at the beginning of each iteration, so their values always refer
+ * to the current iteration; gauges keep their value.
+ * <p></p>
+ * The controler measures the duration, garbage collection time and heap usage of each iteration step.  The QSim, the
+ * {@link org.matsim.core.router.TripRouter} and the strategy manager record into this registry only if it is bound under
+ * {@link #INSTRUMENTATION}, which the controler does if the metrics are written or served.  At the end of each iteration, a snapshot is taken, see {@link #endIteration()}, which may be written as JSON
+ * or CSV.  The current values can also be written in the Prometheus text format.
+ * <p></p>
+ * Metrics should be looked up once and then be kept, as the lookup by name is not free.
+ */
+public final class IterationMetrics {
+
+	public static final String JVM_HEAP_USED = "jvm.heapUsedBytes";
+	public static final String JVM_GC_TIME = "jvm.gcSeconds";
+	/**
+	 * All events of the current iteration, only counted if the metrics are written or served, see
+	 * {@link org.matsim.core.config.groups.ControlerConfigGroup#getWriteMetricsInterval()}.
+	 */
+	public static final String EVENTS_COUNT = "events.count";
+	/**
+	 * Name of the binding through which the QSim, trip router and strategy manager get the metrics.  Without it, they do not measure
+	 * anything.
+	 */
+	public static final String INSTRUMENTATION = "iterationMetricsInstrumentation";
+
+	private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+	private int iteration = -1;
+	private Map<String, Double> lastSnapshot = Collections.emptyMap();
+
+	public IterationMetrics() {
+		gauge(JVM_HEAP_USED, () -> ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+		gauge(JVM_GC_TIME, () -> getTotalGcMillis() / 1000.);
+	}
+
+	public Counter counter(String name) {
+		return getOrCreate(name, Counter.class, Counter::new);
+	}
+
+	public Timer timer(String name) {
+		return getOrCreate(name, Timer.class, Timer::new);
+	}
+
+	/**
+	 * @param upperBounds the (inclusive) upper bounds of the buckets, in ascending order; values above the last bound go into an
+	 * 		additional bucket.  Ignored if the histogram already exists.
+	 */
+	public Histogram histogram(String name, double... upperBounds) {
+		return getOrCreate(name, Histogram.class, () -> new Histogram(upperBounds));
+	}
+
+	/**
+	 * @return a gauge the value of which is set explicitly
+	 */
+	public Gauge gauge(String name) {
+		return getOrCreate(name, Gauge.class, Gauge::new);
+	}
+
+	/**
+	 * Registers (or replaces) a gauge the value of which is queried from the supplier whenever the metrics are read.
+	 */
+	public void gauge(String name, DoubleSupplier supplier) {
+		Metric previous = metrics.put(name, new SuppliedGauge(supplier));
+		if (previous != null && !(previous instanceof SuppliedGauge)) {
+			metrics.put(name, previous);
+			throw new IllegalArgumentException("Metric " + name + " is already registered as " + previous.getClass().getSimpleName());
+		}
+	}
+
+	private <M extends Metric> M getOrCreate(String name, Class<M> type, Supplier<M> factory) {
+		Metric metric = metrics.computeIfAbsent(name, n -> factory.get());
+		if (!type.isInstance(metric)) {
+			throw new IllegalArgumentException("Metric " + name + " is already registered as " + metric.getClass().getSimpleName());
+		}
+		return type.cast(metric);
+	}
+
+	/**
+	 * Resets all counters, timers and histograms.
+	 */
+	public void beginIteration(int iteration) {
+		this.iteration = iteration;
+		for (Metric metric : metrics.values()) {
+			metric.reset();
+		}
+	}
+
+	/**
+	 * Takes the snapshot of the current iteration, which is then returned by {@link #getLastSnapshot()} and written by
+	 * {@link #writeJson(String)} and {@link #appendCsv(String)}.
+	 */
+	public void endIteration() {
+		this.lastSnapshot = Collections.unmodifiableMap(snapshot());
+	}
+
+	public int getIteration() {
+		return iteration;
+	}
+
+	public Map<String, Double> getLastSnapshot() {
+		return lastSnapshot;
+	}
+
+	/**
+	 * @return the current values of all metrics, with one or more entries per metric: counters and gauges by their name; timers as
+	 * 		<code>name.count</code>, <code>name.seconds</code> and <code>name.maxSeconds</code>; histograms as
+	 * 		<code>name.count</code>, <code>name.sum</code> and cumulative <code>name.le.bound</code> entries per bucket.
+	 */
+	public Map<String, Double> snapshot() {
+		Map<String, Double> values = new LinkedHashMap<>();
+		metrics.forEach((name, metric) -> metric.snapshot(name, values));
+		return values;
+	}
+
+	/**
+	 * Writes the last snapshot as JSON object, together with the iteration.
+	 */
+	public void writeJson(String filename) {
+		try (OutputStream out = IOUtils.getOutputStream(IOUtils.getFileUrl(filename), false);
+			 JsonGenerator json = new JsonFactory().createGenerator(out)) {
+			json.useDefaultPrettyPrinter();
+			json.writeStartObject();
+			json.writeNumberField("iteration", iteration);
+			json.writeObjectFieldStart("metrics");
+			for (Map.Entry<String, Double> entry : lastSnapshot.entrySet()) {
+				json.writeNumberField(entry.getKey(), entry.getValue());
+			}
+			json.writeEndObject();
+			json.writeEndObject();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Appends the last snapshot in long format (<code>iteration;metric;value</code>) to the given file, writing the header first if the
+	 * file is new.
+	 */
+	public void appendCsv(String filename) {
+		boolean exists = new File(filename).exists();
+		try (BufferedWriter writer = IOUtils.getAppendingBufferedWriter(filename)) {
+			if (!exists) {
+				writer.write("iteration;metric;value\n");
+			}
+			for (Map.Entry<String, Double> entry : lastSnapshot.entrySet()) {
+				writer.write(iteration + ";" + entry.getKey() + ";" + entry.getValue() + "\n");
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes the current values in the Prometheus text exposition format.  Names are prefixed with <code>matsim_</code>, and all
+	 * characters not allowed there are replaced by underscores.  Counters get the suffix <code>_total</code>, and timers are exported as
+	 * summaries in seconds.
+	 */
+	public void writePrometheus(Appendable out) throws IOException {
+		out.append("# TYPE matsim_iteration gauge\nmatsim_iteration ").append(Integer.toString(iteration)).append('\n');
+		for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+			entry.getValue().writePrometheus(prometheusName(entry.getKey()), out);
+		}
+	}
+
+	static String prometheusName(String name) {
+		StringBuilder result = new StringBuilder("matsim_");
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+			result.append(valid ? c : '_');
+		}
+		return result.toString();
+	}
+
+	/**
+	 * @return the accumulated collection time of all garbage collectors, in milliseconds
+	 */
+	public static long getTotalGcMillis() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += Math.max(0, gc.getCollectionTime());
+		}
+		return total;
+	}
+
+	private static abstract class Metric {
+		void reset() {
+		}
+
+		abstract void snapshot(String name, Map<String, Double> values);
+
+		abstract void writePrometheus(String name, Appendable out) throws IOException;
+	}
+
+	public static final class Counter extends Metric {
+		private final LongAdder value = new LongAdder();
+
+		public void increment() {
+			value.increment();
+		}
+
+		public void add(long amount) {
+			value.add(amount);
+		}
+
+		public long get() {
+			return value.sum();
+		}
+
+		@Override
+		void reset() {
+			value.reset();
+		}
+
+		@Override
+		void snapshot(String name, Map<String, Double> values) {
+			values.put(name, (double)value.sum());
+		}
+
+		@Override
+		void writePrometheus(String name, Appendable out) throws IOException {
+			String totalName = name.endsWith("_total") ? name : name + "_total";// naming convention for counters
+			out.append("# TYPE ").append(totalName).append(" counter\n");
+			out.append(totalName).append(' ').append(Long.toString(value.sum())).append('\n');
+		}
+	}
+
+	public static final class Timer extends Metric {
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		public void record(long nanos) {
+			count.increment();
+			totalNanos.add(nanos);
+			maxNanos.accumulateAndGet(nanos, Math::max);
+		}
+
+		/**
+		 * Records the time since <code>startNanos</code>, as obtained from {@link System#nanoTime()}.
+		 */
+		public void recordSince(long startNanos) {
+			record(System.nanoTime() - startNanos);
+		}
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public double getTotalSeconds() {
+			return totalNanos.sum() / 1e9;
+		}
+
+		@Override
+		void reset() {
+			count.reset();
+			totalNanos.reset();
+			maxNanos.set(0);
+		}
+
+		@Override
+		void snapshot(String name, Map<String, Double> values) {
+			values.put(name + ".count", (double)count.sum());
+			values.put(name + ".seconds", totalNanos.sum() / 1e9);
+			values.put(name + ".maxSeconds", maxNanos.get() / 1e9);
+		}
+
+		@Override
+		void writePrometheus(String name, Appendable out) throws IOException {
+			out.append("# TYPE ").append(name).append("_seconds summary\n");
+			out.append(name).append("_seconds_count ").append(Long.toString(count.sum())).append('\n');
+			out.append(name).append("_seconds_sum ").append(Double.toString(totalNanos.sum() / 1e9)).append('\n');
+			out.append("# TYPE ").append(name).append("_seconds_max gauge\n");
+			out.append(name).append("_seconds_max ").append(Double.toString(maxNanos.get() / 1e9)).append('\n');
+		}
+	}
+
+	public static final class Histogram extends Metric {
+		private final double[] upperBounds;
+		private final LongAdder[] buckets;
+		private final DoubleAdder sum = new DoubleAdder();
+
+		private Histogram(double[] upperBounds) {
+			for (int i = 1; i < upperBounds.length; i++) {
+				if (upperBounds[i] <= upperBounds[i - 1]) {
+					throw new IllegalArgumentException("Histogram bounds must be ascending.");
+				}
+			}
+			this.upperBounds = upperBounds.clone();
+			this.buckets = new LongAdder[upperBounds.length + 1];
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		public void record(double value) {
+			int bucket = 0;
+			while (bucket < upperBounds.length && value > upperBounds[bucket]) {
+				bucket++;
+			}
+			buckets[bucket].increment();
+			sum.add(value);
+		}
+
+		public long getCount() {
+			long count = 0;
+			for (LongAdder bucket : buckets) {
+				count += bucket.sum();
+			}
+			return count;
+		}
+
+		@Override
+		void reset() {
+			for (LongAdder bucket : buckets) {
+				bucket.reset();
+			}
+			sum.reset();
+		}
+
+		@Override
+		void snapshot(String name, Map<String, Double> values) {
+			long cumulative = 0;
+			for (int i = 0; i < upperBounds.length; i++) {
+				cumulative += buckets[i].sum();
+				values.put(name + ".le." + upperBounds[i], (double)cumulative);
+			}
+			values.put(name + ".count", (double)(cumulative + buckets[upperBounds.length].sum()));
+			values.put(name + ".sum", sum.sum());
+		}
+
+		@Override
+		void writePrometheus(String name, Appendable out) throws IOException {
+			out.append("# TYPE ").append(name).append(" histogram\n");
+			long cumulative = 0;
+			for (int i = 0; i < upperBounds.length; i++) {
+				cumulative += buckets[i].sum();
+				out.append(name).append("_bucket{le=\"").append(Double.toString(upperBounds[i])).append("\"} ")
+						.append(Long.toString(cumulative)).append('\n');
+			}
+			cumulative += buckets[upperBounds.length].sum();
+			out.append(name).append("_bucket{le=\"+Inf\"} ").append(Long.toString(cumulative)).append('\n');
+			out.append(name).append("_sum ").append(Double.toString(sum.sum())).append('\n');
+			out.append(name).append("_count ").append(Long.toString(cumulative)).append('\n');
+		}
+	}
+
+	public static final class Gauge extends Metric {
+		private volatile double value = Double.NaN;
+
+		public void set(double value) {
+			this.value = value;
+		}
+
+		public double get() {
+			return value;
+		}
+
+		@Override
+		void snapshot(String name, Map<String, Double> values) {
+			values.put(name, value);
+		}
+
+		@Override
+		void writePrometheus(String name, Appendable out) throws IOException {
+			writeGauge(name, value, out);
+		}
+	}
+
+	private static final class SuppliedGauge extends Metric {
+		private final DoubleSupplier supplier;
+
+		SuppliedGauge(DoubleSupplier supplier) {
+			this.supplier = supplier;
+		}
+
+		@Override
+		void snapshot(String name, Map<String, Double> values) {
+			values.put(name, supplier.getAsDouble());
+		}
+
+		@Override
+		void writePrometheus(String name, Appendable out) throws IOException {
+			writeGauge(name, supplier.getAsDouble(), out);
+		}
+	}
+
+	private static void writeGauge(String name, double value, Appendable out) throws IOException {
+		out.append("# TYPE ").append(name).append(" gauge\n");
+		out.append(name).append(' ').append(Double.isNaN(value) ? "NaN" : Double.toString(value)).append('\n');
+	}
+
+}
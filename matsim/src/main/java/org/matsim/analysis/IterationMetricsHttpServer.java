@@ -0,0 +1,78 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the current values of {@link IterationMetrics} in the Prometheus text format at <code>http://host:port/metrics</code>, using
+ * the http server of the JDK with a single thread.  The server only listens on the loopback address, so the metrics are not exposed
+ * to the network; use e.g. an ssh tunnel or a local Prometheus agent to scrape them from elsewhere.
+ */
+public final class IterationMetricsHttpServer {
+	private static final Logger log = LogManager.getLogger(IterationMetricsHttpServer.class);
+
+	private final HttpServer server;
+
+	public IterationMetricsHttpServer(IterationMetrics metrics, int port) {
+		try {
+			this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not open metrics endpoint on port " + port, e);
+		}
+		this.server.createContext("/metrics", exchange -> respond(metrics, exchange));
+	}
+
+	public void start() {
+		server.start();
+		log.info("serving metrics at http://localhost:" + server.getAddress().getPort() + "/metrics");
+	}
+
+	public void stop() {
+		server.stop(0);
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	private static void respond(IterationMetrics metrics, HttpExchange exchange) throws IOException {
+		StringBuilder text = new StringBuilder();
+		metrics.writePrometheus(text);
+		byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+}
@@ -247,6 +247,14 @@ public final class IterationStopWatch {
 	 * @param filename The name of a file where to write the gathered data.
 	 */
 	public void writeGraphFile(String filename) {
+		createGraph().saveAsPng(filename + ".png", 1024, 768);
+	}
+
+	/**
+	 * Creates the graph written by {@link #writeGraphFile(String)}.  The chart holds a copy of the gathered data, so it may be saved
+	 * while the stop watch goes on.
+	 */
+	public StackedBarChart createGraph() {
 
 		int iterations = this.iterations.entrySet().size();
 		Map<String, double[]> arrayMap = new HashMap<String, double[]>();
@@ -323,7 +331,7 @@ public final class IterationStopWatch {
 			chart.addSeries(OPERATION_OTHER, otherData);
 		}
 
-		chart.saveAsPng(filename + ".png", 1024, 768);
+		return chart;
 	}
 
 	/**
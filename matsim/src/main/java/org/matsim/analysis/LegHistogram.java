@@ -130,6 +130,23 @@ public class LegHistogram implements PersonDepartureEventHandler, PersonArrivalE
 		}
 	}
 
+	/**
+	 * @return a copy of the data gathered so far, which is not affected by further events or resets and can be written in the
+	 * background
+	 */
+	LegHistogram createSnapshot() {
+		LegHistogram snapshot = new LegHistogram(this.binSize, this.nofBins);
+		snapshot.iteration = this.iteration;
+		snapshot.personIds = this.personIds;
+		for (Map.Entry<String, DataFrame> e : this.data.entrySet()) {
+			DataFrame copy = snapshot.getDataForMode(e.getKey());
+			System.arraycopy(e.getValue().countsDep, 0, copy.countsDep, 0, copy.countsDep.length);
+			System.arraycopy(e.getValue().countsArr, 0, copy.countsArr, 0, copy.countsArr.length);
+			System.arraycopy(e.getValue().countsStuck, 0, copy.countsStuck, 0, copy.countsStuck.length);
+		}
+		return snapshot;
+	}
+
 	@Override
 	public void reset(final int iter) {
 		this.iteration = iter;
@@ -24,6 +24,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.controler.IterationOutputExecutor;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.events.IterationStartsEvent;
@@ -44,6 +45,7 @@ final class LegHistogramListener implements IterationEndsListener, IterationStar
 	@Inject private LegHistogram histogram;
 	@Inject private ControlerConfigGroup controlerConfigGroup;
 	@Inject private OutputDirectoryHierarchy controlerIO;
+	@com.google.inject.Inject(optional = true) private IterationOutputExecutor outputExecutor;
 
 	static private final Logger log = LogManager.getLogger(LegHistogramListener.class);
 
@@ -54,15 +56,24 @@ final class LegHistogramListener implements IterationEndsListener, IterationStar
 
 	@Override
 	public void notifyIterationEnds(final IterationEndsEvent event) {
-		this.histogram.write(controlerIO.getIterationFilename(event.getIteration(), "legHistogram.txt"));
 		this.printStats();
+		if (this.outputExecutor == null) {
+			write(this.histogram, event.getIteration());
+		} else {
+			// the histogram is reset at the start of the next iteration, so a background task needs its own copy
+			LegHistogram data = this.outputExecutor.isAsync() ? this.histogram.createSnapshot() : this.histogram;
+			this.outputExecutor.execute("leg histogram", () -> write(data, event.getIteration()));
+		}
+	}
+
+	private void write(LegHistogram data, int iteration) {
+		data.write(controlerIO.getIterationFilename(iteration, "legHistogram.txt"));
 		if (controlerConfigGroup.isCreateGraphs()) {
-			LegHistogramChart.writeGraphic(this.histogram, controlerIO.getIterationFilename(event.getIteration(), "legHistogram_all.png"));
-			for (String legMode : this.histogram.getLegModes()) {
-				LegHistogramChart.writeGraphic(this.histogram, controlerIO.getIterationFilename(event.getIteration(), "legHistogram_" + legMode + ".png"), legMode);
+			LegHistogramChart.writeGraphic(data, controlerIO.getIterationFilename(iteration, "legHistogram_all.png"));
+			for (String legMode : data.getLegModes()) {
+				LegHistogramChart.writeGraphic(data, controlerIO.getIterationFilename(iteration, "legHistogram_" + legMode + ".png"), legMode);
 			}
 		}
-
 	}
 
 	private void printStats() {
@@ -23,6 +23,7 @@ import org.matsim.api.core.v01.TransportMode;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.LinkStatsConfigGroup;
 import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.IterationOutputExecutor;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.events.IterationStartsEvent;
@@ -44,6 +45,7 @@ final class LinkStatsControlerListener implements IterationEndsListener, Iterati
 	@Inject private VolumesAnalyzer volumes;
 	@Inject private OutputDirectoryHierarchy controlerIO;
 	@Inject private Map<String, TravelTime> travelTime;
+	@com.google.inject.Inject(optional = true) private IterationOutputExecutor outputExecutor;
     private int iterationsUsed = 0;
 	private boolean doReset = false;
 
@@ -57,7 +59,14 @@ final class LinkStatsControlerListener implements IterationEndsListener, Iterati
 		}
 
 		if (createLinkStatsInIteration(iteration)) {
-			linkStats.writeFile(this.controlerIO.getIterationFilename(iteration, Controler.DefaultFiles.linkstats));
+			String filename = this.controlerIO.getIterationFilename(iteration, Controler.DefaultFiles.linkstats);
+			if (this.outputExecutor == null) {
+				linkStats.writeFile(filename);
+			} else {
+				// the stats are reset at the start of the next iteration, so a background task needs its own copy
+				CalcLinkStats data = this.outputExecutor.isAsync() ? linkStats.createSnapshot() : linkStats;
+				this.outputExecutor.execute("link stats", () -> data.writeFile(filename));
+			}
 			this.doReset = true;
 		}
 	}
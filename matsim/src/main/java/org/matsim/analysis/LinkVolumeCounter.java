@@ -0,0 +1,302 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdSet;
+import org.matsim.api.core.v01.network.Link;
+
+/**
+ * Counts vehicles per link, time slot and mode in primitive int arrays addressed by {@link Id#index()}, instead of one array (or one
+ * map of arrays) per link.  The counts of a mode are stored in chunks of {@value #CHUNK_SIZE} consecutive link indices, which are only
+ * allocated once a link in that range is counted.  Besides the per-mode counts, the sum over all modes is kept as well.
+ * <p></p>
+ * By default, a counter is meant to be used by one thread at a time (e.g. by one event handler), and increments are plain array
+ * writes.  A counter created as <code>concurrent</code> increments atomically, but lock-free, so several event handlers may count into
+ * the same instance concurrently.  In both cases, only the registration of new modes and the allocation of new chunks is
+ * synchronized.  {@link #clear()} must not be called while other threads are counting.  The counts are meant to be read once
+ * counting has finished, e.g. after the events of an iteration have been processed.
+ *
+ * @see VolumesAnalyzer
+ */
+public final class LinkVolumeCounter {
+
+	/**
+	 * Mode index that only counts towards the sum over all modes.
+	 */
+	public static final int NO_MODE = -1;
+
+	private static final int CHUNK_BITS = 10;
+	static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+	private final int slotCount;
+	private final boolean concurrent;
+	private final Map<String, Integer> modeIndices = new HashMap<>();
+	private final List<String> modes = new ArrayList<>();
+
+	private volatile Counts total;
+	private volatile Counts[] modeCounts;
+
+	/**
+	 * Creates a counter that is used by one thread at a time.
+	 *
+	 * @param slotCount the number of time slots per link and mode
+	 */
+	public LinkVolumeCounter(int slotCount) {
+		this(slotCount, false);
+	}
+
+	/**
+	 * @param slotCount the number of time slots per link and mode
+	 * @param concurrent whether several threads may count concurrently
+	 */
+	public LinkVolumeCounter(int slotCount, boolean concurrent) {
+		this.slotCount = slotCount;
+		this.concurrent = concurrent;
+		clear();
+	}
+
+	public int getSlotCount() {
+		return slotCount;
+	}
+
+	/**
+	 * Returns the index of the given mode, registering it if needed.  The index stays valid until {@link #clear()} is called.  Meant to
+	 * be looked up once per vehicle departure or so, not once per increment.
+	 *
+	 * @param mode may be <code>null</code>
+	 */
+	public synchronized int getModeIndex(String mode) {
+		Integer index = modeIndices.get(mode);
+		if (index == null) {
+			index = modes.size();
+			modes.add(mode);
+			modeIndices.put(mode, index);
+			Counts[] counts = Arrays.copyOf(modeCounts, index + 1);
+			counts[index] = new Counts();
+			modeCounts = counts;
+		}
+		return index;
+	}
+
+	/**
+	 * Counts one vehicle on the given link and time slot, for the mode with the given index (if not {@link #NO_MODE}) and for the sum over
+	 * all modes.
+	 */
+	public void increment(Id<Link> linkId, int modeIndex, int slot) {
+		int linkIndex = linkId.index();
+		total.increment(linkIndex, slot);
+		if (modeIndex != NO_MODE) {
+			modeCounts[modeIndex].increment(linkIndex, slot);
+		}
+	}
+
+	/**
+	 * @return the count of the given mode (or the sum over all modes, for {@link #NO_MODE}) on the given link and time slot
+	 */
+	public int get(Id<Link> linkId, int modeIndex, int slot) {
+		Counts counts = getCounts(modeIndex);
+		return counts == null ? 0 : counts.get(linkId.index(), slot);
+	}
+
+	/**
+	 * @return the counts per time slot of the given mode (or the sum over all modes, for {@link #NO_MODE}) on the given link, or
+	 * <code>null</code> if nothing was counted there.
+	 */
+	public int[] getVolumes(Id<Link> linkId, int modeIndex) {
+		Counts counts = getCounts(modeIndex);
+		if (counts == null) {
+			return null;
+		}
+		int[] volumes = new int[slotCount];
+		return counts.copy(linkId.index(), volumes) ? volumes : null;
+	}
+
+	/**
+	 * Same as {@link #getVolumes(Id, int)}, but writes the counts into the given array of length {@link #getSlotCount()}, so that no
+	 * arrays need to be allocated when going through all links.
+	 *
+	 * @return <code>false</code> if nothing was counted on the given link, in which case the array is filled with zeros
+	 */
+	public boolean getVolumes(Id<Link> linkId, int modeIndex, int[] volumes) {
+		Counts counts = getCounts(modeIndex);
+		if (counts == null || !counts.copy(linkId.index(), volumes)) {
+			Arrays.fill(volumes, 0);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Same as {@link #getVolumes(Id, int)} for a mode given by name, without registering it.
+	 */
+	public int[] getVolumes(Id<Link> linkId, String mode) {
+		Integer modeIndex;
+		synchronized (this) {
+			modeIndex = modeIndices.get(mode);
+		}
+		return modeIndex == null ? null : getVolumes(linkId, modeIndex);
+	}
+
+	/**
+	 * @return all links with at least one vehicle counted
+	 */
+	public Set<Id<Link>> getLinkIds() {
+		IdSet<Link> linkIds = new IdSet<>(Link.class);
+		int[][] chunks = total.chunks;
+		for (int c = 0; c < chunks.length; c++) {
+			if (chunks[c] != null) {
+				for (int i = 0; i < CHUNK_SIZE; i++) {
+					if (total.hasCounts(chunks[c], i)) {
+						linkIds.add(Id.get((c << CHUNK_BITS) | i, Link.class));
+					}
+				}
+			}
+		}
+		return linkIds;
+	}
+
+	/**
+	 * @return all (non-<code>null</code>) modes with at least one vehicle counted
+	 */
+	public synchronized Set<String> getModes() {
+		Set<String> result = new TreeSet<>();
+		for (int m = 0; m < modes.size(); m++) {
+			if (modes.get(m) != null && modeCounts[m].hasCounts()) {
+				result.add(modes.get(m));
+			}
+		}
+		return result;
+	}
+
+	public synchronized void clear() {
+		modeIndices.clear();
+		modes.clear();
+		modeCounts = new Counts[0];
+		total = new Counts();
+	}
+
+	private Counts getCounts(int modeIndex) {
+		if (modeIndex == NO_MODE) {
+			return total;
+		}
+		Counts[] counts = modeCounts;
+		return modeIndex < counts.length ? counts[modeIndex] : null;
+	}
+
+	/**
+	 * The counts of one mode.  The chunk directory is copied on growth, but the chunks themselves are shared between the old and the new
+	 * directory, so no increment gets lost when a thread still works with an outdated directory.
+	 */
+	private final class Counts {
+		private volatile int[][] chunks = new int[0][];
+
+		void increment(int linkIndex, int slot) {
+			int[][] chunks = this.chunks;
+			int c = linkIndex >>> CHUNK_BITS;
+			int[] chunk = c < chunks.length ? chunks[c] : null;
+			if (chunk == null) {
+				chunk = allocateChunk(c);
+			}
+			int i = (linkIndex & CHUNK_MASK) * slotCount + slot;
+			if (concurrent) {
+				COUNTS.getAndAdd(chunk, i, 1);
+			} else {
+				chunk[i]++;
+			}
+		}
+
+		private synchronized int[] allocateChunk(int c) {
+			int[][] chunks = this.chunks;
+			if (c >= chunks.length) {
+				chunks = Arrays.copyOf(chunks, Math.max(c + 1, 2 * chunks.length));
+			} else if (chunks[c] != null) {
+				return chunks[c];
+			} else {
+				chunks = chunks.clone();
+			}
+			chunks[c] = new int[CHUNK_SIZE * slotCount];
+			this.chunks = chunks;
+			return chunks[c];
+		}
+
+		int get(int linkIndex, int slot) {
+			int[] chunk = getChunk(linkIndex);
+			return chunk == null ? 0 : chunk[(linkIndex & CHUNK_MASK) * slotCount + slot];
+		}
+
+		boolean copy(int linkIndex, int[] volumes) {
+			int[] chunk = getChunk(linkIndex);
+			if (chunk == null) {
+				return false;
+			}
+			boolean nonZero = false;
+			int offset = (linkIndex & CHUNK_MASK) * slotCount;
+			for (int slot = 0; slot < slotCount; slot++) {
+				volumes[slot] = chunk[offset + slot];
+				nonZero |= volumes[slot] != 0;
+			}
+			return nonZero;
+		}
+
+		boolean hasCounts() {
+			for (int[] chunk : chunks) {
+				if (chunk != null) {
+					for (int i = 0; i < CHUNK_SIZE; i++) {
+						if (hasCounts(chunk, i)) {
+							return true;
+						}
+					}
+				}
+			}
+			return false;
+		}
+
+		boolean hasCounts(int[] chunk, int i) {
+			int offset = i * slotCount;
+			for (int slot = 0; slot < slotCount; slot++) {
+				if (chunk[offset + slot] != 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private int[] getChunk(int linkIndex) {
+			int[][] chunks = this.chunks;
+			int c = linkIndex >>> CHUNK_BITS;
+			return c < chunks.length ? chunks[c] : null;
+		}
+	}
+
+}
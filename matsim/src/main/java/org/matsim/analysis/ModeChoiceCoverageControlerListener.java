@@ -8,6 +8,7 @@ import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.controler.IterationOutputExecutor;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.events.ShutdownEvent;
@@ -47,6 +48,7 @@ public class ModeChoiceCoverageControlerListener implements StartupListener, Ite
     private final boolean createPNG;
     private final ControlerConfigGroup controlerConfigGroup;
     private final MainModeIdentifier mainModeIdentifier;
+    @com.google.inject.Inject(optional = true) private IterationOutputExecutor outputExecutor;
 
     private int minIteration = 0;
     private int firstIteration = -1;
@@ -219,7 +221,9 @@ public class ModeChoiceCoverageControlerListener implements StartupListener, Ite
                 chart.addSeries(mode, history);
             }
             chart.addMatsimLogo();
-            chart.saveAsPng(this.modeFileName + limit + "x" + ".png", 800, 600);
+            // the chart holds a copy of the history, so it can be rendered in the background
+            String filename = this.modeFileName + limit + "x" + ".png";
+            IterationOutputExecutor.execute(this.outputExecutor, "mode choice coverage chart", () -> chart.saveAsPng(filename, 800, 600));
         }
     }
 
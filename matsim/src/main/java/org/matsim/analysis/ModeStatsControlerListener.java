@@ -46,6 +46,7 @@ import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.controler.IterationOutputExecutor;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.events.ShutdownEvent;
@@ -81,6 +82,7 @@ public final class ModeStatsControlerListener implements StartupListener, Iterat
 
 	private final boolean createPNG;
 	private final ControlerConfigGroup controlerConfigGroup;
+	@com.google.inject.Inject(optional = true) private IterationOutputExecutor outputExecutor;
 
 	Map<String,Map<Integer,Double>> modeHistories = new HashMap<>() ;
 	private int minIteration = 0;
@@ -199,7 +201,8 @@ public final class ModeStatsControlerListener implements StartupListener, Iterat
 				chart.addSeries(mode, history ) ;
 			}
 			chart.addMatsimLogo();
-			chart.saveAsPng(this.modeFileName + ".png", 800, 600);
+			// the charts hold copies of the histories, so they can be rendered in the background
+			IterationOutputExecutor.execute(this.outputExecutor, "mode stats chart", () -> chart.saveAsPng(this.modeFileName + ".png", 800, 600));
 
 			/////// EDIT: STACKED_BAR ///////////////////////////////////////////////////////
 			if (event.getIteration() > this.minIteration) {
@@ -217,7 +220,8 @@ public final class ModeStatsControlerListener implements StartupListener, Iterat
 					chart2.addSeries(mode, historyArray);
 				}
 				chart2.addMatsimLogo();
-				chart2.saveAsPng(this.modeFileName + "_stackedbar.png", 800, 600);
+				IterationOutputExecutor.execute(this.outputExecutor, "mode stats chart",
+						() -> chart2.saveAsPng(this.modeFileName + "_stackedbar.png", 800, 600));
 			}
 		}
 		modeCnt.clear();
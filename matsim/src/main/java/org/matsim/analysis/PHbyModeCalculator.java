@@ -40,6 +40,7 @@ import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.controler.IterationOutputExecutor;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.router.StageActivityTypeIdentifier;
 import org.matsim.core.scoring.EventsToLegs;
@@ -54,6 +55,7 @@ public class PHbyModeCalculator {
     private final Map<Integer,Map<String,TravelTimeAndWaitTime>> phtPerIteration = new TreeMap<>();
     private final boolean writePng;
     private final OutputDirectoryHierarchy controlerIO;
+    @com.google.inject.Inject(optional = true) private IterationOutputExecutor outputExecutor;
     private final static char DEL = '\t';
     private final static String FILENAME = "ph_modestats";
 
@@ -167,7 +169,9 @@ public class PHbyModeCalculator {
                 chart.addSeries(mode + WAIT_TIME_SUFFIX, valueWaitTime);
             }
             chart.addMatsimLogo();
-            chart.saveAsPng(controlerIO.getOutputFilename(FILENAME+ ".png"), 1024, 768);
+            // the chart holds a copy of the data, so it can be rendered in the background
+            IterationOutputExecutor.execute(outputExecutor, "ph mode stats chart",
+                    () -> chart.saveAsPng(controlerIO.getOutputFilename(FILENAME+ ".png"), 1024, 768));
 
         }
 
@@ -39,6 +39,7 @@ import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.controler.IterationOutputExecutor;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.utils.charts.StackedBarChart;
 
@@ -51,6 +52,7 @@ public class PKMbyModeCalculator {
     private final Map<Integer,Map<String,Double>> pmtPerIteration = new TreeMap<>();
     private final boolean writePng;
     private final OutputDirectoryHierarchy controlerIO;
+    @com.google.inject.Inject(optional = true) private IterationOutputExecutor outputExecutor;
     private final static char DEL = '\t';
     private final static String FILENAME = "pkm_modestats";
 
@@ -123,7 +125,9 @@ public class PKMbyModeCalculator {
                 chart.addSeries(mode, value);
             }
             chart.addMatsimLogo();
-            chart.saveAsPng(controlerIO.getOutputFilename(FILENAME+ ".png"), 1024, 768);
+            // the chart holds a copy of the data, so it can be rendered in the background
+            IterationOutputExecutor.execute(outputExecutor, "pkm mode stats chart",
+                    () -> chart.saveAsPng(controlerIO.getOutputFilename(FILENAME+ ".png"), 1024, 768));
 
         }
 
@@ -37,6 +37,7 @@ import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.controler.IterationOutputExecutor;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.events.ShutdownEvent;
@@ -76,6 +77,7 @@ public class ScoreStatsControlerListener implements StartupListener, IterationEn
 	
 	private final boolean createPNG;
 	private final ControlerConfigGroup controlerConfigGroup;
+	@com.google.inject.Inject(optional = true) private IterationOutputExecutor outputExecutor;
 
 	Map<ScoreItem,Map< Integer, Double>> scoreHistory = new HashMap<>() ;
 	private int minIteration = 0;
@@ -211,7 +213,8 @@ public class ScoreStatsControlerListener implements StartupListener, IterationEn
 			chart.addSeries("avg. of plans' average score", this.scoreHistory.get( ScoreItem.average) );
 			chart.addSeries("avg. executed score", this.scoreHistory.get( ScoreItem.executed ) );
 			chart.addMatsimLogo();
-			chart.saveAsPng(this.fileName + ".png", 800, 600);
+			// the chart holds a copy of the history, so it can be rendered in the background
+			IterationOutputExecutor.execute(this.outputExecutor, "score stats chart", () -> chart.saveAsPng(this.fileName + ".png", 800, 600));
 		}
 	}
 
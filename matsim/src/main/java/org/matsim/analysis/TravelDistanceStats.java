@@ -28,6 +28,7 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.controler.IterationOutputExecutor;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.router.TripStructureUtils;
 import org.matsim.core.router.TripStructureUtils.Trip;
@@ -59,6 +60,7 @@ import java.util.stream.Collectors;
 public class TravelDistanceStats {
 
 	private final ControlerConfigGroup controlerConfigGroup;
+	@com.google.inject.Inject(optional = true) private IterationOutputExecutor outputExecutor;
 	final private BufferedWriter out;
 	final private String legStatsPngName;
 	final private String tripStatsPngName;
@@ -170,7 +172,9 @@ public class TravelDistanceStats {
 				System.arraycopy(this.legStatsHistory, 0, values, 0, index + 1);
 				chart.addSeries("executed plan", iterations, values);
 				chart.addMatsimLogo();
-				chart.saveAsPng(this.legStatsPngName + ".png", 800, 600);
+				// the chart holds a copy of the history, so it can be rendered in the background
+				IterationOutputExecutor.execute(this.outputExecutor, "leg distance stats chart",
+						() -> chart.saveAsPng(this.legStatsPngName + ".png", 800, 600));
 			}
 			if (index == (this.legStatsHistory.length - 1)) {
 				// we cannot store more information, so disable the graph feature.
@@ -193,7 +197,8 @@ public class TravelDistanceStats {
 				System.arraycopy(this.tripStatsHistory, 0, values, 0, index + 1);
 				chart.addSeries("executed plan", iterations, values);
 				chart.addMatsimLogo();
-				chart.saveAsPng(this.tripStatsPngName + ".png", 800, 600);
+				IterationOutputExecutor.execute(this.outputExecutor, "trip distance stats chart",
+						() -> chart.saveAsPng(this.tripStatsPngName + ".png", 800, 600));
 			}
 			if (index == (this.tripStatsHistory.length - 1)) {
 				// we cannot store more information, so disable the graph feature.
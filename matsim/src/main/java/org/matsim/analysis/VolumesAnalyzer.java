@@ -34,13 +34,15 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.vehicles.Vehicle;
 
 import javax.inject.Inject;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Set;
-import java.util.TreeSet;
 
 /**
  * Counts the number of vehicles leaving a link, aggregated into time bins of a specified size.
+ * <p></p>
+ * The counts are kept in a {@link LinkVolumeCounter}, i.e. in primitive arrays addressed by the link index, and not in one array
+ * (or one map of arrays per mode) per link.  Like other event handlers, it is called by one thread at a time, so it counts without
+ * atomic operations.
  *
  * @author mrieser
  */
@@ -50,12 +52,11 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	private final int timeBinSize;
 	private final int maxTime;
 	private final int maxSlotIndex;
-	private final IdMap<Link, int[]> links;
+	private final LinkVolumeCounter counter;
 	
 	// for multi-modal support
 	private final boolean observeModes;
-	private final IdMap<Vehicle, String> enRouteModes;
-	private final IdMap<Link, Map<String, int[]>> linksPerMode;
+	private final IdMap<Vehicle, Integer> enRouteModes;
 
 	@Inject
 	VolumesAnalyzer(Network network, EventsManager eventsManager) {
@@ -71,49 +72,31 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 		this.timeBinSize = timeBinSize;
 		this.maxTime = maxTime;
 		this.maxSlotIndex = (this.maxTime/this.timeBinSize) + 1;
-		this.links = new IdMap<>(Link.class);
+		this.counter = new LinkVolumeCounter(this.maxSlotIndex + 1);
 		
 		this.observeModes = observeModes;
 		if (this.observeModes) {
 			this.enRouteModes = new IdMap<>(Vehicle.class);
-			this.linksPerMode = new IdMap<>(Link.class);
 		} else {
 			this.enRouteModes = null;
-			this.linksPerMode = null;
 		}
 	}
 	
 	@Override
 	public void handleEvent(VehicleEntersTrafficEvent event) {
 		if (this.observeModes) {
-			this.enRouteModes.put(event.getVehicleId(), event.getNetworkMode());
+			this.enRouteModes.put(event.getVehicleId(), this.counter.getModeIndex(event.getNetworkMode()));
 		}
 	}
 	
 	@Override
 	public void handleEvent(final LinkLeaveEvent event) {
-		int[] volumes = this.links.get(event.getLinkId());
-		if (volumes == null) {
-			volumes = new int[this.maxSlotIndex + 1]; // initialized to 0 by default, according to JVM specs
-			this.links.put(event.getLinkId(), volumes);
-		}
-		int timeslot = getTimeSlotIndex(event.getTime());
-		volumes[timeslot]++;
-		
+		int modeIndex = LinkVolumeCounter.NO_MODE;
 		if (this.observeModes) {
-			Map<String, int[]> modeVolumes = this.linksPerMode.get(event.getLinkId());
-			if (modeVolumes == null) {
-				modeVolumes = new HashMap<>();
-				this.linksPerMode.put(event.getLinkId(), modeVolumes);
-			}
-			String mode = this.enRouteModes.get(event.getVehicleId());
-			volumes = modeVolumes.get(mode);
-			if (volumes == null) {
-				volumes = new int[this.maxSlotIndex + 1]; // initialized to 0 by default, according to JVM specs
-				modeVolumes.put(mode, volumes);
-			}
-			volumes[timeslot]++;
+			Integer mode = this.enRouteModes.get(event.getVehicleId());
+			modeIndex = mode != null ? mode : this.counter.getModeIndex(null);
 		}
+		this.counter.increment(event.getLinkId(), modeIndex, getTimeSlotIndex(event.getTime()));
 	}
 
 	private int getTimeSlotIndex(final double time) {
@@ -126,10 +109,11 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	/**
 	 * @param linkId
 	 * @return Array containing the number of vehicles leaving the link <code>linkId</code> per time bin,
-	 * 		starting with time bin 0 from 0 seconds to (timeBinSize-1)seconds.
+	 * 		starting with time bin 0 from 0 seconds to (timeBinSize-1)seconds, or <code>null</code> if no vehicle left the link.
+	 * 		The array is a copy, so changing it does not change the counts, and it is not updated by later events.
 	 */
 	public int[] getVolumesForLink(final Id<Link> linkId) {
-		return this.links.get(linkId);
+		return this.counter.getVolumes(linkId, LinkVolumeCounter.NO_MODE);
 	}
 	
 	/**
@@ -137,11 +121,11 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 * @param mode
 	 * @return Array containing the number of vehicles using the specified mode leaving the link 
 	 *  	<code>linkId</code> per time bin, starting with time bin 0 from 0 seconds to (timeBinSize-1)seconds.
+	 *  	As for {@link #getVolumesForLink(Id)}, the array is a copy.
 	 */
 	public int[] getVolumesForLink(final Id<Link> linkId, String mode) {
 		if (observeModes) {
-			Map<String, int[]> modeVolumes = this.linksPerMode.get(linkId);
-			if (modeVolumes != null) return modeVolumes.get(mode);
+			return this.counter.getVolumes(linkId, mode);
 		} 
 		return null;
 	}
@@ -176,22 +160,39 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 * Thus, starting time = (hour = 0) * 3600.0
 	 */
 	public double[] getVolumesPerHourForLink(final Id<Link> linkId) {
-		if (3600.0 % this.timeBinSize != 0) log.error("Volumes per hour and per link probably not correct!");
-		
 		double[] volumes = new double[24];
-		
-		int[] volumesForLink = this.getVolumesForLink(linkId);
-		if (volumesForLink == null) return volumes;
+		getVolumesPerHourForLink(linkId, volumes);
+		return volumes;
+	}
+
+	/**
+	 * Same as {@link #getVolumesPerHourForLink(Id)}, but writes the volumes into the given array of length 24, so that no arrays need to
+	 * be allocated when going through all links.
+	 */
+	public void getVolumesPerHourForLink(final Id<Link> linkId, final double[] volumes) {
+		getVolumesPerHourForLink(linkId, volumes, new int[getVolumesArraySize()]);
+	}
+
+	/**
+	 * Same as {@link #getVolumesPerHourForLink(Id, double[])}, with a buffer for the volumes per time bin (of length
+	 * {@link #getVolumesArraySize()}), so that {@link CalcLinkStats} reads the counts of each link at once and without allocations.
+	 */
+	void getVolumesPerHourForLink(final Id<Link> linkId, final double[] volumes, final int[] slotVolumes) {
+		if (3600.0 % this.timeBinSize != 0) log.error("Volumes per hour and per link probably not correct!");
 
+		if (!this.counter.getVolumes(linkId, LinkVolumeCounter.NO_MODE, slotVolumes)) {
+			Arrays.fill(volumes, 0, 24, 0.0);
+			return;
+		}
 		int slotsPerHour = (int)(3600.0 / this.timeBinSize);
 		for (int hour = 0; hour < 24; hour++) {
+			volumes[hour] = 0.0;
 			double time = hour * 3600.0;
 			for (int i = 0; i < slotsPerHour; i++) {
-				volumes[hour] += volumesForLink[this.getTimeSlotIndex(time)];
+				volumes[hour] += slotVolumes[this.getTimeSlotIndex(time)];
 				time += this.timeBinSize;
 			}
 		}
-		return volumes;
 	}
 
 	public double[] getVolumesPerHourForLink(final Id<Link> linkId, String mode) {
@@ -223,27 +224,20 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 * @return Set of Strings containing all modes for which counting-values are available.
 	 */
 	public Set<String> getModes() {
-		Set<String> modes = new TreeSet<>();
-		
-		for (Map<String, int[]> map : this.linksPerMode.values()) {
-			modes.addAll(map.keySet());
-		}
-		
-		return modes;
+		return this.counter.getModes();
 	}
 	
 	/**
 	 * @return Set of Strings containing all link ids for which counting-values are available.
 	 */
 	public Set<Id<Link>> getLinkIds() {
-		return this.links.keySet();
+		return this.counter.getLinkIds();
 	}
 
 	@Override
 	public void reset(final int iteration) {
-		this.links.clear();
+		this.counter.clear();
 		if (observeModes) {
-			this.linksPerMode.clear();
 			this.enRouteModes.clear();
 		}
 	}
@@ -82,6 +82,9 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	public enum MobsimType {qsim, JDEQSim, hermes}
 
 	private static final String WRITE_SNAPSHOTS_INTERVAL = "writeSnapshotsInterval";
+	private static final String WRITE_METRICS_INTERVAL = "writeMetricsInterval";
+	private static final String METRICS_HTTP_PORT = "metricsHttpPort";
+	private static final String ASYNC_OUTPUT_BACKLOG = "asyncOutputBacklog";
 
 
 	private String outputDirectory = "./output";
@@ -101,6 +104,9 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private int writeTripsInterval = 50;
 	private String mobsim = MobsimType.qsim.toString();
 	private int writeSnapshotsInterval = 1;
+	private int writeMetricsInterval = 0;
+	private int metricsHttpPort = 0;
+	private int asyncOutputBacklog = 0;
 	private boolean createGraphs = true;
 	private boolean dumpDataAtEnd = true;
 
@@ -149,6 +155,14 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 		map.put(SNAPSHOT_FORMAT, "Comma-separated list of visualizer output file formats. `transims' and `otfvis'.");
 		map.put(WRITE_SNAPSHOTS_INTERVAL, "iterationNumber % " + WRITE_SNAPSHOTS_INTERVAL + " == 0 defines in which iterations snapshots are written " +
 				"to a file. `0' disables snapshots writing completely");
+		map.put(WRITE_METRICS_INTERVAL, "iterationNumber % " + WRITE_METRICS_INTERVAL + " == 0 defines in which iterations the performance " +
+				"metrics (timers, counters, gc time and heap per iteration step, router calls, ...) are written to metrics.csv and " +
+				"ITERS/it.N/N.metrics.json. `0' disables writing them completely.");
+		map.put(METRICS_HTTP_PORT, "If > 0, the current performance metrics are served in the Prometheus text format at " +
+				"http://localhost:port/metrics while the simulation runs. The server only listens on the loopback address. `0' disables this.");
+		map.put(ASYNC_OUTPUT_BACKLOG, "If > 0, iteration outputs such as link stats and leg histograms are written in the background " +
+				"from snapshots, overlapping with the next iteration. At most this many outputs may be pending; further ones wait. " +
+				"All outputs are complete before the shutdown listeners run. `0' writes them synchronously.");
 		map.put(DUMP_DATA_AT_END, "true if at the end of a run, plans, network, config etc should be dumped to a file");
 		map.put(CLEAN_ITERS_AT_END, "Defines what should be done with the ITERS directory when a simulation finished successfully");
 		return map;
@@ -358,6 +372,36 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 		this.writeSnapshotsInterval = writeSnapshotsInterval;
 	}
 
+	@StringGetter( WRITE_METRICS_INTERVAL )
+	public int getWriteMetricsInterval() {
+		return this.writeMetricsInterval;
+	}
+
+	@StringSetter( WRITE_METRICS_INTERVAL )
+	public void setWriteMetricsInterval(final int writeMetricsInterval) {
+		this.writeMetricsInterval = writeMetricsInterval;
+	}
+
+	@StringGetter( METRICS_HTTP_PORT )
+	public int getMetricsHttpPort() {
+		return this.metricsHttpPort;
+	}
+
+	@StringSetter( METRICS_HTTP_PORT )
+	public void setMetricsHttpPort(final int metricsHttpPort) {
+		this.metricsHttpPort = metricsHttpPort;
+	}
+
+	@StringGetter( ASYNC_OUTPUT_BACKLOG )
+	public int getAsyncOutputBacklog() {
+		return this.asyncOutputBacklog;
+	}
+
+	@StringSetter( ASYNC_OUTPUT_BACKLOG )
+	public void setAsyncOutputBacklog(final int asyncOutputBacklog) {
+		this.asyncOutputBacklog = asyncOutputBacklog;
+	}
+
 	@StringGetter( CREATE_GRAPHS )
 	public boolean isCreateGraphs() {
 		return createGraphs;
@@ -226,6 +226,13 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		map.put(IS_SEEP_MODE_STORAGE_FREE, "If link dynamics is set as " + LinkDynamics.SeepageQ + ", set to true if seep mode do not consumes any space on the link. Default is false.");
 		map.put(IS_RESTRICTING_SEEPAGE, "If link dynamics is set as " + LinkDynamics.SeepageQ + ", set to false if all seep modes should perform seepage. Default is true (better option).");
 		map.put(FILTER_SNAPSHOTS, "If set to " + FilterSnapshots.withLinkAttributes + " snapshots will only be generated for links which include " + SnapshotWritersModule.GENERATE_SNAPSHOT_FOR_LINK_KEY + " as attribute key. Default is no filtering.");
+		map.put(CHECKPOINT_TIMES, "[comma-separated list of times] The qsim writes a checkpoint at each of these times (into "
+				+ "<outputDirectory>/checkpoints), from which the qsim can be resumed with " + CHECKPOINT_TO_RESTORE + ".  Only works with "
+				+ "the default engines and links, i.e. not with transit, DVRP, within-day replanning, lanes, signals or passengers.  Default is "
+				+ "no checkpoints.  Checkpoints are only switched on by this or " + CHECKPOINT_TO_RESTORE + ", and then make all random number "
+				+ "generators restorable, which synchronizes each draw.");
+		map.put(CHECKPOINT_TO_RESTORE, "A checkpoint file written by the qsim.  The qsim of the first iteration then starts at the time of the "
+				+ "checkpoint, in the state of the checkpoint.  Needs the same scenario, config and qsim components as the run that wrote it.");
 //		map.put(CREATING_VEHICLES_FOR_ALL_NETWORK_MODES, "If set to true, creates a vehicle for each person corresponding to every network mode. However, " +
 //				"this will be overridden if vehicle source is "+ VehiclesSource.fromVehiclesData+".");
 
@@ -674,6 +681,45 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		this.inflowCapacitySetting = inflowCapacitySetting;
 	}
 
+	// ---
+	private static final String CHECKPOINT_TIMES = "checkpointTimes";
+	private List<Double> checkpointTimes = new ArrayList<>();
+	@StringGetter(CHECKPOINT_TIMES)
+	private String getCheckpointTimesAsString() {
+		StringJoiner joiner = new StringJoiner(",");
+		for (double time : this.checkpointTimes) {
+			joiner.add(Time.writeTime(time));
+		}
+		return joiner.toString();
+	}
+	@StringSetter(CHECKPOINT_TIMES)
+	private void setCheckpointTimes(String value) {
+		List<Double> times = new ArrayList<>();
+		for (String time : value.split(",")) {
+			if (!time.isBlank()) {
+				times.add(Time.parseTime(time.trim()));
+			}
+		}
+		setCheckpointTimes(times);
+	}
+	public List<Double> getCheckpointTimes() {
+		return this.checkpointTimes;
+	}
+	public void setCheckpointTimes(List<Double> checkpointTimes) {
+		this.checkpointTimes = checkpointTimes;
+	}
+	// ---
+	private static final String CHECKPOINT_TO_RESTORE = "checkpointToRestore";
+	private String checkpointToRestore = null;
+	@StringGetter(CHECKPOINT_TO_RESTORE)
+	public String getCheckpointToRestore() {
+		return this.checkpointToRestore;
+	}
+	@StringSetter(CHECKPOINT_TO_RESTORE)
+	public void setCheckpointToRestore(String checkpointToRestore) {
+		this.checkpointToRestore = checkpointToRestore;
+	}
+
 ////	@StringGetter(CREATING_VEHICLES_FOR_ALL_NETWORK_MODES)
 //	public boolean isCreatingVehiclesForAllNetworkModes() {
 //		// yyyy do we really need this switch?  Quite in general, please try to avoid boolean switches.  kai, may'18
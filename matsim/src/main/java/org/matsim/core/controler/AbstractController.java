@@ -21,13 +21,19 @@ package org.matsim.core.controler;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.matsim.analysis.IterationMetrics;
+import org.matsim.analysis.IterationMetricsHttpServer;
 import org.matsim.analysis.IterationStopWatch;
 import org.matsim.core.config.Config;
+import org.matsim.core.utils.charts.StackedBarChart;
 import org.matsim.core.controler.listener.ControlerListener;
 import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointModule;
 import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.utils.MemoryObserver;
 
+import java.lang.management.ManagementFactory;
+
 /*package*/ abstract class AbstractController {
     // we already had one case where a method of this was removed, causing downstream failures; better just not
 	// offer it at all; framework with injector should now be flexible enough.  kai, mar'18
@@ -38,6 +44,10 @@ import org.matsim.utils.MemoryObserver;
 
     private final IterationStopWatch stopwatch;
 
+    private final IterationMetrics metrics;
+
+    private final IterationOutputExecutor outputExecutor;
+
 
     /**
      * This is deliberately not even protected.  kai, jul'12
@@ -48,14 +58,17 @@ import org.matsim.utils.MemoryObserver;
     private Integer thisIteration = null;
     
     protected AbstractController() {
-        this(new ControlerListenerManagerImpl(), new IterationStopWatch(), null);
+        this(new ControlerListenerManagerImpl(), new IterationStopWatch(), new IterationMetrics(), new IterationOutputExecutor(0), null);
     }
 
-    AbstractController(ControlerListenerManagerImpl controlerListenerManager, IterationStopWatch stopWatch, MatsimServices matsimServices) {
+    AbstractController(ControlerListenerManagerImpl controlerListenerManager, IterationStopWatch stopWatch, IterationMetrics metrics,
+                       IterationOutputExecutor outputExecutor, MatsimServices matsimServices) {
         log.info("Used Controler-Class: " + this.getClass().getCanonicalName());
         this.controlerListenerManagerImpl = controlerListenerManager;
         this.controlerListenerManagerImpl.setControler(matsimServices);
         this.stopwatch = stopWatch;
+        this.metrics = metrics;
+        this.outputExecutor = outputExecutor;
     }
 
     private void resetRandomNumbers(long seed, int iteration) {
@@ -72,6 +85,12 @@ import org.matsim.utils.MemoryObserver;
 
     protected final void run(final Config config) {
         MemoryObserver.start(60);
+        MatsimRandom.setRestorable(QSimCheckpointModule.isConfigured(config)); // before the random numbers are reset for the first iteration
+        IterationMetricsHttpServer metricsServer = null;
+        if (config.controler().getMetricsHttpPort() > 0) {
+            metricsServer = new IterationMetricsHttpServer(this.metrics, config.controler().getMetricsHttpPort());
+            metricsServer.start();
+        }
         MatsimRuntimeModifications.MyRunnable runnable = new MatsimRuntimeModifications.MyRunnable() {
             @Override
             public void run() throws MatsimRuntimeModifications.UnexpectedShutdownException {
@@ -87,7 +106,13 @@ import org.matsim.utils.MemoryObserver;
                 controlerListenerManagerImpl.fireControlerShutdownEvent(unexpected, thisIteration == null ? -1 : thisIteration);
             }
         };
-        MatsimRuntimeModifications.run(runnable);
+        try {
+            MatsimRuntimeModifications.run(runnable);
+        } finally {
+            if (metricsServer != null) {
+                metricsServer.stop();
+            }
+        }
         OutputDirectoryLogging.closeOutputDirLogging();
         MemoryObserver.stop();
     }
@@ -130,6 +155,7 @@ import org.matsim.utils.MemoryObserver;
     private void iteration(final Config config, final int iteration, boolean isLastIteration) throws MatsimRuntimeModifications.UnexpectedShutdownException {
         this.thisIteration = iteration;
         this.getStopwatch().beginIteration(iteration);
+        this.metrics.beginIteration(iteration);
 
         log.info(Controler.DIVIDER);
         log.info(MARKER + "ITERATION " + iteration + " BEGINS");
@@ -154,6 +180,12 @@ import org.matsim.utils.MemoryObserver;
 
         mobsim(config, iteration, isLastIteration);
 
+        long events = this.metrics.counter(IterationMetrics.EVENTS_COUNT).get();
+        double mobsimSeconds = this.metrics.timer("controler.mobsim").getTotalSeconds();
+        if (events > 0 && mobsimSeconds > 0) {
+            this.metrics.gauge("controler.mobsim.eventsPerSecond").set(events / mobsimSeconds);
+        }
+
         iterationStep("scoring", new Runnable() {
             @Override
             public void run() {
@@ -177,7 +209,20 @@ import org.matsim.utils.MemoryObserver;
             log.error("Could not write stopwatch file.", e);
         }
         if (config.controler().isCreateGraphs()) {
-            this.getStopwatch().writeGraphFile(this.getControlerIO().getOutputFilename("stopwatch"));
+            // the chart holds a copy of the stop watch data, so it can be rendered in the background
+            StackedBarChart chart = this.getStopwatch().createGraph();
+            String filename = this.getControlerIO().getOutputFilename("stopwatch") + ".png";
+            this.outputExecutor.execute("stopwatch chart", () -> chart.saveAsPng(filename, 1024, 768));
+        }
+        this.metrics.endIteration();
+        int metricsInterval = config.controler().getWriteMetricsInterval();
+        if (metricsInterval > 0 && iteration % metricsInterval == 0) {
+            try {
+                this.metrics.writeJson(this.getControlerIO().getIterationFilename(iteration, "metrics.json"));
+                this.metrics.appendCsv(this.getControlerIO().getOutputFilename("metrics.csv"));
+            } catch (UncheckedIOException e) {
+                log.error("Could not write metrics files.", e);
+            }
         }
         log.info(MARKER + "ITERATION " + iteration + " ENDS");
         log.info(Controler.DIVIDER);
@@ -241,7 +286,13 @@ import org.matsim.utils.MemoryObserver;
 
     private void iterationStep(String iterationStepName, Runnable iterationStep) throws MatsimRuntimeModifications.UnexpectedShutdownException {
         this.getStopwatch().beginOperation(iterationStepName);
+        long gcMillis = IterationMetrics.getTotalGcMillis();
+        long start = System.nanoTime();
         iterationStep.run();
+        this.metrics.timer("controler." + iterationStepName).recordSince(start);
+        this.metrics.gauge("controler." + iterationStepName + ".gcSeconds").set((IterationMetrics.getTotalGcMillis() - gcMillis) / 1000.);
+        this.metrics.gauge("controler." + iterationStepName + ".heapUsedBytes").set(
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
         this.getStopwatch().endOperation(iterationStepName);
         if (Thread.interrupted()) {
             throw new MatsimRuntimeModifications.UnexpectedShutdownException();
@@ -276,4 +327,8 @@ import org.matsim.utils.MemoryObserver;
         return stopwatch;
     }
 
+    public IterationMetrics getMetrics() {
+        return metrics;
+    }
+
 }
@@ -22,6 +22,7 @@
 
 package org.matsim.core.controler;
 
+import org.matsim.analysis.IterationMetrics;
 import org.matsim.analysis.IterationTravelStatsModule;
 import org.matsim.analysis.LegHistogramModule;
 import org.matsim.analysis.LegTimesModule;
@@ -44,6 +45,8 @@ import org.matsim.guice.DependencyGraphModule;
 import org.matsim.pt.counts.PtCountsModule;
 import org.matsim.vis.snapshotwriters.SnapshotWritersModule;
 
+import com.google.inject.name.Names;
+
 public final class ControlerDefaultsModule extends AbstractModule {
     @Override
     public void install() {
@@ -55,6 +58,10 @@ public final class ControlerDefaultsModule extends AbstractModule {
         install(new TripRouterModule());
         install(new StrategyManagerModule());
         install(new TimeInterpretationModule());
+        if (getConfig().controler().getWriteMetricsInterval() > 0 || getConfig().controler().getMetricsHttpPort() > 0) {
+            addEventHandlerBinding().to(IterationMetricsEventsCounter.class);
+            bind(IterationMetrics.class).annotatedWith(Names.named(IterationMetrics.INSTRUMENTATION)).to(IterationMetrics.class);
+        }
         if (getConfig().replanningAnnealer().isActivateAnnealingModule()) {
             addControlerListenerBinding().to(ReplanningAnnealer.class);
         }
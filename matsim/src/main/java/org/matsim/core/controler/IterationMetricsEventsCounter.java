@@ -0,0 +1,44 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.controler;
+
+import javax.inject.Inject;
+
+import org.matsim.analysis.IterationMetrics;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.handler.BasicEventHandler;
+
+/**
+ * Counts all events into {@link IterationMetrics#EVENTS_COUNT}, from which the controler derives the events per second of the mobsim.
+ */
+final class IterationMetricsEventsCounter implements BasicEventHandler {
+	private final IterationMetrics.Counter counter;
+
+	@Inject
+	IterationMetricsEventsCounter(IterationMetrics metrics) {
+		this.counter = metrics.counter(IterationMetrics.EVENTS_COUNT);
+	}
+
+	@Override
+	public void handleEvent(Event event) {
+		counter.increment();
+	}
+
+}
@@ -0,0 +1,194 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.controler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.ShutdownListener;
+
+/**
+ * Runs the writing of iteration outputs (link stats, leg histograms, ...) on a background thread, so that the next iteration can
+ * start while the outputs of the previous one are still being written.  Tasks must only work on snapshots of the data, as the data
+ * itself is usually reset or changed in the next iteration.  The statistics charts (scores, modes, travel distances, stopwatch, ...)
+ * copy their data when they are built, so their listeners build them in the iteration and only render and save them here.
+ * <p></p>
+ * The tasks run one after the other, in the order they were submitted.  If {@link ControlerConfigGroup#getAsyncOutputBacklog()}
+ * tasks are pending, submitting another one blocks until one of them is done, which bounds the memory held by the snapshots.  With a
+ * backlog of 0 (the default), the tasks are run directly in the calling thread.
+ * <p></p>
+ * All outputs are complete when the shutdown listeners are called (this one is called before all others), and the first failure of
+ * a task is rethrown there.
+ */
+@Singleton
+public final class IterationOutputExecutor implements ShutdownListener {
+	private static final Logger log = LogManager.getLogger(IterationOutputExecutor.class);
+
+	private final ExecutorService executor;
+	private final Semaphore backlog;
+	private final Deque<Task> pending = new ArrayDeque<>();
+
+	@Inject
+	IterationOutputExecutor(ControlerConfigGroup config) {
+		this(config.getAsyncOutputBacklog());
+	}
+
+	/**
+	 * @param backlog the maximum number of pending tasks; 0 to run all tasks synchronously
+	 */
+	public IterationOutputExecutor(int backlog) {
+		if (backlog > 0) {
+			this.executor = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "IterationOutputExecutor");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.backlog = new Semaphore(backlog);
+		} else {
+			this.executor = null;
+			this.backlog = null;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if tasks run in the background, i.e. if callers need to pass snapshots of their data
+	 */
+	public boolean isAsync() {
+		return executor != null;
+	}
+
+	/**
+	 * Runs the given task, either directly or in the background.
+	 *
+	 * @param description used in log and error messages
+	 */
+	public void execute(String description, Runnable task) {
+		if (executor == null) {
+			task.run();
+			return;
+		}
+		backlog.acquireUninterruptibly();
+		Future<?> future;
+		try {
+			future = executor.submit(() -> {
+				try {
+					task.run();
+				} catch (RuntimeException | Error e) {
+					log.error("writing " + description + " failed.", e);
+					throw e;
+				} finally {
+					backlog.release();
+				}
+			});
+		} catch (RuntimeException e) {
+			backlog.release();
+			throw e;
+		}
+		synchronized (pending) {
+			pending.removeIf(t -> t.future.isDone() && t.failure() == null);
+			pending.add(new Task(description, future));
+		}
+	}
+
+	/**
+	 * Runs the given task with the given executor, or directly if there is none, e.g. for listeners created without the injector.
+	 */
+	public static void execute(@Nullable IterationOutputExecutor executor, String description, Runnable task) {
+		if (executor == null) {
+			task.run();
+		} else {
+			executor.execute(description, task);
+		}
+	}
+
+	/**
+	 * Waits until all tasks submitted so far are done.
+	 *
+	 * @throws RuntimeException if one of the tasks failed
+	 */
+	public void awaitCompletion() {
+		while (true) {
+			Task task;
+			synchronized (pending) {
+				task = pending.poll();
+			}
+			if (task == null) {
+				return;
+			}
+			try {
+				task.future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("interrupted while waiting for " + task.description + " to be written.", e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException("writing " + task.description + " failed.", e.getCause());
+			}
+		}
+	}
+
+	@Override
+	public void notifyShutdown(ShutdownEvent event) {
+		if (executor == null) {
+			return;
+		}
+		log.info("waiting for iteration outputs to be written...");
+		try {
+			awaitCompletion();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static final class Task {
+		final String description;
+		final Future<?> future;
+
+		Task(String description, Future<?> future) {
+			this.description = description;
+			this.future = future;
+		}
+
+		Throwable failure() {
+			try {
+				future.get();
+				return null;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return e;
+			} catch (ExecutionException e) {
+				return e.getCause();
+			}
+		}
+	}
+
+}
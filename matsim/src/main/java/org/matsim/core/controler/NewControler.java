@@ -21,6 +21,7 @@ package org.matsim.core.controler;
 import com.google.inject.Provider;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.matsim.analysis.IterationMetrics;
 import org.matsim.analysis.IterationStopWatch;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.consistency.ConfigConsistencyCheckerImpl;
@@ -47,20 +48,21 @@ class NewControler extends AbstractController implements ControlerI {
 	private final PlansScoring plansScoring;
 	private final TerminationCriterion terminationCriterion;
 	private final DumpDataAtEnd dumpDataAtEnd;
+	private final IterationOutputExecutor outputExecutor;
 	private final Set<ControlerListener> controlerListenersDeclaredByModules;
 	private final ControlerConfigGroup controlerConfigGroup;
 	private final OutputDirectoryHierarchy outputDirectoryHierarchy;
 	
 	@Inject
 	NewControler(Config config, ControlerListenerManagerImpl controlerListenerManager, MatsimServices matsimServices,
-			 IterationStopWatch stopWatch, PrepareForSim prepareForSim, EventsHandling eventsHandling,
+			 IterationStopWatch stopWatch, IterationMetrics metrics, PrepareForSim prepareForSim, EventsHandling eventsHandling,
 			 PlansDumping plansDumping, PlansReplanning plansReplanning, Provider<Mobsim> mobsimProvider,
 			 PlansScoring plansScoring, TerminationCriterion terminationCriterion, DumpDataAtEnd dumpDataAtEnd,
 			 Set<ControlerListener> controlerListenersDeclaredByModules, ControlerConfigGroup controlerConfigGroup,
 			 OutputDirectoryHierarchy outputDirectoryHierarchy
-			, PrepareForMobsim prepareForMobsim
+			, PrepareForMobsim prepareForMobsim, IterationOutputExecutor outputExecutor
  ) {
-		super(controlerListenerManager, stopWatch, matsimServices);
+		super(controlerListenerManager, stopWatch, metrics, outputExecutor, matsimServices);
 		this.config = config;
 		this.prepareForMobsim = prepareForMobsim;
 		this.config.addConfigConsistencyChecker(new ConfigConsistencyCheckerImpl());
@@ -72,6 +74,7 @@ class NewControler extends AbstractController implements ControlerI {
 		this.plansScoring = plansScoring;
 		this.terminationCriterion = terminationCriterion;
 		this.dumpDataAtEnd = dumpDataAtEnd;
+		this.outputExecutor = outputExecutor;
 		this.controlerListenersDeclaredByModules = controlerListenersDeclaredByModules;
 		this.controlerConfigGroup = controlerConfigGroup;
 		this.outputDirectoryHierarchy = outputDirectoryHierarchy;
@@ -104,6 +107,9 @@ class NewControler extends AbstractController implements ControlerI {
 		this.addCoreControlerListener(this.eventsHandling);
 		// must be last being added (=first being executed)
 
+		// only listens to shutdown: waits for the iteration outputs before any other listener relies on them
+		this.addCoreControlerListener(this.outputExecutor);
+
 		for (ControlerListener controlerListener : this.controlerListenersDeclaredByModules) {
 			this.addControlerListener(controlerListener);
 		}
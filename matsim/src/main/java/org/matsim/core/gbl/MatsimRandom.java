@@ -20,6 +20,9 @@
 
 package org.matsim.core.gbl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Random;
 
 import org.apache.logging.log4j.LogManager;
@@ -50,13 +53,67 @@ public abstract class MatsimRandom {
 		}
 	}
 
+	/**
+	 * Draws exactly the same numbers as {@link Random}, but makes the internal state accessible, so that it can be written to and restored
+	 * from a checkpoint (see {@link #writeState(Random, DataOutput)}).  Only used if {@link #setRestorable(boolean)} is switched on, since it
+	 * synchronizes each draw instead of using {@link Random}'s lock-free update.  {@link Random} keeps its state in private fields, and serializing it
+	 * would only give a copy, not a way to continue with the instances that are already referenced from everywhere.
+	 */
+	private static final class RestorableRandom extends Random {
+		private static final long MULTIPLIER = 0x5DEECE66DL;
+		private static final long ADDEND = 0xBL;
+		private static final long MASK = (1L << 48) - 1;
+
+		// no initializers: these are set by setSeed(...), which is already called from within the super constructor.
+		private long state;
+		private double nextNextGaussian;
+		private boolean haveNextNextGaussian;
+
+		RestorableRandom(long seed) {
+			super(seed);
+		}
+
+		@Override
+		public synchronized void setSeed(long seed) {
+			super.setSeed(seed);
+			this.state = (seed ^ MULTIPLIER) & MASK;
+			this.haveNextNextGaussian = false;
+		}
+
+		@Override
+		protected synchronized int next(int bits) {
+			this.state = (this.state * MULTIPLIER + ADDEND) & MASK;
+			return (int) (this.state >>> (48 - bits));
+		}
+
+		@Override
+		public synchronized double nextGaussian() {
+			// same polar method as in Random, but with the cached second value in fields that can be checkpointed.
+			if (this.haveNextNextGaussian) {
+				this.haveNextNextGaussian = false;
+				return this.nextNextGaussian;
+			}
+			double v1, v2, s;
+			do {
+				v1 = 2 * nextDouble() - 1;
+				v2 = 2 * nextDouble() - 1;
+				s = v1 * v1 + v2 * v2;
+			} while (s >= 1 || s == 0);
+			double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+			this.nextNextGaussian = v2 * multiplier;
+			this.haveNextNextGaussian = true;
+			return v1 * multiplier;
+		}
+	}
+
 	private static final long DEFAULT_RANDOM_SEED = 4711;
 
 	private static long lastUsedSeed = DEFAULT_RANDOM_SEED;
 	private static int internalCounter = 0;
+	private static boolean restorable = false;
 
 	/** the global random number generator */
-	private static final Random random = new Random(DEFAULT_RANDOM_SEED);
+	private static Random random = new Random(DEFAULT_RANDOM_SEED);
 //	private static final Random random = new InstrumentedRandom(DEFAULT_RANDOM_SEED);
 
 	/** Resets the random number generator with a default random seed. */
@@ -71,7 +128,11 @@ public abstract class MatsimRandom {
 	public static void reset(final long seed) {
 		lastUsedSeed = seed;
 		internalCounter = 0;
-		getRandom().setSeed(seed);
+		if (restorable != (random instanceof RestorableRandom)) {
+			random = createRandom(seed);
+		} else {
+			getRandom().setSeed(seed);
+		}
 //		prepareRNG(random);
 	}
 	public static Random getRandom() {
@@ -85,11 +146,29 @@ public abstract class MatsimRandom {
 	 */
 	public static Random getLocalInstance() {
 		internalCounter++;
-		Random r = new Random(lastUsedSeed + internalCounter*23l);
+		Random r = createRandom(lastUsedSeed + internalCounter*23l);
 		prepareRNG(r);
 		return r;
 	}
 
+	/**
+	 * Makes the random number generators handed out by {@link #getRandom()} and {@link #getLocalInstance()} restorable, i.e. their state
+	 * can be written and restored with {@link #writeState(Random, DataOutput)} and {@link #restoreState(Random, DataInput)}, as needed by
+	 * QSim checkpoints.  They draw the same numbers as the default ones.  The global instance is only replaced at the next
+	 * {@link #reset(long)}, so call this before.  The controler switches it on if QSim checkpoints are configured.
+	 */
+	public static void setRestorable(boolean restorable) {
+		MatsimRandom.restorable = restorable;
+	}
+
+	public static boolean isRestorable() {
+		return restorable;
+	}
+
+	private static Random createRandom(long seed) {
+		return restorable ? new RestorableRandom(seed) : new Random(seed);
+	}
+
 	/**
 	 * Draw some random numbers to better initialize the pseudo-random number generator.
 	 *
@@ -101,6 +180,40 @@ public abstract class MatsimRandom {
 		}
 	}
 
+	/**
+	 * Writes the internal state of a random number generator obtained from {@link #getRandom()} or {@link #getLocalInstance()}, so that
+	 * it can later be continued with {@link #restoreState(Random, DataInput)}.
+	 */
+	public static void writeState(Random rng, DataOutput out) throws IOException {
+		RestorableRandom restorable = asRestorable(rng);
+		synchronized (restorable) {
+			out.writeLong(restorable.state);
+			out.writeBoolean(restorable.haveNextNextGaussian);
+			out.writeDouble(restorable.nextNextGaussian);
+		}
+	}
+
+	/**
+	 * Continues a random number generator obtained from {@link #getRandom()} or {@link #getLocalInstance()} from a state written by
+	 * {@link #writeState(Random, DataOutput)}.
+	 */
+	public static void restoreState(Random rng, DataInput in) throws IOException {
+		RestorableRandom restorable = asRestorable(rng);
+		synchronized (restorable) {
+			restorable.state = in.readLong();
+			restorable.haveNextNextGaussian = in.readBoolean();
+			restorable.nextNextGaussian = in.readDouble();
+		}
+	}
+
+	private static RestorableRandom asRestorable(Random rng) {
+		if (!(rng instanceof RestorableRandom)) {
+			throw new IllegalArgumentException("the state can only be accessed for random number generators created by MatsimRandom "
+					+ "after setRestorable(true) and reset(...)");
+		}
+		return (RestorableRandom) rng;
+	}
+
 	public static final void printRNGState(String label) {
 		if ( random instanceof InstrumentedRandom ) {
 			log.warn( "label=" + label + ";\tnumber of doubles draws = " + ((InstrumentedRandom) random).numberOfDrawnDoubles() ) ;
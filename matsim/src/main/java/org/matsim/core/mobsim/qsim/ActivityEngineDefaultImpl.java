@@ -19,7 +19,11 @@
 
 package org.matsim.core.mobsim.qsim;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.PriorityBlockingQueue;
 
@@ -34,8 +38,10 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.framework.MobsimAgent.State;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointIO;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointableEngine;
 
-class ActivityEngineDefaultImpl implements ActivityEngine {
+class ActivityEngineDefaultImpl implements ActivityEngine, QSimCheckpointableEngine {
 	private static final Logger log = LogManager.getLogger( ActivityEngineDefaultImpl.class ) ;
 
 	private final EventsManager eventsManager;
@@ -131,6 +137,31 @@ class ActivityEngineDefaultImpl implements ActivityEngine {
 		this.internalInterface = internalInterface;
 	}
 
+	@Override
+	public void writeCheckpoint(DataOutput out) throws IOException {
+		out.writeBoolean(beforeFirstSimStep);
+		Object[] entries = activityEndsList.toArray();
+		out.writeInt(entries.length);
+		for (Object o : entries) {
+			AgentEntry entry = (AgentEntry) o;
+			QSimCheckpointIO.writeId(out, entry.agent.getId());
+			out.writeDouble(entry.activityEndTime);
+		}
+	}
+
+	@Override
+	public void restoreCheckpoint(DataInput in) throws IOException {
+		// the agents are registered on their links by the netsim engine, which restores the links completely
+		beforeFirstSimStep = in.readBoolean();
+		Map<Id<Person>, MobsimAgent> agents = internalInterface.getMobsim().getAgents();
+		activityEndsList.clear();
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			MobsimAgent agent = QSimCheckpointIO.getRestored(agents, QSimCheckpointIO.readId(in, Person.class));
+			activityEndsList.add(new AgentEntry(agent, in.readDouble()));
+		}
+	}
+
 	
 	/**
 	 * 
@@ -58,4 +58,12 @@ class AgentCounter implements org.matsim.core.mobsim.qsim.interfaces.AgentCounte
     @Override
     public final void decLiving() {living.decrementAndGet();}
 
+    /**
+     * For resuming a QSim from a checkpoint.
+     */
+    final void restore(int living, int lost) {
+        this.living.set(living);
+        this.lost.set(lost);
+    }
+
 }
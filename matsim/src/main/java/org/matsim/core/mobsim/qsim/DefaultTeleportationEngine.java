@@ -21,9 +21,13 @@
 
  package org.matsim.core.mobsim.qsim;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Queue;
 
@@ -40,6 +44,8 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
 import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointIO;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointableEngine;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.utils.collections.Tuple;
 import org.matsim.facilities.Facility;
@@ -50,7 +56,7 @@ import org.matsim.vis.snapshotwriters.TeleportationVisData;
  * Includes all agents that have transportation modes unknown to the
  * NetsimEngine (often all != "car") or have two activities on the same link
  */
-public final class DefaultTeleportationEngine implements TeleportationEngine {
+public final class DefaultTeleportationEngine implements TeleportationEngine, QSimCheckpointableEngine {
 	private static final Logger log = LogManager.getLogger( DefaultTeleportationEngine.class ) ;
 	
 	private final Queue<Tuple<Double, MobsimAgent>> teleportationList = new PriorityQueue<>(
@@ -107,14 +113,18 @@ public final class DefaultTeleportationEngine implements TeleportationEngine {
 		
 		// === below here is only visualization, no dynamics ===
 		Id<Person> agentId = agent.getId();
+		TeleportationVisData agentInfo = createVisData(now, agent, linkId, travelTime);
+		this.teleportationData.put(agentId, agentInfo);
+		
+		return true;
+	}
+
+	private TeleportationVisData createVisData(double now, MobsimAgent agent, Id<Link> linkId, double travelTime) {
 		Link currLink = this.scenario .getNetwork().getLinks().get(linkId);
 		Link destLink = this.scenario .getNetwork().getLinks().get(agent.getDestinationLinkId());
 		Coord fromCoord = currLink.getToNode().getCoord();
 		Coord toCoord = destLink.getToNode().getCoord();
-		TeleportationVisData agentInfo = new TeleportationVisData(now, agentId, fromCoord, toCoord, travelTime);
-		this.teleportationData.put(agentId, agentInfo);
-		
-		return true;
+		return new TeleportationVisData(now, agent.getId(), fromCoord, toCoord, travelTime);
 	}
 
 	@Override
@@ -170,6 +180,41 @@ public final class DefaultTeleportationEngine implements TeleportationEngine {
 		this.internalInterface = internalInterface;
 	}
 
+	@Override
+	public void writeCheckpoint(DataOutput out) throws IOException {
+		out.writeInt(teleportationList.size());
+		for (Tuple<Double, MobsimAgent> entry : teleportationList) {
+			QSimCheckpointIO.writeId(out, entry.getSecond().getId());
+			out.writeDouble(entry.getFirst());
+		}
+		out.writeInt(teleportationData.size());
+		for (TeleportationVisData visData : teleportationData.values()) {
+			QSimCheckpointIO.writeId(out, visData.getId());
+			out.writeDouble(visData.getStartTime());
+			out.writeDouble(visData.getTravelTime());
+		}
+	}
+
+	@Override
+	public void restoreCheckpoint(DataInput in) throws IOException {
+		Map<Id<Person>, MobsimAgent> agents = internalInterface.getMobsim().getAgents();
+		teleportationList.clear();
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			MobsimAgent agent = QSimCheckpointIO.getRestored(agents, QSimCheckpointIO.readId(in, Person.class));
+			teleportationList.add(new Tuple<>(in.readDouble(), agent));
+		}
+		teleportationData.clear();
+		size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			MobsimAgent agent = QSimCheckpointIO.getRestored(agents, QSimCheckpointIO.readId(in, Person.class));
+			double startTime = in.readDouble();
+			double travelTime = in.readDouble();
+			// teleported agents stay on their departure link until they arrive:
+			teleportationData.put(agent.getId(), createVisData(startTime, agent, agent.getCurrentLinkId(), travelTime));
+		}
+	}
+
 	private static Double travelTimeCheck(Double travelTime, Double speed, Facility dpfac, Facility arfac) {
 		if ( speed==null ) {
 			// if we don't have a bushwhacking speed, the only thing we can do is trust the router
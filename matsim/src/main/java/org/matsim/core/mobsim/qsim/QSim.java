@@ -23,6 +23,7 @@ package org.matsim.core.mobsim.qsim;
 import com.google.inject.Injector;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.matsim.analysis.IterationMetrics;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.Scenario;
@@ -37,17 +38,26 @@ import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.QSimConfigGroup.EndtimeInterpretation;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.gbl.Gbl;
+import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.mobsim.framework.AgentSource;
 import org.matsim.core.mobsim.framework.HasPerson;
 import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.framework.PlanAgent;
+import org.matsim.core.mobsim.framework.VehicleUsingAgent;
 import org.matsim.core.mobsim.framework.listeners.MobsimListener;
 import org.matsim.core.mobsim.qsim.changeeventsengine.NetworkChangeEventsEngineI;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpoint;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointIO;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointModule;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointableAgent;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointableEngine;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.interfaces.*;
 import org.matsim.core.mobsim.qsim.qnetsimengine.NetsimEngine;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngineI;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
 import org.matsim.core.network.NetworkChangeEvent;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.router.TripStructureUtils;
@@ -63,6 +73,12 @@ import org.matsim.vis.snapshotwriters.VisNetwork;
 import org.matsim.withinday.mobsim.WithinDayEngine;
 
 import javax.inject.Inject;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicLong;
@@ -137,6 +153,11 @@ public final class QSim implements VisMobsim, Netsim, ActivityEndRescheduler {
 	private final Map<MobsimEngine, AtomicLong> mobsimEngineRunTimes;
 	private ActivityEngine activityEngine;
 
+	private IterationMetrics metrics = null;
+	private long simSteps = 0;
+
+	private QSimCheckpoint checkpointToRestore = null;
+
 	{
 		if (analyzeRunTimes) this.mobsimEngineRunTimes = new HashMap<>();
 		else this.mobsimEngineRunTimes = null;
@@ -158,15 +179,18 @@ public final class QSim implements VisMobsim, Netsim, ActivityEndRescheduler {
 			return QSim.this;
 		}
 
+		// The following two only touch the (concurrent) map of additional agents of one link, so they do not need the global lock.
+		// This matters for transit, where boarding and alighting is done by the runner thread that owns the stop link.
+
 		@Override
-		public synchronized void registerAdditionalAgentOnLink(final MobsimAgent planAgent) {
+		public void registerAdditionalAgentOnLink(final MobsimAgent planAgent) {
 			if (QSim.this.netEngine != null) {
 				QSim.this.netEngine.registerAdditionalAgentOnLink(planAgent);
 			}
 		}
 
 		@Override
-		public synchronized MobsimAgent unregisterAdditionalAgentOnLink(Id<Person> agentId, Id<Link> linkId) {
+		public MobsimAgent unregisterAdditionalAgentOnLink(Id<Person> agentId, Id<Link> linkId) {
 			if (QSim.this.netEngine != null) {
 				return QSim.this.netEngine.unregisterAdditionalAgentOnLink(agentId, linkId);
 			}
@@ -242,15 +266,20 @@ public final class QSim implements VisMobsim, Netsim, ActivityEndRescheduler {
 			prepareSim();
 			this.listenerManager.fireQueueSimulationInitializedEvent();
 
-			// Put agents into the handler for their first ("overnight") action,
-			// probably the ActivityEngine. This is done before the first
-			// beforeSimStepEvent, because the expectation seems to be
-			// (e.g. in OTFVis), that agents are doing something
-			// (can be located somewhere) before you execute a sim step.
-			// Agents can abort in this loop already, so we iterate over
-			// a defensive copy of the agent collection.
-			for (MobsimAgent agent : new ArrayList<>(this.agents.values())) {
-				arrangeNextAgentAction(agent);
+			if (this.checkpointToRestore != null) {
+				// continue where the checkpointed QSim was, instead of putting the agents into their first activity:
+				restoreCheckpoint(this.checkpointToRestore);
+			} else {
+				// Put agents into the handler for their first ("overnight") action,
+				// probably the ActivityEngine. This is done before the first
+				// beforeSimStepEvent, because the expectation seems to be
+				// (e.g. in OTFVis), that agents are doing something
+				// (can be located somewhere) before you execute a sim step.
+				// Agents can abort in this loop already, so we iterate over
+				// a defensive copy of the agent collection.
+				for (MobsimAgent agent : new ArrayList<>(this.agents.values())) {
+					arrangeNextAgentAction(agent);
+				}
 			}
 
 			// do iterations
@@ -364,6 +393,16 @@ public final class QSim implements VisMobsim, Netsim, ActivityEndRescheduler {
 
 		if (gotException) throw new RuntimeException( "got exception while cleaning up the QSim. Please check the error messages above for details.");
 		events.finishProcessing();
+		if (this.metrics != null) {
+			this.metrics.counter("qsim.simSteps").add(this.simSteps);
+			this.metrics.gauge("qsim.agents").set(this.agents.size());
+			if (analyzeRunTimes) {
+				this.metrics.timer("qsim.internal").record(this.qSimInternalTime);
+				for (Entry<MobsimEngine, AtomicLong> entry : this.mobsimEngineRunTimes.entrySet()) {
+					this.metrics.timer("qsim.engine." + entry.getKey().getClass().getSimpleName()).record(entry.getValue().get());
+				}
+			}
+		}
 		if (analyzeRunTimes) {
 			log.info("qsim internal cpu time (nanos): " + qSimInternalTime);
 			for (Entry<MobsimEngine, AtomicLong> entry : this.mobsimEngineRunTimes.entrySet()) {
@@ -384,6 +423,7 @@ public final class QSim implements VisMobsim, Netsim, ActivityEndRescheduler {
 	 */
 	/*package*/ boolean doSimStep() {
 		if (analyzeRunTimes) this.startClockTime = System.nanoTime();
+		this.simSteps++;
 
 		final double now = this.getSimTimer().getTimeOfDay();
 
@@ -538,6 +578,10 @@ public final class QSim implements VisMobsim, Netsim, ActivityEndRescheduler {
 			throw new RuntimeException("unkonwn starttimeInterpretation; aborting ...");
 		}
 
+		if (this.checkpointToRestore != null) {
+			simStartTime = this.checkpointToRestore.getTime();
+		}
+
 		this.simTimer.setSimStartTime(simStartTime);
 		this.simTimer.setTime(simStartTime);
 
@@ -668,6 +712,155 @@ public final class QSim implements VisMobsim, Netsim, ActivityEndRescheduler {
 		this.listenerManager.addQueueSimulationListener(listener);
 	}
 
+	/**
+	 * The number of sim steps and agents, and with {@link #analyzeRunTimes} also the run times of the engines, are recorded into
+	 * the metrics when the QSim is cleaned up.
+	 */
+	@com.google.inject.Inject(optional = true)
+	void setIterationMetrics(@javax.inject.Named(IterationMetrics.INSTRUMENTATION) IterationMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * If a checkpoint is bound (see {@link QSimCheckpointModule}), the QSim starts at the time of the checkpoint, with all agents,
+	 * vehicles and engines in the state of the checkpoint, instead of putting the agents into their first activity.
+	 */
+	@com.google.inject.Inject(optional = true)
+	void setCheckpointToRestore(QSimCheckpoint checkpoint) {
+		this.checkpointToRestore = checkpoint;
+	}
+
+	/**
+	 * Captures the state of this QSim at the current time step, from which another QSim can be resumed.  This needs to be called before
+	 * the engines have done the time step, i.e. from a before-sim-step listener.  Fails with an {@link UnsupportedOperationException} if
+	 * an agent does not implement {@link QSimCheckpointableAgent}, or an engine does not implement {@link QSimCheckpointableEngine}.
+	 */
+	public QSimCheckpoint createCheckpoint() {
+		QSimCheckpoint checkpoint = new QSimCheckpoint(this.simTimer.getTimeOfDay(), this.agentCounter.getLiving(), this.agentCounter.getLost());
+		for (MobsimAgent agent : this.agents.values()) {
+			checkpoint.addAgent(asCheckpointable(agent).createCheckpointState());
+		}
+		for (MobsimVehicle vehicle : this.vehicles.values()) {
+			QVehicle qVehicle = asQVehicle(vehicle);
+			if (!qVehicle.getPassengers().isEmpty()) {
+				throw new UnsupportedOperationException("vehicle " + vehicle.getId() + " has passengers, which QSim checkpoints do not support yet");
+			}
+			MobsimDriverAgent driver = qVehicle.getDriver();
+			checkpoint.addVehicle(new QSimCheckpoint.VehicleState(qVehicle.getId(),
+					qVehicle.getCurrentLink() == null ? null : qVehicle.getCurrentLink().getId(), driver == null ? null : driver.getId(),
+					qVehicle.getEarliestLinkExitTime(), qVehicle.getLinkEnterTime()));
+		}
+		try {
+			// the global random number generator is drawn from by (single-threaded) nodes and others:
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			MatsimRandom.writeState(MatsimRandom.getRandom(), new DataOutputStream(bytes));
+			checkpoint.putSection(MatsimRandom.class.getName(), bytes.toByteArray());
+
+			for (MobsimEngine engine : this.mobsimEngines) {
+				bytes = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(bytes);
+				asCheckpointable(engine).writeCheckpoint(out);
+				out.flush();
+				checkpoint.putSection(engine.getClass().getName(), bytes.toByteArray());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return checkpoint;
+	}
+
+	private void restoreCheckpoint(QSimCheckpoint checkpoint) {
+		Set<Id<Person>> checkpointedAgents = new HashSet<>();
+		for (QSimCheckpoint.AgentState state : checkpoint.getAgents()) {
+			asCheckpointable(QSimCheckpointIO.getRestored(this.agents, state.getPersonId())).restoreCheckpointState(state);
+			checkpointedAgents.add(state.getPersonId());
+		}
+		// agents that had already aborted when the checkpoint was written:
+		this.agents.keySet().retainAll(checkpointedAgents);
+
+		for (QSimCheckpoint.VehicleState state : checkpoint.getVehicles()) {
+			QVehicle vehicle = asQVehicle(QSimCheckpointIO.getRestored(this.vehicles, state.getVehicleId()));
+			vehicle.setCurrentLink(state.getLinkId() == null ? null : this.scenario.getNetwork().getLinks().get(state.getLinkId()));
+			vehicle.setDriver(null);
+			if (state.getDriverId() != null) {
+				vehicle.setDriver((MobsimDriverAgent) QSimCheckpointIO.getRestored(this.agents, state.getDriverId()));
+			}
+			vehicle.setEarliestLinkExitTime(state.getEarliestLinkExitTime());
+			vehicle.setLinkEnterTime(state.getLinkEnterTime());
+		}
+		for (QSimCheckpoint.AgentState state : checkpoint.getAgents()) {
+			MobsimAgent agent = this.agents.get(state.getPersonId());
+			if (state.getVehicleId() != null && agent instanceof VehicleUsingAgent) {
+				((VehicleUsingAgent) agent).setVehicle(QSimCheckpointIO.getRestored(this.vehicles, state.getVehicleId()));
+			}
+		}
+		this.agentCounter.restore(checkpoint.getLivingAgents(), checkpoint.getLostAgents());
+
+		Set<String> restoredSections = new HashSet<>();
+		try {
+			MatsimRandom.restoreState(MatsimRandom.getRandom(), new DataInputStream(new ByteArrayInputStream(
+					QSimCheckpointIO.getRestored(checkpoint.getSections(), MatsimRandom.class.getName()))));
+			restoredSections.add(MatsimRandom.class.getName());
+
+			for (MobsimEngine engine : this.mobsimEngines) {
+				String name = engine.getClass().getName();
+				byte[] section = checkpoint.getSection(name);
+				if (section == null) {
+					throw new IllegalStateException("the checkpoint has no state for mobsim engine " + name + ".  Was it written with different "
+							+ "QSim components?");
+				}
+				asCheckpointable(engine).restoreCheckpoint(new DataInputStream(new ByteArrayInputStream(section)));
+				restoredSections.add(name);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (!restoredSections.containsAll(checkpoint.getSections().keySet())) {
+			Set<String> unknown = new HashSet<>(checkpoint.getSections().keySet());
+			unknown.removeAll(restoredSections);
+			throw new IllegalStateException("the checkpoint has state for mobsim engines " + unknown + ", which are not in this QSim.  Was "
+					+ "it written with different QSim components?");
+		}
+		log.info("resumed QSim from the checkpoint at " + Time.writeTime(checkpoint.getTime()) + " with " + checkpoint.getAgents().size()
+				+ " agents");
+	}
+
+	/**
+	 * Throws an exception if the mobsim engines or the random number generators do not support {@link #createCheckpoint()}, so that this
+	 * shows up before the first checkpoint is due.
+	 */
+	public void checkCheckpointSupport() {
+		if (!MatsimRandom.isRestorable()) {
+			throw new IllegalStateException("QSim checkpoints need restorable random numbers, see MatsimRandom.setRestorable(...)");
+		}
+		this.mobsimEngines.forEach(QSim::asCheckpointable);
+	}
+
+	private static QSimCheckpointableAgent asCheckpointable(MobsimAgent agent) {
+		if (!(agent instanceof QSimCheckpointableAgent)) {
+			throw new UnsupportedOperationException("agent " + agent.getId() + " of type " + agent.getClass().getName() + " does not "
+					+ "support QSim checkpoints");
+		}
+		return (QSimCheckpointableAgent) agent;
+	}
+
+	private static QSimCheckpointableEngine asCheckpointable(MobsimEngine engine) {
+		if (!(engine instanceof QSimCheckpointableEngine)) {
+			throw new UnsupportedOperationException("mobsim engine " + engine.getClass().getName() + " does not support QSim checkpoints.  "
+					+ "Currently, these work with the activity, teleportation, netsim and network change events engines only (no transit, "
+					+ "DVRP, within-day replanning, ...).");
+		}
+		return (QSimCheckpointableEngine) engine;
+	}
+
+	private static QVehicle asQVehicle(MobsimVehicle vehicle) {
+		if (!(vehicle instanceof QVehicle)) {
+			throw new UnsupportedOperationException("vehicle " + vehicle.getId() + " of type " + vehicle.getClass().getName() + " does not "
+					+ "support QSim checkpoints");
+		}
+		return (QVehicle) vehicle;
+	}
+
 	@Inject void addQueueSimulationListeners(Set<MobsimListener> listeners) {
 		// I think that "injecting a method" means that the method is called at some point, pulling the method arguments out of injection.  In
 		// consequence, it is assumed that a "Set<MobsimListener>" was bound before, and is used here.  I think that the results of
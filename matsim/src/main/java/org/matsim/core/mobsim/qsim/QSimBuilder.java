@@ -34,6 +34,7 @@ import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.controler.AllowsConfiguration;
 import org.matsim.core.controler.IterationCounter;
 import org.matsim.core.mobsim.framework.Mobsim;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointModule;
 import org.matsim.core.mobsim.qsim.components.QSimComponentsConfig;
 import org.matsim.core.mobsim.qsim.components.QSimComponentsConfigurator;
 import org.matsim.core.mobsim.qsim.components.StandardQSimComponentConfigurator;
@@ -168,6 +169,9 @@ public class QSimBuilder implements AllowsConfiguration {
 	public QSimBuilder useDefaultQSimModules() {
 		qsimModules.clear();
 		qsimModules.addAll(QSimModule.getDefaultQSimModules());
+		if (QSimCheckpointModule.isConfigured(config)) {
+			qsimModules.add(new QSimCheckpointModule());
+		}
 		return this;
 	}
 
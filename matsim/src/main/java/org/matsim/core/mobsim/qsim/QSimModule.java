@@ -34,6 +34,7 @@ import org.matsim.core.config.Config;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.mobsim.framework.Mobsim;
 import org.matsim.core.mobsim.qsim.changeeventsengine.NetworkChangeEventsModule;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointModule;
 import org.matsim.core.mobsim.qsim.components.QSimComponentsModule;
 import org.matsim.core.mobsim.qsim.messagequeueengine.MessageQueueModule;
 import org.matsim.core.mobsim.qsim.pt.ComplexTransitStopHandlerFactory;
@@ -95,6 +96,10 @@ public class QSimModule extends AbstractModule {
 		if (addDefaultQSimModules) {		
 			getDefaultQSimModules().forEach(this::installQSimModule);
 			// this binds all the default modules, i.e. sets up the default QSim
+
+			if (QSimCheckpointModule.isConfigured(getConfig())) {
+				installQSimModule(new QSimCheckpointModule());
+			}
 		}
 		
 		bind(
@@ -46,6 +46,8 @@ import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.framework.PlanAgent;
 import org.matsim.core.mobsim.framework.VehicleUsingAgent;
 import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpoint;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointableAgent;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.routes.NetworkRoute;
@@ -58,7 +60,8 @@ import org.matsim.vehicles.Vehicle;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
 
-public final class BasicPlanAgentImpl implements MobsimAgent, PlanAgent, HasPerson, VehicleUsingAgent, HasModifiablePlan {
+public final class BasicPlanAgentImpl implements MobsimAgent, PlanAgent, HasPerson, VehicleUsingAgent, HasModifiablePlan,
+		QSimCheckpointableAgent {
 	
 	private static final Logger log = LogManager.getLogger(BasicPlanAgentImpl.class);
 	private static int finalActHasDpTimeWrnCnt = 0;
@@ -388,6 +391,23 @@ public final class BasicPlanAgentImpl implements MobsimAgent, PlanAgent, HasPers
 		currentLinkIndex++ ;
 	}
 
+	@Override
+	public final QSimCheckpoint.AgentState createCheckpointState() {
+		Id<Vehicle> vehicleId = this.vehicle == null ? null : this.vehicle.getId();
+		return new QSimCheckpoint.AgentState(this.getId(), this.state, this.currentLinkId, this.activityEndTime,
+				this.currentPlanElementIndex, this.currentLinkIndex, vehicleId);
+	}
+
+	@Override
+	public final void restoreCheckpointState(QSimCheckpoint.AgentState checkpointState) {
+		// (the vehicle is set by the QSim)
+		this.state = checkpointState.getState();
+		this.currentLinkId = checkpointState.getCurrentLinkId();
+		this.activityEndTime = checkpointState.getActivityEndTime();
+		this.currentPlanElementIndex = checkpointState.getCurrentPlanElementIndex();
+		this.currentLinkIndex = checkpointState.getCurrentLinkIndex();
+	}
+
 	@Override
 	public Facility getCurrentFacility() {
 		PlanElement pe = this.getCurrentPlanElement() ;
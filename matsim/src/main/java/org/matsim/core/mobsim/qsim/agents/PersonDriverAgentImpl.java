@@ -32,6 +32,8 @@ import org.matsim.core.mobsim.framework.HasPerson;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.framework.MobsimPassengerAgent;
 import org.matsim.core.mobsim.framework.PlanAgent;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpoint;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointableAgent;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.Netsim;
 import org.matsim.core.utils.misc.OptionalTime;
@@ -44,7 +46,8 @@ import org.matsim.vehicles.Vehicle;
  * <p></p>
  * I think this class is reasonable in terms of what is public and/or final and what not.
  */
-public class PersonDriverAgentImpl implements MobsimDriverAgent, MobsimPassengerAgent, HasPerson, PlanAgent, HasModifiablePlan {
+public class PersonDriverAgentImpl implements MobsimDriverAgent, MobsimPassengerAgent, HasPerson, PlanAgent, HasModifiablePlan,
+		QSimCheckpointableAgent {
 	// yy cannot make this final since it is overridden at 65 locations
 	// (but since all methods are final, it seems that all of these could be solved by delegation).
 	// kai, nov'14
@@ -103,6 +106,17 @@ public class PersonDriverAgentImpl implements MobsimDriverAgent, MobsimPassenger
         return basicAgentDelegate.getExpectedTravelDistance();
     }
 
+	@Override
+	public final QSimCheckpoint.AgentState createCheckpointState() {
+		return basicAgentDelegate.createCheckpointState();
+	}
+
+	@Override
+	public final void restoreCheckpointState(QSimCheckpoint.AgentState state) {
+		basicAgentDelegate.restoreCheckpointState(state);
+		// (the next-link cache of the driver delegate is empty, and is re-computed from the restored link index)
+	}
+
     @Override
 	public String toString() {
 		return basicAgentDelegate.toString();
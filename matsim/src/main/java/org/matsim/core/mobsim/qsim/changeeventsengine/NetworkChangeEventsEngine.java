@@ -28,21 +28,31 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.mobsim.jdeqsim.Message;
 import org.matsim.core.mobsim.jdeqsim.MessageQueue;
 import org.matsim.core.mobsim.qsim.InternalInterface;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointableEngine;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimLink;
 import org.matsim.core.mobsim.qsim.interfaces.TimeVariantLink;
 import org.matsim.core.network.NetworkChangeEvent;
 import org.matsim.core.network.NetworkUtils;
 
 import javax.inject.Inject;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 
-class NetworkChangeEventsEngine implements NetworkChangeEventsEngineI {
+class NetworkChangeEventsEngine implements NetworkChangeEventsEngineI, QSimCheckpointableEngine {
 	private static final Logger log = LogManager.getLogger( NetworkChangeEventsEngine.class ) ;
 
 	private final MessageQueue messageQueue;
 	private final Network network;
 	private InternalInterface internalInterface;
 
+	// for checkpoints: the messages in the order of onPrepareSim, and which of them have been applied
+	private final List<ChangeEventMessage> messages = new ArrayList<>();
+	private boolean withinDayChangeEventsAdded = false;
+
 	@Inject
 	NetworkChangeEventsEngine(Network network, MessageQueue messageQueue) {
 		this.network = network;
@@ -51,6 +61,8 @@ class NetworkChangeEventsEngine implements NetworkChangeEventsEngineI {
 
 	@Override
 	public void onPrepareSim() {
+		this.messages.clear();
+		this.withinDayChangeEventsAdded = false;
 		Queue<NetworkChangeEvent> changeEvents = NetworkUtils.getNetworkChangeEvents(this.network);
 		for (final NetworkChangeEvent changeEvent : changeEvents) {
 			addNetworkChangeEventToMessageQ(changeEvent);
@@ -58,19 +70,30 @@ class NetworkChangeEventsEngine implements NetworkChangeEventsEngineI {
 	}
 	
 	private void addNetworkChangeEventToMessageQ(NetworkChangeEvent changeEvent) {
-		Message m = new Message() {
-			@Override
-			public void processEvent() {
-
-			}
-
-			@Override
-			public void handleMessage() {
-				applyTheChangeEvent(changeEvent);
-			}
-		};
+		ChangeEventMessage m = new ChangeEventMessage(changeEvent);
 		m.setMessageArrivalTime(changeEvent.getStartTime());
 		this.messageQueue.putMessage(m);
+		this.messages.add(m);
+	}
+
+	private class ChangeEventMessage extends Message {
+		private final NetworkChangeEvent changeEvent;
+		private boolean applied = false;
+
+		ChangeEventMessage(NetworkChangeEvent changeEvent) {
+			this.changeEvent = changeEvent;
+		}
+
+		@Override
+		public void processEvent() {
+
+		}
+
+		@Override
+		public void handleMessage() {
+			applied = true;
+			applyTheChangeEvent(changeEvent);
+		}
 	}
 	
 	private void applyTheChangeEvent(NetworkChangeEvent changeEvent) {
@@ -87,6 +110,7 @@ class NetworkChangeEventsEngine implements NetworkChangeEventsEngineI {
 	
 	public final void addNetworkChangeEvent( NetworkChangeEvent event ) {
 		log.warn("add within-day network change event:" + event);
+		this.withinDayChangeEventsAdded = true;
 		
 		final Queue<NetworkChangeEvent> centralNetworkChangeEvents =
 				NetworkUtils.getNetworkChangeEvents(this.internalInterface.getMobsim().getScenario().getNetwork());
@@ -119,6 +143,34 @@ class NetworkChangeEventsEngine implements NetworkChangeEventsEngineI {
 		this.internalInterface = internalInterface;
 	}
 
+	@Override
+	public void writeCheckpoint(DataOutput out) throws IOException {
+		if (this.withinDayChangeEventsAdded) {
+			throw new UnsupportedOperationException("QSim checkpoints do not support network change events that are added within-day");
+		}
+		out.writeInt(this.messages.size());
+		for (ChangeEventMessage m : this.messages) {
+			out.writeBoolean(m.applied);
+		}
+	}
+
+	@Override
+	public void restoreCheckpoint(DataInput in) throws IOException {
+		// Applying a change event again is not harmless (it resets the flow capacity accumulators of the link), and the restored links
+		// already have the changed attributes.  So the messages of the events that were applied are taken out of the queue:
+		int size = in.readInt();
+		if (size != this.messages.size()) {
+			throw new IllegalStateException("the checkpoint has " + size + " network change events, but the network has "
+					+ this.messages.size() + ".  Was the checkpoint written for a different scenario?");
+		}
+		for (ChangeEventMessage m : this.messages) {
+			m.applied = in.readBoolean();
+			if (m.applied) {
+				this.messageQueue.removeMessage(m);
+			}
+		}
+	}
+
 	@Override
 	public void doSimStep(double time) {
 
@@ -0,0 +1,208 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Snapshot of the mobsim state at the beginning of one time step, from which a QSim can be resumed (see {@link QSimCheckpointModule}).
+ * <p></p>
+ * The state of the agents, the vehicles and the agent counter is stored in structured form.  Everything that only an engine knows
+ * about (activity end queue, teleported agents, link queues and buffers, flow accumulators, node priorities, random number generators,
+ * ...) is stored in opaque sections, one per engine, written and read by the engine itself (see {@link QSimCheckpointableEngine}).
+ *
+ * @see QSimCheckpointWriter
+ * @see QSimCheckpointIO
+ */
+public final class QSimCheckpoint {
+
+	public static final class AgentState {
+		private final Id<Person> personId;
+		private final MobsimAgent.State state;
+		private final Id<Link> currentLinkId;
+		private final double activityEndTime;
+		private final int currentPlanElementIndex;
+		private final int currentLinkIndex;
+		private final Id<Vehicle> vehicleId;
+
+		public AgentState(Id<Person> personId, MobsimAgent.State state, Id<Link> currentLinkId, double activityEndTime,
+				int currentPlanElementIndex, int currentLinkIndex, Id<Vehicle> vehicleId) {
+			this.personId = personId;
+			this.state = state;
+			this.currentLinkId = currentLinkId;
+			this.activityEndTime = activityEndTime;
+			this.currentPlanElementIndex = currentPlanElementIndex;
+			this.currentLinkIndex = currentLinkIndex;
+			this.vehicleId = vehicleId;
+		}
+
+		public Id<Person> getPersonId() {
+			return personId;
+		}
+
+		public MobsimAgent.State getState() {
+			return state;
+		}
+
+		/**
+		 * @return the current link, or <code>null</code> if the agent is not on the network (e.g. teleported)
+		 */
+		public Id<Link> getCurrentLinkId() {
+			return currentLinkId;
+		}
+
+		public double getActivityEndTime() {
+			return activityEndTime;
+		}
+
+		/**
+		 * @return the index of the current plan element
+		 */
+		public int getCurrentPlanElementIndex() {
+			return currentPlanElementIndex;
+		}
+
+		/**
+		 * @return how far the agent has advanced on the route of its current leg
+		 */
+		public int getCurrentLinkIndex() {
+			return currentLinkIndex;
+		}
+
+		/**
+		 * @return the vehicle the agent used last, or <code>null</code> if it has not used any vehicle yet
+		 */
+		public Id<Vehicle> getVehicleId() {
+			return vehicleId;
+		}
+	}
+
+	public static final class VehicleState {
+		private final Id<Vehicle> vehicleId;
+		private final Id<Link> linkId;
+		private final Id<Person> driverId;
+		private final double earliestLinkExitTime;
+		private final double linkEnterTime;
+
+		public VehicleState(Id<Vehicle> vehicleId, Id<Link> linkId, Id<Person> driverId, double earliestLinkExitTime,
+				double linkEnterTime) {
+			this.vehicleId = vehicleId;
+			this.linkId = linkId;
+			this.driverId = driverId;
+			this.earliestLinkExitTime = earliestLinkExitTime;
+			this.linkEnterTime = linkEnterTime;
+		}
+
+		public Id<Vehicle> getVehicleId() {
+			return vehicleId;
+		}
+
+		public Id<Link> getLinkId() {
+			return linkId;
+		}
+
+		/**
+		 * @return the driver, or <code>null</code> for parked vehicles
+		 */
+		public Id<Person> getDriverId() {
+			return driverId;
+		}
+
+		public double getEarliestLinkExitTime() {
+			return earliestLinkExitTime;
+		}
+
+		public double getLinkEnterTime() {
+			return linkEnterTime;
+		}
+	}
+
+	private final double time;
+	private final int livingAgents;
+	private final int lostAgents;
+	private final List<AgentState> agents = new ArrayList<>();
+	private final List<VehicleState> vehicles = new ArrayList<>();
+	private final Map<String, byte[]> sections = new LinkedHashMap<>();
+
+	public QSimCheckpoint(double time, int livingAgents, int lostAgents) {
+		this.time = time;
+		this.livingAgents = livingAgents;
+		this.lostAgents = lostAgents;
+	}
+
+	public double getTime() {
+		return time;
+	}
+
+	public int getLivingAgents() {
+		return livingAgents;
+	}
+
+	public int getLostAgents() {
+		return lostAgents;
+	}
+
+	public void addAgent(AgentState agent) {
+		this.agents.add(agent);
+	}
+
+	public void addVehicle(VehicleState vehicle) {
+		this.vehicles.add(vehicle);
+	}
+
+	public List<AgentState> getAgents() {
+		return Collections.unmodifiableList(agents);
+	}
+
+	public List<VehicleState> getVehicles() {
+		return Collections.unmodifiableList(vehicles);
+	}
+
+	/**
+	 * Adds the state of one engine; the name is usually the class name of the engine.
+	 */
+	public void putSection(String name, byte[] data) {
+		if (this.sections.put(name, data) != null) {
+			throw new IllegalArgumentException("checkpoint section " + name + " exists twice");
+		}
+	}
+
+	/**
+	 * @return the section with the given name, or <code>null</code> if there is none
+	 */
+	public byte[] getSection(String name) {
+		return this.sections.get(name);
+	}
+
+	public Map<String, byte[]> getSections() {
+		return Collections.unmodifiableMap(sections);
+	}
+
+}
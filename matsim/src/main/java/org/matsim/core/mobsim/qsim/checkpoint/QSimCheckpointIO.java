@@ -0,0 +1,214 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Reads and writes {@link QSimCheckpoint}s in a compact binary format.  All ids of agents and vehicles are written once into a string
+ * table at the beginning of the file and afterwards referenced by their int index; the engine sections follow as length-prefixed byte
+ * blocks.  Compression depends on the file name extension, as usual with {@link IOUtils}.
+ */
+public final class QSimCheckpointIO {
+
+	private static final int MAGIC = 0x4d435350; // "MCSP"
+	private static final int VERSION = 2;
+	private static final int NO_ID = -1;
+
+	private QSimCheckpointIO() {
+	}
+
+	public static void write(QSimCheckpoint checkpoint, String filename) {
+		// first pass: collect the string table
+		Map<String, Integer> index = new HashMap<>();
+		List<String> strings = new ArrayList<>();
+		for (QSimCheckpoint.AgentState agent : checkpoint.getAgents()) {
+			register(agent.getPersonId(), index, strings);
+			register(agent.getCurrentLinkId(), index, strings);
+			register(agent.getVehicleId(), index, strings);
+		}
+		for (QSimCheckpoint.VehicleState vehicle : checkpoint.getVehicles()) {
+			register(vehicle.getVehicleId(), index, strings);
+			register(vehicle.getLinkId(), index, strings);
+			register(vehicle.getDriverId(), index, strings);
+		}
+
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(IOUtils.getOutputStream(IOUtils.getFileUrl(filename), false)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeDouble(checkpoint.getTime());
+			out.writeInt(checkpoint.getLivingAgents());
+			out.writeInt(checkpoint.getLostAgents());
+
+			out.writeInt(strings.size());
+			for (String string : strings) {
+				out.writeUTF(string);
+			}
+
+			out.writeInt(checkpoint.getAgents().size());
+			for (QSimCheckpoint.AgentState agent : checkpoint.getAgents()) {
+				out.writeInt(indexOf(agent.getPersonId(), index));
+				out.writeByte(agent.getState().ordinal());
+				out.writeInt(indexOf(agent.getCurrentLinkId(), index));
+				out.writeDouble(agent.getActivityEndTime());
+				out.writeInt(agent.getCurrentPlanElementIndex());
+				out.writeInt(agent.getCurrentLinkIndex());
+				out.writeInt(indexOf(agent.getVehicleId(), index));
+			}
+
+			out.writeInt(checkpoint.getVehicles().size());
+			for (QSimCheckpoint.VehicleState vehicle : checkpoint.getVehicles()) {
+				out.writeInt(indexOf(vehicle.getVehicleId(), index));
+				out.writeInt(indexOf(vehicle.getLinkId(), index));
+				out.writeInt(indexOf(vehicle.getDriverId(), index));
+				out.writeDouble(vehicle.getEarliestLinkExitTime());
+				out.writeDouble(vehicle.getLinkEnterTime());
+			}
+
+			out.writeInt(checkpoint.getSections().size());
+			for (Map.Entry<String, byte[]> section : checkpoint.getSections().entrySet()) {
+				out.writeUTF(section.getKey());
+				out.writeInt(section.getValue().length);
+				out.write(section.getValue());
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public static QSimCheckpoint read(String filename) {
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(IOUtils.getInputStream(IOUtils.getFileUrl(filename))))) {
+			if (in.readInt() != MAGIC) {
+				throw new IllegalArgumentException(filename + " is not a QSim checkpoint file.");
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IllegalArgumentException("Unsupported QSim checkpoint version " + version + " in " + filename);
+			}
+			double time = in.readDouble();
+			int livingAgents = in.readInt();
+			int lostAgents = in.readInt();
+			QSimCheckpoint checkpoint = new QSimCheckpoint(time, livingAgents, lostAgents);
+
+			String[] strings = new String[in.readInt()];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = in.readUTF();
+			}
+
+			MobsimAgent.State[] states = MobsimAgent.State.values();
+			int agentCount = in.readInt();
+			for (int i = 0; i < agentCount; i++) {
+				Id<Person> personId = toId(in.readInt(), strings, Person.class);
+				MobsimAgent.State state = states[in.readByte()];
+				Id<Link> linkId = toId(in.readInt(), strings, Link.class);
+				double activityEndTime = in.readDouble();
+				int planElementIndex = in.readInt();
+				int linkIndex = in.readInt();
+				Id<Vehicle> vehicleId = toId(in.readInt(), strings, Vehicle.class);
+				checkpoint.addAgent(new QSimCheckpoint.AgentState(personId, state, linkId, activityEndTime, planElementIndex, linkIndex,
+						vehicleId));
+			}
+
+			int vehicleCount = in.readInt();
+			for (int i = 0; i < vehicleCount; i++) {
+				Id<Vehicle> vehicleId = toId(in.readInt(), strings, Vehicle.class);
+				Id<Link> linkId = toId(in.readInt(), strings, Link.class);
+				Id<Person> driverId = toId(in.readInt(), strings, Person.class);
+				double earliestLinkExitTime = in.readDouble();
+				double linkEnterTime = in.readDouble();
+				checkpoint.addVehicle(new QSimCheckpoint.VehicleState(vehicleId, linkId, driverId, earliestLinkExitTime, linkEnterTime));
+			}
+
+			int sectionCount = in.readInt();
+			for (int i = 0; i < sectionCount; i++) {
+				String name = in.readUTF();
+				byte[] data = new byte[in.readInt()];
+				in.readFully(data);
+				checkpoint.putSection(name, data);
+			}
+			return checkpoint;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes an id (or <code>null</code>) into an engine section; counterpart of {@link #readId(DataInput, Class)}.
+	 */
+	public static void writeId(DataOutput out, Id<?> id) throws IOException {
+		out.writeBoolean(id != null);
+		if (id != null) {
+			out.writeUTF(id.toString());
+		}
+	}
+
+	public static <T> Id<T> readId(DataInput in, Class<T> type) throws IOException {
+		return in.readBoolean() ? Id.create(in.readUTF(), type) : null;
+	}
+
+	/**
+	 * Looks up an object that an engine section refers to, and fails if the restored mobsim does not have it, which means that the
+	 * checkpoint was written for a different scenario.
+	 */
+	public static <K, V> V getRestored(Map<K, V> map, K id) {
+		V value = map.get(id);
+		if (value == null) {
+			throw new IllegalStateException(id + " is referenced by the checkpoint, but does not exist in the mobsim.  Was the checkpoint "
+					+ "written for a different scenario?");
+		}
+		return value;
+	}
+
+	private static void register(Id<?> id, Map<String, Integer> index, List<String> strings) {
+		if (id != null && !index.containsKey(id.toString())) {
+			index.put(id.toString(), strings.size());
+			strings.add(id.toString());
+		}
+	}
+
+	private static int indexOf(Id<?> id, Map<String, Integer> index) {
+		return id == null ? NO_ID : index.get(id.toString());
+	}
+
+	private static <T> Id<T> toId(int i, String[] strings, Class<T> type) {
+		return i == NO_ID ? null : Id.create(strings[i], type);
+	}
+
+}
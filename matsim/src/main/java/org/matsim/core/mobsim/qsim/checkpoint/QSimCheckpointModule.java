@@ -0,0 +1,83 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.matsim.core.config.Config;
+import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.qsim.AbstractQSimModule;
+import org.matsim.core.mobsim.qsim.QSim;
+
+/**
+ * Writes and restores {@link QSimCheckpoint}s, configured from the qsim config group:
+ * <ul>
+ * <li>{@link QSimConfigGroup#setCheckpointTimes(java.util.List)} makes the QSim write a checkpoint at each of these simulation times
+ * (the {@link QSimCheckpointQSimComponentsConfigurator} then activates the {@link #COMPONENT_NAME} component);</li>
+ * <li>{@link QSimConfigGroup#setCheckpointToRestore(String)} makes the QSim of the first iteration resume from the given checkpoint file,
+ * instead of starting at the beginning of the day.</li>
+ * </ul>
+ * Checkpoints are off by default.  Only if one of the two options is set, this module is installed with the default QSim modules, and
+ * {@link MatsimRandom} hands out restorable random number generators (standalone QSims need to call
+ * {@link MatsimRandom#setRestorable(boolean)} before {@link MatsimRandom#reset(long)} themselves).
+ * <p></p>
+ * Checkpoints are limited to the default car/teleportation QSim: the activity, teleportation, netsim and network change events engines
+ * (see {@link QSimCheckpointableEngine}).  Transit is refused when the QSim is configured; DVRP and any other engine that does not
+ * implement {@link QSimCheckpointableEngine} are refused when the mobsim is initialized, i.e. before the simulation starts.
+ */
+public final class QSimCheckpointModule extends AbstractQSimModule {
+	public static final String COMPONENT_NAME = "QSimCheckpointWriter";
+
+	public static boolean isConfigured(Config config) {
+		return !config.qsim().getCheckpointTimes().isEmpty() || config.qsim().getCheckpointToRestore() != null;
+	}
+
+	@Override
+	protected void configureQSim() {
+		QSimConfigGroup qsimConfig = getConfig().qsim();
+		if (getConfig().transit().isUseTransit() && getConfig().transit().isUsingTransitInMobsim()) {
+			throw new UnsupportedOperationException("QSim checkpoints do not support transit in the mobsim yet");
+		}
+		String directory = getConfig().controler().getOutputDirectory() + "/checkpoints";
+		int iteration = getIterationNumber();
+		addQSimComponentBinding(COMPONENT_NAME).toProvider(new Provider<QSimCheckpointWriter>() {
+			@Inject
+			QSim qsim;
+
+			@com.google.inject.Inject(optional = true)
+			QSimCheckpoint restoredCheckpoint = null;
+
+			@Override
+			public QSimCheckpointWriter get() {
+				double restoredTime = restoredCheckpoint == null ? Double.NEGATIVE_INFINITY : restoredCheckpoint.getTime();
+				return new QSimCheckpointWriter(qsim, qsimConfig.getCheckpointTimes(), restoredTime, directory, iteration);
+			}
+		});
+
+		if (qsimConfig.getCheckpointToRestore() != null && iteration == getConfig().controler().getFirstIteration()) {
+			String filename = qsimConfig.getCheckpointToRestore();
+			bind(QSimCheckpoint.class).toProvider(() -> QSimCheckpointIO.read(filename)).in(Singleton.class);
+		}
+	}
+
+}
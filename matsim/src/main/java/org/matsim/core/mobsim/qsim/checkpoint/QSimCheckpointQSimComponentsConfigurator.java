@@ -0,0 +1,42 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+import org.matsim.core.config.Config;
+import org.matsim.core.mobsim.qsim.components.QSimComponentsConfig;
+import org.matsim.core.mobsim.qsim.components.QSimComponentsConfigurator;
+
+/**
+ * Activates the {@link QSimCheckpointWriter} if checkpoint times are configured.
+ */
+public class QSimCheckpointQSimComponentsConfigurator implements QSimComponentsConfigurator {
+	final private Config config;
+
+	public QSimCheckpointQSimComponentsConfigurator(Config config) {
+		this.config = config;
+	}
+
+	@Override
+	public void configure(QSimComponentsConfig components) {
+		if (!config.qsim().getCheckpointTimes().isEmpty()) {
+			components.addNamedComponent(QSimCheckpointModule.COMPONENT_NAME);
+		}
+	}
+}
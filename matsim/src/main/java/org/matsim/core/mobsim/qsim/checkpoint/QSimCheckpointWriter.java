@@ -0,0 +1,82 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+import java.io.File;
+import java.util.Collection;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * Writes a {@link QSimCheckpoint} at each of the configured simulation times, before the corresponding time step is simulated.
+ * Files go to <code>&lt;outputDirectory&gt;/checkpoints/it.&lt;iteration&gt;.qsimCheckpoint.&lt;time&gt;.bin.gz</code>.  A QSim that was
+ * resumed from a checkpoint does not write the checkpoints before (or at) the time it was resumed at.
+ *
+ * @see QSimCheckpointModule
+ */
+final class QSimCheckpointWriter implements MobsimInitializedListener, MobsimBeforeSimStepListener {
+	private static final Logger log = LogManager.getLogger(QSimCheckpointWriter.class);
+
+	private final QSim qsim;
+	private final double[] checkpointTimes;
+	private final String directory;
+	private final int iteration;
+	private int nextCheckpoint = 0;
+
+	QSimCheckpointWriter(QSim qsim, Collection<Double> checkpointTimes, double restoredTime, String directory, int iteration) {
+		this.qsim = qsim;
+		this.checkpointTimes = checkpointTimes.stream().mapToDouble(Double::doubleValue).filter(time -> time > restoredTime).sorted().toArray();
+		this.directory = directory;
+		this.iteration = iteration;
+	}
+
+	@Override
+	public void notifyMobsimInitialized(MobsimInitializedEvent e) {
+		// fail before simulating up to the first checkpoint time
+		qsim.checkCheckpointSupport();
+	}
+
+	@Override
+	public void notifyMobsimBeforeSimStep(MobsimBeforeSimStepEvent e) {
+		double now = e.getSimulationTime();
+		if (nextCheckpoint >= checkpointTimes.length || now < checkpointTimes[nextCheckpoint]) {
+			return;
+		}
+		// the qsim may jump over time steps, so skip all checkpoint times that have passed:
+		while (nextCheckpoint < checkpointTimes.length && checkpointTimes[nextCheckpoint] <= now) {
+			nextCheckpoint++;
+		}
+
+		QSimCheckpoint checkpoint = qsim.createCheckpoint();
+		new File(directory).mkdirs();
+		String filename = directory + "/it." + iteration + ".qsimCheckpoint." + (long) now + ".bin.gz";
+		QSimCheckpointIO.write(checkpoint, filename);
+		log.info("wrote QSim checkpoint at " + Time.writeTime(now) + " with " + checkpoint.getAgents().size() + " agents and "
+				+ checkpoint.getVehicles().size() + " vehicles to " + filename);
+	}
+
+}
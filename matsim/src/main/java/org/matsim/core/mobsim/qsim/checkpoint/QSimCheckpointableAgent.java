@@ -0,0 +1,33 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+/**
+ * A {@link org.matsim.core.mobsim.framework.MobsimAgent} whose state can be written to a {@link QSimCheckpoint} and restored from it.
+ * The vehicle of the agent is set by the QSim, since the agent cannot look it up by itself.
+ */
+public interface QSimCheckpointableAgent {
+
+	QSimCheckpoint.AgentState createCheckpointState();
+
+	void restoreCheckpointState(QSimCheckpoint.AgentState state);
+
+}
@@ -0,0 +1,44 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A {@link org.matsim.core.mobsim.qsim.interfaces.MobsimEngine} whose state can be written to a {@link QSimCheckpoint} and restored from
+ * it.  A QSim can only write or restore checkpoints if <i>all</i> of its engines implement this; activity and departure handlers that
+ * are not engines are assumed to have no state.
+ * <p></p>
+ * The state is written from a before-sim-step listener, i.e. before any engine has done the time step.  It is restored into a
+ * freshly prepared QSim (after {@link org.matsim.core.mobsim.qsim.interfaces.MobsimEngine#onPrepareSim()}), in which the agents and
+ * vehicles have already been restored, but the agents have not been put into their first activity.  References to agents and vehicles
+ * are best written as ids (see {@link QSimCheckpointIO#writeId(DataOutput, org.matsim.api.core.v01.Id)}) and looked up in the
+ * QSim on restore.
+ */
+public interface QSimCheckpointableEngine {
+
+	void writeCheckpoint(DataOutput out) throws IOException;
+
+	void restoreCheckpoint(DataInput in) throws IOException;
+
+}
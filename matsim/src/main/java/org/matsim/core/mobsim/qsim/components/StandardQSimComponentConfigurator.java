@@ -23,6 +23,7 @@
 
 import org.matsim.core.config.Config;
 import org.matsim.core.mobsim.qsim.changeeventsengine.NetworkChangeEventsQSimComponentsConfigurator;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointQSimComponentsConfigurator;
 import org.matsim.core.mobsim.qsim.pt.TransitQSimComponentsConfigurator;
 
 public class StandardQSimComponentConfigurator implements QSimComponentsConfigurator {
@@ -46,6 +47,8 @@ public class StandardQSimComponentConfigurator implements QSimComponentsConfigur
 		new TransitQSimComponentsConfigurator(config).configure(components);
 		
 		new NetworkChangeEventsQSimComponentsConfigurator(config).configure(components);
+
+		new QSimCheckpointQSimComponentsConfigurator(config).configure(components);
 		
 	}
 
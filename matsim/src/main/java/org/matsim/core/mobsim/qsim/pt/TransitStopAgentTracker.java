@@ -28,13 +28,25 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.mobsim.qsim.AgentTracker;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
 
 /**
+ * Keeps track of the agents waiting at transit stops.
+ * <p></p>
+ * Boarding at a stop is handled by the netsim runner thread that owns the stop's link (via TransitQLink).  Agents may be added to
+ * the stop from other threads.  Each stop therefore keeps its waiting agents in its own {@link WaitingAgents} list.  That list is
+ * guarded by its own monitor, so threads working on different stops never wait for each other.
+ * <p></p>
+ * Iterating over the agents at a stop works on a snapshot.  Agents that board can thus be removed from the stop while the stop
+ * handler still iterates.  The iterator's <code>remove()</code> removes the agent from the stop, not only from the snapshot.
+ *
  * @author mrieser
  */
 public class TransitStopAgentTracker implements AgentTracker {
@@ -52,11 +64,7 @@ public class TransitStopAgentTracker implements AgentTracker {
 		if (stopId == null) {
 			throw new NullPointerException("stop must not be null.");
 		}
-		List<PTPassengerAgent> agents = this.agentsAtStops.get(stopId);
-		if (agents == null) {
-			agents = new CopyOnWriteArrayList<>();// TODO check again. this might turn out to be slow, but we likely need something thread safe here. marcel/oct2014 
-			this.agentsAtStops.put(stopId, agents);
-		}
+		List<PTPassengerAgent> agents = this.agentsAtStops.computeIfAbsent(stopId, id -> new WaitingAgents());
 		if ( !agents.add(agent) ) {
 			log.error("did NOT add agent " + agent.getId() + " since it was already there.");
 		}
@@ -90,4 +98,77 @@ public class TransitStopAgentTracker implements AgentTracker {
 	public Map<Id<TransitStopFacility>, List<PTPassengerAgent>> getAgentsAtStop() {
 		return this.agentsAtStops;
 	}
+
+	/**
+	 * The agents waiting at one stop.  A CopyOnWriteArrayList would copy the whole array on every add and remove.  At busy
+	 * stops, agents are added and removed far more often than the list is iterated, so here only iteration copies.
+	 */
+	private static final class WaitingAgents extends AbstractList<PTPassengerAgent> {
+		private final List<PTPassengerAgent> agents = new ArrayList<>();
+
+		@Override
+		public synchronized boolean add(PTPassengerAgent agent) {
+			return agents.add(agent);
+		}
+
+		@Override
+		public synchronized boolean remove(Object agent) {
+			return agents.remove(agent);
+		}
+
+		@Override
+		public synchronized PTPassengerAgent remove(int index) {
+			return agents.remove(index);
+		}
+
+		@Override
+		public synchronized boolean removeIf(Predicate<? super PTPassengerAgent> filter) {
+			return agents.removeIf(filter);
+		}
+
+		@Override
+		public synchronized PTPassengerAgent get(int index) {
+			return agents.get(index);
+		}
+
+		@Override
+		public synchronized int size() {
+			return agents.size();
+		}
+
+		/**
+		 * Iterates over a snapshot of the waiting agents.  Removing an agent through the iterator removes it from the stop.
+		 */
+		@Override
+		public Iterator<PTPassengerAgent> iterator() {
+			Iterator<PTPassengerAgent> snapshot = snapshot().iterator();
+			return new Iterator<>() {
+				private PTPassengerAgent last = null;
+
+				@Override
+				public boolean hasNext() {
+					return snapshot.hasNext();
+				}
+
+				@Override
+				public PTPassengerAgent next() {
+					last = snapshot.next();
+					return last;
+				}
+
+				@Override
+				public void remove() {
+					if (last == null) {
+						throw new IllegalStateException();
+					}
+					WaitingAgents.this.remove(last);
+					last = null;
+				}
+			};
+		}
+
+		private synchronized List<PTPassengerAgent> snapshot() {
+			return new ArrayList<>(agents);
+		}
+	}
 }
@@ -19,6 +19,9 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -49,6 +52,7 @@ import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.framework.MobsimAgent.State;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.framework.PassengerAgent;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointIO;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.pt.TransitDriverAgent;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngineI.NetsimInternalInterface;
@@ -499,6 +503,69 @@ abstract class AbstractQLink implements QLinkI {
 		return transitQLink;
 	}
 
+	/**
+	 * For QSim checkpoints: writes the vehicles and agents that this link holds outside of its lanes.  The vehicle handler is not told
+	 * about the restored vehicles, i.e. it is assumed to have no state of its own.
+	 */
+	void writeCheckpoint(DataOutput out) throws IOException {
+		if (!driversWaitingForPassengers.isEmpty() || passengersWaitingForCars.values().stream().anyMatch(set -> !set.isEmpty())) {
+			throw new UnsupportedOperationException("QSim checkpoints do not support passengers yet; link " + link.getId());
+		}
+		out.writeBoolean(active);
+		out.writeInt(parkedVehicles.size());
+		for (Id<Vehicle> vehicleId : parkedVehicles.keySet()) {
+			QSimCheckpointIO.writeId(out, vehicleId);
+		}
+		out.writeInt(waitingList.size());
+		for (QVehicle veh : waitingList) {
+			QSimCheckpointIO.writeId(out, veh.getId());
+		}
+		out.writeInt(driversWaitingForCars.size());
+		for (Map.Entry<Id<Vehicle>, Queue<MobsimDriverAgent>> entry : driversWaitingForCars.entrySet()) {
+			QSimCheckpointIO.writeId(out, entry.getKey());
+			out.writeInt(entry.getValue().size());
+			for (MobsimDriverAgent driver : entry.getValue()) {
+				QSimCheckpointIO.writeId(out, driver.getId());
+			}
+		}
+		out.writeInt(additionalAgentsOnLink.size());
+		for (Id<Person> agentId : additionalAgentsOnLink.keySet()) {
+			QSimCheckpointIO.writeId(out, agentId);
+		}
+	}
+
+	void restoreCheckpoint(DataInput in, Map<Id<Vehicle>, QVehicle> vehicles, Map<Id<Person>, MobsimAgent> agents) throws IOException {
+		active = in.readBoolean();
+		parkedVehicles.clear();
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			QVehicle veh = QSimCheckpointIO.getRestored(vehicles, QSimCheckpointIO.readId(in, Vehicle.class));
+			parkedVehicles.put(veh.getId(), veh);
+		}
+		waitingList.clear();
+		size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			waitingList.add(QSimCheckpointIO.getRestored(vehicles, QSimCheckpointIO.readId(in, Vehicle.class)));
+		}
+		driversWaitingForCars.clear();
+		size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			Id<Vehicle> vehicleId = QSimCheckpointIO.readId(in, Vehicle.class);
+			Queue<MobsimDriverAgent> queue = new LinkedList<>();
+			int drivers = in.readInt();
+			for (int j = 0; j < drivers; j++) {
+				queue.add((MobsimDriverAgent) QSimCheckpointIO.getRestored(agents, QSimCheckpointIO.readId(in, Person.class)));
+			}
+			driversWaitingForCars.put(vehicleId, queue);
+		}
+		additionalAgentsOnLink.clear();
+		size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			MobsimAgent agent = QSimCheckpointIO.getRestored(agents, QSimCheckpointIO.readId(in, Person.class));
+			additionalAgentsOnLink.put(agent.getId(), agent);
+		}
+	}
+
 	void setTransitQLink(TransitQLink transitQLink) {
 		this.transitQLink = transitQLink;
 	}
@@ -20,6 +20,10 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -31,6 +35,7 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
@@ -44,6 +49,8 @@ import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.qsim.InternalInterface;
 import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointIO;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointableEngine;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimNetwork;
@@ -60,7 +67,7 @@ import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
  * @author dgrether
  * @author dstrippgen
  */
-abstract class AbstractQNetsimEngine<A extends AbstractQNetsimEngineRunner> implements QNetsimEngineI {
+abstract class AbstractQNetsimEngine<A extends AbstractQNetsimEngineRunner> implements QNetsimEngineI, QSimCheckpointableEngine {
 
 	private NetsimInternalInterface ii = new NetsimInternalInterface(){
 		@Override public QNetwork getNetsimNetwork() {
@@ -358,6 +365,84 @@ abstract class AbstractQNetsimEngine<A extends AbstractQNetsimEngineRunner> impl
 		return ii;
 	}
 
+	/**
+	 * Writes all links and nodes (in the order of the network), and which of them each runner has active (in the order in which
+	 * they are moved).  Only the default {@link QLinkImpl}s and {@link QNodeImpl}s are supported, i.e. no lanes.
+	 */
+	@Override
+	public final void writeCheckpoint(DataOutput out) throws IOException {
+		out.writeInt(network.getNetsimLinks().size());
+		for (QLinkI link : network.getNetsimLinks().values()) {
+			QSimCheckpointIO.writeId(out, link.getLink().getId());
+			asQLinkImpl(link).writeCheckpoint(out);
+		}
+		out.writeInt(network.getNetsimNodes().size());
+		for (QNodeI node : network.getNetsimNodes().values()) {
+			QSimCheckpointIO.writeId(out, node.getNode().getId());
+			asQNodeImpl(node).writeCheckpoint(out);
+		}
+		out.writeInt(engines.size());
+		for (A runner : engines) {
+			out.writeInt(runner.getActiveLinks().size());
+			for (QLinkI link : runner.getActiveLinks()) {
+				QSimCheckpointIO.writeId(out, link.getLink().getId());
+			}
+			List<QNodeI> activeNodes = new ArrayList<>(runner.getActiveNodes());
+			out.writeInt(activeNodes.size());
+			for (QNodeI node : activeNodes) {
+				QSimCheckpointIO.writeId(out, node.getNode().getId());
+			}
+		}
+	}
+
+	@Override
+	public final void restoreCheckpoint(DataInput in) throws IOException {
+		Map<Id<Person>, MobsimAgent> agents = qsim.getAgents();
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			QLinkI link = QSimCheckpointIO.getRestored(network.getNetsimLinks(), QSimCheckpointIO.readId(in, Link.class));
+			asQLinkImpl(link).restoreCheckpoint(in, this.vehicles, agents);
+		}
+		size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			QNodeI node = QSimCheckpointIO.getRestored(network.getNetsimNodes(), QSimCheckpointIO.readId(in, Node.class));
+			asQNodeImpl(node).restoreCheckpoint(in);
+		}
+		size = in.readInt();
+		if (size != engines.size()) {
+			throw new IllegalStateException("The checkpoint was written with " + size + " qsim threads, but this qsim has " + engines.size());
+		}
+		for (A runner : engines) {
+			List<QLinkI> activeLinks = new ArrayList<>();
+			int links = in.readInt();
+			for (int i = 0; i < links; i++) {
+				activeLinks.add(QSimCheckpointIO.getRestored(network.getNetsimLinks(), QSimCheckpointIO.readId(in, Link.class)));
+			}
+			List<QNodeI> activeNodes = new ArrayList<>();
+			int nodes = in.readInt();
+			for (int i = 0; i < nodes; i++) {
+				activeNodes.add(QSimCheckpointIO.getRestored(network.getNetsimNodes(), QSimCheckpointIO.readId(in, Node.class)));
+			}
+			runner.restoreActiveNetElements(activeLinks, activeNodes);
+		}
+	}
+
+	private static QLinkImpl asQLinkImpl(QLinkI link) {
+		if (!(link instanceof QLinkImpl)) {
+			throw new UnsupportedOperationException("QSim checkpoints do not support " + link.getClass().getName() + " (e.g. lanes) yet; link "
+					+ link.getLink().getId());
+		}
+		return (QLinkImpl) link;
+	}
+
+	private static QNodeImpl asQNodeImpl(QNodeI node) {
+		if (!(node instanceof QNodeImpl)) {
+			throw new UnsupportedOperationException("QSim checkpoints do not support " + node.getClass().getName() + " yet; node "
+					+ node.getNode().getId());
+		}
+		return (QNodeImpl) node;
+	}
+
 	private final void printSimLog(double time) {
 		if (time >= this.infoTime) {
 			this.infoTime += INFO_PERIOD;
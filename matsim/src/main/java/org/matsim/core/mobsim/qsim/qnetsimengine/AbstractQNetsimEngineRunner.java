@@ -20,6 +20,8 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -138,6 +140,24 @@ abstract class AbstractQNetsimEngineRunner extends NetElementActivationRegistry
 		else throw new RuntimeException("Tried to activate a QNode at a time where this was not allowed. Aborting!");
 	}
 
+	/*package*/ final Collection<QLinkI> getActiveLinks() {
+		return Collections.unmodifiableCollection(this.linksList);
+	}
+
+	/*package*/ final Collection<QNodeI> getActiveNodes() {
+		return Collections.unmodifiableCollection(this.nodesQueue);
+	}
+
+	/**
+	 * For QSim checkpoints: replaces the active links and nodes, keeping the given order, which is the order in which they are moved.
+	 */
+	/*package*/ final void restoreActiveNetElements(Collection<QLinkI> links, Collection<QNodeI> nodes) {
+		this.linksList.clear();
+		this.linksList.addAll(links);
+		this.nodesQueue.clear();
+		this.nodesQueue.addAll(nodes);
+	}
+
 	/*
 	 * Note that the size() method is O(n) for a ConcurrentLinkedQueue as used
 	 * for the nodesQueue. However, this method is only called once every simulated
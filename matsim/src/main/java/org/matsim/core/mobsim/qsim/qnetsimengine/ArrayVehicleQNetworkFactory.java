@@ -0,0 +1,79 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import javax.inject.Inject;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.QSimConfigGroup.LinkDynamics;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngineI.NetsimInternalInterface;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.ArrayVehicleQ;
+
+/**
+ * Alternative to {@link DefaultQNetworkFactory} where the {@link QueueWithBuffer}s keep their vehicles in {@link ArrayVehicleQ}s,
+ * i.e. in ring buffers with the earliest link exit times in a primitive array, rather than in linked lists of vehicle objects.
+ * The resulting traffic flow is the same as with the default factory.
+ * <p></p>
+ * This only makes a difference for FIFO link dynamics; with {@link LinkDynamics#PassingQ} and {@link LinkDynamics#SeepageQ} the
+ * vehicle queue needs to be a priority queue, and the choice is left to {@link QueueWithBuffer.Builder}.
+ * <p></p>
+ * Usage:
+ * <pre>
+ * controler.addOverridingQSimModule( new AbstractQSimModule(){
+ * 	&#64;Override protected void configureQSim() {
+ * 		bind( QNetworkFactory.class ).to( ArrayVehicleQNetworkFactory.class ) ;
+ * 	}
+ * } ) ;
+ * </pre>
+ *
+ * @see ConfigurableQNetworkFactory
+ */
+public final class ArrayVehicleQNetworkFactory implements QNetworkFactory {
+	private final ConfigurableQNetworkFactory delegate;
+
+	@Inject
+	public ArrayVehicleQNetworkFactory( EventsManager events, Scenario scenario ) {
+		this.delegate = new ConfigurableQNetworkFactory( events, scenario );
+		if ( scenario.getConfig().qsim().getLinkDynamics() == LinkDynamics.FIFO ) {
+			this.delegate.setVehicleQFactory( ArrayVehicleQ::new );
+		}
+	}
+
+	@Override
+	public void initializeFactory( AgentCounter agentCounter, MobsimTimer mobsimTimer, NetsimInternalInterface netsimEngine1 ) {
+		delegate.initializeFactory( agentCounter, mobsimTimer, netsimEngine1 );
+	}
+
+	@Override
+	public QNodeI createNetsimNode( Node node ) {
+		return delegate.createNetsimNode( node );
+	}
+
+	@Override
+	public QLinkI createNetsimLink( Link link, QNodeI queueNode ) {
+		return delegate.createNetsimLink( link, queueNode );
+	}
+
+}
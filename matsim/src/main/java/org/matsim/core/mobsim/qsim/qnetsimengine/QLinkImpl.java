@@ -20,15 +20,21 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.SignalGroupState;
 import org.matsim.core.mobsim.qsim.interfaces.SignalizeableItem;
@@ -233,6 +239,29 @@ public final class QLinkImpl extends AbstractQLink implements SignalizeableItem
 		return this.qlane.getSimulatedFlowCapacityPerTimeStep() ;
 	}
 
+	@Override
+	void writeCheckpoint(DataOutput out) throws IOException {
+		if (!this.getTransitQLink().getTransitVehicleStopQueue().isEmpty()) {
+			throw new UnsupportedOperationException("QSim checkpoints do not support transit yet; link " + this.getLink().getId());
+		}
+		super.writeCheckpoint(out);
+		getQueueWithBuffer().writeCheckpoint(out);
+	}
+
+	@Override
+	void restoreCheckpoint(DataInput in, Map<Id<Vehicle>, QVehicle> vehicles, Map<Id<Person>, MobsimAgent> agents) throws IOException {
+		super.restoreCheckpoint(in, vehicles, agents);
+		getQueueWithBuffer().restoreCheckpoint(in, vehicles);
+	}
+
+	private QueueWithBuffer getQueueWithBuffer() {
+		if (!(this.qlane instanceof QueueWithBuffer)) {
+			throw new UnsupportedOperationException("QSim checkpoints only support the default " + QueueWithBuffer.class.getSimpleName()
+					+ " lanes, but link " + this.getLink().getId() + " has " + this.qlane.getClass().getName());
+		}
+		return (QueueWithBuffer) this.qlane;
+	}
+
 	@Override public VisData getVisData() {
 		return this.visdata;
 	}
@@ -37,6 +37,9 @@ import org.matsim.core.mobsim.qsim.interfaces.NetsimLink;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngineI.NetsimInternalInterface;
 import org.matsim.core.mobsim.qsim.qnetsimengine.TurnAcceptanceLogic.AcceptTurn;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Random;
@@ -146,6 +149,50 @@ final class QNodeImpl extends AbstractQNode {
 		});
 	}
 
+	/**
+	 * For QSim checkpoints: the state of the node transition logic, and of the random number generator if the node has its own one.
+	 */
+	void writeCheckpoint(DataOutput out) throws IOException {
+		out.writeBoolean(isActive());
+		out.writeBoolean(inLinkPriorities != null);
+		if (inLinkPriorities != null) {
+			for (Double priority : inLinkPriorities) {
+				out.writeDouble(priority);
+			}
+		}
+		// links that were taken out of the node transition in the last time step; the deterministic priorities depend on them:
+		for (QLinkI link : tempLinks) {
+			out.writeBoolean(link != null);
+		}
+		boolean ownRandom = random != MatsimRandom.getRandom();
+		out.writeBoolean(ownRandom);
+		if (ownRandom) {
+			MatsimRandom.writeState(random, out);
+		}
+	}
+
+	void restoreCheckpoint(DataInput in) throws IOException {
+		setActive(in.readBoolean());
+		if (in.readBoolean()) {
+			inLinkPriorities = new Double[inLinksArrayCache.length];
+			for (int i = 0; i < inLinkPriorities.length; i++) {
+				inLinkPriorities[i] = in.readDouble();
+			}
+		} else {
+			inLinkPriorities = null;
+		}
+		for (int i = 0; i < tempLinks.length; i++) {
+			tempLinks[i] = in.readBoolean() ? inLinksArrayCache[i] : null;
+		}
+		boolean ownRandom = in.readBoolean();
+		if (ownRandom != (random != MatsimRandom.getRandom())) {
+			throw new IllegalStateException("The checkpoint was written with a different number of qsim threads.");
+		}
+		if (ownRandom) {
+			MatsimRandom.restoreState(random, in);
+		}
+	}
+
 	/**
 	 * Moves vehicles from the inlinks' buffer to the outlinks where possible.<br>
 	 * The inLinks are randomly chosen, and for each link all vehicles in the
@@ -19,10 +19,14 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -42,6 +46,7 @@ import org.matsim.core.config.groups.QSimConfigGroup.TrafficDynamics;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
+import org.matsim.core.mobsim.qsim.checkpoint.QSimCheckpointIO;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.SignalGroupState;
 import org.matsim.core.mobsim.qsim.interfaces.SignalizeableItem;
@@ -51,6 +56,7 @@ import org.matsim.core.mobsim.qsim.qnetsimengine.QLinkImpl.LaneFactory;
 import org.matsim.core.mobsim.qsim.qnetsimengine.flow_efficiency.DefaultFlowEfficiencyCalculator;
 import org.matsim.core.mobsim.qsim.qnetsimengine.flow_efficiency.FlowEfficiencyCalculator;
 import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.LinkSpeedCalculator;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.ArrayVehicleQ;
 import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.FIFOVehicleQ;
 import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.PassingVehicleQ;
 import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.VehicleQ;
@@ -257,7 +263,7 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
         double now = context.getSimTimer().getTimeOfDay();
 
         QVehicle veh;
-        while ((veh = peekFromVehQueue()) != null) {
+        while (!headOfArrayVehQueueIsBlocked(now) && (veh = peekFromVehQueue()) != null) {
             //we have an original QueueLink behaviour
             if (veh.getEarliestLinkExitTime() > now) {
                 return;
@@ -1051,6 +1057,17 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		return returnVeh;
 	}
 
+	/**
+	 * Cheap pre-check for {@link ArrayVehicleQ}: the cached exit time is a lower bound of the true one, so if even that lies in the
+	 * future, the head vehicle object does not need to be touched.  Not used with seepage, since there the head is not necessarily
+	 * the vehicle that is moved next.
+	 */
+	private boolean headOfArrayVehQueueIsBlocked(double now) {
+		return vehQueue instanceof ArrayVehicleQ
+				&& context.qsimConfig.getLinkDynamics() != LinkDynamics.SeepageQ
+				&& ((ArrayVehicleQ) vehQueue).peekEarliestLinkExitTime() > now;
+	}
+
 	private QVehicle pollFromVehQueue(QVehicle veh2Remove){
 		if(vehQueue.remove(veh2Remove)){
 			return veh2Remove;
@@ -1064,6 +1081,105 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		return usedStorageCapacity;
     }
 
+	/**
+	 * For QSim checkpoints: writes everything that changes while the simulation runs, i.e. the vehicles in queue and buffer, the holes,
+	 * the flow accumulators, and the capacities (which may have been changed by network change events).
+	 */
+	void writeCheckpoint(DataOutput out) throws IOException {
+		if (qSignalizedItem != null) {
+			throw new UnsupportedOperationException("QSim checkpoints do not support signalized links yet; link " + this.qLink.getId());
+		}
+		out.writeDouble(flowcap_accumulate.getTimeStep());
+		out.writeDouble(flowcap_accumulate.getValue());
+		out.writeBoolean(thisTimeStepGreen);
+		out.writeDouble(unscaledFlowCapacity_s);
+		out.writeDouble(effectiveNumberOfLanes);
+		out.writeDouble(flowCapacityPerTimeStep);
+		out.writeDouble(inverseFlowCapacityPerTimeStep);
+		out.writeDouble(storageCapacity);
+		out.writeDouble(usedStorageCapacity);
+		out.writeDouble(remainingHolesStorageCapacity);
+		out.writeDouble(maxInflowUsedInQsim);
+		out.writeDouble(effectiveNumberOfLanesUsedInQsim);
+		out.writeDouble(accumulatedInflowCap);
+		out.writeInt(noOfSeepModeBringFwd);
+		out.writeDouble(bufferLastMovedTime);
+
+		out.writeInt(holes.size());
+		for (Hole hole : holes) {
+			out.writeDouble(hole.getEarliestLinkExitTime());
+			out.writeDouble(hole.getSizeInEquivalents());
+		}
+		// re-adding in iteration order gives the same order for the FIFO and array queues, and the same heap for the passing queue:
+		out.writeInt(vehQueue.size());
+		for (QVehicle veh : vehQueue) {
+			QSimCheckpointIO.writeId(out, veh.getId());
+		}
+		out.writeInt(buffer.size());
+		for (Pair<QVehicle, Double> entry : buffer) {
+			QSimCheckpointIO.writeId(out, entry.getKey().getId());
+			out.writeDouble(entry.getValue());
+		}
+		writeCheckpointEntry(out, lastBufferEntry);
+		writeCheckpointEntry(out, lastQueueEntry);
+	}
+
+	void restoreCheckpoint(DataInput in, Map<Id<Vehicle>, QVehicle> vehicles) throws IOException {
+		flowcap_accumulate.setTimeStep(in.readDouble());
+		flowcap_accumulate.setValue(in.readDouble());
+		thisTimeStepGreen = in.readBoolean();
+		unscaledFlowCapacity_s = in.readDouble();
+		effectiveNumberOfLanes = in.readDouble();
+		flowCapacityPerTimeStep = in.readDouble();
+		inverseFlowCapacityPerTimeStep = in.readDouble();
+		storageCapacity = in.readDouble();
+		usedStorageCapacity = in.readDouble();
+		remainingHolesStorageCapacity = in.readDouble();
+		maxInflowUsedInQsim = in.readDouble();
+		effectiveNumberOfLanesUsedInQsim = in.readDouble();
+		accumulatedInflowCap = in.readDouble();
+		noOfSeepModeBringFwd = in.readInt();
+		bufferLastMovedTime = in.readDouble();
+
+		holes.clear();
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			Hole hole = new Hole();
+			hole.setEarliestLinkExitTime(in.readDouble());
+			hole.setSizeInEquivalents(in.readDouble());
+			holes.add(hole);
+		}
+		vehQueue.clear();
+		size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			vehQueue.add(QSimCheckpointIO.getRestored(vehicles, QSimCheckpointIO.readId(in, Vehicle.class)));
+		}
+		buffer.clear();
+		size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			QVehicle veh = QSimCheckpointIO.getRestored(vehicles, QSimCheckpointIO.readId(in, Vehicle.class));
+			buffer.add(new ImmutablePair<>(veh, in.readDouble()));
+		}
+		lastBufferEntry = restoreCheckpointEntry(in, vehicles);
+		lastQueueEntry = restoreCheckpointEntry(in, vehicles);
+	}
+
+	private static void writeCheckpointEntry(DataOutput out, Pair<QVehicle, Double> entry) throws IOException {
+		out.writeBoolean(entry != null);
+		if (entry != null) {
+			QSimCheckpointIO.writeId(out, entry.getKey().getId());
+			out.writeDouble(entry.getValue());
+		}
+	}
+
+	private static Pair<QVehicle, Double> restoreCheckpointEntry(DataInput in, Map<Id<Vehicle>, QVehicle> vehicles) throws IOException {
+		if (!in.readBoolean()) {
+			return null;
+		}
+		QVehicle veh = QSimCheckpointIO.getRestored(vehicles, QSimCheckpointIO.readId(in, Vehicle.class));
+		return new ImmutablePair<>(veh, in.readDouble());
+	}
+
     static final class Builder implements LaneFactory {
         private final NetsimEngineContext context;
         private VehicleQ<QVehicle> vehicleQueue = new FIFOVehicleQ();
@@ -0,0 +1,206 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ArrayVehicleQ.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq;
+
+import java.util.AbstractQueue;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
+
+/**
+ * FIFO vehicle queue with the same semantics as {@link FIFOVehicleQ}, but stored as a struct of arrays: the vehicles are kept in a
+ * growable ring buffer, and their earliest link exit times are cached in a parallel primitive array when they enter the queue.
+ * <p></p>
+ * In contrast to the {@link java.util.LinkedList} behind {@link FIFOVehicleQ}, this does not allocate a node per offered vehicle, and
+ * {@link #peekEarliestLinkExitTime()} lets the lane decide whether the head vehicle may leave without touching the vehicle object.
+ * <p></p>
+ * The cached exit time is the one the vehicle had when it was offered.  Transit stops may afterwards delay a vehicle at the head of the
+ * queue (see TransitQLink), but nothing advances it, so the cached value is a lower bound of the true one.  Callers may therefore
+ * use it to <i>reject</i> the head early, but have to confirm an accept with {@link QVehicle#getEarliestLinkExitTime()}.
+ */
+public final class ArrayVehicleQ extends AbstractQueue<QVehicle> implements VehicleQ<QVehicle> {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private QVehicle[] vehicles = new QVehicle[INITIAL_CAPACITY];
+	private double[] earliestLinkExitTimes = new double[INITIAL_CAPACITY];
+
+	private int head = 0;
+	private int size = 0;
+	private int modCount = 0;
+
+	@Override
+	public boolean offer(QVehicle veh) {
+		ensureCapacity();
+		set(physical(size), veh);
+		size++;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public void addFirst(QVehicle veh) {
+		ensureCapacity();
+		head = (head - 1 + vehicles.length) % vehicles.length;
+		set(head, veh);
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public QVehicle peek() {
+		return size == 0 ? null : vehicles[head];
+	}
+
+	@Override
+	public QVehicle poll() {
+		if (size == 0) {
+			return null;
+		}
+		QVehicle veh = vehicles[head];
+		vehicles[head] = null;
+		head = (head + 1) % vehicles.length;
+		size--;
+		modCount++;
+		return veh;
+	}
+
+	/**
+	 * @return the earliest link exit time the head vehicle had when it entered the queue, or {@link Double#POSITIVE_INFINITY} if the
+	 * queue is empty.  See class comment for why this is a lower bound only.
+	 */
+	public double peekEarliestLinkExitTime() {
+		return size == 0 ? Double.POSITIVE_INFINITY : earliestLinkExitTimes[head];
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		// the lane removes vehicles from the head in almost all cases, so check that first:
+		if (size > 0 && vehicles[head] == o) {
+			poll();
+			return true;
+		}
+		for (int i = 1; i < size; i++) {
+			if (vehicles[physical(i)] == o) {
+				removeAt(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			vehicles[physical(i)] = null;
+		}
+		head = 0;
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public Iterator<QVehicle> iterator() {
+		return new Iterator<QVehicle>() {
+			private int cursor = 0;
+			private int lastReturned = -1;
+			private int expectedModCount = modCount;
+
+			@Override
+			public boolean hasNext() {
+				return cursor < size;
+			}
+
+			@Override
+			public QVehicle next() {
+				if (expectedModCount != modCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (cursor >= size) {
+					throw new NoSuchElementException();
+				}
+				lastReturned = cursor;
+				return vehicles[physical(cursor++)];
+			}
+
+			@Override
+			public void remove() {
+				if (lastReturned < 0) {
+					throw new IllegalStateException();
+				}
+				if (expectedModCount != modCount) {
+					throw new ConcurrentModificationException();
+				}
+				removeAt(lastReturned);
+				cursor = lastReturned;
+				lastReturned = -1;
+				expectedModCount = modCount;
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	private int physical(int logicalIndex) {
+		return (head + logicalIndex) % vehicles.length;
+	}
+
+	private void set(int physicalIndex, QVehicle veh) {
+		vehicles[physicalIndex] = veh;
+		earliestLinkExitTimes[physicalIndex] = veh.getEarliestLinkExitTime();
+	}
+
+	private void removeAt(int logicalIndex) {
+		// shift the tail one slot towards the head:
+		for (int i = logicalIndex; i < size - 1; i++) {
+			int to = physical(i);
+			int from = physical(i + 1);
+			vehicles[to] = vehicles[from];
+			earliestLinkExitTimes[to] = earliestLinkExitTimes[from];
+		}
+		vehicles[physical(size - 1)] = null;
+		size--;
+		modCount++;
+	}
+
+	private void ensureCapacity() {
+		if (size < vehicles.length) {
+			return;
+		}
+		int newCapacity = vehicles.length * 2;
+		QVehicle[] newVehicles = new QVehicle[newCapacity];
+		double[] newExitTimes = new double[newCapacity];
+		for (int i = 0; i < size; i++) {
+			int from = physical(i);
+			newVehicles[i] = vehicles[from];
+			newExitTimes[i] = earliestLinkExitTimes[from];
+		}
+		vehicles = newVehicles;
+		earliestLinkExitTimes = newExitTimes;
+		head = 0;
+	}
+
+}
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +30,7 @@ import java.util.TreeMap;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.matsim.analysis.IterationMetrics;
 import org.matsim.api.core.v01.population.*;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.replanning.choosers.StrategyChooser;
@@ -88,6 +90,10 @@ public class GenericStrategyManagerImpl<PL extends BasicPlan, AG extends HasPlan
 
 	private final StrategyChooser<PL, AG> strategyChooser;
 
+	private IterationMetrics metrics = null;
+
+	private final Map<GenericPlanStrategy<PL, AG>, String> strategyNames = new IdentityHashMap<>();
+
 
 //	private String subpopulationAttributeName = null;
 	
@@ -211,8 +217,15 @@ public class GenericStrategyManagerImpl<PL extends BasicPlan, AG extends HasPlan
 			final ReplanningContext replanningContext )
 	{
 		// initialize all strategies
+		Map<GenericPlanStrategy<PL, AG>, IterationMetrics.Counter> personCounters = null;
+		if (this.metrics != null) {
+			personCounters = new IdentityHashMap<>();
+		}
 		for (GenericPlanStrategy<PL, AG> strategy : distinctStrategies()) {
 			strategy.init(replanningContext);
+			if (personCounters != null) {
+				personCounters.put(strategy, this.metrics.counter("replanning." + getStrategyName(strategy) + ".persons"));
+			}
 		}
 
 		// then go through the population and ...
@@ -237,15 +250,43 @@ public class GenericStrategyManagerImpl<PL extends BasicPlan, AG extends HasPlan
 			
 			// ... and run the strategy:
 			strategy.run(person);
+			if (personCounters != null) {
+				personCounters.get(strategy).increment();
+			}
 		}
 
 		// finally make sure all strategies have finished there work
 		for (GenericPlanStrategy<PL, AG> strategy : distinctStrategies()) {
+			long start = System.nanoTime();
 			strategy.finish();
+			if (this.metrics != null) {
+				this.metrics.timer("replanning." + getStrategyName(strategy)).recordSince(start);
+			}
 		}
 
 	}
 
+	/**
+	 * If set, the number of persons handled by each strategy and the time each strategy needs to finish its work (where the modules
+	 * of most strategies do the actual replanning) are recorded per iteration.
+	 */
+	public final void setIterationMetrics(IterationMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Sets the name under which the given strategy is recorded in the iteration metrics, usually the strategy name from the config.
+	 * Strategies without a name are recorded under their simple class name.
+	 */
+	final void setStrategyName(GenericPlanStrategy<PL, AG> strategy, String name) {
+		this.strategyNames.put(strategy, name);
+	}
+
+	private String getStrategyName(GenericPlanStrategy<PL, AG> strategy) {
+		String name = this.strategyNames.get(strategy);
+		return name != null ? name : strategy.getClass().getSimpleName();
+	}
+
 	private Collection<GenericPlanStrategy<PL, AG>> distinctStrategies() {
 		// Leaving out duplicate strategies in different subpopulations
 		Collection<GenericPlanStrategy<PL, AG>> strategies = new LinkedHashSet<>();
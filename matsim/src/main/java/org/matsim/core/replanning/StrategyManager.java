@@ -22,6 +22,7 @@ package org.matsim.core.replanning;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.matsim.analysis.IterationMetrics;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
@@ -80,6 +81,7 @@ public class StrategyManager implements MatsimManager {
 			PlanStrategy strategy = entry.getValue();
 			StrategyConfigGroup.StrategySettings settings = entry.getKey();
 			addStrategy(strategy, settings.getSubpopulation(), settings.getWeight());
+			delegate.setStrategyName(strategy, settings.getStrategyName());
 
 			// now check if this modules should be disabled after some iterations
 			int maxIter = settings.getDisableAfter();
@@ -220,6 +222,14 @@ public class StrategyManager implements MatsimManager {
 		delegate.setPlanSelectorForRemoval(planSelector);
 	}
 
+	/**
+	 * @see GenericStrategyManagerImpl#setIterationMetrics(IterationMetrics)
+	 */
+	@com.google.inject.Inject(optional = true)
+	final void setIterationMetrics(@javax.inject.Named(IterationMetrics.INSTRUMENTATION) final IterationMetrics metrics) {
+		delegate.setIterationMetrics(metrics);
+	}
+
 	public final List<GenericPlanStrategy<Plan, Person>> getStrategies(final String subpopulation) {
 		return delegate.getStrategies(subpopulation) ;
 	}
@@ -32,6 +32,7 @@ import javax.inject.Provider;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.matsim.analysis.IterationMetrics;
 import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
@@ -66,6 +67,9 @@ public final class TripRouter implements MatsimExtensionPoint {
 	private final Map<String, RoutingModule> routingModules = new HashMap<>();
 	private final FallbackRoutingModule fallbackRoutingModule;
 
+	private IterationMetrics metrics = null;
+	private final Map<String, IterationMetrics.Timer> routingTimers = new HashMap<>();
+
 	private Config config;
 	// (I need the config in the PlanRouter to figure out activity end times. And since the PlanRouter is not
 	// injected, I cannot get it there directly.  kai, oct'17)
@@ -111,6 +115,15 @@ public final class TripRouter implements MatsimExtensionPoint {
 		this.config = config ;
 	}
 
+	/**
+	 * If metrics are enabled, the number and duration of the routing requests per main mode are recorded as timers
+	 * <code>router.mainMode</code>.
+	 */
+	@com.google.inject.Inject(optional = true)
+	void setIterationMetrics( @javax.inject.Named(IterationMetrics.INSTRUMENTATION) IterationMetrics metrics ) {
+		this.metrics = metrics;
+	}
+
 	// /////////////////////////////////////////////////////////////////////////
 	// constructors
 	// /////////////////////////////////////////////////////////////////////////
@@ -173,6 +186,7 @@ public final class TripRouter implements MatsimExtensionPoint {
 		RoutingModule module = routingModules.get( mainMode );
 
 		if (module != null) {
+			long start = metrics == null ? 0 : System.nanoTime();
 			RoutingRequest request = DefaultRoutingRequest.of(
 					fromFacility,
 					toFacility,
@@ -188,6 +202,9 @@ public final class TripRouter implements MatsimExtensionPoint {
 			for (Leg leg: TripStructureUtils.getLegs(trip)) {
 				TripStructureUtils.setRoutingMode(leg, mainMode);
 			}
+			if (metrics != null) {
+				routingTimers.computeIfAbsent( mainMode, mode -> metrics.timer( "router." + mode ) ).recordSince( start );
+			}
 			return trip;
 		}
 
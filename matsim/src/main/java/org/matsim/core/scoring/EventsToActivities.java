@@ -81,9 +81,7 @@ public final class EventsToActivities implements ActivityStartEventHandler, Acti
             activity = firstActivity;
         }
         activity.setEndTime(event.getTime());
-        for (ActivityHandler activityHandler : this.activityHandlers) {
-            activityHandler.handleActivity(new PersonExperiencedActivity(event.getPersonId(), activity));
-        }
+        passToActivityHandlers(new PersonExperiencedActivity(event.getPersonId(), activity));
     }
 
     @Override
@@ -106,11 +104,16 @@ public final class EventsToActivities implements ActivityStartEventHandler, Acti
     }
 
     public void finish() {
-        this.activities.forEach((id, activity) -> {
-            for (ActivityHandler activityHandler : this.activityHandlers) {
-                activityHandler.handleActivity(new PersonExperiencedActivity(id, activity));
-            }
-        });
+        this.activities.forEach((id, activity) -> passToActivityHandlers(new PersonExperiencedActivity(id, activity)));
+    }
+
+    /**
+     * Passes an activity to the activity handlers of this instance, as if it had been reconstructed here.
+     */
+    void passToActivityHandlers(PersonExperiencedActivity activity) {
+        for (ActivityHandler activityHandler : this.activityHandlers) {
+            activityHandler.handleActivity(activity);
+        }
     }
 
 }
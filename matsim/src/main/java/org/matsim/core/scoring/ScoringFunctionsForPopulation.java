@@ -51,6 +51,7 @@ import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.controler.ControlerListenerManager;
+import org.matsim.core.controler.listener.AfterMobsimListener;
 import org.matsim.core.controler.listener.BeforeMobsimListener;
 import org.matsim.core.controler.listener.IterationStartsListener;
 import org.matsim.core.events.algorithms.Vehicle2DriverEventHandler;
@@ -63,8 +64,13 @@ import org.matsim.vehicles.Vehicle;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.matsim.core.router.TripStructureUtils.Trip;
@@ -73,24 +79,38 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
  * This class helps EventsToScore by keeping ScoringFunctions for the entire Population - one per Person -, and dispatching Activities
  * and Legs to the ScoringFunctions. It also gives out the ScoringFunctions, so they can be given other events by EventsToScore.
  * It is not independently useful. Please do not make public.
+ * <p></p>
+ * With more than one scoring thread (see {@link org.matsim.core.config.groups.PlanCalcScoreConfigGroup#getNumberOfScoringThreads()}),
+ * the persons are split by id into shards.  Each shard has its own {@link EventsToLegs} and {@link EventsToActivities} and runs on its
+ * own thread; the events of a person are passed to the shard of the person, in their original order.  The events of vehicles
+ * (link enter, vehicle enters/leaves traffic, transit driver starts, vehicle arrives at facility) are passed to all shards, since
+ * passengers of a vehicle may be in other shards than its driver.  Every scoring function thus sees the same calls as with one thread.
+ * The legs and activities are passed on to the handlers of the injected {@link EventsToLegs} and {@link EventsToActivities}, from the
+ * threads of the shards.  The shards are drained after the mobsim; events after that are processed on the calling thread.
  * 
  * @author michaz
  *
  */
  final class ScoringFunctionsForPopulation implements BasicEventHandler {
-	
+
+	private static final int BATCH_SIZE = 1000;
+	private static final List<Event> END_OF_EVENTS = List.of();
+
 	private final Population population;
 	private final ScoringFunctionFactory scoringFunctionFactory;
-	
-	private final EventsToLegs legsDelegate;
-	private final EventsToActivities actsDelegate;
 
+	/*
+	 * The maps are only modified in init(), while the shards do not run.  The entries of a person are only used by the shard of the
+	 * person.
+	 */
 	private final IdMap<Person, ScoringFunction> agentScorers = new IdMap<>(Person.class);
 	private final IdMap<Person, TDoubleCollection> partialScores = new IdMap<>(Person.class);
 	private final AtomicReference<Throwable> exception = new AtomicReference<>();
 	private final IdMap<Person, Plan> tripRecords = new IdMap<>(Person.class);
-	
-	private final Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
+
+	private final Shard[] shards;
+	/** the threads of the shards, or <code>null</code> if the events are processed on the calling thread */
+	private Thread[] threads = null;
 
 	@Inject
 	ScoringFunctionsForPopulation(ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
@@ -106,96 +126,111 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 		}
 
 		this.population = population;
-		this.legsDelegate = eventsToLegs;
-		this.actsDelegate = eventsToActivities;
 		this.scoringFunctionFactory = scoringFunctionFactory;
 
+		int numberOfShards = config.planCalcScore().getNumberOfScoringThreads();
+		this.shards = new Shard[numberOfShards];
+		if (numberOfShards == 1) {
+			this.shards[0] = new Shard(0, eventsToLegs, eventsToActivities);
+			eventsToActivities.addActivityHandler(this::handleActivity);
+			eventsToLegs.addLegHandler(this::handleLeg);
+		} else {
+			for (int i = 0; i < numberOfShards; i++) {
+				EventsToLegs legs = eventsToLegs.createEmptyCopy();
+				legs.addLegHandler(leg -> {
+					handleLeg(leg);
+					eventsToLegs.passToLegHandlers(leg);
+				});
+				EventsToActivities activities = new EventsToActivities();
+				activities.addActivityHandler(activity -> {
+					handleActivity(activity);
+					eventsToActivities.passToActivityHandlers(activity);
+				});
+				this.shards[i] = new Shard(i, legs, activities);
+			}
+			// the injected EventsToActivities finishes the last activities after the mobsim; the shards have to do the same
+			controlerListenerManager.addControlerListener((AfterMobsimListener) event -> finishShards());
+		}
+
 		eventsManager.addHandler(this);
-		eventsToActivities.addActivityHandler(this::handleActivity);
-		eventsToLegs.addLegHandler(this::handleLeg);
 	}
 
 	private void init() {
+		// the shards must not run while the maps are modified
+		stopShards();
 		for (Person person : this.population.getPersons().values()) {
 			this.agentScorers.put(person.getId(), this.scoringFunctionFactory.createNewScoringFunction(person ) );
 			this.partialScores.put(person.getId(), new TDoubleArrayList());
 			this.tripRecords.put(person.getId(), PopulationUtils.createPlan());
 		}
+		startShards();
 	}
 
 	@Override
 	public void handleEvent(Event o) {
-		// this is for the stuff that is directly based on events. note that this passes on _all_ person events, even those which are
-		// aggregated into legs and activities. for the time being, not all PersonEvents may "implement HasPersonId". link enter/leave events
-		// are NOT passed on, for performance reasons. kai/dominik, dec'12
-		if (o instanceof HasPersonId) {
-			ScoringFunction scoringFunction = getScoringFunctionForAgent(((HasPersonId) o).getPersonId());
-			if (scoringFunction != null) {
-				if (o instanceof PersonStuckEvent) {
-					scoringFunction.agentStuck(o.getTime());
-				} else if (o instanceof PersonMoneyEvent) {
-					scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
-					// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
-					// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
-				} else if (o instanceof PersonScoreEvent) {
-					scoringFunction.addScore(((PersonScoreEvent) o).getAmount());
-				}
-				scoringFunction.handleEvent(o);
-				// passing this on in any case, see comment above.  kai, mar'17
+		if (this.shards.length == 1) {
+			this.shards[0].handleEvent(o);
+		} else if (o instanceof LinkEnterEvent || o instanceof VehicleEntersTrafficEvent || o instanceof VehicleLeavesTrafficEvent
+				|| o instanceof TransitDriverStartsEvent || o instanceof VehicleArrivesAtFacilityEvent) {
+			for (Shard shard : this.shards) {
+				dispatch(shard, o);
 			}
+		} else if (o instanceof HasPersonId) {
+			// all other events that are used for scoring belong to a person
+			dispatch(this.shards[getShardIndex(((HasPersonId) o).getPersonId())], o);
 		}
+	}
 
-		// Establish and end connection between driver and vehicle
-		if (o instanceof VehicleEntersTrafficEvent) {
-			this.vehicles2Drivers.handleEvent((VehicleEntersTrafficEvent) o);
+	private void dispatch(Shard shard, Event event) {
+		if (this.threads == null) {
+			shard.handleEvent(event);
+		} else {
+			shard.add(event);
 		}
-		if (o instanceof VehicleLeavesTrafficEvent) {
-			this.vehicles2Drivers.handleEvent((VehicleLeavesTrafficEvent) o);
+	}
+
+	private int getShardIndex(Id<Person> personId) {
+		return personId == null ? 0 : personId.index() % this.shards.length;
+	}
+
+	private void startShards() {
+		if (this.shards.length == 1 || this.threads != null) {
+			return;
+		}
+		this.threads = new Thread[this.shards.length];
+		for (int i = 0; i < this.shards.length; i++) {
+			this.threads[i] = new Thread(this.shards[i], "ScoringFunctionsForPopulation." + i);
+			this.threads[i].setDaemon(true);
+			this.threads[i].start();
 		}
+	}
 
-		// Pass LinkEnterEvent to person scoring, required e.g. for bicycle where link attributes are observed in scoring
-		/*
-		 * (This shouldn't really be more expensive than passing the link events to the router: here, we have a map lookup
-		 * for agentId, there we have a map lookup for linkId. Should be somewhat similar in terms of average
-		 * computational complexity. In BetaTravelTest, 194sec w/ "false", 193sec w/ "true". However, the experienced
-		 * plans service in fact does the same thing, so we should be able to get away without having to do this twice.
-		 * kai, mar'17)
-		 */
-		if (o instanceof LinkEnterEvent) {
-			Id<Vehicle> vehicleId = ((LinkEnterEvent)o).getVehicleId();
-			Id<Person> driverId = this.vehicles2Drivers.getDriverOfVehicle(vehicleId);
-			ScoringFunction scoringFunction = getScoringFunctionForAgent( driverId );
-			// (this will NOT do the scoring function lookup twice since LinkEnterEvent is not an instance of HasPersonId.  kai, mar'17)
-			if (scoringFunction != null) {
-				scoringFunction.handleEvent(o);
+	/**
+	 * Waits until the shards have processed all events passed to them so far.  Afterwards, events are processed on the calling thread.
+	 */
+	private void stopShards() {
+		if (this.threads == null) {
+			return;
+		}
+		for (Shard shard : this.shards) {
+			shard.flush();
+		}
+		try {
+			for (Thread thread : this.threads) {
+				thread.join();
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
 		}
-
-		/* Now also handle events for eventsToLegs and eventsToActivities.
-		 * This class deliberately only implements BasicEventHandler and not the individual event handlers required
-		 * by EventsToLegs and EventsToActivities to better control the order in which events are passed to scoring
-		 * functions. By handling the delegation here *after* having the events passed to scoringFunction.handleEvent()
-		 * makes sure that the corresponding event was already seen by a scoring function when the call to handleActivity(),
-		 * handleLeg() or handleTrip() is done.
-		 */
-		if (o instanceof ActivityStartEvent) this.handleActivityStart((ActivityStartEvent) o);
-		if (o instanceof ActivityEndEvent) this.actsDelegate.handleEvent((ActivityEndEvent) o);
-
-		if (o instanceof PersonDepartureEvent) this.legsDelegate.handleEvent((PersonDepartureEvent) o);
-		if (o instanceof PersonArrivalEvent) this.legsDelegate.handleEvent((PersonArrivalEvent) o);
-		if (o instanceof LinkEnterEvent) this.legsDelegate.handleEvent((LinkEnterEvent) o);
-		if (o instanceof TeleportationArrivalEvent) this.legsDelegate.handleEvent((TeleportationArrivalEvent) o);
-		if (o instanceof TransitDriverStartsEvent) this.legsDelegate.handleEvent((TransitDriverStartsEvent) o);
-		if (o instanceof PersonEntersVehicleEvent) this.legsDelegate.handleEvent((PersonEntersVehicleEvent) o);
-		if (o instanceof VehicleArrivesAtFacilityEvent) this.legsDelegate.handleEvent((VehicleArrivesAtFacilityEvent) o);
-		if (o instanceof VehicleEntersTrafficEvent) this.legsDelegate.handleEvent((VehicleEntersTrafficEvent) o);
-		if (o instanceof VehicleLeavesTrafficEvent) this.legsDelegate.handleEvent((VehicleLeavesTrafficEvent) o);
+		this.threads = null;
 	}
 
-	private void handleActivityStart(ActivityStartEvent event) {
-		this.actsDelegate.handleEvent(event);
-		if (!StageActivityTypeIdentifier.isStageActivity( event.getActType() ) ) {
-			this.callTripScoring(event);
+	private void finishShards() {
+		stopShards();
+		rethrowException();
+		for (Shard shard : this.shards) {
+			shard.actsDelegate.finish();
 		}
 	}
 
@@ -270,7 +305,47 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 	}
 
 	void finishScoringFunctions() {
+		// in case there was no after mobsim event
+		stopShards();
 		// Rethrow an exception in a scoring function (user code) if there was one.
+		rethrowException();
+		if (this.shards.length > 1) {
+			finishScoringFunctionsInParallel();
+			rethrowException();
+		} else {
+			for (ScoringFunction sf : this.agentScorers.values()) {
+				sf.finish();
+			}
+		}
+		for (Entry<Id<Person>, TDoubleCollection> entry : this.partialScores.entrySet()) {
+			entry.getValue().add(this.getScoringFunctionForAgent(entry.getKey()).getScore());
+		}
+	}
+
+	/**
+	 * Each agent has its own scoring function, so they can be finished independently of each other, provided that the scoring
+	 * functions do not share state.  This is why it has to be switched on in the config.  The resulting scores do not depend on
+	 * the number of threads.
+	 */
+	private void finishScoringFunctionsInParallel() {
+		List<ScoringFunction> scoringFunctions = new ArrayList<>(this.agentScorers.values());
+		ForkJoinPool pool = new ForkJoinPool(this.shards.length);
+		try {
+			pool.submit(() -> scoringFunctions.parallelStream().forEach(sf -> {
+				try {
+					sf.finish();
+				} catch (Throwable t) {
+					this.exception.compareAndSet(null, t);
+				}
+			})).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private void rethrowException() {
 		Throwable throwable = this.exception.get();
 		if (throwable != null) {
 			if (throwable instanceof RuntimeException) {
@@ -279,12 +354,6 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 				throw new RuntimeException(throwable);
 			}
 		}
-		for (ScoringFunction sf : this.agentScorers.values()) {
-			sf.finish();
-		}
-		for (Entry<Id<Person>, TDoubleCollection> entry : this.partialScores.entrySet()) {
-			entry.getValue().add(this.getScoringFunctionForAgent(entry.getKey()).getScore());
-		}
 	}
 
 	void writePartialScores(String iterationFilename) {
@@ -305,8 +374,166 @@ import static org.matsim.core.router.TripStructureUtils.Trip;
 
 	@Override
 	public void reset(int iteration) {
-		this.legsDelegate.reset(iteration);
-		this.actsDelegate.reset(iteration);
+		boolean running = this.threads != null;
+		stopShards();
+		for (Shard shard : this.shards) {
+			shard.legsDelegate.reset(iteration);
+			shard.actsDelegate.reset(iteration);
+		}
+		if (running) {
+			startShards();
+		}
+	}
+
+	/**
+	 * Reconstructs the legs and activities of the persons with <code>index() % shards.length == index</code>, and passes their
+	 * events to their scoring functions.
+	 */
+	private final class Shard implements Runnable {
+		private final int index;
+		private final EventsToLegs legsDelegate;
+		private final EventsToActivities actsDelegate;
+		private final Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
+		private final BlockingQueue<List<Event>> queue = new ArrayBlockingQueue<>(16);
+		private List<Event> batch = new ArrayList<>(BATCH_SIZE);
+
+		Shard(int index, EventsToLegs legsDelegate, EventsToActivities actsDelegate) {
+			this.index = index;
+			this.legsDelegate = legsDelegate;
+			this.actsDelegate = actsDelegate;
+		}
+
+		void add(Event event) {
+			this.batch.add(event);
+			if (this.batch.size() == BATCH_SIZE) {
+				put(this.batch);
+				this.batch = new ArrayList<>(BATCH_SIZE);
+			}
+		}
+
+		/**
+		 * Passes the remaining events to the thread of the shard, and tells it to stop.
+		 */
+		void flush() {
+			if (!this.batch.isEmpty()) {
+				put(this.batch);
+				this.batch = new ArrayList<>(BATCH_SIZE);
+			}
+			put(END_OF_EVENTS);
+		}
+
+		private void put(List<Event> events) {
+			try {
+				this.queue.put(events);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					List<Event> events = this.queue.take();
+					if (events == END_OF_EVENTS) {
+						return;
+					}
+					// after an exception, keep on taking the events, so that the events manager is not blocked
+					if (exception.get() == null) {
+						try {
+							for (Event event : events) {
+								handleEvent(event);
+							}
+						} catch (Throwable t) {
+							exception.compareAndSet(null, t);
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				exception.compareAndSet(null, e);
+			}
+		}
+
+		private boolean isOwnPerson(Id<Person> personId) {
+			return shards.length == 1 || (personId != null && getShardIndex(personId) == this.index);
+		}
+
+		void handleEvent(Event o) {
+			// this is for the stuff that is directly based on events. note that this passes on _all_ person events, even those which are
+			// aggregated into legs and activities. for the time being, not all PersonEvents may "implement HasPersonId". link enter/leave events
+			// are NOT passed on, for performance reasons. kai/dominik, dec'12
+			// (the vehicle events are passed to all shards, but only the shard of the person passes them to its scoring function)
+			if (o instanceof HasPersonId && isOwnPerson(((HasPersonId) o).getPersonId())) {
+				ScoringFunction scoringFunction = getScoringFunctionForAgent(((HasPersonId) o).getPersonId());
+				if (scoringFunction != null) {
+					if (o instanceof PersonStuckEvent) {
+						scoringFunction.agentStuck(o.getTime());
+					} else if (o instanceof PersonMoneyEvent) {
+						scoringFunction.addMoney(((PersonMoneyEvent) o).getAmount());
+						// yy looking at this, I am a bit skeptic if it truly makes sense to not pass this additionally into the general events handling function below.
+						// A use case might be different utilities of money by money transaction type (e.g. toll, fare, reimbursement, ...).  kai, mar'17
+					} else if (o instanceof PersonScoreEvent) {
+						scoringFunction.addScore(((PersonScoreEvent) o).getAmount());
+					}
+					scoringFunction.handleEvent(o);
+					// passing this on in any case, see comment above.  kai, mar'17
+				}
+			}
+
+			// Establish and end connection between driver and vehicle
+			if (o instanceof VehicleEntersTrafficEvent) {
+				this.vehicles2Drivers.handleEvent((VehicleEntersTrafficEvent) o);
+			}
+			if (o instanceof VehicleLeavesTrafficEvent) {
+				this.vehicles2Drivers.handleEvent((VehicleLeavesTrafficEvent) o);
+			}
+
+			// Pass LinkEnterEvent to person scoring, required e.g. for bicycle where link attributes are observed in scoring
+			/*
+			 * (This shouldn't really be more expensive than passing the link events to the router: here, we have a map lookup
+			 * for agentId, there we have a map lookup for linkId. Should be somewhat similar in terms of average
+			 * computational complexity. In BetaTravelTest, 194sec w/ "false", 193sec w/ "true". However, the experienced
+			 * plans service in fact does the same thing, so we should be able to get away without having to do this twice.
+			 * kai, mar'17)
+			 */
+			if (o instanceof LinkEnterEvent) {
+				Id<Vehicle> vehicleId = ((LinkEnterEvent)o).getVehicleId();
+				Id<Person> driverId = this.vehicles2Drivers.getDriverOfVehicle(vehicleId);
+				ScoringFunction scoringFunction = isOwnPerson( driverId ) ? getScoringFunctionForAgent( driverId ) : null;
+				// (this will NOT do the scoring function lookup twice since LinkEnterEvent is not an instance of HasPersonId.  kai, mar'17)
+				if (scoringFunction != null) {
+					scoringFunction.handleEvent(o);
+				}
+			}
+
+			/* Now also handle events for eventsToLegs and eventsToActivities.
+			 * This class deliberately only implements BasicEventHandler and not the individual event handlers required
+			 * by EventsToLegs and EventsToActivities to better control the order in which events are passed to scoring
+			 * functions. By handling the delegation here *after* having the events passed to scoringFunction.handleEvent()
+			 * makes sure that the corresponding event was already seen by a scoring function when the call to handleActivity(),
+			 * handleLeg() or handleTrip() is done.
+			 */
+			if (o instanceof ActivityStartEvent) this.handleActivityStart((ActivityStartEvent) o);
+			if (o instanceof ActivityEndEvent) this.actsDelegate.handleEvent((ActivityEndEvent) o);
+
+			if (o instanceof PersonDepartureEvent) this.legsDelegate.handleEvent((PersonDepartureEvent) o);
+			if (o instanceof PersonArrivalEvent) this.legsDelegate.handleEvent((PersonArrivalEvent) o);
+			if (o instanceof LinkEnterEvent) this.legsDelegate.handleEvent((LinkEnterEvent) o);
+			if (o instanceof TeleportationArrivalEvent) this.legsDelegate.handleEvent((TeleportationArrivalEvent) o);
+			if (o instanceof TransitDriverStartsEvent) this.legsDelegate.handleEvent((TransitDriverStartsEvent) o);
+			if (o instanceof PersonEntersVehicleEvent) this.legsDelegate.handleEvent((PersonEntersVehicleEvent) o);
+			if (o instanceof VehicleArrivesAtFacilityEvent) this.legsDelegate.handleEvent((VehicleArrivesAtFacilityEvent) o);
+			if (o instanceof VehicleEntersTrafficEvent) this.legsDelegate.handleEvent((VehicleEntersTrafficEvent) o);
+			if (o instanceof VehicleLeavesTrafficEvent) this.legsDelegate.handleEvent((VehicleLeavesTrafficEvent) o);
+		}
+
+		private void handleActivityStart(ActivityStartEvent event) {
+			this.actsDelegate.handleEvent(event);
+			if (!StageActivityTypeIdentifier.isStageActivity( event.getActType() ) ) {
+				callTripScoring(event);
+			}
+		}
 	}
 
 }
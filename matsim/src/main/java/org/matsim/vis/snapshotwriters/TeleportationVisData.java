@@ -101,6 +101,14 @@ public class TeleportationVisData implements AgentSnapshotInfo {
 		throw new RuntimeException("not yet implemented!");
 	}
 
+	public double getStartTime() {
+		return this.starttime;
+	}
+
+	public double getTravelTime() {
+		return this.travelTime;
+	}
+
 	public final void updatePosition(double time) {
 		double frac = (time - starttime) / travelTime;
 		this.currentX = (1. - frac) * this.startX + frac * this.endX + 0.1 * (intX - offset / 2.);
@@ -385,6 +385,46 @@ public class SwissRailRaptorTreeTest {
         Assert.assertNull(stage5.line); // egress_walk
     }
 
+    @Test
+    public void testMultipleDepartureTimes_optimized() {
+        Fixture f = new Fixture();
+        f.init();
+
+        RaptorStaticConfig config = RaptorUtils.createStaticConfig(f.config);
+        config.setOptimization(RaptorStaticConfig.RaptorOptimization.OneToAllRouting);
+        SwissRailRaptorData data = SwissRailRaptorData.create(f.scenario.getTransitSchedule(), null, config, f.scenario.getNetwork(), null);
+        SwissRailRaptor raptor = new SwissRailRaptor.Builder(data, f.scenario.getConfig()).build();
+
+        RaptorParameters raptorParams = RaptorUtils.createParameters(f.config);
+
+        TransitStopFacility fromStop = f.schedule.getFacilities().get(Id.create(23, TransitStopFacility.class));
+        List<TransitStopFacility> fromStops = new ArrayList<>();
+        fromStops.add(fromStop);
+        double earliestDepTime = 7*3600 + 30*60;
+        double stepSize = 5*60;
+        List<Map<Id<TransitStopFacility>, TravelInfo>> trees = raptor.calcTrees(fromStops, earliestDepTime, stepSize, 7, raptorParams, null);
+
+        Assert.assertEquals("wrong number of trees.", 7, trees.size());
+
+        // every tree must be the same as the one of a separate tree query for its departure time
+        for (int i = 0; i < trees.size(); i++) {
+            double depTime = earliestDepTime + i * stepSize;
+            Map<Id<TransitStopFacility>, TravelInfo> expected = raptor.calcTree(fromStop, depTime, raptorParams, null);
+            Map<Id<TransitStopFacility>, TravelInfo> actual = trees.get(i);
+            Assert.assertEquals("wrong number of reached stops at " + Time.writeTime(depTime), expected.size(), actual.size());
+            for (Map.Entry<Id<TransitStopFacility>, TravelInfo> e : expected.entrySet()) {
+                TravelInfo expectedInfo = e.getValue();
+                TravelInfo actualInfo = actual.get(e.getKey());
+                String message = "stop " + e.getKey() + " at " + Time.writeTime(depTime);
+                Assert.assertNotNull(message, actualInfo);
+                Assert.assertEquals(message, expectedInfo.ptDepartureTime, actualInfo.ptDepartureTime, 0.0);
+                Assert.assertEquals(message, expectedInfo.ptArrivalTime, actualInfo.ptArrivalTime, 0.0);
+                Assert.assertEquals(message, expectedInfo.travelCost, actualInfo.travelCost, 1e-7);
+                Assert.assertEquals(message, expectedInfo.waitingTime, actualInfo.waitingTime, 1e-7);
+            }
+        }
+    }
+
     private void assertTravelInfo(Map<Id<TransitStopFacility>, TravelInfo> map, int stopId, String expectedDepartureStop, int expectedTransfers, String expectedDepartureTime, String expectedArrivalTime) {
         TravelInfo info = map.get(Id.create(stopId, TransitStopFacility.class));
         Assert.assertNotNull("Stop " + stopId + " is not reachable.", info);
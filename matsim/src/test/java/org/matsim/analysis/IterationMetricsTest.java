@@ -0,0 +1,123 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class IterationMetricsTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testSnapshotAndReset() {
+		IterationMetrics metrics = new IterationMetrics();
+		metrics.beginIteration(3);
+		metrics.counter("events.count").add(5);
+		metrics.timer("router.car").record(2_000_000_000L);
+		metrics.timer("router.car").record(1_000_000_000L);
+		IterationMetrics.Histogram histogram = metrics.histogram("tripLength", 1, 10);
+		histogram.record(0.5);
+		histogram.record(5);
+		histogram.record(50);
+		metrics.gauge("qsim.agents").set(42);
+		metrics.endIteration();
+
+		assertThat(metrics.getLastSnapshot())
+				.containsEntry("events.count", 5.)
+				.containsEntry("router.car.count", 2.)
+				.containsEntry("router.car.seconds", 3.)
+				.containsEntry("router.car.maxSeconds", 2.)
+				.containsEntry("tripLength.le.1.0", 1.)
+				.containsEntry("tripLength.le.10.0", 2.)
+				.containsEntry("tripLength.count", 3.)
+				.containsEntry("tripLength.sum", 55.5)
+				.containsEntry("qsim.agents", 42.)
+				.containsKeys(IterationMetrics.JVM_HEAP_USED, IterationMetrics.JVM_GC_TIME);
+
+		// counters, timers and histograms start from scratch, gauges keep their value
+		metrics.beginIteration(4);
+		assertThat(metrics.snapshot())
+				.containsEntry("events.count", 0.)
+				.containsEntry("router.car.count", 0.)
+				.containsEntry("tripLength.count", 0.)
+				.containsEntry("qsim.agents", 42.);
+		// the last snapshot is kept until the end of the next iteration
+		assertThat(metrics.getLastSnapshot()).containsEntry("events.count", 5.);
+	}
+
+	@Test
+	public void testTypeMismatch() {
+		IterationMetrics metrics = new IterationMetrics();
+		metrics.counter("x");
+		assertThat(metrics.counter("x")).isSameAs(metrics.counter("x"));
+		assertThatThrownBy(() -> metrics.timer("x")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> metrics.gauge("x", () -> 1.)).isInstanceOf(IllegalArgumentException.class);
+		assertThat(metrics.snapshot()).containsEntry("x", 0.);
+	}
+
+	@Test
+	public void testPrometheusFormat() throws IOException {
+		IterationMetrics metrics = new IterationMetrics();
+		metrics.beginIteration(7);
+		metrics.counter("events.count").add(3);
+		metrics.timer("replanning.BestScore_ReRoute").record(500_000_000L);
+
+		StringBuilder text = new StringBuilder();
+		metrics.writePrometheus(text);
+		assertThat(text.toString().split("\n")).contains(
+				"matsim_iteration 7",
+				"# TYPE matsim_events_count_total counter",
+				"matsim_events_count_total 3",
+				"matsim_replanning_BestScore_ReRoute_seconds_count 1",
+				"matsim_replanning_BestScore_ReRoute_seconds_sum 0.5");
+	}
+
+	@Test
+	public void testWriteFiles() throws IOException {
+		IterationMetrics metrics = new IterationMetrics();
+		String csv = utils.getOutputDirectory() + "metrics.csv";
+		for (int iteration = 0; iteration < 2; iteration++) {
+			metrics.beginIteration(iteration);
+			metrics.counter("events.count").add(10 + iteration);
+			metrics.endIteration();
+			metrics.appendCsv(csv);
+		}
+		metrics.writeJson(utils.getOutputDirectory() + "metrics.json");
+
+		List<String> lines = Files.readAllLines(Path.of(csv));
+		assertThat(lines.get(0)).isEqualTo("iteration;metric;value");
+		assertThat(lines).contains("0;events.count;10.0", "1;events.count;11.0");
+		assertThat(Files.readString(Path.of(utils.getOutputDirectory() + "metrics.json")))
+				.contains("\"iteration\" : 1")
+				.contains("\"events.count\" : 11.0");
+	}
+
+}
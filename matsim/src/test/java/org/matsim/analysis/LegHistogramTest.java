@@ -181,4 +181,22 @@ public class LegHistogramTest {
 		assertEquals("After reset, there should be 0 known leg-modes", 0, modes.size());
 		assertFalse(modes.contains(TransportMode.car));
 	}
+
+	@Test public void testSnapshotIsIndependent() {
+		Id<Person> personId = Id.create(1, Person.class);
+		Id<Link> linkId = Id.create(1, Link.class);
+
+		LegHistogram histo = new LegHistogram(5*60);
+		histo.reset(3);
+		histo.handleEvent(new PersonDepartureEvent(7*3600, personId, linkId, TransportMode.car, TransportMode.car));
+
+		LegHistogram snapshot = histo.createSnapshot();
+		histo.handleEvent(new PersonArrivalEvent(7*3600 + 6*60, personId, linkId, TransportMode.car));
+		histo.reset(4);
+
+		assertEquals(3, snapshot.getIteration());
+		assertEquals(1, snapshot.getDepartures(TransportMode.car)[7*12]);
+		assertEquals(0, snapshot.getArrivals(TransportMode.car)[7*12 + 1]);
+		assertEquals(0, histo.getLegModes().size());
+	}
 }
@@ -0,0 +1,115 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+public class LinkVolumeCounterTest {
+
+	@Test
+	public void testCounts() {
+		Id<Link> link1 = Id.createLinkId("LinkVolumeCounterTest_1");
+		Id<Link> link2 = Id.createLinkId("LinkVolumeCounterTest_2");
+		Id<Link> link3 = Id.createLinkId("LinkVolumeCounterTest_3");
+
+		LinkVolumeCounter counter = new LinkVolumeCounter(4);
+		int car = counter.getModeIndex("car");
+		int bike = counter.getModeIndex("bike");
+		assertThat(counter.getModeIndex("car")).isEqualTo(car);
+
+		counter.increment(link1, car, 0);
+		counter.increment(link1, car, 0);
+		counter.increment(link1, bike, 3);
+		counter.increment(link2, LinkVolumeCounter.NO_MODE, 1);
+
+		assertThat(counter.getVolumes(link1, LinkVolumeCounter.NO_MODE)).containsExactly(2, 0, 0, 1);
+		assertThat(counter.getVolumes(link1, car)).containsExactly(2, 0, 0, 0);
+		assertThat(counter.getVolumes(link1, "bike")).containsExactly(0, 0, 0, 1);
+		assertThat(counter.getVolumes(link2, LinkVolumeCounter.NO_MODE)).containsExactly(0, 1, 0, 0);
+		assertThat(counter.getVolumes(link2, car)).isNull();
+		assertThat(counter.getVolumes(link3, LinkVolumeCounter.NO_MODE)).isNull();
+		assertThat(counter.getVolumes(link1, "walk")).isNull();
+		assertThat(counter.get(link1, car, 0)).isEqualTo(2);
+		assertThat(counter.get(link3, car, 0)).isZero();
+
+		int[] volumes = {7, 7, 7, 7};
+		assertThat(counter.getVolumes(link1, car, volumes)).isTrue();
+		assertThat(volumes).containsExactly(2, 0, 0, 0);
+		assertThat(counter.getVolumes(link3, car, volumes)).isFalse();
+		assertThat(volumes).containsExactly(0, 0, 0, 0);
+
+		counter.getModeIndex("walk");
+		assertThat(counter.getModes()).containsExactly("bike", "car");
+		assertThat(counter.getLinkIds()).containsExactlyInAnyOrder(link1, link2);
+
+		counter.clear();
+		assertThat(counter.getVolumes(link1, LinkVolumeCounter.NO_MODE)).isNull();
+		assertThat(counter.getModes()).isEmpty();
+		assertThat(counter.getLinkIds()).isEmpty();
+	}
+
+	@Test
+	public void testConcurrentIncrements() throws Exception {
+		// enough links to need several chunks, which are allocated concurrently
+		List<Id<Link>> linkIds = new ArrayList<>();
+		for (int i = 0; i < 3 * LinkVolumeCounter.CHUNK_SIZE; i++) {
+			linkIds.add(Id.createLinkId("LinkVolumeCounterTest_concurrent_" + i));
+		}
+
+		LinkVolumeCounter counter = new LinkVolumeCounter(2, true);
+		int threads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(() -> {
+					int mode = counter.getModeIndex("car");
+					for (int round = 0; round < 10; round++) {
+						for (Id<Link> linkId : linkIds) {
+							counter.increment(linkId, mode, round % 2);
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		for (Id<Link> linkId : linkIds) {
+			assertThat(counter.getVolumes(linkId, LinkVolumeCounter.NO_MODE)).containsExactly(5 * threads, 5 * threads);
+			assertThat(counter.getVolumes(linkId, "car")).containsExactly(5 * threads, 5 * threads);
+		}
+		assertThat(counter.getLinkIds()).hasSize(linkIds.size());
+	}
+
+}
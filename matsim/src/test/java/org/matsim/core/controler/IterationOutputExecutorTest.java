@@ -0,0 +1,97 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.controler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class IterationOutputExecutorTest {
+
+	@Test
+	public void testSynchronous() {
+		IterationOutputExecutor executor = new IterationOutputExecutor(0);
+		assertThat(executor.isAsync()).isFalse();
+		Thread[] thread = new Thread[1];
+		executor.execute("test", () -> thread[0] = Thread.currentThread());
+		assertThat(thread[0]).isSameAs(Thread.currentThread());
+	}
+
+	@Test
+	public void testOrderAndCompletion() {
+		IterationOutputExecutor executor = new IterationOutputExecutor(2);
+		assertThat(executor.isAsync()).isTrue();
+		List<Integer> done = Collections.synchronizedList(new ArrayList<>());
+		for (int i = 0; i < 10; i++) {
+			int task = i;
+			executor.execute("task " + i, () -> done.add(task));
+		}
+		executor.notifyShutdown(null);
+		assertThat(done).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+	}
+
+	@Test
+	public void testBacklogIsBounded() throws InterruptedException {
+		IterationOutputExecutor executor = new IterationOutputExecutor(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger submitted = new AtomicInteger();
+		executor.execute("blocking", () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		Thread submitter = new Thread(() -> {
+			executor.execute("second", () -> {});
+			submitted.incrementAndGet();
+		});
+		submitter.start();
+		submitter.join(200);
+		assertThat(submitted.get()).as("submitting must wait while the backlog is full").isZero();
+
+		release.countDown();
+		submitter.join(TimeUnit.SECONDS.toMillis(10));
+		assertThat(submitted.get()).isEqualTo(1);
+		executor.awaitCompletion();
+	}
+
+	@Test
+	public void testFailureIsRethrown() {
+		IterationOutputExecutor executor = new IterationOutputExecutor(3);
+		executor.execute("broken output", () -> {
+			throw new IllegalStateException("disk full");
+		});
+		executor.execute("fine output", () -> {});
+		assertThatThrownBy(() -> executor.notifyShutdown(null))
+				.hasMessageContaining("broken output")
+				.hasRootCauseInstanceOf(IllegalStateException.class);
+	}
+
+}
@@ -0,0 +1,93 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class QSimCheckpointIOTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testWriteRead() {
+		QSimCheckpoint checkpoint = new QSimCheckpoint(8 * 3600., 2, 1);
+		checkpoint.addAgent(new QSimCheckpoint.AgentState(Id.create("1", Person.class), MobsimAgent.State.LEG,
+				Id.create("l1", Link.class), Double.POSITIVE_INFINITY, 1, 3, Id.create("1", Vehicle.class)));
+		checkpoint.addAgent(new QSimCheckpoint.AgentState(Id.create("2", Person.class), MobsimAgent.State.ACTIVITY,
+				null, 9 * 3600., 0, 0, null));
+		checkpoint.addVehicle(new QSimCheckpoint.VehicleState(Id.create("1", Vehicle.class), Id.create("l1", Link.class),
+				Id.create("1", Person.class), 8 * 3600. + 17, 8 * 3600. - 50));
+		checkpoint.addVehicle(new QSimCheckpoint.VehicleState(Id.create("2", Vehicle.class), Id.create("l1", Link.class),
+				null, Double.NEGATIVE_INFINITY, Double.NaN));
+		checkpoint.putSection("engine1", new byte[] { 1, 2, 3 });
+		checkpoint.putSection("engine2", new byte[0]);
+
+		String filename = utils.getOutputDirectory() + "checkpoint.bin.gz";
+		QSimCheckpointIO.write(checkpoint, filename);
+		QSimCheckpoint read = QSimCheckpointIO.read(filename);
+
+		Assert.assertEquals(8 * 3600., read.getTime(), 0.);
+		Assert.assertEquals(2, read.getLivingAgents());
+		Assert.assertEquals(1, read.getLostAgents());
+		Assert.assertEquals(2, read.getAgents().size());
+		Assert.assertEquals(2, read.getVehicles().size());
+
+		QSimCheckpoint.AgentState agent1 = read.getAgents().get(0);
+		Assert.assertEquals(Id.create("1", Person.class), agent1.getPersonId());
+		Assert.assertEquals(MobsimAgent.State.LEG, agent1.getState());
+		Assert.assertEquals(Id.create("l1", Link.class), agent1.getCurrentLinkId());
+		Assert.assertEquals(Double.POSITIVE_INFINITY, agent1.getActivityEndTime(), 0.);
+		Assert.assertEquals(1, agent1.getCurrentPlanElementIndex());
+		Assert.assertEquals(3, agent1.getCurrentLinkIndex());
+		Assert.assertEquals(Id.create("1", Vehicle.class), agent1.getVehicleId());
+
+		QSimCheckpoint.AgentState agent2 = read.getAgents().get(1);
+		Assert.assertNull(agent2.getCurrentLinkId());
+		Assert.assertEquals(9 * 3600., agent2.getActivityEndTime(), 0.);
+		Assert.assertEquals(0, agent2.getCurrentPlanElementIndex());
+		Assert.assertNull(agent2.getVehicleId());
+
+		QSimCheckpoint.VehicleState vehicle1 = read.getVehicles().get(0);
+		Assert.assertEquals(Id.create("1", Vehicle.class), vehicle1.getVehicleId());
+		Assert.assertEquals(Id.create("1", Person.class), vehicle1.getDriverId());
+		Assert.assertEquals(8 * 3600. + 17, vehicle1.getEarliestLinkExitTime(), 0.);
+		Assert.assertEquals(8 * 3600. - 50, vehicle1.getLinkEnterTime(), 0.);
+		Assert.assertNull(read.getVehicles().get(1).getDriverId());
+		Assert.assertTrue(Double.isNaN(read.getVehicles().get(1).getLinkEnterTime()));
+
+		Assert.assertEquals(List.of("engine1", "engine2"), new ArrayList<>(read.getSections().keySet()));
+		Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, read.getSection("engine1"));
+		Assert.assertEquals(0, read.getSection("engine2").length);
+		Assert.assertNull(read.getSection("engine3"));
+	}
+
+}
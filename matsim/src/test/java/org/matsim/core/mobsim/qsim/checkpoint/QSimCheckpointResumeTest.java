@@ -0,0 +1,119 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.qsim.checkpoint;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.TeleportationArrivalEvent;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.core.mobsim.qsim.qnetsimengine.MergeBottleneckFixture;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+/**
+ * Resumes a QSim from a checkpoint written in the middle of a congested scenario ({@link MergeBottleneckFixture}, plus
+ * teleported legs), and compares the events after the checkpoint with those of the uninterrupted run.
+ */
+public class QSimCheckpointResumeTest {
+
+	private static final double CHECKPOINT_TIME = 7.5 * 3600;
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@After
+	public void resetRandom() {
+		MatsimRandom.setRestorable(false);
+		MatsimRandom.reset();
+	}
+
+	@Test
+	public void testResumedRunHasSameEvents() {
+		Config config = createConfig();
+		config.qsim().setCheckpointTimes(List.of(CHECKPOINT_TIME));
+		List<Event> uninterruptedEvents = runQSim(config);
+
+		String checkpointFile = utils.getOutputDirectory() + "/checkpoints/it.0.qsimCheckpoint." + (long) CHECKPOINT_TIME + ".bin.gz";
+		Assert.assertTrue("no checkpoint was written", new File(checkpointFile).exists());
+
+		Config resumeConfig = createConfig();
+		resumeConfig.qsim().setCheckpointToRestore(checkpointFile);
+		List<Event> resumedEvents = runQSim(resumeConfig);
+
+		List<String> expected = uninterruptedEvents.stream().filter(e -> e.getTime() >= CHECKPOINT_TIME).map(Event::toString)
+				.collect(Collectors.toList());
+		List<String> actual = resumedEvents.stream().map(Event::toString).collect(Collectors.toList());
+
+		// make sure that the checkpoint is taken while vehicles queue, and agents are teleported:
+		Assert.assertTrue(uninterruptedEvents.stream().anyMatch(e -> e.getTime() < CHECKPOINT_TIME));
+		Assert.assertTrue(resumedEvents.stream()
+				.anyMatch(e -> e instanceof TeleportationArrivalEvent && e.getTime() > CHECKPOINT_TIME));
+
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals("event " + i + " differs", expected.get(i), actual.get(i));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRandomNotRestorableByDefault() throws IOException {
+		MatsimRandom.reset();
+		MatsimRandom.writeState(MatsimRandom.getRandom(), new DataOutputStream(OutputStream.nullOutputStream()));
+	}
+
+	private List<Event> runQSim(Config config) {
+		// standalone QSims have to switch this on themselves, the controler does it if checkpoints are configured:
+		MatsimRandom.setRestorable(QSimCheckpointModule.isConfigured(config));
+		MatsimRandom.reset();
+		Scenario scenario = MergeBottleneckFixture.createScenario(config, true);
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		new QSimBuilder(config).useDefaults().build(scenario, events).run();
+		events.finishProcessing();
+		return new ArrayList<>(collector.getEvents());
+	}
+
+	private Config createConfig() {
+		Config config = MergeBottleneckFixture.createConfig();
+		config.controler().setOutputDirectory(utils.getOutputDirectory());
+		return config;
+	}
+
+}
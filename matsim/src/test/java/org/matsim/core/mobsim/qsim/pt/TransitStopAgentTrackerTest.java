@@ -22,6 +22,9 @@ package org.matsim.core.mobsim.qsim.pt;
 
 import static org.junit.Assert.*;
 
+import java.util.Iterator;
+import java.util.List;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.junit.Test;
@@ -116,4 +119,43 @@ public class TransitStopAgentTrackerTest {
 			log.info("catched expected exception.", e);
 		}
 	}
+
+	@Test public void testRemoveWhileIterating() {
+		EventsManager events = EventsUtils.createEventsManager();
+		TransitStopAgentTracker tracker = new TransitStopAgentTracker(events);
+		TransitScheduleFactory builder = new TransitScheduleFactoryImpl();
+		PTPassengerAgent agent1 = new FakeAgent(null, null);
+		PTPassengerAgent agent2 = new FakeAgent(null, null);
+		PTPassengerAgent agent3 = new FakeAgent(null, null);
+		TransitStopFacility stop1 = builder.createTransitStopFacility(Id.create(1, TransitStopFacility.class), new Coord((double) 2, (double) 3), false);
+
+		tracker.addAgentToStop(10, agent1, stop1.getId());
+		tracker.addAgentToStop(10, agent2, stop1.getId());
+		tracker.addAgentToStop(10, agent3, stop1.getId());
+		List<PTPassengerAgent> agents = tracker.getAgentsAtStop().get(stop1.getId());
+
+		// removing through the tracker while iterating does not disturb the iteration
+		int count = 0;
+		for (PTPassengerAgent agent : agents) {
+			tracker.removeAgentFromStop(agent, stop1.getId());
+			count++;
+		}
+		assertEquals(3, count);
+		assertEquals(0, agents.size());
+
+		tracker.addAgentToStop(10, agent1, stop1.getId());
+		tracker.addAgentToStop(10, agent2, stop1.getId());
+		tracker.addAgentToStop(10, agent3, stop1.getId());
+
+		// removing through the iterator removes the agent from the stop
+		Iterator<PTPassengerAgent> iterator = agents.iterator();
+		assertSame(agent1, iterator.next());
+		iterator.remove();
+		assertEquals(2, agents.size());
+		assertFalse(agents.contains(agent1));
+
+		assertTrue(agents.removeIf(agent -> agent == agent3));
+		assertEquals(1, agents.size());
+		assertSame(agent2, agents.get(0));
+	}
 }
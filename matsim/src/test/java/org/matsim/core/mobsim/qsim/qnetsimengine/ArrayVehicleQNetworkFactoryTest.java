@@ -0,0 +1,83 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.qsim.AbstractQSimModule;
+import org.matsim.core.mobsim.qsim.QSimBuilder;
+import org.matsim.testcases.utils.EventsCollector;
+
+/**
+ * Compares the events of a congested scenario (a merge in front of a bottleneck with spill-back) between the default network
+ * factory and {@link ArrayVehicleQNetworkFactory}, see {@link MergeBottleneckFixture}.
+ */
+public class ArrayVehicleQNetworkFactoryTest {
+
+	@Test
+	public void testSameEventsAsDefaultFactory() {
+		List<Event> defaultEvents = runQSim(false);
+		List<Event> arrayEvents = runQSim(true);
+
+		// make sure that the scenario is actually congested, i.e. vehicles queue in front of the bottleneck:
+		double lastLeaveOfBottleneck = defaultEvents.stream()
+				.filter(e -> e instanceof LinkLeaveEvent && ((LinkLeaveEvent) e).getLinkId().toString().equals("bottleneck"))
+				.mapToDouble(Event::getTime).max().orElse(0);
+		Assert.assertTrue("scenario is not congested", lastLeaveOfBottleneck > 7 * 3600 + 1800);
+
+		Assert.assertEquals(defaultEvents.size(), arrayEvents.size());
+		for (int i = 0; i < defaultEvents.size(); i++) {
+			Assert.assertEquals("event " + i + " differs", defaultEvents.get(i).toString(), arrayEvents.get(i).toString());
+		}
+	}
+
+	private static List<Event> runQSim(boolean useArrayVehicleQ) {
+		Scenario scenario = MergeBottleneckFixture.createScenario(MergeBottleneckFixture.createConfig(), false);
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		QSimBuilder builder = new QSimBuilder(scenario.getConfig()).useDefaults();
+		if (useArrayVehicleQ) {
+			builder.addOverridingQSimModule(new AbstractQSimModule() {
+				@Override
+				protected void configureQSim() {
+					bind(QNetworkFactory.class).to(ArrayVehicleQNetworkFactory.class);
+				}
+			});
+		}
+		builder.build(scenario, events).run();
+		events.finishProcessing();
+		return new ArrayList<>(collector.getEvents());
+	}
+
+}
@@ -0,0 +1,127 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+
+/**
+ * A congested scenario for comparing the events of QSim variants: 600 agents leave home between 07:00 and 07:20, two thirds on the
+ * main road and one third on a ramp, which merge in front of a short and narrow bottleneck.  The queue spills back onto both
+ * approaches.
+ */
+public final class MergeBottleneckFixture {
+
+	private MergeBottleneckFixture() {
+	}
+
+	/**
+	 * @return a config in which vehicles wait in the queue rather than being pushed over the bottleneck
+	 */
+	public static Config createConfig() {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setEndTime(24 * 3600);
+		config.qsim().setStuckTime(24 * 3600);
+		return config;
+	}
+
+	/**
+	 * @param withTeleportedLegs if <code>true</code>, every fifth agent walks (teleported) instead of driving
+	 */
+	public static Scenario createScenario(Config config, boolean withTeleportedLegs) {
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		NetworkFactory nf = network.getFactory();
+		Node n0 = nf.createNode(Id.createNodeId(0), new Coord(0, 0));
+		Node n1 = nf.createNode(Id.createNodeId(1), new Coord(1000, 0));
+		Node n2 = nf.createNode(Id.createNodeId(2), new Coord(2000, 0));
+		Node n3 = nf.createNode(Id.createNodeId(3), new Coord(2200, 0));
+		Node n4 = nf.createNode(Id.createNodeId(4), new Coord(3200, 0));
+		Node side = nf.createNode(Id.createNodeId("side"), new Coord(1000, 1000));
+		for (Node node : new Node[] { n0, n1, n2, n3, n4, side }) {
+			network.addNode(node);
+		}
+		addLink(network, "start", n0, n1, 1000, 3600);
+		addLink(network, "main", n1, n2, 1000, 3600);
+		addLink(network, "ramp", side, n2, 1000, 1800);
+		// short and narrow, so the queue spills back onto both approaches:
+		addLink(network, "bottleneck", n2, n3, 200, 600);
+		addLink(network, "end", n3, n4, 1000, 3600);
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int i = 0; i < 600; i++) {
+			boolean viaRamp = i % 3 == 0;
+			Person person = pf.createPerson(Id.createPersonId(i));
+			Plan plan = pf.createPlan();
+			Id<Link> homeLinkId = Id.createLinkId(viaRamp ? "ramp" : "start");
+			Activity home = pf.createActivityFromLinkId("h", homeLinkId);
+			home.setEndTime(7 * 3600 + 2 * i);
+			plan.addActivity(home);
+			if (withTeleportedLegs && i % 5 == 0) {
+				Leg leg = pf.createLeg(TransportMode.walk);
+				Route route = RouteUtils.createGenericRouteImpl(homeLinkId, Id.createLinkId("end"));
+				route.setTravelTime(1200);
+				route.setDistance(2000);
+				leg.setRoute(route);
+				leg.setTravelTime(1200);
+				plan.addLeg(leg);
+			} else {
+				Leg leg = pf.createLeg(TransportMode.car);
+				leg.setRoute(viaRamp
+						? RouteUtils.createLinkNetworkRouteImpl(homeLinkId, new Id[] { Id.createLinkId("bottleneck") }, Id.createLinkId("end"))
+						: RouteUtils.createLinkNetworkRouteImpl(homeLinkId,
+								new Id[] { Id.createLinkId("main"), Id.createLinkId("bottleneck") }, Id.createLinkId("end")));
+				plan.addLeg(leg);
+			}
+			plan.addActivity(pf.createActivityFromLinkId("w", Id.createLinkId("end")));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		return scenario;
+	}
+
+	private static void addLink(Network network, String id, Node from, Node to, double length, double capacity) {
+		Link link = network.getFactory().createLink(Id.createLinkId(id), from, to);
+		link.setLength(length);
+		link.setFreespeed(15);
+		link.setCapacity(capacity);
+		link.setNumberOfLanes(1);
+		network.addLink(link);
+	}
+
+}
@@ -0,0 +1,104 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2022 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicleImpl;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleUtils;
+
+public class ArrayVehicleQTest {
+
+	private static QVehicle createVehicle(int id, double earliestLinkExitTime) {
+		QVehicle veh = new QVehicleImpl(VehicleUtils.createVehicle(Id.create(id, Vehicle.class), VehicleUtils.getDefaultVehicleType()));
+		veh.setEarliestLinkExitTime(earliestLinkExitTime);
+		return veh;
+	}
+
+	@Test
+	public void testBehavesLikeFIFOVehicleQ() {
+		ArrayVehicleQ arrayQ = new ArrayVehicleQ();
+		FIFOVehicleQ fifoQ = new FIFOVehicleQ();
+
+		// more than the initial capacity, and interleaved with polls so that the ring buffer wraps around:
+		for (int i = 0; i < 50; i++) {
+			QVehicle veh = createVehicle(i, i);
+			arrayQ.add(veh);
+			fifoQ.add(veh);
+			if (i % 3 == 0) {
+				Assert.assertSame(fifoQ.poll(), arrayQ.poll());
+			}
+			if (i % 7 == 0) {
+				QVehicle first = createVehicle(1000 + i, 0.);
+				arrayQ.addFirst(first);
+				fifoQ.addFirst(first);
+			}
+		}
+		Assert.assertEquals(fifoQ.size(), arrayQ.size());
+		Assert.assertEquals(new ArrayList<>(fifoQ), new ArrayList<>(arrayQ));
+
+		while (!fifoQ.isEmpty()) {
+			Assert.assertEquals(fifoQ.peek().getEarliestLinkExitTime(), arrayQ.peekEarliestLinkExitTime(), 0.);
+			Assert.assertSame(fifoQ.poll(), arrayQ.poll());
+		}
+		Assert.assertNull(arrayQ.peek());
+		Assert.assertNull(arrayQ.poll());
+		Assert.assertEquals(Double.POSITIVE_INFINITY, arrayQ.peekEarliestLinkExitTime(), 0.);
+	}
+
+	@Test
+	public void testRemove() {
+		ArrayVehicleQ arrayQ = new ArrayVehicleQ();
+		List<QVehicle> expected = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			QVehicle veh = createVehicle(i, 10. * i);
+			arrayQ.add(veh);
+			expected.add(veh);
+		}
+
+		Assert.assertTrue(arrayQ.remove(expected.get(0)));
+		Assert.assertTrue(arrayQ.remove(expected.get(5)));
+		Assert.assertFalse(arrayQ.remove(createVehicle(99, 0.)));
+		expected.remove(5);
+		expected.remove(0);
+		Assert.assertEquals(expected, new ArrayList<>(arrayQ));
+		Assert.assertEquals(10., arrayQ.peekEarliestLinkExitTime(), 0.);
+
+		Iterator<QVehicle> it = arrayQ.iterator();
+		while (it.hasNext()) {
+			if (it.next().getId().toString().equals("7")) {
+				it.remove();
+			}
+		}
+		expected.removeIf(veh -> veh.getId().toString().equals("7"));
+		Assert.assertEquals(expected, new ArrayList<>(arrayQ));
+
+		arrayQ.clear();
+		Assert.assertTrue(arrayQ.isEmpty());
+	}
+
+}
@@ -22,6 +22,7 @@ package org.matsim.core.replanning;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.matsim.analysis.IterationMetrics;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.HasPlansAndId;
 import org.matsim.api.core.v01.population.Person;
@@ -29,15 +30,20 @@ import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.api.core.v01.replanning.PlanStrategyModule;
 import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.config.groups.StrategyConfigGroup;
 import org.matsim.core.gbl.MatsimRandom;
 import org.matsim.core.population.PersonUtils;
 import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.replanning.choosers.WeightedStrategyChooser;
 import org.matsim.core.replanning.selectors.BestPlanSelector;
 import org.matsim.core.replanning.selectors.PlanSelector;
 import org.matsim.core.replanning.selectors.RandomPlanSelector;
 import org.matsim.core.scenario.ScenarioUtils;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
@@ -372,6 +378,32 @@ public class StrategyManagerTest {
 		Assert.assertEquals(1.0, weights.get(2), 1e-8);
 	}
 	
+	@Test
+	public void testIterationMetricsUseStrategyNames() {
+		Population population = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getPopulation();
+		for (int i = 0; i < 10; i++) {
+			population.addPerson(PopulationUtils.getFactory().createPerson(Id.create(i, Person.class)));
+		}
+
+		Map<StrategyConfigGroup.StrategySettings, PlanStrategy> planStrategies = new LinkedHashMap<>();
+		planStrategies.put(new StrategyConfigGroup.StrategySettings().setStrategyName("BestScore").setWeight(1.0),
+				new PlanStrategyImpl(new BestPlanSelector<>()));
+		StrategyManager manager = new StrategyManager(new StrategyConfigGroup(), new ControlerConfigGroup(),
+				new WeightedStrategyChooser<>(), planStrategies);
+		// strategies added without settings are recorded under their class name
+		manager.addStrategy(new PlanStrategyImpl(new RandomPlanSelector<>()), null, 0.0);
+
+		IterationMetrics metrics = new IterationMetrics();
+		manager.setIterationMetrics(metrics);
+		metrics.beginIteration(1);
+		manager.run(population, 1, null);
+
+		Map<String, Double> snapshot = metrics.snapshot();
+		Assert.assertEquals(10.0, snapshot.get("replanning.BestScore.persons"), 1e-8);
+		Assert.assertEquals(1.0, snapshot.get("replanning.BestScore.count"), 1e-8);
+		Assert.assertEquals(0.0, snapshot.get("replanning.PlanStrategyImpl.persons"), 1e-8);
+	}
+
 	/**
 	 * A simple extension to the PlanStrategy which counts how often it was
 	 * called.
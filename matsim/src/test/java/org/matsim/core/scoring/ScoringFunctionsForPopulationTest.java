@@ -37,12 +37,21 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.api.core.v01.population.PopulationFactory;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.controler.ControlerListenerManagerImpl;
 import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.router.TripStructureUtils;
 import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.scoring.functions.CharyparNagelScoringFunctionFactory;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * @author mrieser / Simunto GmbH
@@ -135,12 +144,103 @@ public class ScoringFunctionsForPopulationTest {
 		Assert.assertEquals(1.234+2.345, rsf.separateScoreSum, 1e-7);
 	}
 
+	@Test
+	public void testFinishInParallel() {
+		Config config = ConfigUtils.createConfig();
+		config.planCalcScore().setNumberOfScoringThreads(4);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Population population = scenario.getPopulation();
+		for (int i = 0; i < 1000; i++) {
+			population.addPerson(population.getFactory().createPerson(Id.create(i, Person.class)));
+		}
+
+		ControlerListenerManagerImpl controlerListenerManager = new ControlerListenerManagerImpl();
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		ScoringFunctionFactory scoringFunctionFactory = person -> new RecordingScoringFunction(Integer.parseInt(person.getId().toString()));
+
+		ScoringFunctionsForPopulation sf = new ScoringFunctionsForPopulation(controlerListenerManager, eventsManager, new EventsToActivities(), new EventsToLegs(scenario), population, scoringFunctionFactory, config);
+		controlerListenerManager.fireControlerIterationStartsEvent(0, false);
+		sf.finishScoringFunctions();
+
+		for (Person person : population.getPersons().values()) {
+			Assert.assertEquals(Integer.parseInt(person.getId().toString()), sf.getScoringFunctionForAgent(person.getId()).getScore(), 0.0);
+		}
+	}
+
+	@Test
+	public void testFinishInParallelRethrowsException() {
+		Config config = ConfigUtils.createConfig();
+		config.planCalcScore().setNumberOfScoringThreads(4);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Population population = scenario.getPopulation();
+		for (int i = 0; i < 100; i++) {
+			population.addPerson(population.getFactory().createPerson(Id.create(i, Person.class)));
+		}
+
+		ControlerListenerManagerImpl controlerListenerManager = new ControlerListenerManagerImpl();
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		ScoringFunctionFactory scoringFunctionFactory = person -> new RecordingScoringFunction(person.getId().toString().equals("42") ? -1 : 0);
+
+		ScoringFunctionsForPopulation sf = new ScoringFunctionsForPopulation(controlerListenerManager, eventsManager, new EventsToActivities(), new EventsToLegs(scenario), population, scoringFunctionFactory, config);
+		controlerListenerManager.fireControlerIterationStartsEvent(0, false);
+		try {
+			sf.finishScoringFunctions();
+			Assert.fail("expected the exception of the scoring function to be rethrown.");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("negative score", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testSameScoresWithSeveralScoringThreads() {
+		URL scenarioUrl = ExamplesUtils.getTestScenarioURL("equil");
+		String eventsFile = IOUtils.extendUrl(scenarioUrl, "output_events.xml.gz").toString();
+		Map<Id<Person>, Double> expected = scoreEvents(scenarioUrl, eventsFile, 1);
+		Map<Id<Person>, Double> actual = scoreEvents(scenarioUrl, eventsFile, 4);
+		Assert.assertEquals(2000, expected.size());
+		Assert.assertEquals(expected.keySet(), actual.keySet());
+		for (Map.Entry<Id<Person>, Double> e : expected.entrySet()) {
+			Assert.assertEquals("person " + e.getKey(), e.getValue(), actual.get(e.getKey()), 0.0);
+		}
+	}
+
+	private static Map<Id<Person>, Double> scoreEvents(URL scenarioUrl, String eventsFile, int numberOfScoringThreads) {
+		Config config = ConfigUtils.loadConfig(IOUtils.extendUrl(scenarioUrl, "config.xml"));
+		config.plans().setInputFile("plans2000.xml.gz");
+		config.planCalcScore().setNumberOfScoringThreads(numberOfScoringThreads);
+		Scenario scenario = ScenarioUtils.loadScenario(config);
+
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		EventsToScore eventsToScore = EventsToScore.createWithoutScoreUpdating(scenario, new CharyparNagelScoringFunctionFactory(scenario), eventsManager);
+		eventsToScore.beginIteration(0, false);
+		eventsManager.initProcessing();
+		new MatsimEventsReader(eventsManager).readFile(eventsFile);
+		eventsManager.finishProcessing();
+		eventsToScore.finish();
+
+		Map<Id<Person>, Double> scores = new HashMap<>();
+		for (Person person : scenario.getPopulation().getPersons().values()) {
+			scores.put(person.getId(), eventsToScore.getAgentScore(person.getId()));
+		}
+		return scores;
+	}
+
 	private static class RecordingScoringFunction implements ScoringFunction {
 
 		int tripCounter = 0;
 		TripStructureUtils.Trip lastTrip = null;
 		int separateScoreCounter = 0;
 		double separateScoreSum = 0;
+		private final double scoreAfterFinish;
+		private double score = 0;
+
+		RecordingScoringFunction() {
+			this(0);
+		}
+
+		RecordingScoringFunction(double scoreAfterFinish) {
+			this.scoreAfterFinish = scoreAfterFinish;
+		}
 
 		@Override
 		public void handleActivity(Activity activity) {
@@ -172,11 +272,15 @@ public class ScoringFunctionsForPopulationTest {
 
 		@Override
 		public void finish() {
+			if (this.scoreAfterFinish < 0) {
+				throw new IllegalStateException("negative score");
+			}
+			this.score = this.scoreAfterFinish;
 		}
 
 		@Override
 		public double getScore() {
-			return 0;
+			return this.score;
 		}
 
 		@Override